@@ -0,0 +1,18 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+
+/**
+ * Tests for the volume utilities of FileHelper.
+ */
+public class FileHelperTest extends TestCase {
+
+    public void testVolumeRootOfAppDirectory() {
+        assertEquals(new File("/storage/1234-5678"),
+                FileHelper.getVolumeRoot(new File("/storage/1234-5678/Android/data/com.example.hinakhan.filescanner/files")));
+        assertEquals(new File("/mnt/media_rw/usb"), FileHelper.getVolumeRoot(new File("/mnt/media_rw/usb/Android/data/p/files")));
+        assertEquals(new File("/storage/other"), FileHelper.getVolumeRoot(new File("/storage/other")));
+    }
+}
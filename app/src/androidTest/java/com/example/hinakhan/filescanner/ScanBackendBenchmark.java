@@ -0,0 +1,150 @@
+package com.example.hinakhan.filescanner;
+
+import android.os.Build;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Compares the java.io and single stat scan backends on a synthetic tree of 100k files.
+ * Reports wall time per 100k files to logcat (tag ScanBackendBenchmark), with an estimate of the metadata
+ * syscalls. Listings and entries are counted by a wrapping backend, the stats are not measured: the estimate
+ * assumes the calls each backend makes per entry, leaving out the canonical paths java.io resolves for links:
+ *  java.io: one listing per directory, a stat for isDirectory() per entry, a stat for length() per file
+ *  stat: one listing per directory, a single stat per entry
+ */
+public class ScanBackendBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "ScanBackendBenchmark";
+    private static final int FAN_OUT = 10; //Subdirectories per directory
+    private static final int DEPTH = 3; //Levels of subdirectories
+    private static final int FILES_PER_DIRECTORY = 100; //Files in every leaf directory
+    private static final int RUNS = 5;
+
+    private static final String[] EXTENSIONS = {".jpg", ".mp4", ".txt", ".pdf", ".png"};
+
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        root = new File(getContext().getCacheDir(), "scan-benchmark");
+        //Marker next to the tree, inside it would be counted as a file
+        File complete = new File(getContext().getCacheDir(), "scan-benchmark.complete");
+        if (!complete.exists()) {
+            deleteTree(root);
+            createTree(root, DEPTH);
+            complete.createNewFile();
+        }
+    }
+
+    public void testBackends() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            Log.i(TAG, "Stat backend requires API 21, skipping");
+            return;
+        }
+
+        ScanStatistics legacy = benchmark("java.io", new FileScanBackend(), 2);
+        ScanStatistics stat = benchmark("stat", new StatScanBackend(), 1);
+
+        assertEquals(legacy.getTotalFiles(), stat.getTotalFiles());
+        assertEquals(legacy.getTotalFileSize(), stat.getTotalFileSize());
+    }
+
+    private ScanStatistics benchmark(String name, ScanBackend backend, int statsPerFile) {
+        CountingBackend counting = new CountingBackend(backend);
+        SequentialTraversalEngine engine = new SequentialTraversalEngine(counting);
+        File[] roots = {root};
+
+        //Warm up dentry and inode caches, counting the listings and entries of one traversal
+        ScanStatistics statistics = engine.traverse(roots, NO_CALLBACK);
+        long listings = counting.listings;
+        long entries = counting.entries;
+
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            statistics = engine.traverse(roots, NO_CALLBACK);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        long files = statistics.getTotalFiles();
+        long estimatedSyscalls = listings + entries + (statsPerFile - 1) * files;
+        double per100k = 100000.0 / files;
+        Log.i(TAG, String.format("%s: %d files, %d listings, %d entries, %.1f ms and about %d syscalls (estimated) per 100k files",
+                name, files, listings, entries, best / 1e6 * per100k, Math.round(estimatedSyscalls * per100k)));
+        return statistics;
+    }
+
+    private static void createTree(File dir, int depth) throws IOException {
+        if (!dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Could not create " + dir);
+        }
+        if (depth == 0) {
+            for (int i = 0; i < FILES_PER_DIRECTORY; i++) {
+                RandomAccessFile file = new RandomAccessFile(new File(dir, "file" + i + EXTENSIONS[i % EXTENSIONS.length]), "rw");
+                try {
+                    //Sparse files, sizes vary without filling the disk
+                    file.setLength((i * 7919L) % 1000000);
+                } finally {
+                    file.close();
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < FAN_OUT; i++) {
+            createTree(new File(dir, "dir" + i), depth - 1);
+        }
+    }
+
+    private static void deleteTree(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Backend counting the directories listed and the entries visited, single threaded.
+     */
+    private static class CountingBackend implements ScanBackend {
+
+        private final ScanBackend backend; //Backend doing the work
+        private long listings; //Directories listed
+        private long entries; //Entries visited
+
+        CountingBackend(ScanBackend backend) {
+            this.backend = backend;
+        }
+
+        @Override
+        public boolean listDirectory(File dir, final EntryVisitor visitor) {
+            listings++;
+            return backend.listDirectory(dir, new EntryVisitor() {
+                @Override
+                public boolean visitEntry(DirectoryEntry entry) {
+                    entries++;
+                    return visitor.visitEntry(entry);
+                }
+            });
+        }
+
+        @Override
+        public boolean readEntry(File file, DirectoryEntry entry) {
+            return backend.readEntry(file, entry);
+        }
+    }
+
+    private static final TraversalCallback NO_CALLBACK = new TraversalCallback() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+}
@@ -5,6 +5,7 @@ import android.content.Intent;
 import android.graphics.Color;
 import android.graphics.Typeface;
 import android.os.Bundle;
+import android.text.format.Formatter;
 import android.util.Log;
 import android.util.TypedValue;
 import android.view.View;
@@ -13,6 +14,10 @@ import android.widget.TableLayout;
 import android.widget.TableRow;
 import android.widget.TextView;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,8 +25,16 @@ import java.util.Map;
  */
 public class DisplayStatisticsActivity extends Activity {
 
+    private final static long[] SIZE_DISTRIBUTION_LIMITS = {4L << 10, 64L << 10, 1L << 20, 16L << 20, 256L << 20}; //Upper limits of size ranges
+
     private TableLayout tblScanStatistics;
     private Button btnShareStats, btnHome;
+    private ScanStatistics scanStatistics; //Statistics decoded from the Intent, or final statistics of a live scan
+    private final Map<String, TableRow> statRows = new HashMap<String, TableRow>(); //Rows shown, by key
+    private final Map<String, TextView> statValues = new HashMap<String, TextView>(); //Value views of the rows, by key
+    private TableRow lastRow; //Row set last while showing statistics
+    private int firstStatsRow; //Position of the first statistics row, after the header rows
+    private ScanSnapshotBus.Listener liveListener; //Receives statistics of a running scan, null unless shown live
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -44,40 +57,159 @@ public class DisplayStatisticsActivity extends Activity {
             }
         });
 
-        displayStats(getIntent());
+        tblScanStatistics = (TableLayout)findViewById(R.id.tblScanStatistics);
+        firstStatsRow = tblScanStatistics.getChildCount();
+
+        if (getIntent().getBooleanExtra(MainActivity.LIVE_STATISTICS, false)) {
+            //Follow the running scan, rows are updated in place as snapshots arrive
+            liveListener = new ScanSnapshotBus.Listener() {
+                @Override
+                public void onSnapshot(StatisticsSnapshot snapshot) {
+                    displaySnapshot(snapshot);
+                }
+
+                @Override
+                public void onFinished(ScanStatistics statistics) {
+                    scanStatistics = statistics;
+                    displayStats(statistics);
+                }
+            };
+            ScanSnapshotBus.register(liveListener);
+        } else {
+            displayStats(getIntent());
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (liveListener != null) {
+            ScanSnapshotBus.unregister(liveListener);
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * Decodes scan statistics passed by MainActivity, once per activity.
+     * Uses the summary carried by the Intent, falling back to the file with the full statistics.
+     * @param intent
+     * @return Returns statistics or null if none were passed.
+     */
+    protected ScanStatistics getScanStatistics(Intent intent) {
+        if (scanStatistics == null) {
+            try {
+                byte[] summary = intent.getByteArrayExtra(MainActivity.SCAN_STATISTICS);
+                String path = intent.getStringExtra(MainActivity.SCAN_STATISTICS_FILE);
+                if (summary != null) {
+                    scanStatistics = ScanStatisticsCodec.decode(summary);
+                } else if (path != null) {
+                    scanStatistics = ScanStatisticsCodec.readFromFile(new File(path));
+                }
+            } catch (IOException e) {
+                Log.w("FileScanner", "Could not read scan statistics", e);
+            }
+        }
+        return scanStatistics;
     }
 
     protected void displayStats(Intent intent) {
-        ScanStatistics scanStatistics = (ScanStatistics)intent.getSerializableExtra(MainActivity.SCAN_STATISTICS);
+        ScanStatistics scanStatistics = getScanStatistics(intent);
         if (scanStatistics != null) {
-            Log.d("FileScanner", "Scan Statistics: " + scanStatistics.toString());
-            tblScanStatistics = (TableLayout)findViewById(R.id.tblScanStatistics);
+            displayStats(scanStatistics);
+        }
+    }
 
-            addStats(tblScanStatistics, getResources().getString(R.string.files_scanned), scanStatistics.getTotalFiles());
-            addStats(tblScanStatistics, getResources().getString(R.string.avg_file_size), scanStatistics.getAverageFileSize());
+    /**
+     * Shows statistics, updating the rows already shown for a live scan.
+     * @param scanStatistics
+     */
+    protected void displayStats(ScanStatistics scanStatistics) {
+        Log.d("FileScanner", "Scan Statistics: " + scanStatistics.toString());
+        lastRow = null;
 
-            StringBuffer sbuf = new StringBuffer();
-            Map<String, Integer> frequentFileExtensions = scanStatistics.getFrequentedFileExtensions(ScanStatistics.MAX_FREQUENT_FILE_EXTENSIONS);
-            for (Map.Entry<String, Integer> entry : frequentFileExtensions.entrySet()) {
-                sbuf.append(entry.getKey()).append("(").append(entry.getValue()).append(")").append("\n");
-            }
-            addStats(tblScanStatistics, getResources().getString(R.string.frequent_file_extensions), sbuf.toString());
+        if (!scanStatistics.isCompletedScan()) {
+            setStats(tblScanStatistics, getResources().getString(R.string.partial_scan), getString(R.string.scan_coverage,
+                    scanStatistics.getScannedDirectories(), scanStatistics.getUnscannedDirectories()));
+        }
+        setStats(tblScanStatistics, getResources().getString(R.string.files_scanned), scanStatistics.getTotalFiles());
+        if (scanStatistics.getRootUsage().size() > 1) {
+            setStats(tblScanStatistics, getResources().getString(R.string.storage_volumes),
+                    getDirectoryUsage(scanStatistics.getRootUsage(), "", "\n"));
+        }
+        setStats(tblScanStatistics, getResources().getString(R.string.avg_file_size), scanStatistics.getAverageFileSize());
+        if (scanStatistics.getSkippedDuplicates() > 0) {
+            setStats(tblScanStatistics, getResources().getString(R.string.skipped_duplicates), scanStatistics.getSkippedDuplicates());
+        }
+        setStats(tblScanStatistics, getResources().getString(R.string.median_file_size), formatSize(scanStatistics.getFileSizePercentile(50)));
+        setStats(tblScanStatistics, getResources().getString(R.string.p90_file_size), formatSize(scanStatistics.getFileSizePercentile(90)));
+        setStats(tblScanStatistics, getResources().getString(R.string.p99_file_size), formatSize(scanStatistics.getFileSizePercentile(99)));
+        setStats(tblScanStatistics, getResources().getString(R.string.max_file_size), formatSize(scanStatistics.getSizeHistogram().getMax()));
+        setStats(tblScanStatistics, getResources().getString(R.string.size_distribution), getSizeDistribution(scanStatistics, "", "\n"));
 
-            sbuf = new StringBuffer();
-            int counter = 0;
-            for (FileStats fileStats : scanStatistics.getBiggestFiles()) {
-                sbuf.append(fileStats.getFilename()).append("(").append(fileStats.getFileSizeInKiloBytes()).append(" Kb)").append("\n");
-                counter++;
-                if (counter >= ScanStatistics.MAX_BIGGEST_FILES) {
-                    break;
-                }
-            }
-            addStats(tblScanStatistics, getResources().getString(R.string.biggest_files), sbuf.toString());
+        setStats(tblScanStatistics, getResources().getString(R.string.frequent_file_extensions),
+                getFrequentExtensions(scanStatistics.getFrequentedFileExtensions(ScanStatistics.MAX_FREQUENT_FILE_EXTENSIONS)));
+        setStats(tblScanStatistics, getResources().getString(R.string.biggest_files), getBiggestFiles(scanStatistics.getBiggestFiles()));
+
+        setStats(tblScanStatistics, getResources().getString(R.string.heaviest_folders),
+                getDirectoryUsage(scanStatistics.getHeaviestDirectories(), "", "\n"));
+        setStats(tblScanStatistics, getResources().getString(R.string.folder_breakdown),
+                getDirectoryUsage(scanStatistics.getDirectoryBreakdown(), "", "\n"));
+
+        if (scanStatistics.getDuplicateGroupCount() > 0) {
+            setStats(tblScanStatistics, getResources().getString(R.string.duplicate_files), scanStatistics.getDuplicateFiles());
+            setStats(tblScanStatistics, getResources().getString(R.string.wasted_space), formatSize(scanStatistics.getWastedBytes()));
+            setStats(tblScanStatistics, getResources().getString(R.string.duplicate_groups),
+                    getDuplicateGroups(scanStatistics, "", "\n"));
+        }
+    }
+
+    /**
+     * Shows statistics of a running scan. Only rows whose text changed are touched.
+     * @param snapshot
+     */
+    protected void displaySnapshot(StatisticsSnapshot snapshot) {
+        lastRow = null;
+        setStats(tblScanStatistics, getResources().getString(R.string.files_scanned), snapshot.getTotalFiles());
+        setStats(tblScanStatistics, getResources().getString(R.string.avg_file_size), snapshot.getAverageFileSize());
+        if (snapshot.getSkippedDuplicates() > 0) {
+            setStats(tblScanStatistics, getResources().getString(R.string.skipped_duplicates), snapshot.getSkippedDuplicates());
         }
+        setStats(tblScanStatistics, getResources().getString(R.string.frequent_file_extensions),
+                getFrequentExtensions(snapshot.getFrequentFileExtensions()));
+        setStats(tblScanStatistics, getResources().getString(R.string.biggest_files), getBiggestFiles(snapshot.getBiggestFiles()));
+    }
 
+    /**
+     * Updates the value of a row, adding the row after the row set before if it isn't shown yet.
+     * Rows keep the order of the set calls, whether they are shown live or at once.
+     * @param tblLayout
+     * @param key
+     * @param value
+     */
+    protected void setStats(TableLayout tblLayout, String key, Object value) {
+        String text = value.toString();
+        TableRow tableRow = statRows.get(key);
+        if (tableRow == null) {
+            int index = lastRow == null ? firstStatsRow : tblLayout.indexOfChild(lastRow) + 1;
+            tableRow = addStats(tblLayout, key, text, index);
+            statRows.put(key, tableRow);
+        } else {
+            TextView tv = statValues.get(key);
+            if (!text.contentEquals(tv.getText())) {
+                tv.setText(text);
+            }
+        }
+        lastRow = tableRow;
     }
 
-    protected void addStats(TableLayout tblLayout, String key, Object value) {
+    /**
+     * Adds a row.
+     * @param tblLayout
+     * @param key
+     * @param value
+     * @param index Position of the row in the table.
+     * @return
+     */
+    protected TableRow addStats(TableLayout tblLayout, String key, Object value, int index) {
         TableRow tableRow = new TableRow(this);
         TableRow.LayoutParams lp = new TableRow.LayoutParams(TableRow.LayoutParams.WRAP_CONTENT);
         tableRow.setLayoutParams(lp);
@@ -96,8 +228,26 @@ public class DisplayStatisticsActivity extends Activity {
         tv.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
         tv.setTypeface(tv.getTypeface(), Typeface.BOLD);
         tableRow.addView(tv);
+        statValues.put(key, tv);
+
+        tblLayout.addView(tableRow, index);
+        return tableRow;
+    }
+
+    private static String getFrequentExtensions(Map<String, Integer> frequentFileExtensions) {
+        StringBuffer sbuf = new StringBuffer();
+        for (Map.Entry<String, Integer> entry : frequentFileExtensions.entrySet()) {
+            sbuf.append(entry.getKey()).append("(").append(entry.getValue()).append(")").append("\n");
+        }
+        return sbuf.toString();
+    }
 
-        tblLayout.addView(tableRow);
+    private static String getBiggestFiles(List<FileStats> biggestFiles) {
+        StringBuffer sbuf = new StringBuffer();
+        for (FileStats fileStats : biggestFiles) {
+            sbuf.append(fileStats.getFilename()).append("(").append(fileStats.getFileSizeInKiloBytes()).append(" Kb)").append("\n");
+        }
+        return sbuf.toString();
     }
 
     /**
@@ -115,12 +265,22 @@ public class DisplayStatisticsActivity extends Activity {
     }
 
     private String getStatsAsHTML(Intent intent) {
-        ScanStatistics scanStatistics = (ScanStatistics)intent.getSerializableExtra(MainActivity.SCAN_STATISTICS);
+        ScanStatistics scanStatistics = getScanStatistics(intent);
         StringBuffer sbuf = new StringBuffer();
 
         if (scanStatistics != null) {
+            if (!scanStatistics.isCompletedScan()) {
+                sbuf.append("\n\tPartial Scan:\t").append(getString(R.string.scan_coverage,
+                        scanStatistics.getScannedDirectories(), scanStatistics.getUnscannedDirectories()));
+            }
             sbuf.append("\n\tFiles Scanned:\t").append(scanStatistics.getTotalFiles());
             sbuf.append("\n\tAverage File Size:\t").append(scanStatistics.getAverageFileSize());
+            sbuf.append("\n\tSkipped Duplicates:\t").append(scanStatistics.getSkippedDuplicates());
+            sbuf.append("\n\tMedian File Size:\t").append(formatSize(scanStatistics.getFileSizePercentile(50)));
+            sbuf.append("\n\t90th Percentile File Size:\t").append(formatSize(scanStatistics.getFileSizePercentile(90)));
+            sbuf.append("\n\t99th Percentile File Size:\t").append(formatSize(scanStatistics.getFileSizePercentile(99)));
+            sbuf.append("\n\tLargest File Size:\t").append(formatSize(scanStatistics.getSizeHistogram().getMax()));
+            sbuf.append("\n\tFile Size Distribution:\t").append(getSizeDistribution(scanStatistics, "\n\t\t", ""));
 
             sbuf.append("\n\tFrequent File Extensions:\t");
             Map<String, Integer> frequentFileExtensions = scanStatistics.getFrequentedFileExtensions(ScanStatistics.MAX_FREQUENT_FILE_EXTENSIONS);
@@ -129,13 +289,20 @@ public class DisplayStatisticsActivity extends Activity {
             }
 
             sbuf.append("\n\tBiggest Files:\t");
-            int counter = 0;
             for (FileStats fileStats : scanStatistics.getBiggestFiles()) {
                 sbuf.append("\n\t\t").append(fileStats.getFilename()).append("(").append(fileStats.getFileSizeInKiloBytes()).append(" Kb)");
-                counter++;
-                if (counter >= ScanStatistics.MAX_BIGGEST_FILES) {
-                    break;
-                }
+            }
+
+            if (scanStatistics.getRootUsage().size() > 1) {
+                sbuf.append("\n\tStorage Volumes:\t").append(getDirectoryUsage(scanStatistics.getRootUsage(), "\n\t\t", ""));
+            }
+            sbuf.append("\n\tHeaviest Folders:\t").append(getDirectoryUsage(scanStatistics.getHeaviestDirectories(), "\n\t\t", ""));
+            sbuf.append("\n\tFolder Breakdown:\t").append(getDirectoryUsage(scanStatistics.getDirectoryBreakdown(), "\n\t\t", ""));
+
+            if (scanStatistics.getDuplicateGroupCount() > 0) {
+                sbuf.append("\n\tDuplicate Files:\t").append(scanStatistics.getDuplicateFiles());
+                sbuf.append("\n\tWasted Space:\t").append(formatSize(scanStatistics.getWastedBytes()));
+                sbuf.append("\n\tDuplicate Groups:\t").append(getDuplicateGroups(scanStatistics, "\n\t\t", ""));
             }
 
         }
@@ -143,4 +310,63 @@ public class DisplayStatisticsActivity extends Activity {
         return  sbuf.toString();
     }
 
+    /**
+     * Number of files per size range, one range per line.
+     * @param scanStatistics
+     * @param prefix Text before every line.
+     * @param suffix Text after every line.
+     * @return
+     */
+    private String getSizeDistribution(ScanStatistics scanStatistics, String prefix, String suffix) {
+        SizeHistogram histogram = scanStatistics.getSizeHistogram();
+        StringBuffer sbuf = new StringBuffer();
+        long below = 0;
+        for (long limit : SIZE_DISTRIBUTION_LIMITS) {
+            long count = histogram.getCountBelow(limit);
+            sbuf.append(prefix).append("< ").append(formatSize(limit)).append("(").append(count - below).append(")").append(suffix);
+            below = count;
+        }
+        long last = SIZE_DISTRIBUTION_LIMITS[SIZE_DISTRIBUTION_LIMITS.length - 1];
+        sbuf.append(prefix).append(">= ").append(formatSize(last)).append("(").append(histogram.getCount() - below).append(")").append(suffix);
+        return sbuf.toString();
+    }
+
+    /**
+     * Path, size and file count of directories, one directory per line.
+     * @param directories
+     * @param prefix Text before every line.
+     * @param suffix Text after every line.
+     * @return
+     */
+    private String getDirectoryUsage(List<DirectoryUsage> directories, String prefix, String suffix) {
+        StringBuffer sbuf = new StringBuffer();
+        for (DirectoryUsage usage : directories) {
+            sbuf.append(prefix).append(usage.getPath()).append("(").append(formatSize(usage.getTotalFileSize()))
+                    .append(", ").append(usage.getTotalFiles()).append(" files)").append(suffix);
+        }
+        return sbuf.toString();
+    }
+
+    /**
+     * Groups of identical files wasting most space, one file per line after the wasted space of its group.
+     * @param scanStatistics
+     * @param prefix Text before every line.
+     * @param suffix Text after every line.
+     * @return
+     */
+    private String getDuplicateGroups(ScanStatistics scanStatistics, String prefix, String suffix) {
+        StringBuffer sbuf = new StringBuffer();
+        for (DuplicateGroup group : scanStatistics.getDuplicateGroups()) {
+            sbuf.append(prefix).append(formatSize(group.getWastedBytes())).append(":").append(suffix);
+            for (String path : group.getPaths()) {
+                sbuf.append(prefix).append("  ").append(path).append(suffix);
+            }
+        }
+        return sbuf.toString();
+    }
+
+    private String formatSize(long bytes) {
+        return Formatter.formatShortFileSize(this, bytes);
+    }
+
 }
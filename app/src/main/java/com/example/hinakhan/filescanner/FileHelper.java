@@ -1,13 +1,13 @@
 package com.example.hinakhan.filescanner;
 
+import android.content.Context;
+import android.os.Build;
 import android.os.Environment;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Utility class for common file operations.
@@ -41,29 +41,59 @@ public class FileHelper {
     }
 
     /**
-     * Comparator class to sort a Map.
-     * @param unsortedMap<String, Integer>
-     * @return Sorted Map<String, Integer>
+     * Roots of all mounted storage volumes that can be read: the primary external storage and,
+     * from KitKat, secondary volumes like SD cards and USB drives. Secondary volumes are found
+     * through the app directories the platform creates on every mounted volume.
+     * @param context
+     * @return Volume roots, primary first, each volume once. Empty if none is mounted.
      */
-    public static Map<String, Integer> sortByComparator(Map<String, Integer> unsortedMap) {
-        //Convert to list
-        List<Map.Entry<String, Integer>> list = new LinkedList<Map.Entry<String, Integer>>(unsortedMap.entrySet());
-
-        // Sort by value in descending order ie: highest value entry at index zero
-        Collections.sort(list, new Comparator<Map.Entry<String, Integer>>() {
-            public int compare(Map.Entry<String, Integer> o1, Map.Entry<String, Integer> o2) {
-                return o2.getValue().compareTo(o1.getValue());
+    public static List<File> getStorageVolumes(Context context) {
+        List<File> volumes = new ArrayList<File>();
+        List<String> canonicalPaths = new ArrayList<String>();
+        if (isExternalStorageReadable()) {
+            addVolume(Environment.getExternalStorageDirectory(), volumes, canonicalPaths);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            File[] appDirs = context.getExternalFilesDirs(null);
+            if (appDirs != null) {
+                for (File appDir : appDirs) {
+                    //Null for a volume that isn't mounted
+                    if (appDir != null) {
+                        addVolume(getVolumeRoot(appDir), volumes, canonicalPaths);
+                    }
+                }
             }
-        });
-
-        //Insert sorted entries in linked list
-        Map<String, Integer> sortedMap = new LinkedHashMap<String, Integer>();
-        for (Map.Entry<String, Integer> entry : list) {
-            sortedMap.put(entry.getKey(), entry.getValue());
         }
-
-        return sortedMap;
+        return volumes;
     }
 
+    /**
+     * Root of the volume holding an app directory like /storage/1234-5678/Android/data/package/files.
+     * @param appDir
+     * @return
+     */
+    static File getVolumeRoot(File appDir) {
+        String path = appDir.getPath();
+        int index = path.indexOf(File.separator + "Android" + File.separator + "data" + File.separator);
+        return index > 0 ? new File(path.substring(0, index)) : appDir;
+    }
 
+    /**
+     * Adds a readable volume, unless the same directory was added through another path.
+     */
+    private static void addVolume(File root, List<File> volumes, List<String> canonicalPaths) {
+        if (!root.isDirectory() || !root.canRead()) {
+            return;
+        }
+        String canonicalPath;
+        try {
+            canonicalPath = root.getCanonicalPath();
+        } catch (IOException e) {
+            canonicalPath = root.getAbsolutePath();
+        }
+        if (!canonicalPaths.contains(canonicalPath)) {
+            canonicalPaths.add(canonicalPath);
+            volumes.add(root);
+        }
+    }
 }
@@ -0,0 +1,51 @@
+package com.example.hinakhan.filescanner;
+
+import android.os.FileObserver;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Watches a tree with one FileObserver per directory, FileObserver doesn't watch subdirectories.
+ * Observers are told about entries created, deleted, moved or written to completion. Modifications
+ * are left out: a file being written would report every write, its final size is reported once it
+ * is closed. Observers can't see inotify queue overflows, the bounded ChangeQueue still collapses
+ * bursts of changed directories into a subtree.
+ */
+public class FileObserverTreeWatcher extends TreeWatcher {
+
+    private final static int EVENTS = FileObserver.CREATE | FileObserver.DELETE | FileObserver.MOVED_FROM
+            | FileObserver.MOVED_TO | FileObserver.CLOSE_WRITE | FileObserver.DELETE_SELF;
+
+    private final Map<String, FileObserver> observers = new HashMap<String, FileObserver>(); //Observer of every watched directory, referenced so it is not collected
+
+    /**
+     * Constructor with parameters, queues up to ChangeQueue.DEFAULT_CAPACITY changed directories.
+     * @param tree Tree with the statistics of a completed scan attached.
+     */
+    public FileObserverTreeWatcher(WatchedTree tree) {
+        super(tree, ChangeQueue.DEFAULT_CAPACITY);
+    }
+
+    @Override
+    protected synchronized boolean watchDirectory(final String path, File dir) {
+        FileObserver observer = new FileObserver(dir.getPath(), EVENTS) {
+            @Override
+            public void onEvent(int event, String name) {
+                onChange(path);
+            }
+        };
+        observer.startWatching();
+        observers.put(path, observer);
+        return true;
+    }
+
+    @Override
+    protected synchronized void unwatchDirectory(String path) {
+        FileObserver observer = observers.remove(path);
+        if (observer != null) {
+            observer.stopWatching();
+        }
+    }
+}
@@ -1,53 +1,80 @@
 package com.example.hinakhan.filescanner;
 
 import android.app.Activity;
+import android.app.AlertDialog;
+import android.content.DialogInterface;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Bundle;
-import android.os.Environment;
+import android.text.format.Formatter;
 import android.util.Log;
-import android.view.KeyEvent;
 import android.view.View;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.ProgressBar;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
 
 /**
  * Main activity class.
+ * Scans run in ScanService, the activity only follows them: leaving or recreating it doesn't stop a scan.
  */
-public class MainActivity extends Activity {
+public class MainActivity extends Activity implements ScanService.Listener, WarmStart.Listener {
 
     public final static String SCAN_STATISTICS = "com.example.hinakhan.filescanner.SCAN_STATISTICS";
+    public final static String SCAN_STATISTICS_FILE = "com.example.hinakhan.filescanner.SCAN_STATISTICS_FILE";
+    public final static String LIVE_STATISTICS = "com.example.hinakhan.filescanner.LIVE_STATISTICS";
+    public static int SCAN_PARALLELISM = Runtime.getRuntime().availableProcessors(); //Number of scanner threads
+    public static boolean USE_STAT_BACKEND = true; //Read file attributes with one stat call instead of java.io.File
+    public static boolean USE_SCAN_INDEX = true; //Only list directories modified since the previous scan
+    public static boolean FOLLOW_SYMLINKS = false; //Descend into linked directories, duplicates are skipped
+    public static boolean ONE_FILE_SYSTEM = true; //Don't descend into other volumes mounted below the root
+    public static boolean FIND_DUPLICATES = false; //Hash files of equal sizes to find identical ones after scanning
+    public static int DUPLICATE_THREADS = 2; //Number of threads reading files while searching duplicates
+    public static long SCAN_TIME_BUDGET_MILLIS = 0; //Stop scans after this time and show partial statistics, zero for no limit
+    public static long SCAN_FILE_BUDGET = 0; //Stop scans after about this number of files, zero for no limit
+    public static boolean SHOW_LIVE_STATISTICS = false; //Open the statistics screen when a scan starts and update it while scanning
+    public static boolean SCHEDULE_BACKGROUND_SCANS = true; //Rescan while charging and idle, from Lollipop
+    public static String SCAN_FILTER = null; //Count only matching files, like "ext:mp4,jpg size:>10M age:<30d", null for all files
+    public static boolean INDEX_FILE_NAMES = false; //Index the names of scanned files for the Find button, unchanged directories take theirs from the saved index
+    public static int MAX_FIND_RESULTS = 200; //Paths shown by a search
+    public static CatalogWriter.Format CATALOG_FORMAT = CatalogWriter.Format.CSV; //Layout of catalogs saved by the Save button
+    public static boolean COMPRESS_CATALOG = true; //Gzip catalogs, they hold a line per file
+    public static boolean WATCH_CHANGES = false; //Keep the latest results current by watching the scanned directories, lists unchanged directories again
+    public static boolean WARM_START = false; //Load the latest results and prefetch the volumes during the splash, show the results on start
+    private final static String SCAN_STATISTICS_FILE_NAME = "scan-statistics.bin";
+    private final static int PROGRESS_MAX = 1000; //Resolution of progress bar
     private Button btnCheckExternalMedia, btnStartScan, btnStopScan;
-    private Button btnToSave, btnToFind;
+    private Button btnToSave, btnToFind, btnLastScan;
     private ProgressBar mProgress;
-    private ExternalMediaScannerTask scannerTask;
+    private TextView txtScanProgress;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        //Create new async task to scan external media
-        scannerTask = new ExternalMediaScannerTask();
-
         btnStartScan = (Button) findViewById(R.id.btnForStartScanning);
         btnStartScan.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                //Disable start scan when scan is in progress
-                btnStartScan.setEnabled(false);
-
-                //Render stop scan button
-                btnStopScan.setVisibility(View.VISIBLE);
-
-                //Set progress bar to visible
-                mProgress.setVisibility(View.VISIBLE);
+                startScan(false);
+            }
+        });
 
-                //Launch task to scan external media
-                scannerTask.execute("*");
+        btnToSave = (Button) findViewById(R.id.btnToSave);
+        btnToSave.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                //Scan again, streaming every file to the catalog as it is found
+                if (!ScanService.isScanning()) {
+                    startScan(true);
+                }
             }
         });
 
@@ -56,19 +83,73 @@ public class MainActivity extends Activity {
             @Override
             public void onClick(View v) {
                 //Notify user
-                Toast.makeText(getApplicationContext(), "Clicked stop scan btn", Toast.LENGTH_LONG).show();
+                Toast.makeText(getApplicationContext(), "Stopping scan", Toast.LENGTH_SHORT).show();
+
+                //Cancel scan, its partial statistics are displayed when it returns.
+                //Buttons are restored right away, the scan may still be blocked listing a directory.
+                ScanService.stopScan();
+                resetScanButtons();
+            }
+        });
+
+        btnLastScan = (Button) findViewById(R.id.btnLastScan);
+        btnLastScan.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                //Results saved by the latest completed scan, possibly a scheduled one
+                Intent intent = new Intent(MainActivity.this, DisplayStatisticsActivity.class);
+                intent.putExtra(SCAN_STATISTICS_FILE, ScanService.getLatestStatisticsFile(MainActivity.this).getPath());
+                startActivity(intent);
+            }
+        });
 
-                //Cancel scanner task
-                scannerTask.cancel(true);
+        btnToFind = (Button) findViewById(R.id.btnToFind);
+        btnToFind.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                //Search the index of the running or latest scan, loading the saved one first
+                if (ScanService.getNameIndex() != null) {
+                    showFindDialog();
+                    return;
+                }
+                ScanService.loadNameIndex(MainActivity.this, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (ScanService.getNameIndex() != null) {
+                            showFindDialog();
+                        } else {
+                            Toast.makeText(getApplicationContext(), getString(R.string.find_no_index), Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                });
             }
         });
 
         //progress bar
         mProgress = (ProgressBar) findViewById(R.id.progressBar);
+        mProgress.setMax(PROGRESS_MAX);
+        txtScanProgress = (TextView) findViewById(R.id.txtScanProgress);
 
         if (checkForExternalMedia()) {
-            //Hide stop scan button
-            btnStopScan.setVisibility(View.INVISIBLE);
+            //Follow a scan started before the activity was recreated
+            ScanService.addListener(this);
+            if (ScanService.isScanning()) {
+                btnStartScan.setEnabled(false);
+                mProgress.setVisibility(View.VISIBLE);
+                ProgressSnapshot snapshot = ScanService.getLatestProgress();
+                if (snapshot != null) {
+                    onProgress(snapshot);
+                }
+            } else {
+                //Hide stop scan button
+                btnStopScan.setVisibility(View.INVISIBLE);
+            }
+            if (SCHEDULE_BACKGROUND_SCANS) {
+                ScanJobService.schedule(this);
+            }
+            if (WARM_START && savedInstanceState == null && !ScanService.isScanning()) {
+                WarmStart.takeLatestStatistics(this);
+            }
         } else {
             //Hide Scan buttons
             setStateForScanButtons(View.INVISIBLE);
@@ -77,35 +158,32 @@ public class MainActivity extends Activity {
             Toast.makeText(getApplicationContext(), "", Toast.LENGTH_LONG).show();
 
             //Display button to rescan for SD card
-            btnCheckExternalMedia.setVisibility(View.VISIBLE);
-        }
-    }
-
-    /**
-     * Handle user pressing back button
-     * @param keyCode
-     * @param event
-     * @return
-     */
-    public boolean onKeyDown(int keyCode, KeyEvent event)  {
-        if (keyCode == KeyEvent.KEYCODE_BACK && event.getRepeatCount() == 0) {
-            if (scannerTask != null) {
-                scannerTask.cancel(true);
-                Log.d("FileScanner", "Cancelled scanner task");
+            if (btnCheckExternalMedia != null) {
+                btnCheckExternalMedia.setVisibility(View.VISIBLE);
             }
         }
-
-        return super.onKeyDown(keyCode, event);
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showLastScan();
+    }
 
+    @Override
+    protected void onDestroy() {
+        //The scan goes on in the service, its results are saved for the next visit
+        ScanService.removeListener(this);
+        WarmStart.removeListener(this);
+        super.onDestroy();
+    }
 
     /**
-     * Checks if there is a readable + writable external media plugged into the phone.
-     * @return Returns true if valid extrnal media is plugged in else returns false.
+     * Checks if there is a readable storage volume, internal or plugged into the phone.
+     * @return Returns true if a volume can be scanned else returns false.
      */
     private boolean checkForExternalMedia() {
-        return FileHelper.isExternalStorageWritable();
+        return !FileHelper.getStorageVolumes(this).isEmpty();
     }
 
     /**
@@ -114,148 +192,199 @@ public class MainActivity extends Activity {
      * @param viewState
      */
     private void setStateForScanButtons(int viewState) {
-        btnToSave.setVisibility(viewState);
-        btnToFind.setVisibility(viewState);
+        //Save and find buttons are not in every layout
+        if (btnToSave != null) {
+            btnToSave.setVisibility(viewState);
+        }
+        if (btnToFind != null) {
+            btnToFind.setVisibility(viewState);
+        }
         btnStartScan.setVisibility(viewState);
     }
 
-    //Inner class for scanning external media
-    class ExternalMediaScannerTask extends AsyncTask<String, Integer, ScanStatistics> {
-
-        /**
-         * Display progress bar before starting scan process
-         */
-        protected void onPreExecute() {
-            super.onPreExecute();
-
-            //Notify User.
-            Toast.makeText(getApplicationContext(), "Starting Scan", Toast.LENGTH_SHORT).show();
+    /**
+     * Offers the results of the latest completed scan, saved by ScanService.
+     */
+    private void showLastScan() {
+        File latest = ScanService.getLatestStatisticsFile(this);
+        if (latest.exists()) {
+            btnLastScan.setVisibility(View.VISIBLE);
+            if (!ScanService.isScanning()) {
+                txtScanProgress.setText(getString(R.string.last_scan_time,
+                        DateFormat.getDateTimeInstance().format(new Date(latest.lastModified()))));
+            }
+        } else {
+            btnLastScan.setVisibility(View.GONE);
         }
+    }
 
-        public void updateProgress(Integer counter) {
-            publishProgress(counter);
+    /**
+     * Starts a scan in ScanService and shows its progress.
+     * @param exportCatalog Save a catalog of every file scanned.
+     */
+    private void startScan(boolean exportCatalog) {
+        if (SCAN_FILTER != null) {
+            try {
+                ScanFilter.compile(SCAN_FILTER);
+            } catch (IllegalArgumentException e) {
+                Toast.makeText(getApplicationContext(), e.getMessage(), Toast.LENGTH_LONG).show();
+                return;
+            }
         }
 
-        /**
-         * @param fileExtension
-         * @return
-         */
-        protected ScanStatistics doInBackground(String... fileExtension) {
-            ScanStatistics statistics = new ScanStatistics();
-
-            File stResult = new File(Environment.getExternalStorageDirectory().toString());
-            long startTime = System.currentTimeMillis();
-            for(String dirname : stResult.list()) {
-                // Escape early if cancel() is called
-                /*if (isCancelled()) {
-                    statistics.setCompletedScan(false);
-                    Log.d("FileScanner", "Cancelling async task");
-                    break;
-                }*/
-
-                //Scan directory
-                String absolutePathToDir = Environment.getExternalStorageDirectory().toString() + "/" + dirname;
-                Log.d("FileScanner", "Scanning directory " + absolutePathToDir);
-                File file = new File(absolutePathToDir);
-                boolean cancelTask = traverseDirectory(this, file, statistics, startTime);
-                if (cancelTask) {
-                    break;
-                }
+        //Disable start scan when scan is in progress
+        btnStartScan.setEnabled(false);
 
-                /**
-                 * Uncomment this code if you don't have enough files to test Stop Scan functionality.
-                 * This code will make the thread sleep for 5 secs when scanning directories
-                try {
-                    Log.d("FileScanner", "Thread is sleeping for 5 secs");
-                    Thread.sleep(5000);
-                } catch (Exception e) {
-                    Log.d("FileScanner", "THread was interrupted");
-                }
-                 */
-            }
+        //Render stop scan button
+        btnStopScan.setVisibility(View.VISIBLE);
+
+        //Set progress bar to visible
+        mProgress.setVisibility(View.VISIBLE);
 
+        //Notify User.
+        Toast.makeText(getApplicationContext(), "Starting Scan", Toast.LENGTH_SHORT).show();
 
-            return statistics;
+        //Scan in the service, a previous scan abandoned in a blocking listing must not delay it
+        Intent service = new Intent(MainActivity.this, ScanService.class);
+        service.putExtra(ScanService.EXPORT_CATALOG, exportCatalog);
+        startService(service);
+
+        if (SHOW_LIVE_STATISTICS) {
+            Intent intent = new Intent(MainActivity.this, DisplayStatisticsActivity.class);
+            intent.putExtra(LIVE_STATISTICS, true);
+            startActivity(intent);
         }
+    }
 
-        /**
-         * Traverses directory computing scan statistics.
-         * @param scannerTask
-         * @param dir
-         * @param statistics
-         * @param startTime
-         * @return Boolean flag indicating is scanner task was cancelled by user action.
-         */
-        protected boolean traverseDirectory(ExternalMediaScannerTask scannerTask, File dir, ScanStatistics statistics, long startTime) {
-            boolean cancelTask = false;
-            File[]  files = dir.listFiles();
-            if(files != null) {
-                for (File file : files) {
-                    //Check if background task was stopped by user action
-                    if (scannerTask.isCancelled()) {
-                        statistics.setCompletedScan(false);
-                        Log.d("FileScanner", "Cancelling async task");
-                        cancelTask = true;
-                        break;
+    /**
+     * Asks for a name or glob and shows the matching files.
+     */
+    private void showFindDialog() {
+        if (isFinishing()) {
+            return;
+        }
+        final EditText input = new EditText(this);
+        input.setHint(getString(R.string.find_hint));
+        input.setSingleLine();
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.find_files)
+                .setView(input)
+                .setPositiveButton(R.string.find, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        showFindResults(input.getText().toString().trim());
                     }
+                })
+                .show();
+    }
 
-                    if (file.isDirectory()) {
-                        cancelTask = traverseDirectory(scannerTask, file, statistics, startTime);
-                        if (cancelTask) {
-                            //Stop directory traversal
-                            break;
-                        }
-                    } else {
-                        statistics.updateStatistics(file); //Update scan statistics
-
-                        //Publish stats every 50 milliseconds
-                        if ((System.currentTimeMillis() - startTime)%50 == 0) {
-                            this.updateProgress(statistics.getTotalFiles());
+    /**
+     * Searches the name index on a background thread: the search waits for names a running scan merges,
+     * and queries without a rare trigram compare every name.
+     * @param query
+     */
+    private void showFindResults(final String query) {
+        final NameIndex index = ScanService.getNameIndex();
+        if (index == null || query.length() == 0) {
+            return;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                final List<String> paths = index.find(query, MAX_FIND_RESULTS);
+                final long millis = (System.nanoTime() - start) / 1000000;
+                Log.d("FileScanner", "Found " + paths.size() + " files for " + query + " in " + millis + " ms");
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isFinishing()) {
+                            return;
                         }
+                        new AlertDialog.Builder(MainActivity.this)
+                                .setTitle(getString(R.string.find_results, paths.size(), millis))
+                                .setItems(paths.toArray(new String[paths.size()]), null)
+                                .show();
                     }
-                }
+                });
             }
+        }, "FileScanner-find").start();
+    }
 
-            return cancelTask;
-        }
-
-        protected void onProgressUpdate(Integer... progress) {
-            super.onProgressUpdate(progress);
-            int numFilesScanned = progress[0];
-            Log.d("FileScanner", "Scanned " + numFilesScanned + " files");
-            mProgress.setProgress(numFilesScanned*10);
-        }
-
-        protected void onPostExecute(ScanStatistics scanStatistics) {
-            //Invoke super class
-            super.onPostExecute(scanStatistics);
+    /**
+     * Restores the scan buttons after a scan ended or was stopped.
+     */
+    private void resetScanButtons() {
+        btnStartScan.setEnabled(true);
+        btnStopScan.setVisibility(View.INVISIBLE);
+        mProgress.setIndeterminate(false);
+        mProgress.setProgress(0);
+    }
 
-            if (scanStatistics.isCompletedScan()) {
-                //Display scan completion message
-                Toast.makeText(getApplicationContext(), "Scan completed", Toast.LENGTH_SHORT).show();
+    @Override
+    public void onProgress(ProgressSnapshot snapshot) {
+        Log.d("FileScanner", "Scanned " + snapshot);
+        btnStartScan.setEnabled(false);
+        btnStopScan.setVisibility(View.VISIBLE);
 
-                //Launch Activity to display stats
-                displayStatistics(scanStatistics);
+        if (snapshot.getFraction() < 0) {
+            mProgress.setIndeterminate(true);
+        } else {
+            mProgress.setIndeterminate(false);
+            mProgress.setProgress((int) (snapshot.getFraction() * mProgress.getMax()));
+        }
+        txtScanProgress.setText(getString(R.string.scan_progress, snapshot.getFiles(),
+                Formatter.formatShortFileSize(MainActivity.this, snapshot.getBytes()),
+                Math.round(snapshot.getFilesPerSecond())));
+    }
 
-            } else {
-                //Display scan cancellation message
-                Toast.makeText(getApplicationContext(), "Scan was cancelled", Toast.LENGTH_SHORT).show();
+    @Override
+    public void onFinished(ScanStatistics scanStatistics, CancellationToken.StopReason stopReason, boolean shownLive) {
+        resetScanButtons();
+        showLastScan();
 
-                //Enable Scan button for next run
-                btnStartScan.setEnabled(true);
-            }
+        if (scanStatistics.isCompletedScan()) {
+            //Display scan completion message
+            Toast.makeText(getApplicationContext(), "Scan completed", Toast.LENGTH_SHORT).show();
+        } else {
+            //Display scan cancellation message, partial statistics are still shown
+            Toast.makeText(getApplicationContext(), stopReason == CancellationToken.StopReason.CANCELLED
+                    ? "Scan was cancelled" : "Scan stopped early", Toast.LENGTH_SHORT).show();
         }
 
-        protected void onCancelled() {
-            super.onCancelled();
-            //Perform clean up task
+        //Launch Activity to display stats, a live statistics screen shows the final statistics itself
+        if (!shownLive && !isFinishing() && scanStatistics.getTotalFiles() > 0) {
+            displayStatistics(scanStatistics);
         }
+    }
 
-        protected void displayStatistics(ScanStatistics scanStatistics) {
+    @Override
+    public void onLatestStatistics(ScanStatistics statistics) {
+        //Results of the latest scan, loaded during the splash
+        if (statistics != null && !isFinishing() && !ScanService.isScanning()) {
             Intent intent = new Intent(MainActivity.this, DisplayStatisticsActivity.class);
-            intent.putExtra(SCAN_STATISTICS, scanStatistics);
+            intent.putExtra(SCAN_STATISTICS, ScanStatisticsCodec.encode(statistics, true));
+            intent.putExtra(SCAN_STATISTICS_FILE, ScanService.getLatestStatisticsFile(this).getPath());
             startActivity(intent);
         }
+    }
 
+    /**
+     * Launch activity to display stats.
+     * The Intent carries a size bounded summary, the full statistics are passed by file.
+     * @param scanStatistics
+     */
+    protected void displayStatistics(ScanStatistics scanStatistics) {
+        Intent intent = new Intent(MainActivity.this, DisplayStatisticsActivity.class);
+        intent.putExtra(SCAN_STATISTICS, ScanStatisticsCodec.encode(scanStatistics, true));
+
+        File statisticsFile = new File(getCacheDir(), SCAN_STATISTICS_FILE_NAME);
+        try {
+            ScanStatisticsCodec.writeToFile(scanStatistics, statisticsFile);
+            intent.putExtra(SCAN_STATISTICS_FILE, statisticsFile.getPath());
+        } catch (IOException e) {
+            Log.w("FileScanner", "Could not save scan statistics", e);
+        }
+        startActivity(intent);
     }
-}
\ No newline at end of file
+}
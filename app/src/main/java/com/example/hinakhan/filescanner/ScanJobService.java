@@ -0,0 +1,82 @@
+package com.example.hinakhan.filescanner;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Rescans the external storage while the device is charging and idle, so opening the app shows
+ * recent results. The scan runs through ScanService at a limited rate, reusing the index of the
+ * previous scan. JobScheduler stops it when the device is unplugged or used, and runs it again later.
+ * Needs JobScheduler, available from Lollipop.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class ScanJobService extends JobService {
+
+    public static long SCHEDULE_INTERVAL_MILLIS = 24 * 60 * 60 * 1000; //Time between scheduled scans
+    private final static int JOB_ID = 1;
+
+    /**
+     * Schedules periodic background scans unless they are scheduled already.
+     * Does nothing before Lollipop.
+     * @param context
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, ScanJobService.class))
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .setPeriodic(SCHEDULE_INTERVAL_MILLIS)
+                .setPersisted(true)
+                .build();
+        if (scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.w("FileScanner", "Could not schedule background scans");
+        }
+    }
+
+    /**
+     * Stops scheduling background scans.
+     * @param context
+     */
+    public static void cancel(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+            scheduler.cancel(JOB_ID);
+        }
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        //A scan started by the user is as recent as a background scan gets
+        boolean started = ScanService.startScan(this, true, new Runnable() {
+            @Override
+            public void run() {
+                jobFinished(params, false);
+            }
+        });
+        Log.d("FileScanner", started ? "Started background scan" : "Skipped background scan, a scan runs");
+        return started;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        //Conditions no longer met, stop and run again later
+        ScanService.stopScheduledScan();
+        return true;
+    }
+}
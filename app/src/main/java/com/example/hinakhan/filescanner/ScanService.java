@@ -0,0 +1,546 @@
+package com.example.hinakhan.filescanner;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs scans independently of any activity, so a scan survives leaving or recreating MainActivity.
+ * The process runs one scan at a time on a background thread, covering every mounted storage volume. Started by MainActivity for scans
+ * asked for by the user, and by ScanJobService for scheduled scans, which are throttled to
+ * BACKGROUND_ENTRIES_PER_SECOND and give way to a scan started by the user.
+ *
+ * Progress and results of scans started by the user are delivered to listeners on the main thread,
+ * scheduled scans run silently. Statistics of every completed scan are saved to the files directory,
+ * so the latest results can be shown without scanning again. Scans started by the user also index
+ * file names for search, the index is saved next to the statistics. On request they also stream
+ * a catalog of every file to the app's external files directory.
+ * With MainActivity.WATCH_CHANGES the directories of the latest completed user scan are watched
+ * afterwards, and its saved statistics kept current without scanning again: the service keeps running
+ * meanwhile and scheduled scans are skipped. The name index is not updated by watching.
+ * All static methods must be called on the main thread.
+ */
+public class ScanService extends Service {
+
+    /**
+     * Receives progress and results of the running scan on the main thread.
+     */
+    public interface Listener {
+
+        /**
+         * Progress of the running scan.
+         * @param snapshot
+         */
+        void onProgress(ProgressSnapshot snapshot);
+
+        /**
+         * The scan is done, completed or stopped early.
+         * @param statistics
+         * @param stopReason Why the scan stopped early, NONE if it completed.
+         * @param shownLive Statistics were handed to a screen showing the scan live.
+         */
+        void onFinished(ScanStatistics statistics, CancellationToken.StopReason stopReason, boolean shownLive);
+    }
+
+    public final static String EXPORT_CATALOG = "com.example.hinakhan.filescanner.EXPORT_CATALOG";
+    public static long BACKGROUND_ENTRIES_PER_SECOND = 2000; //Rate of directory entries read by scheduled scans
+    public static int BACKGROUND_PARALLELISM = 1; //Number of scanner threads of scheduled scans
+    public static boolean SCAN_VOLUMES_SEPARATELY = true; //Scan SD cards and USB drives side by side with the internal storage
+    private final static String SCAN_INDEX_FILE = "scan.index";
+    private final static String LATEST_STATISTICS_FILE_NAME = "latest-statistics.bin";
+    private final static String NAME_INDEX_FILE_NAME = "name-index.bin";
+    private final static long PROGRESS_INTERVAL_MILLIS = 250; //Time between progress updates
+
+    private static final List<Listener> listeners = new ArrayList<Listener>();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static ScanRun current; //Running scan, null if none runs or it was stopped
+    private static volatile NameIndex latestNameIndex; //Name index of the latest completed scan, null if not loaded
+    private static TreeWatcher watcher; //Keeps the latest statistics current, null if not watching
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        //The service keeps the process alive until the scan is done
+        boolean exportCatalog = intent != null && intent.getBooleanExtra(EXPORT_CATALOG, false);
+        startScan(this, false, exportCatalog, new Runnable() {
+            @Override
+            public void run() {
+                if (current == null && watcher == null) {
+                    stopSelf();
+                }
+            }
+        });
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    /**
+     * Add a listener for the running scan and the ones started later.
+     * @param listener
+     */
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener.
+     * @param listener
+     */
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Is a scan started by the user running, a stopped scan still finishing doesn't count.
+     * @return
+     */
+    public static boolean isScanning() {
+        return current != null && !current.scheduled;
+    }
+
+    /**
+     * Latest progress of the running scan.
+     * @return Returns null if no scan runs or no progress was reported yet.
+     */
+    public static ProgressSnapshot getLatestProgress() {
+        return current != null ? current.latest : null;
+    }
+
+    /**
+     * Starts a scan of the external storage, unless one runs already.
+     * A scheduled scan is stopped for a scan started by the user.
+     * @param context
+     * @param scheduled Throttle the scan, it runs in the background without the user waiting.
+     * @param onDone Runs on the main thread when this scan is done, may be null.
+     * @return Returns true if the scan was started.
+     */
+    public static boolean startScan(Context context, boolean scheduled, Runnable onDone) {
+        return startScan(context, scheduled, false, onDone);
+    }
+
+    /**
+     * Starts a scan of the external storage, unless one runs already.
+     * A scheduled scan is stopped for a scan started by the user.
+     * @param context
+     * @param scheduled Throttle the scan, it runs in the background without the user waiting.
+     * @param exportCatalog Stream a catalog of every file scanned, see getCatalogFile().
+     * @param onDone Runs on the main thread when this scan is done, may be null.
+     * @return Returns true if the scan was started.
+     */
+    public static boolean startScan(Context context, boolean scheduled, boolean exportCatalog, Runnable onDone) {
+        if (scheduled && watcher != null) {
+            //The latest statistics are kept current already
+            return false;
+        }
+        if (current != null) {
+            if (scheduled || !current.scheduled) {
+                return false;
+            }
+            Log.d("FileScanner", "Stopping scheduled scan for user scan");
+            current.token.cancel();
+        }
+        //The new scan supersedes the watched statistics
+        stopWatching();
+        current = new ScanRun(context.getApplicationContext(), scheduled, exportCatalog, onDone);
+        new Thread(current, "FileScanner").start();
+        return true;
+    }
+
+    /**
+     * Stops the running scan, its partial statistics are delivered to the listeners
+     * unless another scan was started meanwhile.
+     */
+    public static void stopScan() {
+        if (current != null) {
+            current.token.cancel();
+            current = null;
+        }
+        ScanSnapshotBus.clear();
+    }
+
+    /**
+     * Stops the running scan if it was scheduled, like when the device is no longer charging or idle.
+     */
+    public static void stopScheduledScan() {
+        if (current != null && current.scheduled) {
+            stopScan();
+        }
+    }
+
+    /**
+     * Is a completed scan being kept current by watching its directories.
+     * @return
+     */
+    public static boolean isWatching() {
+        return watcher != null;
+    }
+
+    /**
+     * Stops watching the directories of the latest completed scan.
+     */
+    public static void stopWatching() {
+        if (watcher != null) {
+            final TreeWatcher stopped = watcher;
+            watcher = null;
+            //Stopping waits for changes being applied, not on the main thread
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    stopped.stop();
+                }
+            }, "FileScanner-watch-stop").start();
+        }
+    }
+
+    /**
+     * Watches the directories of a completed scan, saving its statistics whenever files change.
+     * @param context
+     * @param tree Tree filled by the scan, with its statistics attached.
+     */
+    private static void startWatching(final Context context, final WatchedTree tree) {
+        final TreeWatcher started = new FileObserverTreeWatcher(tree);
+        started.setListener(new TreeWatcher.Listener() {
+            @Override
+            public void onStatisticsChanged(ScanStatistics statistics) {
+                Log.d("FileScanner", "Files changed: " + statistics.getTotalFiles() + " files, "
+                        + statistics.getTotalFileSize() + " bytes after " + tree.getChanges() + " changes");
+                try {
+                    ScanStatisticsCodec.writeToFile(statistics, getLatestStatisticsFile(context));
+                } catch (IOException e) {
+                    Log.w("FileScanner", "Could not save scan statistics", e);
+                }
+            }
+        });
+        watcher = started;
+        //Registering an observer per directory takes a while on big trees
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    started.start();
+                    Log.d("FileScanner", "Watching " + started.getWatchedDirectories() + " directories, "
+                            + started.getUnwatchedDirectories() + " beyond the watch limit");
+                } catch (IOException e) {
+                    Log.w("FileScanner", "Could not watch directories", e);
+                }
+            }
+        }, "FileScanner-watch-start").start();
+    }
+
+    /**
+     * File with the statistics of the latest completed scan.
+     * @param context
+     * @return
+     */
+    public static File getLatestStatisticsFile(Context context) {
+        return new File(context.getFilesDir(), LATEST_STATISTICS_FILE_NAME);
+    }
+
+    /**
+     * Index of file names to search: the one the running scan fills, or the one of the latest completed scan.
+     * @return Returns null if no scan indexed names yet or the saved index was not loaded.
+     */
+    public static NameIndex getNameIndex() {
+        if (current != null && current.nameIndex != null) {
+            return current.nameIndex;
+        }
+        return latestNameIndex;
+    }
+
+    /**
+     * Loads the name index saved by the latest completed scan on a background thread.
+     * @param context
+     * @param onLoaded Runs on the main thread when done, getNameIndex() returns null if there was none.
+     */
+    public static void loadNameIndex(Context context, final Runnable onLoaded) {
+        final File file = new File(context.getFilesDir(), NAME_INDEX_FILE_NAME);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final NameIndex index = NameIndex.load(file);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (latestNameIndex == null) {
+                            latestNameIndex = index;
+                        }
+                        onLoaded.run();
+                    }
+                });
+            }
+        }, "FileScanner-name-index").start();
+    }
+
+    /**
+     * New file for a catalog, in the external files directory of the app so it can be copied off the device.
+     * @param context
+     * @return
+     */
+    protected static File getCatalogFile(Context context) {
+        File dir = context.getExternalFilesDir(null);
+        if (dir == null) {
+            dir = context.getFilesDir();
+        }
+        String name = "catalog-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date())
+                + (MainActivity.CATALOG_FORMAT == CatalogWriter.Format.JSON_LINES ? ".jsonl" : ".csv")
+                + (MainActivity.COMPRESS_CATALOG ? ".gz" : "");
+        return new File(dir, name);
+    }
+
+    /**
+     * Scans in parallel where ForkJoinPool is available, sequentially otherwise.
+     * Scheduled scans run on fewer threads at a limited rate, and unfiltered to keep the index of all files.
+     * Unfiltered scans indexing names take those of unchanged directories from the saved name index,
+     * which matches the scan index as both are saved by the same scans.
+     * @param context
+     * @param scheduled
+     * @return
+     */
+    protected static ScanOptions createScanOptions(Context context, boolean scheduled) {
+        ScanOptions options = new ScanOptions();
+        //Scheduled scans leave the prefetched listings to the next scan of the user
+        options.setBackend(scheduled ? createPlatformBackend() : createScanBackend());
+        int parallelism = scheduled ? BACKGROUND_PARALLELISM : MainActivity.SCAN_PARALLELISM;
+        options.setParallelism(Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? parallelism : 1);
+        options.setProgressIntervalMillis(PROGRESS_INTERVAL_MILLIS);
+        options.setFollowSymlinks(MainActivity.FOLLOW_SYMLINKS);
+        options.setOneFileSystem(MainActivity.ONE_FILE_SYSTEM);
+        options.setFindDuplicates(MainActivity.FIND_DUPLICATES);
+        options.setDuplicateThreads(scheduled ? 1 : MainActivity.DUPLICATE_THREADS);
+        options.setLiveStatistics(MainActivity.SHOW_LIVE_STATISTICS && !scheduled);
+        if (scheduled) {
+            options.setMaxEntriesPerSecond(BACKGROUND_ENTRIES_PER_SECOND);
+        } else {
+            if (MainActivity.SCAN_FILTER != null) {
+                options.setFilter(ScanFilter.compile(MainActivity.SCAN_FILTER));
+            }
+            if (MainActivity.WATCH_CHANGES) {
+                options.setWatchedTree(new WatchedTree());
+            }
+        }
+        if (MainActivity.INDEX_FILE_NAMES) {
+            options.setNameIndex(new NameIndex());
+        }
+        if (MainActivity.USE_SCAN_INDEX) {
+            options.setIndexFile(new File(context.getFilesDir(), SCAN_INDEX_FILE));
+            if (options.getNameIndex() != null && options.getFilter() == null) {
+                options.setPreviousNameIndex(NameIndex.load(new File(context.getFilesDir(), NAME_INDEX_FILE_NAME)));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Backend of the next scan started by the user, replaying the listings prefetched while the app started if there are any.
+     * @return
+     */
+    protected static ScanBackend createScanBackend() {
+        ScanBackend prefetched = WarmStart.takePrefetchedBackend();
+        return prefetched != null ? prefetched : createPlatformBackend();
+    }
+
+    /**
+     * Picks the single stat backend where android.system.Os is available, java.io one otherwise.
+     * @return
+     */
+    protected static ScanBackend createPlatformBackend() {
+        if (MainActivity.USE_STAT_BACKEND && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return new StatScanBackend();
+        }
+        return new FileScanBackend();
+    }
+
+    /**
+     * One scan, run on its own thread.
+     */
+    private static class ScanRun implements Runnable {
+
+        private final Context context; //Application context
+        private final boolean scheduled; //Throttled scan started by ScanJobService
+        private final boolean exportCatalog; //Stream a catalog of every file scanned
+        private final Runnable onDone; //Runs on the main thread when the scan is done, may be null
+        private final CancellationToken token = new CancellationToken(); //Cancels the scan, holds its budgets
+        private ProgressSnapshot latest; //Latest progress, main thread only
+        private volatile NameIndex nameIndex; //Filled with file names while scanning, null if not indexing
+        private volatile WatchedTree watchedTree; //Filled with the scanned tree to watch, attached if the scan completed
+
+        ScanRun(Context context, boolean scheduled, boolean exportCatalog, Runnable onDone) {
+            this.context = context;
+            this.scheduled = scheduled;
+            this.exportCatalog = exportCatalog;
+            this.onDone = onDone;
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            List<File> volumes = FileHelper.getStorageVolumes(context);
+            if (volumes.isEmpty()) {
+                volumes.add(Environment.getExternalStorageDirectory());
+            }
+            Log.d("FileScanner", "Scanning volumes " + volumes + (scheduled ? " in the background" : ""));
+
+            if (!scheduled) {
+                token.setTimeBudgetMillis(MainActivity.SCAN_TIME_BUDGET_MILLIS);
+                token.setFileBudget(MainActivity.SCAN_FILE_BUDGET);
+            }
+            ScanOptions options = createScanOptions(context, scheduled);
+            nameIndex = options.getNameIndex();
+            watchedTree = options.getWatchedTree();
+            File catalogFile = exportCatalog ? getCatalogFile(context) : null;
+            if (catalogFile != null) {
+                try {
+                    options.setCatalogWriter(CatalogWriter.open(catalogFile, MainActivity.CATALOG_FORMAT, MainActivity.COMPRESS_CATALOG));
+                } catch (IOException e) {
+                    Log.w("FileScanner", "Could not create catalog " + catalogFile, e);
+                    catalogFile = null;
+                }
+            }
+            Scanner scanner = new Scanner(options);
+            ScanListener listener = new ScanListener() {
+                @Override
+                public void onProgress(final ProgressSnapshot snapshot) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            publishProgress(snapshot);
+                        }
+                    });
+                }
+
+                @Override
+                public void onWarning(String message, Exception e) {
+                    Log.w("FileScanner", message, e);
+                }
+            };
+
+            //Volumes are separate devices, scan each on its own thread
+            File[] roots = volumes.toArray(new File[volumes.size()]);
+            final ScanStatistics statistics;
+            boolean indexRewritten; //The scan index was saved, maybe for some volumes only
+            if (roots.length > 1 && SCAN_VOLUMES_SEPARATELY) {
+                VolumeScanResult result = scanner.scanVolumes(roots, listener, token);
+                for (int i = 0; i < result.getVolumeCount(); i++) {
+                    Log.d("FileScanner", "Volume " + result.getRoot(i) + ": " + result.getVolumeStatistics(i).getTotalFiles() + " files");
+                }
+                statistics = result.getCombined();
+                indexRewritten = result.isAnyVolumeCompleted();
+            } else {
+                statistics = scanner.scan(roots, listener, token);
+                indexRewritten = statistics.isCompletedScan();
+            }
+
+            //The saved names must match the scan index written by unfiltered scans, or the next scan reuses stale names.
+            //When only some volumes completed their indexes are newer than any names, so the names are dropped.
+            if (options.getFilter() == null && indexRewritten) {
+                File nameIndexFile = new File(context.getFilesDir(), NAME_INDEX_FILE_NAME);
+                if (nameIndex != null && statistics.isCompletedScan()) {
+                    try {
+                        nameIndex.save(nameIndexFile);
+                    } catch (IOException e) {
+                        Log.w("FileScanner", "Could not save name index", e);
+                        nameIndexFile.delete();
+                    }
+                } else {
+                    nameIndexFile.delete();
+                }
+            }
+
+            //A partial catalog is kept, its summary tells it is not complete
+            if (options.getCatalogWriter() != null) {
+                try {
+                    options.getCatalogWriter().finish(statistics);
+                    Log.d("FileScanner", "Saved " + options.getCatalogWriter().getRecords() + " files to " + catalogFile);
+                } catch (IOException e) {
+                    Log.w("FileScanner", "Could not write catalog " + catalogFile, e);
+                    catalogFile = null;
+                }
+            }
+            final File savedCatalog = catalogFile;
+
+            if (statistics.isCompletedScan()) {
+                if (watchedTree != null) {
+                    //The tree updates its statistics in place, the listeners get their own
+                    watchedTree.attach(new ScanStatistics().merge(statistics));
+                }
+                try {
+                    ScanStatisticsCodec.writeToFile(statistics, getLatestStatisticsFile(context));
+                } catch (IOException e) {
+                    Log.w("FileScanner", "Could not save scan statistics", e);
+                }
+                if (nameIndex != null) {
+                    Log.d("FileScanner", "Indexed " + nameIndex.getFileCount() + " file names in "
+                            + nameIndex.getMemoryBytes() / 1024 + " KB");
+                }
+            } else {
+                Log.d("FileScanner", "Scan stopped early: " + token.getStopReason() + ", "
+                        + statistics.getUnscannedDirectories() + " directories not scanned");
+            }
+
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (savedCatalog != null) {
+                        Toast.makeText(context, context.getString(R.string.catalog_saved, savedCatalog.getPath()), Toast.LENGTH_LONG).show();
+                    }
+                    publishResult(statistics);
+                }
+            });
+        }
+
+        private void publishProgress(ProgressSnapshot snapshot) {
+            if (current != this || scheduled) {
+                //Stopped scan still finishing in the background, or a silent scheduled scan
+                return;
+            }
+            latest = snapshot;
+            if (snapshot.getStatistics() != null) {
+                ScanSnapshotBus.publish(snapshot.getStatistics());
+            }
+            for (Listener listener : new ArrayList<Listener>(listeners)) {
+                listener.onProgress(snapshot);
+            }
+        }
+
+        private void publishResult(ScanStatistics statistics) {
+            if (current == this) {
+                current = null;
+            }
+            if (nameIndex != null && statistics.isCompletedScan()) {
+                latestNameIndex = nameIndex;
+            }
+            if (current == null && watchedTree != null && watchedTree.isAttached()) {
+                startWatching(context, watchedTree);
+            }
+            //Results of a stopped scan are still shown, unless a newer scan runs
+            if (current == null && !scheduled) {
+                boolean shownLive = ScanSnapshotBus.finish(statistics);
+                for (Listener listener : new ArrayList<Listener>(listeners)) {
+                    listener.onFinished(statistics, token.getStopReason(), shownLive);
+                }
+            }
+            if (onDone != null) {
+                onDone.run();
+            }
+        }
+    }
+}
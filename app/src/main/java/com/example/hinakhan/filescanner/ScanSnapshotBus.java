@@ -0,0 +1,83 @@
+package com.example.hinakhan.filescanner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands statistics of the running scan from ScanService to the screens showing them.
+ * All methods must be called on the main thread, the service publishes from its main thread handler.
+ * A listener registering while a scan runs gets the latest snapshot right away.
+ */
+public class ScanSnapshotBus {
+
+    /**
+     * Receives statistics of the running scan on the main thread.
+     */
+    public interface Listener {
+
+        /**
+         * Statistics of the files scanned so far.
+         * @param snapshot
+         */
+        void onSnapshot(StatisticsSnapshot snapshot);
+
+        /**
+         * Final statistics, the scan is done.
+         * @param statistics
+         */
+        void onFinished(ScanStatistics statistics);
+    }
+
+    private static final List<Listener> listeners = new ArrayList<Listener>();
+    private static StatisticsSnapshot latest; //Latest snapshot of the running scan, null if none runs
+
+    /**
+     * Add a listener, it gets the latest snapshot if a scan runs.
+     * @param listener
+     */
+    public static void register(Listener listener) {
+        listeners.add(listener);
+        if (latest != null) {
+            listener.onSnapshot(latest);
+        }
+    }
+
+    /**
+     * Remove a listener.
+     * @param listener
+     */
+    public static void unregister(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publish statistics of the files scanned so far.
+     * @param snapshot
+     */
+    public static void publish(StatisticsSnapshot snapshot) {
+        latest = snapshot;
+        for (Listener listener : new ArrayList<Listener>(listeners)) {
+            listener.onSnapshot(snapshot);
+        }
+    }
+
+    /**
+     * Publish final statistics and forget the running scan.
+     * @param statistics
+     * @return Returns true if a listener received them.
+     */
+    public static boolean finish(ScanStatistics statistics) {
+        latest = null;
+        for (Listener listener : new ArrayList<Listener>(listeners)) {
+            listener.onFinished(statistics);
+        }
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Forget the running scan without final statistics, like when it was cancelled.
+     */
+    public static void clear() {
+        latest = null;
+    }
+}
@@ -10,6 +10,7 @@ import android.widget.ImageView;
 /**
  * Renders Splash Screen.
  * Implements onCreate method to render splash image and then redirects to MainActivity.
+ * With MainActivity.WARM_START the latest results are loaded and the volumes prefetched meanwhile.
  */
 public class Splash extends Activity {
 
@@ -18,6 +19,10 @@ public class Splash extends Activity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.splash);
 
+        if (MainActivity.WARM_START) {
+            WarmStart.start(this);
+        }
+
         final ImageView img = (ImageView) findViewById(R.id.imageForScanner);
         final Animation animation = AnimationUtils.loadAnimation(getBaseContext(),R.anim.rotate);
 
@@ -0,0 +1,68 @@
+package com.example.hinakhan.filescanner;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+
+import java.io.File;
+
+/**
+ * Backend reading type, size, modification time, device and inode of an entry with a single lstat call.
+ * Symbolic links cost a second stat call for the attributes of their target.
+ * Lists names only, File objects are created for subdirectories on demand.
+ * Requires API level 21.
+ */
+public class StatScanBackend implements ScanBackend {
+
+    @Override
+    public boolean listDirectory(File dir, EntryVisitor visitor) {
+        String[] names = dir.list();
+        if (names == null) {
+            return false;
+        }
+
+        String dirPath = dir.getPath();
+        StringBuilder path = new StringBuilder(dirPath.length() + 64);
+        DirectoryEntry entry = new DirectoryEntry();
+        for (String name : names) {
+            path.setLength(0);
+            path.append(dirPath).append(File.separatorChar).append(name);
+            read(dir, name, null, path.toString(), entry);
+
+            if (!visitor.visitEntry(entry)) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean readEntry(File file, DirectoryEntry entry) {
+        read(file.getParentFile(), file.getName(), file, file.getPath(), entry);
+        return entry.getInode() != DirectoryEntry.UNKNOWN;
+    }
+
+    private static void read(File dir, String name, File file, String path, DirectoryEntry entry) {
+        try {
+            StructStat stat = Os.lstat(path);
+            boolean symbolicLink = OsConstants.S_ISLNK(stat.st_mode);
+            if (symbolicLink) {
+                try {
+                    stat = Os.stat(path);
+                } catch (ErrnoException e) {
+                    //Dangling link, report the link itself as an empty file
+                    entry.set(dir, name, file, false, 0, stat.st_mtime * 1000, true,
+                            DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN);
+                    return;
+                }
+            }
+            boolean directory = OsConstants.S_ISDIR(stat.st_mode);
+            entry.set(dir, name, file, directory, directory ? 0 : stat.st_size, stat.st_mtime * 1000,
+                    symbolicLink, stat.st_dev, stat.st_ino, stat.st_nlink);
+        } catch (ErrnoException e) {
+            //Entry removed while scanning, count it as an empty file like java.io does
+            entry.set(dir, name, file, false, 0, 0);
+        }
+    }
+}
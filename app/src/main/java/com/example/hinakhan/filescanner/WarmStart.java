@@ -0,0 +1,156 @@
+package com.example.hinakhan.filescanner;
+
+import android.content.Context;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Uses the time the splash screen is shown: loads the statistics of the latest completed scan, so
+ * MainActivity can show them right away, and lists the top level directories of every volume on a
+ * low priority thread. The next scan started by the user replays those listings through a
+ * PrefetchScanBackend instead of reading them again, and finds the rest of the tree in the file
+ * system caches warmed up meanwhile. Scheduled scans leave them alone.
+ * All static methods must be called on the main thread, except takePrefetchedBackend.
+ */
+public class WarmStart {
+
+    /**
+     * Receives the statistics of the latest completed scan on the main thread.
+     */
+    public interface Listener {
+
+        /**
+         * Statistics loaded during the splash screen.
+         * @param statistics Returns null if no scan completed yet or they could not be read.
+         */
+        void onLatestStatistics(ScanStatistics statistics);
+    }
+
+    public static long PREFETCH_MAX_AGE_MILLIS = PrefetchScanBackend.DEFAULT_MAX_AGE_MILLIS; //Age after which prefetched listings are read again
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static boolean loading; //Statistics are being loaded
+    private static boolean loaded; //Statistics were loaded and not taken yet
+    private static ScanStatistics latestStatistics; //Statistics loaded, null if there were none
+    private static Listener pending; //Waits for the statistics being loaded
+    private static PrefetchScanBackend prefetchedBackend; //Listings prefetched for the next scan, guarded by the class
+
+    /**
+     * Loads the latest statistics and prefetches the volumes on a background thread.
+     * Does nothing while a scan runs, its listings would be stale before they are used.
+     * @param context
+     */
+    public static void start(Context context) {
+        if (loading || ScanService.isScanning()) {
+            return;
+        }
+        loading = true;
+        loaded = false;
+        latestStatistics = null;
+        final Context appContext = context.getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                final ScanStatistics statistics = readLatestStatistics(appContext);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        publish(statistics);
+                    }
+                });
+                prefetch(appContext);
+            }
+        }, "FileScanner-warm-start").start();
+    }
+
+    /**
+     * Hands the loaded statistics to the listener once, right away if they are loaded already.
+     * Does nothing if the statistics were taken or start() was not called.
+     * @param listener Replaces a listener still waiting.
+     */
+    public static void takeLatestStatistics(Listener listener) {
+        if (loaded) {
+            ScanStatistics statistics = latestStatistics;
+            loaded = false;
+            latestStatistics = null;
+            pending = null;
+            listener.onLatestStatistics(statistics);
+        } else {
+            pending = loading ? listener : null;
+        }
+    }
+
+    /**
+     * Stop waiting for the statistics, like when the activity waiting for them is destroyed.
+     * @param listener
+     */
+    public static void removeListener(Listener listener) {
+        if (pending == listener) {
+            pending = null;
+        }
+    }
+
+    /**
+     * Backend replaying the prefetched listings, once: later scans list everything themselves.
+     * May be called on any thread.
+     * @return Returns null if nothing was prefetched.
+     */
+    public static synchronized ScanBackend takePrefetchedBackend() {
+        PrefetchScanBackend backend = prefetchedBackend;
+        prefetchedBackend = null;
+        return backend;
+    }
+
+    private static synchronized void setPrefetchedBackend(PrefetchScanBackend backend) {
+        prefetchedBackend = backend;
+    }
+
+    private static void publish(ScanStatistics statistics) {
+        loading = false;
+        loaded = true;
+        latestStatistics = statistics;
+        if (pending != null) {
+            Listener listener = pending;
+            takeLatestStatistics(listener);
+        }
+    }
+
+    private static ScanStatistics readLatestStatistics(Context context) {
+        File file = ScanService.getLatestStatisticsFile(context);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            long start = System.nanoTime();
+            ScanStatistics statistics = ScanStatisticsCodec.readFromFile(file);
+            Log.d("FileScanner", "Loaded latest statistics in " + (System.nanoTime() - start) / 1000000 + " ms");
+            return statistics;
+        } catch (IOException e) {
+            Log.w("FileScanner", "Could not read latest statistics", e);
+            return null;
+        }
+    }
+
+    private static void prefetch(Context context) {
+        List<File> volumes = FileHelper.getStorageVolumes(context);
+        if (volumes.isEmpty()) {
+            volumes.add(Environment.getExternalStorageDirectory());
+        }
+        long start = System.nanoTime();
+        PrefetchScanBackend backend = new PrefetchScanBackend(ScanService.createPlatformBackend(), PREFETCH_MAX_AGE_MILLIS);
+        int directories = 0;
+        for (File volume : volumes) {
+            directories += backend.prefetchTopLevel(volume);
+        }
+        setPrefetchedBackend(backend);
+        Log.d("FileScanner", "Prefetched " + directories + " directories in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.hinakhan.filescanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory footprint of the names and sizes of 1M files: a FileStore compared to FileStats
+ * holding a String name and a boxed Long. The retained heap of both is printed during setup,
+ * the benchmarks measure building them and reading back the names of a top-N list.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class FileStoreBenchmark {
+
+    private static final int FILES = 1000000;
+    private static final int TOP = 100; //Names read back like a top-N list
+
+    @Param({"MEDIA", "DIVERSE"})
+    public SyntheticTree.ExtensionMix extensions;
+
+    private String[] names;
+    private long[] fileSizes;
+    private FileStore store;
+    private int[] storeTop;
+    private List<FileStats> fileStats;
+
+    @Setup
+    public void setUp() {
+        names = new String[FILES];
+        fileSizes = new long[FILES];
+        new SyntheticTree(0, 0, FILES, SyntheticTree.SizeDistribution.LOGNORMAL, extensions)
+                .generateFiles(names, fileSizes);
+
+        long before = getUsedMemory();
+        store = buildFileStore();
+        long fileStoreBytes = getUsedMemory() - before;
+        before = getUsedMemory();
+        fileStats = buildFileStats();
+        long fileStatsBytes = getUsedMemory() - before;
+        System.out.println("Retained heap of " + FILES + " files: FileStore " + fileStoreBytes / 1024 + " KB ("
+                + store.getMemoryBytes() / 1024 + " KB of arrays), FileStats with String names "
+                + fileStatsBytes / 1024 + " KB");
+
+        storeTop = new int[TOP];
+        for (int i = 0; i < TOP; i++) {
+            storeTop[i] = i * (FILES / TOP);
+        }
+    }
+
+    @Benchmark
+    public FileStore buildFileStore() {
+        FileStore files = new FileStore();
+        for (int i = 0; i < FILES; i++) {
+            files.addFile(names[i], fileSizes[i]);
+        }
+        return files;
+    }
+
+    @Benchmark
+    public List<FileStats> buildFileStats() {
+        List<FileStats> files = new ArrayList<FileStats>(FILES);
+        for (int i = 0; i < FILES; i++) {
+            //Copied like names read from disk, not shared with the generator
+            files.add(new FileStats(new String(names[i]), fileSizes[i]));
+        }
+        return files;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(TOP)
+    public int readTopNames() {
+        int length = 0;
+        for (int file : storeTop) {
+            length += store.getFileName(file).length();
+        }
+        return length;
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.hinakhan.filescanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of ScanStatistics with ScanStatisticsCodec, compared to Serializable.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    @Param({"MEDIA", "DIVERSE"})
+    public SyntheticTree.ExtensionMix extensions;
+
+    private ScanStatistics statistics;
+    private byte[] full;
+    private byte[] summary;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] names = new String[100000];
+        long[] fileSizes = new long[names.length];
+        new SyntheticTree(0, 0, names.length, SyntheticTree.SizeDistribution.LOGNORMAL, extensions)
+                .generateFiles(names, fileSizes);
+
+        statistics = new ScanStatistics();
+        for (int i = 0; i < names.length; i++) {
+            statistics.updateStatistics(names[i], fileSizes[i]);
+        }
+        full = ScanStatisticsCodec.encode(statistics, false);
+        summary = ScanStatisticsCodec.encode(statistics, true);
+        serialized = serializable();
+        System.out.println("Encoded sizes: full " + full.length + " bytes, summary " + summary.length
+                + " bytes, Serializable " + serialized.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encodeFull() {
+        return ScanStatisticsCodec.encode(statistics, false);
+    }
+
+    @Benchmark
+    public byte[] encodeSummary() {
+        return ScanStatisticsCodec.encode(statistics, true);
+    }
+
+    @Benchmark
+    public ScanStatistics decodeFull() throws IOException {
+        return ScanStatisticsCodec.decode(full);
+    }
+
+    @Benchmark
+    public ScanStatistics decodeSummary() throws IOException {
+        return ScanStatisticsCodec.decode(summary);
+    }
+
+    @Benchmark
+    public byte[] serializable() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(statistics);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public ScanStatistics deserializable() throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized));
+        try {
+            return (ScanStatistics) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+}
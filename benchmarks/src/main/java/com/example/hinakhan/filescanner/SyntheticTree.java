@@ -0,0 +1,179 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+/**
+ * Generates reproducible directory trees for benchmarks.
+ * Every directory above the leaves has fanOut subdirectories, every directory holds
+ * filesPerDirectory files. Files are sparse, so large sizes cost no space on tmpfs.
+ * A tree is reused by later runs when its shape matches, it is only written once.
+ */
+public class SyntheticTree {
+
+    public static final String DIR_PROPERTY = "benchmark.dir"; //System property overriding the parent directory
+
+    private static final String COMPLETE_MARKER = ".complete";
+    private static final long SEED = 42;
+
+    private final int depth; //Levels of subdirectories below the root
+    private final int fanOut; //Subdirectories per directory
+    private final int filesPerDirectory; //Files in every directory
+    private final SizeDistribution sizes;
+    private final ExtensionMix extensions;
+
+    /**
+     * Constructor with parameters.
+     * @param depth Levels of subdirectories below the root.
+     * @param fanOut Subdirectories per directory.
+     * @param filesPerDirectory Files in every directory.
+     * @param sizes
+     * @param extensions
+     */
+    public SyntheticTree(int depth, int fanOut, int filesPerDirectory, SizeDistribution sizes, ExtensionMix extensions) {
+        this.depth = depth;
+        this.fanOut = fanOut;
+        this.filesPerDirectory = filesPerDirectory;
+        this.sizes = sizes;
+        this.extensions = extensions;
+    }
+
+    /**
+     * Number of files in the tree.
+     * @return
+     */
+    public long getFileCount() {
+        long directories = 0;
+        long level = 1;
+        for (int i = 0; i <= depth; i++) {
+            directories += level;
+            level *= fanOut;
+        }
+        return directories * filesPerDirectory;
+    }
+
+    /**
+     * Directory benchmarks create trees in, /dev/shm when available to keep the disk out of the measurement.
+     * @return
+     */
+    public static File getParentDirectory() {
+        String dir = System.getProperty(DIR_PROPERTY);
+        if (dir != null) {
+            return new File(dir);
+        }
+        File shm = new File("/dev/shm");
+        if (shm.isDirectory() && shm.canWrite()) {
+            return shm;
+        }
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * Creates the tree, or reuses one of the same shape created earlier.
+     * @return Root directory of the tree.
+     * @throws IOException
+     */
+    public File create() throws IOException {
+        File root = new File(getParentDirectory(), "filescanner-bench-" + depth + "x" + fanOut + "x"
+                + filesPerDirectory + "-" + sizes.name().toLowerCase() + "-" + extensions.name().toLowerCase());
+        if (!new File(root, COMPLETE_MARKER).exists()) {
+            delete(root);
+            create(root, depth, new Random(SEED));
+            if (!new File(root, COMPLETE_MARKER).createNewFile()) {
+                throw new IOException("Could not mark " + root + " complete");
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Generates file names and sizes with the tree's distributions, without touching the file system.
+     * @param names Filled with file names.
+     * @param fileSizes Filled with file sizes.
+     */
+    public void generateFiles(String[] names, long[] fileSizes) {
+        Random random = new Random(SEED);
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "file" + i + extensions.next(random);
+            fileSizes[i] = sizes.next(random);
+        }
+    }
+
+    private void create(File dir, int depth, Random random) throws IOException {
+        if (!dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Could not create " + dir);
+        }
+        for (int i = 0; i < filesPerDirectory; i++) {
+            RandomAccessFile file = new RandomAccessFile(new File(dir, "file" + i + extensions.next(random)), "rw");
+            try {
+                file.setLength(sizes.next(random));
+            } finally {
+                file.close();
+            }
+        }
+        if (depth > 0) {
+            for (int i = 0; i < fanOut; i++) {
+                create(new File(dir, "dir" + i), depth - 1, random);
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * File size distributions.
+     */
+    public enum SizeDistribution {
+        /** Sizes spread evenly up to 1 MB */
+        UNIFORM {
+            @Override
+            long next(Random random) {
+                return (long) (random.nextDouble() * (1 << 20));
+            }
+        },
+        /** Mostly small files with a long tail of large ones, median around 16 KB */
+        LOGNORMAL {
+            @Override
+            long next(Random random) {
+                return (long) Math.exp(Math.log(16 * 1024) + 2 * random.nextGaussian());
+            }
+        };
+
+        abstract long next(Random random);
+    }
+
+    /**
+     * Extension mixes.
+     */
+    public enum ExtensionMix {
+        /** A handful of media and document extensions, like a phone's storage */
+        MEDIA(new String[] {".jpg", ".jpg", ".jpg", ".png", ".mp4", ".mp3", ".txt", ".pdf"}, 0),
+        /** Thousands of distinct extensions, stresses the extension histogram */
+        DIVERSE(new String[] {".jpg", ".png"}, 5000);
+
+        private final String[] common; //Extensions picked by weight, repeat to weigh
+        private final int distinct; //Number of rare extensions, picked half of the time
+
+        ExtensionMix(String[] common, int distinct) {
+            this.common = common;
+            this.distinct = distinct;
+        }
+
+        String next(Random random) {
+            if (distinct > 0 && random.nextBoolean()) {
+                return ".x" + random.nextInt(distinct);
+            }
+            return common[random.nextInt(common.length)];
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.hinakhan.filescanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of the most frequent extensions from the histogram.
+ * fullSort sorts every entry by value and truncates, the way the app selected them before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TopExtensionsBenchmark {
+
+    @Param({"100", "10000"})
+    public int distinct; //Distinct extensions in the histogram
+
+    @Param({"5"})
+    public int numValues;
+
+    private ExtensionCounter counter;
+
+    @Setup
+    public void setUp() {
+        counter = new ExtensionCounter(false);
+        Random random = new Random(7);
+        for (int i = 0; i < distinct; i++) {
+            counter.add(".x" + i, 1 + (int) Math.abs(random.nextGaussian() * 1000));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Integer> selection() {
+        //Invalidate the cached result, so every call selects
+        counter.add(".x0", 1);
+        return counter.getMostFrequent(numValues);
+    }
+
+    @Benchmark
+    public Map<String, Integer> cached() {
+        return counter.getMostFrequent(numValues);
+    }
+
+    @Benchmark
+    public Map<String, Integer> fullSort() {
+        List<Map.Entry<String, Integer>> list = new ArrayList<Map.Entry<String, Integer>>(counter.toMap().entrySet());
+        Collections.sort(list, new Comparator<Map.Entry<String, Integer>>() {
+            public int compare(Map.Entry<String, Integer> o1, Map.Entry<String, Integer> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        });
+
+        Map<String, Integer> results = new LinkedHashMap<String, Integer>();
+        for (Map.Entry<String, Integer> entry : list) {
+            if (results.size() == numValues) {
+                break;
+            }
+            results.put(entry.getKey(), entry.getValue());
+        }
+        return results;
+    }
+}
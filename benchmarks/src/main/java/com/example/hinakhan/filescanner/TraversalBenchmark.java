@@ -0,0 +1,78 @@
+package com.example.hinakhan.filescanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traversal throughput of the engines over a synthetic tree.
+ * Scores are per traversal, the tree holds depth, fanOut and filesPerDirectory dependent
+ * file counts, which are printed during setup to convert scores to files per second.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TraversalBenchmark {
+
+    @Param({"3"})
+    public int depth;
+
+    @Param({"10"})
+    public int fanOut;
+
+    @Param({"100"})
+    public int filesPerDirectory;
+
+    @Param({"LOGNORMAL"})
+    public SyntheticTree.SizeDistribution sizes;
+
+    @Param({"MEDIA"})
+    public SyntheticTree.ExtensionMix extensions;
+
+    @Param({"sequential", "forkjoin"})
+    public String engine;
+
+    private File[] roots;
+    private AbstractTraversalEngine traversalEngine;
+
+    @Setup
+    public void setUp() throws IOException {
+        SyntheticTree tree = new SyntheticTree(depth, fanOut, filesPerDirectory, sizes, extensions);
+        roots = new File[] {tree.create()};
+        System.out.println("Tree " + roots[0] + " holds " + tree.getFileCount() + " files");
+
+        if ("forkjoin".equals(engine)) {
+            traversalEngine = new ForkJoinTraversalEngine(new FileScanBackend(), Runtime.getRuntime().availableProcessors(),
+                    ForkJoinTraversalEngine.DEFAULT_INLINE_THRESHOLD);
+        } else {
+            traversalEngine = new SequentialTraversalEngine(new FileScanBackend());
+        }
+    }
+
+    @Benchmark
+    public ScanStatistics traverse() {
+        return traversalEngine.traverse(roots, NO_CALLBACK);
+    }
+
+    private static final TraversalCallback NO_CALLBACK = new TraversalCallback() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+}
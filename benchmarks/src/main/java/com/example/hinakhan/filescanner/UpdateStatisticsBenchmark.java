@@ -0,0 +1,57 @@
+package com.example.hinakhan.filescanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of counting one file in ScanStatistics, without file system access.
+ * Each invocation counts FILES files into fresh statistics, scores are per file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UpdateStatisticsBenchmark {
+
+    private static final int FILES = 100000;
+
+    @Param({"MEDIA", "DIVERSE"})
+    public SyntheticTree.ExtensionMix extensions;
+
+    @Param({"LOGNORMAL"})
+    public SyntheticTree.SizeDistribution sizes;
+
+    private String[] names;
+    private long[] fileSizes;
+
+    @Setup
+    public void setUp() {
+        names = new String[FILES];
+        fileSizes = new long[FILES];
+        new SyntheticTree(0, 0, FILES, sizes, extensions).generateFiles(names, fileSizes);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public ScanStatistics updateStatistics() {
+        ScanStatistics statistics = new ScanStatistics();
+        for (int i = 0; i < FILES; i++) {
+            statistics.updateStatistics(names[i], fileSizes[i]);
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,612 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base class for traversal engines.
+ * Scans single directories through the ScanBackend and, when a ScanIndex is set,
+ * reuses the statistics of directories that did not change since the previous scan.
+ *
+ * Symbolic links are skipped unless followSymlinks is set. Entries with a known
+ * (device, inode) pair are recorded in a visited set, so a directory reached twice through
+ * links or bind mounts is walked once, cycles end, and hard linked files are counted once.
+ * Every skipped entry is counted in ScanStatistics.getSkippedDuplicates(). Incremental scans
+ * reuse the statistics of unchanged directories as recorded, links between changed and
+ * unchanged directories may be counted twice until the next full scan.
+ *
+ * Every directory is a DirectoryNode counting its subdirectories still being scanned. When the
+ * last one finishes, the subtree totals are complete: they are reported to the statistics of the
+ * finishing worker and added to the parent, so disk usage is rolled up bottom-up without listing
+ * any directory twice and without keeping finished subtrees in memory.
+ *
+ * A ScanFilter selects the files counted while listing, subdirectories it rejects are never listed.
+ * A WatchedTree receives every directory descended into and every file counted, to follow changes after the scan.
+ * When an IoBudget is set, every worker spends the entries of a directory after listing it and
+ * waits before listing the next one while the budget is exhausted.
+ */
+public abstract class AbstractTraversalEngine implements TraversalEngine {
+
+    private final ScanBackend backend; //Backend used to list directories
+    private ScanIndex scanIndex; //Index of previous scan, null for full scans
+    private ScanProgress progress = new ScanProgress(); //Progress counters of the running scan
+    private boolean followSymlinks; //Descend into linked directories and count linked files
+    private boolean oneFileSystem; //Don't descend into directories on other devices than the roots
+    private InodeSet visited = new InodeSet(1); //Directories and hard linked files seen by the running traversal
+    private long[] rootDevices = new long[0]; //Devices of the roots of the running traversal
+    private DuplicateFinder duplicateFinder; //Collects scanned files as duplicate candidates, null if not searching
+    private NameIndex nameIndex; //Collects the names of scanned files for search, null if not indexing
+    private NameIndex previousNameIndex; //Names of the files of directories reused from the scan index, null if unknown
+    private CatalogWriter catalogWriter; //Streams a record of every scanned file, null if not exporting
+    private WatchedTree watchedTree; //Keeps every scanned directory and file to follow changes, null if not watching
+    private SnapshotPublisher snapshotPublisher; //Publishes copies of worker statistics, null if not requested
+    private IoBudget ioBudget; //Limits the rate of directory entries read, null for full speed
+    private boolean qualifiedPaths; //Paths start with the root path even for a single root
+    private ScanFilter filter; //Selects the files counted and the directories listed, null for all
+
+    /**
+     * Constructor with parameters.
+     * @param backend Backend used to list directories.
+     */
+    protected AbstractTraversalEngine(ScanBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Backend used to list directories.
+     * @return
+     */
+    public ScanBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Index used for incremental scans.
+     * @return
+     */
+    public ScanIndex getScanIndex() {
+        return scanIndex;
+    }
+
+    /**
+     * Set index used for incremental scans, null to always list every directory.
+     * @param scanIndex
+     */
+    public void setScanIndex(ScanIndex scanIndex) {
+        this.scanIndex = scanIndex;
+    }
+
+    /**
+     * Progress counters updated while traversing.
+     * @return
+     */
+    public ScanProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Set progress counters to update while traversing.
+     * @param progress
+     */
+    public void setProgress(ScanProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Are symbolic links followed.
+     * @return
+     */
+    public boolean isFollowSymlinks() {
+        return followSymlinks;
+    }
+
+    /**
+     * Set if symbolic links are followed. Linked directories are walked, linked files counted.
+     * @param followSymlinks
+     */
+    public void setFollowSymlinks(boolean followSymlinks) {
+        this.followSymlinks = followSymlinks;
+    }
+
+    /**
+     * Does the traversal stay on the file systems of the roots.
+     * @return
+     */
+    public boolean isOneFileSystem() {
+        return oneFileSystem;
+    }
+
+    /**
+     * Set if the traversal stays on the file systems of the roots, like find -xdev.
+     * Needs a backend reporting devices.
+     * @param oneFileSystem
+     */
+    public void setOneFileSystem(boolean oneFileSystem) {
+        this.oneFileSystem = oneFileSystem;
+    }
+
+    /**
+     * Finder collecting scanned files as duplicate candidates.
+     * @return
+     */
+    public DuplicateFinder getDuplicateFinder() {
+        return duplicateFinder;
+    }
+
+    /**
+     * Set finder collecting every counted file as duplicate candidate, null to not collect files.
+     * Directories are then listed even if the index has them unchanged, as the index doesn't keep single files.
+     * @param duplicateFinder
+     */
+    public void setDuplicateFinder(DuplicateFinder duplicateFinder) {
+        this.duplicateFinder = duplicateFinder;
+    }
+
+    /**
+     * Index collecting the names of scanned files.
+     * @return
+     */
+    public NameIndex getNameIndex() {
+        return nameIndex;
+    }
+
+    /**
+     * Set index collecting the name of every counted file, null to not collect names.
+     * Without a previous name index, directories are then listed even if the scan index has them unchanged.
+     * @param nameIndex
+     */
+    public void setNameIndex(NameIndex nameIndex) {
+        this.nameIndex = nameIndex;
+    }
+
+    /**
+     * Name index of the scan that wrote the scan index.
+     * @return
+     */
+    public NameIndex getPreviousNameIndex() {
+        return previousNameIndex;
+    }
+
+    /**
+     * Set name index of the scan that wrote the scan index, supplying the names of unchanged directories
+     * to the name index instead of listing them again. Null to list them.
+     * @param previousNameIndex
+     */
+    public void setPreviousNameIndex(NameIndex previousNameIndex) {
+        this.previousNameIndex = previousNameIndex;
+    }
+
+    /**
+     * Writer streaming a record of every scanned file.
+     * @return
+     */
+    public CatalogWriter getCatalogWriter() {
+        return catalogWriter;
+    }
+
+    /**
+     * Set writer receiving a record of every counted file, null to not export files.
+     * Like with a duplicate finder, directories are then listed even if the scan index has them unchanged.
+     * @param catalogWriter
+     */
+    public void setCatalogWriter(CatalogWriter catalogWriter) {
+        this.catalogWriter = catalogWriter;
+    }
+
+    /**
+     * Tree keeping every scanned directory and file.
+     * @return
+     */
+    public WatchedTree getWatchedTree() {
+        return watchedTree;
+    }
+
+    /**
+     * Set tree receiving every directory and counted file, null to not keep them.
+     * Like with a duplicate finder, directories are then listed even if the scan index has them unchanged.
+     * @param watchedTree
+     */
+    public void setWatchedTree(WatchedTree watchedTree) {
+        this.watchedTree = watchedTree;
+    }
+
+    /**
+     * Publisher of statistics snapshots of the running traversal.
+     * @return
+     */
+    public SnapshotPublisher getSnapshotPublisher() {
+        return snapshotPublisher;
+    }
+
+    /**
+     * Set publisher offered the statistics of a worker after each of its directories, null to not publish.
+     * @param snapshotPublisher
+     */
+    public void setSnapshotPublisher(SnapshotPublisher snapshotPublisher) {
+        this.snapshotPublisher = snapshotPublisher;
+    }
+
+    /**
+     * Budget limiting the rate of directory entries read.
+     * @return
+     */
+    public IoBudget getIoBudget() {
+        return ioBudget;
+    }
+
+    /**
+     * @param ioBudget Budget shared by all workers, null to read at full speed.
+     */
+    public void setIoBudget(IoBudget ioBudget) {
+        this.ioBudget = ioBudget;
+    }
+
+    /**
+     * Do paths start with the root path for a single root.
+     * @return
+     */
+    public boolean isQualifiedPaths() {
+        return qualifiedPaths;
+    }
+
+    /**
+     * @param qualifiedPaths Report paths starting with the root path like for several roots,
+     *                       so statistics of separately scanned roots can be merged.
+     */
+    public void setQualifiedPaths(boolean qualifiedPaths) {
+        this.qualifiedPaths = qualifiedPaths;
+    }
+
+    /**
+     * Filter selecting the files counted.
+     * @return
+     */
+    public ScanFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @param filter Selects the files counted, directories it rejects are not listed. Null counts all files.
+     */
+    public void setFilter(ScanFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Resets the visited set and records the roots, called by engines before traversing.
+     * @param roots
+     * @param concurrency Number of workers adding to the visited set.
+     */
+    protected void startTraversal(File[] roots, int concurrency) {
+        visited = new InodeSet(concurrency);
+        rootDevices = new long[roots.length];
+        DirectoryEntry entry = new DirectoryEntry();
+        for (int i = 0; i < roots.length; i++) {
+            rootDevices[i] = DirectoryEntry.UNKNOWN;
+            if (backend.readEntry(roots[i], entry) && entry.getInode() != DirectoryEntry.UNKNOWN) {
+                rootDevices[i] = entry.getDevice();
+                visited.add(entry.getDevice(), entry.getInode());
+            }
+        }
+        if (watchedTree != null) {
+            watchedTree.startTraversal(backend, filter, followSymlinks, oneFileSystem, rootDevices);
+        }
+    }
+
+    /**
+     * Applies the link and file system options to an entry.
+     * @param entry
+     * @param statistics Counts skipped duplicates.
+     * @return Returns true if the entry should be counted or descended into.
+     */
+    protected boolean acceptEntry(DirectoryEntry entry, ScanStatistics statistics) {
+        if (entry.isSymbolicLink() && !followSymlinks) {
+            return false;
+        }
+
+        long inode = entry.getInode();
+        if (entry.isDirectory()) {
+            if (oneFileSystem && !isRootDevice(entry.getDevice(), rootDevices)) {
+                return false;
+            }
+            boolean duplicate = inode != DirectoryEntry.UNKNOWN
+                    ? !visited.add(entry.getDevice(), inode)
+                    : entry.isSymbolicLink() && isLinkToAncestor(entry);
+            if (duplicate) {
+                statistics.addSkippedDuplicate();
+                return false;
+            }
+            return true;
+        }
+
+        //Files can only be reached twice through hard links, or through symbolic links when following them
+        if (inode != DirectoryEntry.UNKNOWN && (followSymlinks || entry.getLinkCount() > 1)
+                && !visited.add(entry.getDevice(), inode)) {
+            statistics.addSkippedDuplicate();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Is a device one of the roots, unknown devices are.
+     */
+    static boolean isRootDevice(long device, long[] rootDevices) {
+        if (device == DirectoryEntry.UNKNOWN || rootDevices.length == 0) {
+            return true;
+        }
+        for (long rootDevice : rootDevices) {
+            if (rootDevice == device || rootDevice == DirectoryEntry.UNKNOWN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Detects cycles without inodes: a linked directory is a cycle if it contains the link.
+     */
+    static boolean isLinkToAncestor(DirectoryEntry entry) {
+        try {
+            String target = entry.getFile().getCanonicalPath();
+            String parent = entry.getParent().getCanonicalPath();
+            return parent.equals(target) || parent.startsWith(target.endsWith(File.separator) ? target : target + File.separator);
+        } catch (IOException e) {
+            //Unresolvable link, don't follow it
+            return true;
+        }
+    }
+
+    /**
+     * Creates the node of a root directory.
+     * @param root
+     * @param rootCount Number of roots traversed, paths of several roots start with the root path.
+     * @return
+     */
+    protected DirectoryNode createRootNode(File root, int rootCount) {
+        progress.directoriesFound(1);
+        String path = rootCount > 1 || qualifiedPaths ? root.getPath() : "";
+        if (watchedTree != null) {
+            watchedTree.addRoot(path, root);
+        }
+        return new DirectoryNode(null, root, path, path.length(), 0);
+    }
+
+    /**
+     * Scans the files of one directory into statistics, without descending into subdirectories.
+     * The node must be passed to scanDirectory() exactly once, the returned subdirectory nodes
+     * are counted as pending until they are scanned themselves.
+     * @param node
+     * @param statistics
+     * @param visitor Visitor of the calling worker.
+     * @return Subdirectories of the directory.
+     */
+    protected List<DirectoryNode> scanDirectory(DirectoryNode node, ScanStatistics statistics, DirectoryVisitor visitor) {
+        List<File> subdirectories = scanFiles(node, statistics, visitor);
+        List<DirectoryNode> children = new ArrayList<DirectoryNode>(subdirectories.size());
+        for (File subdirectory : subdirectories) {
+            String path = node.path.length() == 0 ? subdirectory.getName() : node.path + File.separatorChar + subdirectory.getName();
+            children.add(new DirectoryNode(node, subdirectory, path, node.rootLength, node.depth + 1));
+        }
+
+        node.pending.addAndGet(children.size());
+        node.add(visitor.files, visitor.bytes);
+        progress.directoriesFound(children.size());
+        statistics.addScannedDirectory();
+        finish(node, statistics);
+        if (snapshotPublisher != null) {
+            snapshotPublisher.offer(statistics);
+        }
+        if (ioBudget != null) {
+            //Directories reused from the index cost one read of their modification time
+            ioBudget.spend(visitor.reused ? 1 : visitor.entries + 1, visitor);
+        }
+        return children;
+    }
+
+    /**
+     * Releases the share of a node held by its own scan or a finished child.
+     * Reports every subtree completed by this and rolls its totals up to the parent.
+     */
+    private static void finish(DirectoryNode node, ScanStatistics statistics) {
+        while (node != null && node.pending.decrementAndGet() == 0) {
+            long files;
+            long bytes;
+            synchronized (node) {
+                files = node.files;
+                bytes = node.bytes;
+            }
+            statistics.addDirectoryUsage(new DirectoryUsage(node.path, files, bytes), node.depth);
+            if (node.parent != null) {
+                node.parent.add(files, bytes);
+            }
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Lists the files of one directory, or reuses them from the index.
+     * @return Subdirectories of the directory.
+     */
+    private List<File> scanFiles(DirectoryNode node, ScanStatistics statistics, DirectoryVisitor visitor) {
+        File dir = node.dir;
+        List<File> subdirectories = new ArrayList<File>();
+        visitor.engine = this;
+        visitor.subdirectories = subdirectories;
+        visitor.relativePath = node.path;
+        visitor.statisticsPath = node.path;
+        visitor.rootLength = node.rootLength;
+        visitor.entries = 0;
+        visitor.reused = false;
+        visitor.files = 0;
+        visitor.bytes = 0;
+
+        ScanIndex index = scanIndex;
+        if (index == null) {
+            visitor.statistics = statistics;
+            backend.listDirectory(dir, visitor);
+            progress.directoryScanned(dir.getPath(), visitor.files, visitor.bytes);
+            return subdirectories;
+        }
+
+        //Reuse statistics of unchanged directory
+        String path = dir.getPath();
+        long lastModified = dir.lastModified();
+        boolean collectFiles = duplicateFinder != null || catalogWriter != null || watchedTree != null
+                || nameIndex != null && previousNameIndex == null;
+        ScanIndex.DirectoryRecord record = collectFiles ? null : index.getUnchanged(path, lastModified);
+        String[] fileNames = null;
+        if (record != null && nameIndex != null) {
+            //Take the names from the previous scan, list the directory if they don't match its record
+            fileNames = previousNameIndex.getFileNames(node.path);
+            if (fileNames.length != record.getStatistics().getTotalFiles()) {
+                record = null;
+            }
+        }
+        if (record != null) {
+            if (fileNames != null) {
+                for (String name : fileNames) {
+                    nameIndex.addFile(node.path, name);
+                }
+            }
+            ScanStatistics directoryStatistics = record.getStatistics();
+            statistics.mergeDirectory(directoryStatistics, node.path);
+            for (String name : record.getSubdirectories()) {
+                subdirectories.add(new File(dir, name));
+            }
+            visitor.entries = record.getChildCount();
+            visitor.reused = true;
+            visitor.files = directoryStatistics.getTotalFiles();
+            visitor.bytes = directoryStatistics.getTotalFileSize();
+            index.put(path, record);
+            progress.directoryScanned(path, directoryStatistics.getTotalFiles(), directoryStatistics.getTotalFileSize());
+            return subdirectories;
+        }
+
+        //List changed directory, recording its own statistics with names relative to it, as any root may reuse them
+        ScanStatistics directoryStatistics = new ScanStatistics();
+        visitor.statistics = directoryStatistics;
+        visitor.statisticsPath = null;
+        boolean listed = backend.listDirectory(dir, visitor);
+        statistics.mergeDirectory(directoryStatistics, node.path);
+        progress.directoryScanned(path, visitor.files, visitor.bytes);
+        if (listed && !visitor.isCancelled()) {
+            String[] names = new String[subdirectories.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = subdirectories.get(i).getName();
+            }
+            index.put(path, new ScanIndex.DirectoryRecord(lastModified, visitor.entries, names, directoryStatistics));
+        }
+        return subdirectories;
+    }
+
+    /**
+     * Directory of a running traversal, collecting the totals of its subtree.
+     */
+    protected static class DirectoryNode {
+
+        private final DirectoryNode parent; //Node of the parent directory, null for roots
+        private final File dir; //Directory
+        private final String path; //Path relative to the root
+        private final int rootLength; //Length of the root path at the start of path, zero if it doesn't start with it
+        private final int depth; //Levels below the root
+        private final AtomicInteger pending = new AtomicInteger(1); //Own scan plus unfinished subdirectories
+        private long files; //Files counted in the subtree so far
+        private long bytes; //Bytes counted in the subtree so far
+
+        DirectoryNode(DirectoryNode parent, File dir, String path, int rootLength, int depth) {
+            this.parent = parent;
+            this.dir = dir;
+            this.path = path;
+            this.rootLength = rootLength;
+            this.depth = depth;
+        }
+
+        /**
+         * Directory of the node.
+         * @return
+         */
+        public File getDir() {
+            return dir;
+        }
+
+        private synchronized void add(long files, long bytes) {
+            this.files += files;
+            this.bytes += bytes;
+        }
+    }
+
+    /**
+     * Visitor updating statistics for files and collecting subdirectories.
+     */
+    protected abstract static class DirectoryVisitor implements ScanBackend.EntryVisitor, TraversalCallback {
+
+        private AbstractTraversalEngine engine; //Engine filtering entries
+        private ScanStatistics statistics; //Statistics of the directory being listed
+        private List<File> subdirectories; //Subdirectories of the directory being listed
+        private String relativePath; //Path of the directory being listed relative to the root
+        private String statisticsPath; //Path the biggest files are named relative to in statistics, null for the listed directory itself
+        private int rootLength; //Length of the root path at the start of relativePath, if qualified
+        private int entries; //Number of entries in the directory being listed
+        private boolean reused; //Was the directory being listed reused from the index
+        private long files; //Number of files in the directory being listed
+        private long bytes; //Sum of file sizes in the directory being listed
+
+        /**
+         * Number of entries in the directory scanned last.
+         * @return
+         */
+        public int getEntries() {
+            return entries;
+        }
+
+        @Override
+        public boolean visitEntry(DirectoryEntry entry) {
+            //Check if traversal was stopped by user action
+            if (isCancelled()) {
+                return false;
+            }
+
+            entries++;
+            if (!engine.acceptEntry(entry, statistics)) {
+                return true;
+            }
+            ScanFilter filter = engine.filter;
+            if (entry.isDirectory()) {
+                if (filter == null || filter.acceptDirectory(relativePath, rootLength, entry.getName())) {
+                    subdirectories.add(entry.getFile());
+                    if (engine.watchedTree != null) {
+                        engine.watchedTree.addDirectory(relativePath, entry);
+                    }
+                }
+            } else if (filter == null || filter.acceptFile(relativePath, rootLength, entry)) {
+                statistics.updateStatistics(entry.getName(), entry.getSize(), statisticsPath); //Update scan statistics
+                if (engine.duplicateFinder != null) {
+                    engine.duplicateFinder.addFile(entry.getFile(), entry.getSize());
+                }
+                if (engine.nameIndex != null) {
+                    engine.nameIndex.addFile(relativePath, entry.getName());
+                }
+                if (engine.catalogWriter != null) {
+                    engine.catalogWriter.addFile(relativePath, entry);
+                }
+                if (engine.watchedTree != null) {
+                    engine.watchedTree.addFile(relativePath, entry.getName(), entry.getSize());
+                }
+                files++;
+                bytes += entry.getSize();
+            }
+            return true;
+        }
+
+        /**
+         * Checked before every entry and while waiting for the I/O budget.
+         * @return Returns true if the traversal should stop.
+         */
+        @Override
+        public abstract boolean isCancelled();
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Bounded tracker for the biggest files seen during a scan.
+ * Keeps at most capacity entries in a min-heap backed by primitive arrays, so offering
+ * a file costs O(log k) and files that don't qualify are rejected without allocating.
+ * Files of equal size are ordered by name, which keeps the result deterministic.
+ */
+public class BiggestFilesTracker implements Serializable {
+
+    private final long[] sizes; //Heap of file sizes, smallest retained entry at index zero
+    private final String[] names; //File names, parallel to sizes
+    private int count; //Number of entries in the heap
+
+    /**
+     * Constructor.
+     * @param capacity Max number of files to retain.
+     */
+    public BiggestFilesTracker(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.sizes = new long[capacity];
+        this.names = new String[capacity];
+        this.count = 0;
+    }
+
+    /**
+     * Max number of files retained.
+     * @return
+     */
+    public int getCapacity() {
+        return sizes.length;
+    }
+
+    /**
+     * Number of files currently retained.
+     * @return
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Checks if a file of the given size could make it into the tracker.
+     * Lets callers skip work (like building a name) for files that can't qualify.
+     * @param fileSize
+     * @return
+     */
+    public boolean qualifies(long fileSize) {
+        return count < sizes.length || (count > 0 && fileSize >= sizes[0]);
+    }
+
+    /**
+     * Offer a file to the tracker.
+     * @param filename
+     * @param fileSize
+     * @return Returns true if the file was retained, false otherwise.
+     */
+    public boolean offer(String filename, long fileSize) {
+        if (count < sizes.length) {
+            sizes[count] = fileSize;
+            names[count] = filename;
+            siftUp(count++);
+            return true;
+        }
+
+        if (count == 0 || !isSmaller(sizes[0], names[0], fileSize, filename)) {
+            return false;
+        }
+
+        //Replace smallest retained entry
+        sizes[0] = fileSize;
+        names[0] = filename;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * Removes a retained file, like when it was deleted or shrunk. The tracker then holds fewer files
+     * than it could: the next biggest file is unknown to it and must be offered again.
+     * @param filename
+     * @param fileSize
+     * @return Returns true if the file was retained.
+     */
+    public boolean remove(String filename, long fileSize) {
+        for (int i = 0; i < count; i++) {
+            if (sizes[i] == fileSize && compareNames(names[i], filename) == 0) {
+                count--;
+                sizes[i] = sizes[count];
+                names[i] = names[count];
+                names[count] = null;
+                if (i < count) {
+                    siftDown(i);
+                    siftUp(i);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Offer all files retained by another tracker.
+     * @param other
+     */
+    public void merge(BiggestFilesTracker other) {
+        for (int i = 0; i < other.count; i++) {
+            offer(other.names[i], other.sizes[i]);
+        }
+    }
+
+    /**
+     * Removes all retained files.
+     */
+    public void clear() {
+        for (int i = 0; i < count; i++) {
+            names[i] = null;
+        }
+        count = 0;
+    }
+
+    /**
+     * Snapshot of the retained files sorted by size descending.
+     * @return
+     */
+    public ArrayList<FileStats> getSortedFiles() {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+
+        //Insertion sort, capacity is small
+        for (int i = 1; i < count; i++) {
+            int current = order[i];
+            int j = i - 1;
+            while (j >= 0 && isSmaller(sizes[order[j]], names[order[j]], sizes[current], names[current])) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = current;
+        }
+
+        ArrayList<FileStats> sortedFiles = new ArrayList<FileStats>(count);
+        for (int index : order) {
+            sortedFiles.add(new FileStats(names[index], sizes[index]));
+        }
+        return sortedFiles;
+    }
+
+    /**
+     * Orders entries by size, then by reverse name so that names sorting first rank higher.
+     * @return Returns true if the first entry ranks below the second one.
+     */
+    private static boolean isSmaller(long size1, String name1, long size2, String name2) {
+        if (size1 != size2) {
+            return size1 < size2;
+        }
+        return compareNames(name1, name2) > 0;
+    }
+
+    private static int compareNames(String name1, String name2) {
+        if (name1 == null) {
+            return name2 == null ? 0 : 1;
+        }
+        return name2 == null ? -1 : name1.compareTo(name2);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isSmaller(sizes[index], names[index], sizes[parent], names[parent])) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= count) {
+                break;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < count && isSmaller(sizes[right], names[right], sizes[left], names[left])) {
+                smallest = right;
+            }
+            if (!isSmaller(sizes[smallest], names[smallest], sizes[index], names[index])) {
+                break;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long size = sizes[i];
+        sizes[i] = sizes[j];
+        sizes[j] = size;
+
+        String name = names[i];
+        names[i] = names[j];
+        names[j] = name;
+    }
+
+}
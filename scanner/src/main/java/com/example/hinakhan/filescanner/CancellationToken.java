@@ -0,0 +1,113 @@
+package com.example.hinakhan.filescanner;
+
+/**
+ * Cancels a running scan. Thread safe, may be cancelled from any thread.
+ * Optional budgets stop the scan by themselves once a time or a number of files is spent,
+ * the Scanner starts the clock and the file count when the scan starts. A stopped scan
+ * returns the statistics gathered so far, flagged as not completed.
+ * Subclasses may override isCancelled() to combine it with another cancellation signal.
+ */
+public class CancellationToken implements TraversalCallback {
+
+    /**
+     * Why a scan stopped early.
+     */
+    public enum StopReason {
+        NONE, CANCELLED, TIME_BUDGET, FILE_BUDGET
+    }
+
+    private volatile boolean cancelled; //Latched by cancel()
+    private volatile long timeBudgetMillis; //Max duration of the scan, zero for no limit
+    private volatile long fileBudget; //Max number of files to scan, zero for no limit
+    private volatile long deadline; //System.nanoTime() at which the time budget is spent, set by start()
+    private volatile ScanProgress progress; //Counters of the running scan, set by start()
+    private volatile StopReason stopReason = StopReason.NONE; //First reason the scan stopped for
+
+    /**
+     * Request the scan to stop. Engines stop at the next file or directory.
+     */
+    public void cancel() {
+        stop(StopReason.CANCELLED);
+    }
+
+    /**
+     * Max duration of the scan, including the duplicate search.
+     * @return
+     */
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    /**
+     * Set max duration of the scan, counted from its start.
+     * @param timeBudgetMillis Zero for no limit.
+     */
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        if (timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("Budget must not be negative: " + timeBudgetMillis);
+        }
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    /**
+     * Max number of files to scan.
+     * @return
+     */
+    public long getFileBudget() {
+        return fileBudget;
+    }
+
+    /**
+     * Set max number of files to scan. Files are counted once per directory,
+     * so the scan stops after the directory crossing the budget.
+     * @param fileBudget Zero for no limit.
+     */
+    public void setFileBudget(long fileBudget) {
+        if (fileBudget < 0) {
+            throw new IllegalArgumentException("Budget must not be negative: " + fileBudget);
+        }
+        this.fileBudget = fileBudget;
+    }
+
+    /**
+     * Starts the budgets, called by the Scanner before traversing.
+     * @param progress Counters of the scan, the file budget is checked against them.
+     */
+    public void start(ScanProgress progress) {
+        this.progress = progress;
+        long budget = timeBudgetMillis;
+        deadline = budget > 0 ? System.nanoTime() + budget * 1000000 : 0;
+    }
+
+    /**
+     * Why the scan stopped early.
+     * @return NONE if it wasn't stopped.
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        if (cancelled) {
+            return true;
+        }
+        if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+            stop(StopReason.TIME_BUDGET);
+            return true;
+        }
+        ScanProgress scanProgress = progress;
+        if (fileBudget > 0 && scanProgress != null && scanProgress.getFiles() >= fileBudget) {
+            stop(StopReason.FILE_BUDGET);
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void stop(StopReason reason) {
+        if (!cancelled) {
+            stopReason = reason;
+            cancelled = true;
+        }
+    }
+}
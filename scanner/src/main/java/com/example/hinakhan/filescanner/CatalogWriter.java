@@ -0,0 +1,365 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a catalog of every counted file to a stream while the traversal runs, one record per file
+ * with its path, size, modification time and extension, followed by a summary of the scan.
+ * Nothing is kept per file: every traversal worker encodes records straight to UTF-8 bytes in a buffer
+ * of its own, without building strings, and hands full buffers to the stream. Workers only contend
+ * for the stream once per BUFFER_BYTES, so throughput is limited by the disk or the compression.
+ *
+ * CSV catalogs start with a header line and end with summary lines starting with '#'.
+ * JSON Lines catalogs hold an object per file and end with an object holding "summary".
+ * Records of different workers are interleaved, in no particular order.
+ */
+public class CatalogWriter {
+
+    /**
+     * Layout of the records.
+     */
+    public enum Format {
+        CSV, JSON_LINES
+    }
+
+    public static int BUFFER_BYTES = 64 << 10; //Bytes encoded by a worker before they are written
+    private static final byte[] CSV_HEADER = {'p', 'a', 't', 'h', ',', 's', 'i', 'z', 'e', ',', 'm', 't', 'i', 'm', 'e', ',',
+            'e', 'x', 't', 'e', 'n', 's', 'i', 'o', 'n', '\n'};
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    private final OutputStream out; //Receives the encoded records, guarded by itself
+    private final Format format; //Layout of the records
+    private final List<RecordBuffer> buffers = new ArrayList<RecordBuffer>(); //Buffers of all workers, guarded by itself
+    private final ThreadLocal<RecordBuffer> buffer = new ThreadLocal<RecordBuffer>() {
+        @Override
+        protected RecordBuffer initialValue() {
+            RecordBuffer created = new RecordBuffer();
+            synchronized (buffers) {
+                buffers.add(created);
+            }
+            return created;
+        }
+    };
+    private volatile IOException failure; //First failure writing the stream, records are dropped after it
+    private boolean finished; //The summary was written and the stream closed
+
+    /**
+     * Constructor with parameters, writes the CSV header.
+     * @param out Stream receiving the catalog, closed by finish().
+     * @param format
+     * @throws IOException
+     */
+    public CatalogWriter(OutputStream out, Format format) throws IOException {
+        this.out = out;
+        this.format = format;
+        if (format == Format.CSV) {
+            out.write(CSV_HEADER);
+        }
+    }
+
+    /**
+     * Opens a catalog file.
+     * @param file
+     * @param format
+     * @param gzip Compress the catalog with gzip.
+     * @return
+     * @throws IOException
+     */
+    public static CatalogWriter open(File file, Format format, boolean gzip) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            return new CatalogWriter(gzip ? new GZIPOutputStream(out, BUFFER_BYTES) : out, format);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Format of a catalog file by its name: JSON Lines for .jsonl or .json, CSV otherwise.
+     * A trailing .gz is ignored.
+     * @param file
+     * @return
+     */
+    public static Format getFormat(File file) {
+        String name = file.getName();
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        return name.endsWith(".jsonl") || name.endsWith(".json") ? Format.JSON_LINES : Format.CSV;
+    }
+
+    /**
+     * Layout of the records.
+     * @return
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Adds the record of a counted file, called by traversal workers.
+     * @param dirPath Path of its directory, as reported by the traversal.
+     * @param entry
+     */
+    public void addFile(String dirPath, DirectoryEntry entry) {
+        if (failure == null) {
+            buffer.get().addFile(dirPath, entry);
+        }
+    }
+
+    /**
+     * Number of records added so far.
+     * @return
+     */
+    public long getRecords() {
+        long records = 0;
+        synchronized (buffers) {
+            for (RecordBuffer each : buffers) {
+                records += each.getRecords();
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Writes the records still buffered and the summary, then closes the stream.
+     * Call once the traversal is done, the catalog is complete if the statistics are.
+     * @param statistics Statistics of the scan, summarized at the end of the catalog.
+     * @throws IOException If the catalog could not be written completely.
+     */
+    public void finish(ScanStatistics statistics) throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            synchronized (buffers) {
+                for (RecordBuffer each : buffers) {
+                    each.flush();
+                }
+            }
+            if (failure == null) {
+                RecordBuffer summary = new RecordBuffer();
+                summary.addSummary(statistics);
+                summary.flush();
+            }
+        } finally {
+            synchronized (out) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void write(byte[] bytes, int length) {
+        synchronized (out) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                out.write(bytes, 0, length);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Records encoded by one worker and not written yet.
+     */
+    private class RecordBuffer {
+
+        private byte[] bytes = new byte[BUFFER_BYTES]; //Encoded records
+        private int length; //Bytes used
+        private long records; //Records added
+
+        synchronized long getRecords() {
+            return records;
+        }
+
+        synchronized void addFile(String dirPath, DirectoryEntry entry) {
+            String name = entry.getName();
+            //Every char takes at most 6 bytes, as a JSON escape
+            ensureCapacity(6 * (dirPath.length() + 1 + 2 * name.length()) + 64);
+            int dot = name.lastIndexOf('.');
+            if (format == Format.CSV) {
+                put('"');
+                putPath(dirPath, name);
+                put('"');
+                put(',');
+                putLong(entry.getSize());
+                put(',');
+                putLong(entry.getLastModified());
+                put(',');
+                if (dot > 0) {
+                    put('"');
+                    putText(name, dot, name.length());
+                    put('"');
+                }
+            } else {
+                putAscii("{\"path\":\"");
+                putPath(dirPath, name);
+                putAscii("\",\"size\":");
+                putLong(entry.getSize());
+                putAscii(",\"mtime\":");
+                putLong(entry.getLastModified());
+                putAscii(",\"ext\":\"");
+                if (dot > 0) {
+                    putText(name, dot, name.length());
+                }
+                putAscii("\"}");
+            }
+            put('\n');
+            records++;
+        }
+
+        synchronized void addSummary(ScanStatistics statistics) {
+            String[] keys = {"files", "bytes", "directories", "unscanned_directories", "skipped_duplicates",
+                    "median_size", "p90_size", "max_size"};
+            long[] values = {statistics.getTotalFiles(), statistics.getTotalFileSize(), statistics.getScannedDirectories(),
+                    statistics.getUnscannedDirectories(), statistics.getSkippedDuplicates(),
+                    statistics.getFileSizePercentile(50), statistics.getFileSizePercentile(90),
+                    statistics.getSizeHistogram().getMax()};
+            ensureCapacity(1024);
+            if (format == Format.CSV) {
+                putAscii("#completed,");
+                putAscii(String.valueOf(statistics.isCompletedScan()));
+                put('\n');
+                for (int i = 0; i < keys.length; i++) {
+                    put('#');
+                    putAscii(keys[i]);
+                    put(',');
+                    putLong(values[i]);
+                    put('\n');
+                }
+            } else {
+                putAscii("{\"summary\":{\"completed\":");
+                putAscii(String.valueOf(statistics.isCompletedScan()));
+                for (int i = 0; i < keys.length; i++) {
+                    putAscii(",\"");
+                    putAscii(keys[i]);
+                    putAscii("\":");
+                    putLong(values[i]);
+                }
+                putAscii("}}\n");
+            }
+        }
+
+        synchronized void flush() {
+            if (length > 0) {
+                write(bytes, length);
+                length = 0;
+            }
+        }
+
+        private void ensureCapacity(int needed) {
+            if (length + needed > bytes.length) {
+                flush();
+                if (needed > bytes.length) {
+                    //Path longer than a buffer
+                    bytes = new byte[needed];
+                }
+            }
+        }
+
+        private void putPath(String dirPath, String name) {
+            if (dirPath.length() > 0) {
+                putText(dirPath, 0, dirPath.length());
+                if (dirPath.charAt(dirPath.length() - 1) != File.separatorChar) {
+                    putText(File.separator, 0, 1);
+                }
+            }
+            putText(name, 0, name.length());
+        }
+
+        /**
+         * Encodes chars to UTF-8, escaped for a quoted CSV field or a JSON string.
+         */
+        private void putText(String text, int start, int end) {
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    if (format == Format.JSON_LINES) {
+                        put('\\');
+                    } else {
+                        put('"');
+                    }
+                    put('"');
+                } else if (format == Format.JSON_LINES && (c == '\\' || c < 0x20)) {
+                    put('\\');
+                    if (c == '\\') {
+                        put('\\');
+                    } else {
+                        put('u');
+                        put('0');
+                        put('0');
+                        bytes[length++] = HEX[c >> 4];
+                        bytes[length++] = HEX[c & 0xF];
+                    }
+                } else if (c < 0x80) {
+                    put(c);
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xC0 | (c >> 6));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    bytes[length++] = (byte) (0xE0 | (c >> 12));
+                    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        private void putAscii(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                bytes[length++] = (byte) text.charAt(i);
+            }
+        }
+
+        private void putLong(long value) {
+            if (value < 0) {
+                put('-');
+                if (value == Long.MIN_VALUE) {
+                    putAscii("9223372036854775808");
+                    return;
+                }
+                value = -value;
+            }
+            //Digits are written backwards, then reversed in place
+            int start = length;
+            do {
+                bytes[length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                byte swap = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = swap;
+            }
+        }
+
+        private void put(char c) {
+            bytes[length++] = (byte) c;
+        }
+    }
+}
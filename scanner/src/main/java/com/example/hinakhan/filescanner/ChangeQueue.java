@@ -0,0 +1,237 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Bounded queue of changed directories waiting to be listed again, coalescing repeated changes.
+ * A directory is queued once however many of its entries change, and not at all while a subtree
+ * holding it is queued. When the queue is full, every queued directory and the new one are replaced
+ * by their deepest common ancestor, queued as a subtree: a change is never dropped, at worst a bigger
+ * subtree is listed again. Paths are the directory paths of a WatchedTree.
+ * Thread safe, platform watchers offer changes on their own threads.
+ */
+public class ChangeQueue {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static int MAX_SETTLE_PERIODS = 10; //Settle periods waited at most, so steady writes don't delay changes forever
+
+    private final int capacity; //Max number of queued directories
+    private final LinkedHashMap<String, Change> pending = new LinkedHashMap<String, Change>(); //Queued changes by path, in order
+    private long offered; //Changes offered
+    private long coalesced; //Changes merged into a queued one
+    private long overflows; //Times the queue was full
+    private boolean closed; //No more changes are taken
+
+    /**
+     * Default constructor, queues up to DEFAULT_CAPACITY directories.
+     */
+    public ChangeQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor with parameters.
+     * @param capacity Max number of queued directories, at least one.
+     */
+    public ChangeQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queue a changed directory.
+     * @param path
+     * @param subtree List every directory below it again too, like when changes were lost.
+     */
+    public synchronized void offer(String path, boolean subtree) {
+        if (closed) {
+            return;
+        }
+        offered++;
+        if (isCovered(path, subtree)) {
+            coalesced++;
+            return;
+        }
+        if (subtree) {
+            removeBelow(path);
+        }
+        Change queued = pending.get(path);
+        if (queued != null) {
+            coalesced++;
+            queued.subtree |= subtree;
+            return;
+        }
+        if (pending.size() >= capacity) {
+            //Too many directories changed, list the smallest subtree holding all of them
+            overflows++;
+            String ancestor = path;
+            for (String other : pending.keySet()) {
+                ancestor = getCommonAncestor(ancestor, other);
+            }
+            pending.clear();
+            path = ancestor;
+            subtree = true;
+        }
+        pending.put(path, new Change(path, subtree));
+        notifyAll();
+    }
+
+    /**
+     * Waits for changes and takes all of them once no new directory was queued for a while,
+     * so a burst of changes is applied at once. Waits at most MAX_SETTLE_PERIODS settle periods.
+     * @param settleMillis Time without new directories to wait for, zero to take changes right away.
+     * @return Queued changes in order, or null if the queue was closed.
+     * @throws InterruptedException
+     */
+    public synchronized List<Change> take(long settleMillis) throws InterruptedException {
+        while (pending.isEmpty() && !closed) {
+            wait();
+        }
+        long now = System.nanoTime() / 1000000;
+        long deadline = now + settleMillis * MAX_SETTLE_PERIODS;
+        long quietUntil = now + settleMillis;
+        long queued = offered;
+        while (!closed && now < Math.min(quietUntil, deadline)) {
+            wait(Math.min(quietUntil, deadline) - now);
+            now = System.nanoTime() / 1000000;
+            if (offered != queued) {
+                queued = offered;
+                quietUntil = now + settleMillis;
+            }
+        }
+        if (closed) {
+            return null;
+        }
+        List<Change> changes = new ArrayList<Change>(pending.values());
+        pending.clear();
+        return changes;
+    }
+
+    /**
+     * Stops taking changes and wakes up a waiting take().
+     */
+    public synchronized void close() {
+        closed = true;
+        pending.clear();
+        notifyAll();
+    }
+
+    /**
+     * Number of queued directories.
+     * @return
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Number of changes merged into a change queued already.
+     * @return
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Number of times the queue was full and collapsed into a subtree.
+     * @return
+     */
+    public synchronized long getOverflows() {
+        return overflows;
+    }
+
+    /**
+     * Is the change queued already, or below a queued subtree.
+     */
+    private boolean isCovered(String path, boolean subtree) {
+        Change queued = pending.get(path);
+        if (queued != null && (queued.subtree || !subtree)) {
+            return true;
+        }
+        for (String ancestor = getParent(path); ancestor != null; ancestor = getParent(ancestor)) {
+            queued = pending.get(ancestor);
+            if (queued != null && queued.subtree) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeBelow(String path) {
+        for (Iterator<String> it = pending.keySet().iterator(); it.hasNext(); ) {
+            String other = it.next();
+            if (!other.equals(path) && WatchedTree.isBelow(other, path)) {
+                it.remove();
+                coalesced++;
+            }
+        }
+    }
+
+    /**
+     * Path of the parent directory, the empty path above a relative path of one name.
+     * @return Returns null for the empty path.
+     */
+    static String getParent(String path) {
+        if (path.length() == 0) {
+            return null;
+        }
+        int separator = path.lastIndexOf(File.separatorChar);
+        if (separator < 0) {
+            return "";
+        }
+        //Keep the separator of a file system root like "/"
+        return separator == 0 && path.length() > 1 ? path.substring(0, 1) : path.substring(0, separator);
+    }
+
+    /**
+     * Deepest path holding both paths, the empty path if they share none.
+     */
+    static String getCommonAncestor(String path1, String path2) {
+        String ancestor = path1;
+        while (ancestor != null && !WatchedTree.isBelow(path2, ancestor)) {
+            ancestor = getParent(ancestor);
+        }
+        return ancestor != null ? ancestor : "";
+    }
+
+    /**
+     * A changed directory.
+     */
+    public static class Change {
+
+        private final String path; //Path of the directory
+        private boolean subtree; //List the subtree again, not only the directory
+
+        Change(String path, boolean subtree) {
+            this.path = path;
+            this.subtree = subtree;
+        }
+
+        /**
+         * Path of the changed directory.
+         * @return
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Should every directory below it be listed again too.
+         * @return
+         */
+        public boolean isSubtree() {
+            return subtree;
+        }
+
+        @Override
+        public String toString() {
+            return subtree ? path + File.separatorChar + "**" : path;
+        }
+    }
+}
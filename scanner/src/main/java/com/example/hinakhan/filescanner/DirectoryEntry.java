@@ -0,0 +1,160 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+
+/**
+ * Attributes of one directory entry as reported by a ScanBackend.
+ * Instances are reused by backends from entry to entry, so visitors must copy
+ * whatever they need to keep.
+ */
+public class DirectoryEntry {
+
+    public static final long UNKNOWN = -1; //Marker for attributes not read by the backend
+
+    private File parent; //Directory being listed
+    private String name; //Name of entry
+    private File file; //Entry as file, created on demand
+    private boolean directory; //Flag indicating if entry is a directory
+    private long size; //Size of entry in bytes
+    private long lastModified; //Modification time in milliseconds, or UNKNOWN
+    private boolean symbolicLink; //Flag indicating if entry is a symbolic link, other attributes are of its target
+    private long device; //Device of the file system holding the entry, or UNKNOWN
+    private long inode; //Inode of the entry on its device, or UNKNOWN
+    private long linkCount; //Number of hard links to the entry, or UNKNOWN
+
+    /**
+     * Fills in attributes for the next entry.
+     * @param parent
+     * @param name
+     * @param file Entry as file, or null if the backend did not create one.
+     * @param directory
+     * @param size
+     * @param lastModified Modification time in milliseconds, or UNKNOWN.
+     */
+    public void set(File parent, String name, File file, boolean directory, long size, long lastModified) {
+        set(parent, name, file, directory, size, lastModified, false, UNKNOWN, UNKNOWN, UNKNOWN);
+    }
+
+    /**
+     * Fills in attributes for the next entry, including link and inode attributes.
+     * For a symbolic link the other attributes are those of its target.
+     * @param parent
+     * @param name
+     * @param file Entry as file, or null if the backend did not create one.
+     * @param directory
+     * @param size
+     * @param lastModified Modification time in milliseconds, or UNKNOWN.
+     * @param symbolicLink
+     * @param device Device of the file system holding the entry, or UNKNOWN.
+     * @param inode Inode of the entry, or UNKNOWN.
+     * @param linkCount Number of hard links to the entry, or UNKNOWN.
+     */
+    public void set(File parent, String name, File file, boolean directory, long size, long lastModified,
+                    boolean symbolicLink, long device, long inode, long linkCount) {
+        this.parent = parent;
+        this.name = name;
+        this.file = file;
+        this.directory = directory;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.symbolicLink = symbolicLink;
+        this.device = device;
+        this.inode = inode;
+        this.linkCount = linkCount;
+    }
+
+    /**
+     * Copies the attributes of another entry, without reading any missing from disk.
+     * @param other
+     */
+    public void set(DirectoryEntry other) {
+        set(other.parent, other.name, other.file, other.directory, other.size, other.lastModified,
+                other.symbolicLink, other.device, other.inode, other.linkCount);
+    }
+
+    /**
+     * Directory being listed.
+     * @return
+     */
+    public File getParent() {
+        return parent;
+    }
+
+    /**
+     * Name of entry.
+     * @return
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Entry as file.
+     * @return
+     */
+    public File getFile() {
+        if (file == null) {
+            file = new File(parent, name);
+        }
+        return file;
+    }
+
+    /**
+     * Is entry a directory.
+     * @return
+     */
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * Size of entry in bytes.
+     * @return
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Modification time in milliseconds, read from disk if the backend did not provide it.
+     * @return
+     */
+    public long getLastModified() {
+        if (lastModified == UNKNOWN) {
+            lastModified = getFile().lastModified();
+        }
+        return lastModified;
+    }
+
+    /**
+     * Is entry a symbolic link.
+     * @return
+     */
+    public boolean isSymbolicLink() {
+        return symbolicLink;
+    }
+
+    /**
+     * Device of the file system holding the entry.
+     * @return Device, or UNKNOWN if the backend doesn't read devices.
+     */
+    public long getDevice() {
+        return device;
+    }
+
+    /**
+     * Inode of the entry on its device.
+     * @return Inode, or UNKNOWN if the backend doesn't read inodes.
+     */
+    public long getInode() {
+        return inode;
+    }
+
+    /**
+     * Number of hard links to the entry.
+     * @return Link count, or UNKNOWN if the backend doesn't read it.
+     */
+    public long getLinkCount() {
+        return linkCount;
+    }
+}
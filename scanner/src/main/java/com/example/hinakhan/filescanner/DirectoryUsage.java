@@ -0,0 +1,97 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.Serializable;
+import java.util.Comparator;
+
+/**
+ * Files and bytes below a directory, summed over its whole subtree.
+ */
+public class DirectoryUsage implements Serializable {
+
+    /**
+     * Orders by size descending, equal sizes by path.
+     */
+    public static final Comparator<DirectoryUsage> BY_SIZE = new Comparator<DirectoryUsage>() {
+        @Override
+        public int compare(DirectoryUsage o1, DirectoryUsage o2) {
+            if (o1.totalFileSize != o2.totalFileSize) {
+                return o1.totalFileSize > o2.totalFileSize ? -1 : 1;
+            }
+            return o1.path.compareTo(o2.path);
+        }
+    };
+
+    /**
+     * Orders by path.
+     */
+    public static final Comparator<DirectoryUsage> BY_PATH = new Comparator<DirectoryUsage>() {
+        @Override
+        public int compare(DirectoryUsage o1, DirectoryUsage o2) {
+            return o1.path.compareTo(o2.path);
+        }
+    };
+
+    private final String path; //Path relative to the scanned root
+    private final long totalFiles; //Files in the subtree
+    private final long totalFileSize; //Sum of file sizes in the subtree
+
+    /**
+     * Constructor with parameters.
+     * @param path Path relative to the scanned root.
+     * @param totalFiles Files in the subtree.
+     * @param totalFileSize Sum of file sizes in the subtree.
+     */
+    public DirectoryUsage(String path, long totalFiles, long totalFileSize) {
+        this.path = path;
+        this.totalFiles = totalFiles;
+        this.totalFileSize = totalFileSize;
+    }
+
+    /**
+     * Path relative to the scanned root.
+     * @return
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Files in the subtree.
+     * @return
+     */
+    public long getTotalFiles() {
+        return totalFiles;
+    }
+
+    /**
+     * Sum of file sizes in the subtree.
+     * @return
+     */
+    public long getTotalFileSize() {
+        return totalFileSize;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DirectoryUsage)) {
+            return false;
+        }
+        DirectoryUsage other = (DirectoryUsage) o;
+        return path.equals(other.path) && totalFiles == other.totalFiles && totalFileSize == other.totalFileSize;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = path.hashCode();
+        result = 31 * result + (int) (totalFiles ^ (totalFiles >>> 32));
+        return 31 * result + (int) (totalFileSize ^ (totalFileSize >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return path + "(" + totalFiles + " files, " + totalFileSize + ")";
+    }
+}
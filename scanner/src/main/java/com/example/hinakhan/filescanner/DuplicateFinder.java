@@ -0,0 +1,314 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Finds files with identical content in three stages, each only reading the survivors of the previous one:
+ *  Files are grouped by exact size while traversing, a file with a unique size has no duplicate.
+ *  Files of the same size are grouped by a hash of their first and last EDGE_BYTES.
+ *  Files still sharing a group are grouped by a hash of their whole content, read through memory maps.
+ * Hashing runs on a fixed pool of I/O threads, one size group per task, so the cost grows with the
+ * bytes of candidate files rather than the bytes scanned.
+ *
+ * Candidates are collected from all traversal workers into striped maps keyed by size,
+ * holding one File per size and a list once a second file of that size is seen.
+ */
+public class DuplicateFinder {
+
+    public static long MIN_FILE_SIZE = 1; //Smaller files, like empty ones, are not compared
+    public static int EDGE_BYTES = 4096; //Bytes hashed at the start and the end of a file by the second stage
+    public static long MAP_CHUNK_BYTES = 64L << 20; //Bytes mapped at once by the full hash, keeps 32 bit address space free
+    private static final int STRIPES = 16; //Must be a power of two
+    private static final String DIGEST = "SHA-1";
+
+    private final int threads; //Number of hashing threads
+    private final List<Map<Long, Object>> stripes; //Size to a File, or to a List<File> of two or more
+
+    /**
+     * Constructor with parameters.
+     * @param threads Number of threads hashing files.
+     */
+    public DuplicateFinder(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive: " + threads);
+        }
+        this.threads = threads;
+        stripes = new ArrayList<Map<Long, Object>>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new HashMap<Long, Object>());
+        }
+    }
+
+    /**
+     * Number of threads hashing files.
+     * @return
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Adds a scanned file as a candidate, called by traversal workers.
+     * @param file
+     * @param size
+     */
+    @SuppressWarnings("unchecked")
+    public void addFile(File file, long size) {
+        if (size < MIN_FILE_SIZE) {
+            return;
+        }
+        Long key = size;
+        Map<Long, Object> stripe = stripes.get((int) ((size ^ (size >>> 17)) & (STRIPES - 1)));
+        synchronized (stripe) {
+            Object files = stripe.get(key);
+            if (files == null) {
+                stripe.put(key, file);
+            } else if (files instanceof File) {
+                List<File> list = new ArrayList<File>(2);
+                list.add((File) files);
+                list.add(file);
+                stripe.put(key, list);
+            } else {
+                ((List<File>) files).add(file);
+            }
+        }
+    }
+
+    /**
+     * Hashes the candidates and adds the duplicate groups to statistics.
+     * Candidates are released, the finder collects again from scratch afterwards.
+     * @param roots Roots of the scan, paths are reported relative to them like the biggest files.
+     * @param statistics
+     * @param callback Stops hashing when cancelled, statistics are then flagged as not completed.
+     */
+    public void findDuplicates(File[] roots, ScanStatistics statistics, TraversalCallback callback) {
+        List<SizeGroup> sizeGroups = takeSizeGroups();
+        if (sizeGroups.isEmpty()) {
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, sizeGroups.size()));
+        try {
+            List<Future<List<List<File>>>> results = new ArrayList<Future<List<List<File>>>>(sizeGroups.size());
+            for (SizeGroup sizeGroup : sizeGroups) {
+                sizeGroup.callback = callback;
+                results.add(pool.submit(sizeGroup));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                long size = sizeGroups.get(i).size;
+                for (List<File> files : results.get(i).get()) {
+                    statistics.addDuplicateGroup(new DuplicateGroup(size, relativePaths(roots, files)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            statistics.setCompletedScan(false);
+        } catch (ExecutionException e) {
+            //Hashing doesn't throw checked exceptions, rethrow runtime failures unchanged
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+        if (callback.isCancelled()) {
+            statistics.setCompletedScan(false);
+        }
+    }
+
+    /**
+     * Removes the collected candidates, keeping sizes seen more than once.
+     */
+    @SuppressWarnings("unchecked")
+    private List<SizeGroup> takeSizeGroups() {
+        List<SizeGroup> sizeGroups = new ArrayList<SizeGroup>();
+        for (Map<Long, Object> stripe : stripes) {
+            synchronized (stripe) {
+                for (Map.Entry<Long, Object> entry : stripe.entrySet()) {
+                    if (entry.getValue() instanceof List) {
+                        sizeGroups.add(new SizeGroup(entry.getKey(), (List<File>) entry.getValue()));
+                    }
+                }
+                stripe.clear();
+            }
+        }
+        //Biggest files first, so a cancelled run has found the most wasted bytes
+        Collections.sort(sizeGroups);
+        return sizeGroups;
+    }
+
+    private static List<String> relativePaths(File[] roots, List<File> files) {
+        String prefix = null;
+        if (roots.length == 1) {
+            String root = roots[0].getPath();
+            prefix = root.endsWith(File.separator) ? root : root + File.separator;
+        }
+        List<String> paths = new ArrayList<String>(files.size());
+        for (File file : files) {
+            String path = file.getPath();
+            paths.add(prefix != null && path.startsWith(prefix) ? path.substring(prefix.length()) : path);
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    /**
+     * Files of one size, hashed by one task.
+     */
+    private static class SizeGroup implements Callable<List<List<File>>>, Comparable<SizeGroup> {
+
+        private final long size;
+        private final List<File> files;
+        private TraversalCallback callback;
+
+        SizeGroup(long size, List<File> files) {
+            this.size = size;
+            this.files = files;
+        }
+
+        @Override
+        public int compareTo(SizeGroup other) {
+            return size > other.size ? -1 : size < other.size ? 1 : 0;
+        }
+
+        /**
+         * Groups of identical files, empty if cancelled.
+         */
+        @Override
+        public List<List<File>> call() {
+            MessageDigest digest = createDigest();
+            ByteBuffer buffer = ByteBuffer.allocate(EDGE_BYTES);
+            List<List<File>> duplicates = new ArrayList<List<File>>();
+
+            //Files up to two edges long are hashed completely by the edge hash
+            boolean edgesCoverFile = size <= 2L * EDGE_BYTES;
+            for (List<File> candidates : groupByHash(files, digest, buffer, false)) {
+                if (edgesCoverFile) {
+                    duplicates.add(candidates);
+                } else {
+                    duplicates.addAll(groupByHash(candidates, digest, buffer, true));
+                }
+            }
+            if (callback.isCancelled()) {
+                duplicates.clear();
+            }
+            return duplicates;
+        }
+
+        /**
+         * Groups files by hash, dropping unreadable files and files with a unique hash.
+         */
+        private List<List<File>> groupByHash(List<File> files, MessageDigest digest, ByteBuffer buffer, boolean fullHash) {
+            Map<ByteBuffer, List<File>> groups = new HashMap<ByteBuffer, List<File>>();
+            for (File file : files) {
+                if (callback.isCancelled()) {
+                    break;
+                }
+                try {
+                    byte[] hash = fullHash ? hashContent(file, digest) : hashEdges(file, digest, buffer);
+                    ByteBuffer key = ByteBuffer.wrap(hash);
+                    List<File> group = groups.get(key);
+                    if (group == null) {
+                        group = new ArrayList<File>(2);
+                        groups.put(key, group);
+                    }
+                    group.add(file);
+                } catch (IOException e) {
+                    //File removed or unreadable since it was scanned, it can't be compared
+                }
+            }
+
+            List<List<File>> result = new ArrayList<List<File>>();
+            for (List<File> group : groups.values()) {
+                if (group.size() > 1) {
+                    result.add(group);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Hashes the first and the last EDGE_BYTES of a file with positional reads.
+         */
+        private byte[] hashEdges(File file, MessageDigest digest, ByteBuffer buffer) throws IOException {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                FileChannel channel = in.getChannel();
+                readFully(channel, buffer, 0);
+                digest.update(buffer);
+                if (size > EDGE_BYTES) {
+                    readFully(channel, buffer, Math.max(EDGE_BYTES, size - EDGE_BYTES));
+                    digest.update(buffer);
+                }
+                return digest.digest();
+            } finally {
+                digest.reset();
+                in.close();
+            }
+        }
+
+        /**
+         * Hashes a whole file, mapping MAP_CHUNK_BYTES at a time instead of copying it through a buffer.
+         */
+        private byte[] hashContent(File file, MessageDigest digest) throws IOException {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                FileChannel channel = in.getChannel();
+                long length = Math.min(size, channel.size());
+                for (long position = 0; position < length; position += MAP_CHUNK_BYTES) {
+                    if (callback.isCancelled()) {
+                        throw new IOException("Cancelled");
+                    }
+                    MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK_BYTES, length - position));
+                    digest.update(chunk);
+                }
+                return digest.digest();
+            } finally {
+                digest.reset();
+                in.close();
+            }
+        }
+
+        /**
+         * Fills the buffer from a position, up to its capacity or the end of the file.
+         */
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+        }
+
+        private static MessageDigest createDigest() {
+            try {
+                return MessageDigest.getInstance(DIGEST);
+            } catch (NoSuchAlgorithmException e) {
+                //Every Java and Android platform provides SHA-1
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Files with identical content.
+ */
+public class DuplicateGroup implements Serializable {
+
+    /**
+     * Orders by wasted bytes descending, equal groups by their first path.
+     */
+    public static final Comparator<DuplicateGroup> BY_WASTED_BYTES = new Comparator<DuplicateGroup>() {
+        @Override
+        public int compare(DuplicateGroup o1, DuplicateGroup o2) {
+            long wasted1 = o1.getWastedBytes();
+            long wasted2 = o2.getWastedBytes();
+            if (wasted1 != wasted2) {
+                return wasted1 > wasted2 ? -1 : 1;
+            }
+            return o1.paths.get(0).compareTo(o2.paths.get(0));
+        }
+    };
+
+    private final long fileSize; //Size of every file in the group
+    private final ArrayList<String> paths; //Paths relative to the root, at least two
+
+    /**
+     * Constructor with parameters.
+     * @param fileSize
+     * @param paths Paths of the identical files, at least two.
+     */
+    public DuplicateGroup(long fileSize, List<String> paths) {
+        if (paths.size() < 2) {
+            throw new IllegalArgumentException("Duplicate group needs two files: " + paths);
+        }
+        this.fileSize = fileSize;
+        this.paths = new ArrayList<String>(paths);
+    }
+
+    /**
+     * Size of every file in the group.
+     * @return
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Paths of the identical files.
+     * @return
+     */
+    public List<String> getPaths() {
+        return new ArrayList<String>(paths);
+    }
+
+    /**
+     * Number of files beyond the first one.
+     * @return
+     */
+    public int getDuplicateFiles() {
+        return paths.size() - 1;
+    }
+
+    /**
+     * Bytes reclaimed by keeping only one of the files.
+     * @return
+     */
+    public long getWastedBytes() {
+        return fileSize * (paths.size() - 1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DuplicateGroup)) {
+            return false;
+        }
+        DuplicateGroup other = (DuplicateGroup) o;
+        return fileSize == other.fileSize && paths.equals(other.paths);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (fileSize ^ (fileSize >>> 32)) + paths.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return paths + "(" + fileSize + ")";
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Histogram of file extensions backed by a primitive open-addressing hash table.
+ * The extension is hashed and compared straight from the character range of the file
+ * name, so counting a file whose extension was seen before allocates nothing. A key
+ * string is only created the first time an extension shows up.
+ * Extensions include the leading dot, like ".jpg".
+ */
+public class ExtensionCounter implements Serializable {
+
+    private static final int INITIAL_CAPACITY = 64; //Must be a power of two
+
+    private final boolean ignoreCase; //Count extensions differing in case as one
+    private String[] keys; //Extensions, null for free slots
+    private int[] hashes; //Hash of the extension in each slot
+    private int[] counts; //Occurrences of the extension in each slot
+    private int size; //Number of distinct extensions
+    private transient int modCount; //Incremented whenever counts change
+    private transient Map<String, Integer> cachedMostFrequent; //Result of last getMostFrequent() call
+    private transient int cachedNumValues; //numValues of cached result
+    private transient int cachedModCount = -1; //modCount of cached result
+
+    /**
+     * Constructor with parameters.
+     * @param ignoreCase Count extensions differing in case as one, keyed in lower case.
+     */
+    public ExtensionCounter(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        this.keys = new String[INITIAL_CAPACITY];
+        this.hashes = new int[INITIAL_CAPACITY];
+        this.counts = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Are extensions differing in case counted as one.
+     * @return
+     */
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    /**
+     * Number of distinct extensions.
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Count the extension of a file name, if it has one.
+     * Names without a dot, or whose only dot is the first character, have no extension.
+     * @param fileName
+     */
+    public void addFileName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot > 0) {
+            add(fileName, dot, fileName.length(), 1);
+        }
+    }
+
+    /**
+     * Uncount the extension of a file name counted before, like for a deleted file.
+     * Extensions whose count drops to zero are removed.
+     * @param fileName
+     */
+    public void removeFileName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot <= 0) {
+            return;
+        }
+        int slot = find(fileName, dot, fileName.length(), hash(fileName, dot, fileName.length()));
+        if (keys[slot] == null) {
+            return;
+        }
+        modCount++;
+        if (--counts[slot] <= 0) {
+            removeSlot(slot);
+        }
+    }
+
+    /**
+     * Add occurrences of an extension.
+     * @param extension Extension including the leading dot.
+     * @param count
+     */
+    public void add(String extension, int count) {
+        add(extension, 0, extension.length(), count);
+    }
+
+    /**
+     * Occurrences of an extension.
+     * @param extension Extension including the leading dot.
+     * @return
+     */
+    public int get(String extension) {
+        int slot = find(extension, 0, extension.length(), hash(extension, 0, extension.length()));
+        return keys[slot] == null ? 0 : counts[slot];
+    }
+
+    /**
+     * Add all extensions counted by another counter.
+     * @param other
+     */
+    public void merge(ExtensionCounter other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            String key = other.keys[i];
+            if (key != null) {
+                add(key, 0, key.length(), other.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Copy of the histogram as a map, in no particular order.
+     * @return
+     */
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = new LinkedHashMap<String, Integer>(size * 4 / 3 + 1);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                map.put(keys[i], counts[i]);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Most frequent extensions sorted by frequency descending, equal frequencies by extension.
+     * Selects with a bounded heap in O(n log numValues). The result is cached until the
+     * histogram changes, so repeated calls are free.
+     * @param numValues Max number of extensions to return.
+     * @return Unmodifiable map.
+     */
+    public Map<String, Integer> getMostFrequent(int numValues) {
+        if (cachedMostFrequent != null && cachedModCount == modCount && cachedNumValues == numValues) {
+            return cachedMostFrequent;
+        }
+
+        //Min-heap of slots, least frequent selected extension at index zero
+        int[] heap = new int[Math.max(0, Math.min(numValues, size))];
+        int heapSize = 0;
+        for (int slot = 0; slot < keys.length && heap.length > 0; slot++) {
+            if (keys[slot] == null) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (ranksBelow(heap[0], slot)) {
+                heap[0] = slot;
+                siftDown(heap, heapSize, 0);
+            }
+        }
+
+        //Drain heap, least frequent first, filling results from the back
+        int[] sorted = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            sorted[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(heap, i, 0);
+        }
+
+        Map<String, Integer> results = new LinkedHashMap<String, Integer>(heapSize * 4 / 3 + 1);
+        for (int slot : sorted) {
+            results.put(keys[slot], counts[slot]);
+        }
+
+        cachedMostFrequent = Collections.unmodifiableMap(results);
+        cachedNumValues = numValues;
+        cachedModCount = modCount;
+        return cachedMostFrequent;
+    }
+
+    /**
+     * Orders slots by count, then by reverse extension so that extensions sorting first rank higher.
+     * @return Returns true if slot1 ranks below slot2.
+     */
+    private boolean ranksBelow(int slot1, int slot2) {
+        if (counts[slot1] != counts[slot2]) {
+            return counts[slot1] < counts[slot2];
+        }
+        return keys[slot1].compareTo(keys[slot2]) > 0;
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksBelow(heap[index], heap[parent])) {
+                break;
+            }
+            int slot = heap[index];
+            heap[index] = heap[parent];
+            heap[parent] = slot;
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize, int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= heapSize) {
+                break;
+            }
+            int lowest = left;
+            if (left + 1 < heapSize && ranksBelow(heap[left + 1], heap[left])) {
+                lowest = left + 1;
+            }
+            if (!ranksBelow(heap[lowest], heap[index])) {
+                break;
+            }
+            int slot = heap[index];
+            heap[index] = heap[lowest];
+            heap[lowest] = slot;
+            index = lowest;
+        }
+    }
+
+    /**
+     * Add occurrences of the extension in chars [start, end) of text.
+     */
+    private void add(String text, int start, int end, int count) {
+        modCount++;
+        int hash = hash(text, start, end);
+        int slot = find(text, start, end, hash);
+        if (keys[slot] != null) {
+            counts[slot] += count;
+            return;
+        }
+
+        //First occurrence, create key
+        keys[slot] = newKey(text, start, end);
+        hashes[slot] = hash;
+        counts[slot] = count;
+        size++;
+        if (size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    /**
+     * Slot holding the extension in chars [start, end) of text, or the free slot to insert it.
+     */
+    private int find(String text, int start, int end, int hash) {
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        int length = end - start;
+        while (true) {
+            String key = keys[slot];
+            if (key == null || (hashes[slot] == hash && key.length() == length
+                    && key.regionMatches(ignoreCase, 0, text, start, length))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Frees a slot, moving back the entries probed past it so lookups still find them.
+     */
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        keys[slot] = null;
+        size--;
+        int next = (slot + 1) & mask;
+        while (keys[next] != null) {
+            //An entry can fill the free slot unless its home slot lies cyclically in (slot, next]
+            int home = hashes[next] & mask;
+            boolean homeBetween = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+            if (!homeBetween) {
+                keys[slot] = keys[next];
+                hashes[slot] = hashes[next];
+                counts[slot] = counts[next];
+                keys[next] = null;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private String newKey(String text, int start, int end) {
+        if (!ignoreCase) {
+            return text.substring(start, end);
+        }
+        //Lower case char by char, consistent with hash()
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            chars[i - start] = Character.toLowerCase(text.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    private int hash(String text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            hash = 31 * hash + (ignoreCase ? Character.toLowerCase(c) : c);
+        }
+        //Spread high bits, the table is indexed by the low bits
+        return hash ^ (hash >>> 16);
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int[] oldCounts = counts;
+
+        keys = new String[oldKeys.length * 2];
+        hashes = new int[keys.length];
+        counts = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Legacy backend using java.io.File.
+ * Costs one stat for the type of every entry plus one more for the size of every file.
+ * java.io doesn't expose devices and inodes, so hard links aren't detected. Symbolic
+ * links are only detected for directories, by resolving their canonical path.
+ */
+public class FileScanBackend implements ScanBackend {
+
+    @Override
+    public boolean listDirectory(File dir, EntryVisitor visitor) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return false;
+        }
+
+        File canonicalDir = null; //Resolved on the first subdirectory
+        DirectoryEntry entry = new DirectoryEntry();
+        for (File file : files) {
+            boolean directory = file.isDirectory();
+            long size = directory ? 0 : file.length();
+            boolean symbolicLink = false;
+            if (directory) {
+                if (canonicalDir == null) {
+                    canonicalDir = canonicalFile(dir);
+                }
+                symbolicLink = isSymbolicLink(canonicalDir, file);
+            }
+            entry.set(dir, file.getName(), file, directory, size, DirectoryEntry.UNKNOWN, symbolicLink,
+                    DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN);
+            if (!visitor.visitEntry(entry)) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean readEntry(File file, DirectoryEntry entry) {
+        if (!file.exists()) {
+            return false;
+        }
+        boolean directory = file.isDirectory();
+        entry.set(file.getParentFile(), file.getName(), file, directory, directory ? 0 : file.length(),
+                file.lastModified());
+        return true;
+    }
+
+    /**
+     * A file is a link if its canonical path differs from its path in the canonical parent.
+     */
+    private static boolean isSymbolicLink(File canonicalDir, File file) {
+        File inCanonicalDir = new File(canonicalDir, file.getName());
+        return !inCanonicalDir.equals(canonicalFile(inCanonicalDir));
+    }
+
+    private static File canonicalFile(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
+        }
+    }
+}
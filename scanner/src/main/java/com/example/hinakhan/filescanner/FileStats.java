@@ -64,4 +64,28 @@ public class FileStats implements Serializable {
         return String.valueOf(this.getFileSize()/1024);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FileStats)) {
+            return false;
+        }
+        FileStats other = (FileStats) o;
+        return (filename == null ? other.filename == null : filename.equals(other.filename))
+                && (fileSize == null ? other.fileSize == null : fileSize.equals(other.fileSize));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = filename == null ? 0 : filename.hashCode();
+        return 31 * result + (fileSize == null ? 0 : fileSize.hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return filename + "(" + fileSize + ")";
+    }
+
 }
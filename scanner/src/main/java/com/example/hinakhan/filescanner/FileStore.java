@@ -0,0 +1,205 @@
+package com.example.hinakhan.filescanner;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Compact store of file names and sizes, without an object per file:
+ *  Every file is an int and a long: the offset of its name and its size.
+ *  Names are UTF-8 bytes appended to one shared byte arena, each after its length as a varint.
+ * Callers keep the directory of every file, like WatchedTree does in its own directories.
+ *
+ * Ids stay valid until removed, ids of removed files are reused by later ones.
+ * Names of removed files are garbage in the arena, compacted once it holds more garbage than names.
+ * Not thread safe.
+ */
+public class FileStore {
+
+    private static final int FREE = -1; //Marks removed ids in the name array
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private byte[] arena = new byte[4096]; //Length prefixed names of all files
+    private int arenaLength; //Bytes used in arena
+    private int garbage; //Bytes of removed names in arena
+
+    private int[] fileName = new int[1024]; //Offset of the name of every file in arena, FREE for removed ones
+    private long[] fileSize = new long[1024]; //Size of every file
+    private int fileCount; //File ids used, including removed ones
+    private int[] freeFiles = new int[16]; //Ids of removed files
+    private int freeFileCount; //Ids in freeFiles
+
+    /**
+     * Adds a file.
+     * @param name
+     * @param size
+     * @return Id of the file.
+     */
+    public int addFile(String name, long size) {
+        int id;
+        if (freeFileCount > 0) {
+            id = freeFiles[--freeFileCount];
+        } else {
+            if (fileCount == fileName.length) {
+                fileName = Arrays.copyOf(fileName, fileCount * 2);
+                fileSize = Arrays.copyOf(fileSize, fileName.length);
+            }
+            id = fileCount++;
+        }
+        fileName[id] = appendName(name);
+        fileSize[id] = size;
+        return id;
+    }
+
+    /**
+     * Removes a file, its id may be reused.
+     * @param file
+     */
+    public void removeFile(int file) {
+        checkFile(file);
+        garbage += getEncodedLength(fileName[file]);
+        fileName[file] = FREE;
+        if (freeFileCount == freeFiles.length) {
+            freeFiles = Arrays.copyOf(freeFiles, freeFileCount * 2);
+        }
+        freeFiles[freeFileCount++] = file;
+        compactIfWasteful();
+    }
+
+    /**
+     * Number of files held.
+     * @return
+     */
+    public int getFileCount() {
+        return fileCount - freeFileCount;
+    }
+
+    /**
+     * Get file name.
+     * @param file
+     * @return
+     */
+    public String getFileName(int file) {
+        checkFile(file);
+        return decodeName(fileName[file]);
+    }
+
+    /**
+     * Get file size.
+     * @param file
+     * @return
+     */
+    public long getFileSize(int file) {
+        checkFile(file);
+        return fileSize[file];
+    }
+
+    /**
+     * Set file size.
+     * @param file
+     * @param size
+     */
+    public void setFileSize(int file, long size) {
+        checkFile(file);
+        fileSize[file] = size;
+    }
+
+    /**
+     * Bytes held by the arrays of the store, an estimate of its memory footprint.
+     * @return
+     */
+    public long getMemoryBytes() {
+        return arena.length + 4L * (fileName.length + freeFiles.length) + 8L * fileSize.length;
+    }
+
+    private int appendName(String name) {
+        byte[] bytes = name.getBytes(UTF_8);
+        int required = arenaLength + 5 + bytes.length;
+        if (required > arena.length) {
+            if (garbage > 0) {
+                compact();
+                required = arenaLength + 5 + bytes.length;
+            }
+            if (required > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(required, arena.length * 2));
+            }
+        }
+        int offset = arenaLength;
+        int length = bytes.length;
+        while (length > 0x7f) {
+            arena[arenaLength++] = (byte) (length & 0x7f | 0x80);
+            length >>>= 7;
+        }
+        arena[arenaLength++] = (byte) length;
+        System.arraycopy(bytes, 0, arena, arenaLength, bytes.length);
+        arenaLength += bytes.length;
+        return offset;
+    }
+
+    private String decodeName(int offset) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = arena[offset++];
+            length |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return new String(arena, offset, length, UTF_8);
+    }
+
+    /**
+     * Bytes of a name in the arena, with its length.
+     */
+    private int getEncodedLength(int offset) {
+        int start = offset;
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = arena[offset++];
+            length |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return offset - start + length;
+    }
+
+    private void compactIfWasteful() {
+        if (garbage > 4096 && garbage > arenaLength / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Copies the names still referenced into a new arena, dropping the garbage.
+     */
+    private void compact() {
+        byte[] compacted = new byte[Math.max(4096, (arenaLength - garbage) * 2)];
+        int length = 0;
+        for (int i = 0; i < fileCount; i++) {
+            if (fileName[i] != FREE) {
+                int start = length;
+                length = move(fileName[i], compacted, length);
+                fileName[i] = start;
+            }
+        }
+        arena = compacted;
+        arenaLength = length;
+        garbage = 0;
+    }
+
+    /**
+     * Copies a name to a new arena.
+     * @return End of the name in the new arena.
+     */
+    private int move(int offset, byte[] to, int length) {
+        int encodedLength = getEncodedLength(offset);
+        System.arraycopy(arena, offset, to, length, encodedLength);
+        return length + encodedLength;
+    }
+
+    private void checkFile(int file) {
+        if (file < 0 || file >= fileCount || fileName[file] == FREE) {
+            throw new IllegalArgumentException("No file with id " + file);
+        }
+    }
+}
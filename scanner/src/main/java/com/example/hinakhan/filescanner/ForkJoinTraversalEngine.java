@@ -0,0 +1,286 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Traversal engine walking directories in parallel on a work-stealing ForkJoinPool.
+ * Every directory with at least inlineThreshold entries forks one subtask per
+ * subdirectory, smaller directories recurse inline. Each worker thread accumulates
+ * into its own ScanStatistics shard, shards are merged once the traversal is done.
+ * Subtree totals are reported by whichever worker finishes the last directory of a subtree.
+ *
+ * The calling thread waits for the workers while polling for cancellation. Once cancelled,
+ * workers get ABANDON_AFTER_MILLIS to notice it. A worker still blocked after that, like in
+ * the listing of a huge directory, is abandoned: shards are merged under their lock, and the
+ * shard of a worker holding its lock is left out rather than read while it changes. Its
+ * directories are then reported by ScanStatistics.getUnscannedDirectories().
+ * Requires API level 21.
+ */
+public class ForkJoinTraversalEngine extends AbstractTraversalEngine {
+
+    public static int DEFAULT_INLINE_THRESHOLD = 16; //Min entries in a directory to fork its subdirectories
+    public static long POLL_MILLIS = 50; //Time between cancellation checks of the waiting thread
+    public static long ABANDON_AFTER_MILLIS = 500; //Time workers get to stop once cancelled
+
+    private final int parallelism; //Number of worker threads
+    private final int inlineThreshold; //Min entries in a directory to fork its subdirectories
+
+    /**
+     * Default constructor, uses the java.io backend and one worker per available processor.
+     */
+    public ForkJoinTraversalEngine() {
+        this(new FileScanBackend(), Runtime.getRuntime().availableProcessors(), DEFAULT_INLINE_THRESHOLD);
+    }
+
+    /**
+     * Constructor with parameters.
+     * @param backend Backend used to list directories, shared by all workers.
+     * @param parallelism Number of worker threads.
+     * @param inlineThreshold Min entries in a directory to fork its subdirectories.
+     */
+    public ForkJoinTraversalEngine(ScanBackend backend, int parallelism, int inlineThreshold) {
+        super(backend);
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.inlineThreshold = inlineThreshold;
+    }
+
+    /**
+     * Number of worker threads.
+     * @return
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Min entries in a directory to fork its subdirectories.
+     * @return
+     */
+    public int getInlineThreshold() {
+        return inlineThreshold;
+    }
+
+    @Override
+    public ScanStatistics traverse(File[] roots, TraversalCallback callback) {
+        startTraversal(roots, parallelism);
+        Traversal traversal = new Traversal(callback);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<DirectoryTask> tasks = new ArrayList<DirectoryTask>(roots.length);
+            for (File root : roots) {
+                tasks.add(new DirectoryTask(traversal, createRootNode(root, roots.length)));
+            }
+            await(pool.submit(new RootTask(tasks)), traversal);
+        } finally {
+            pool.shutdownNow();
+        }
+        return traversal.mergeShards();
+    }
+
+    /**
+     * Waits until the task is done, or until workers had ABANDON_AFTER_MILLIS to stop after cancellation.
+     */
+    private static void await(ForkJoinTask<Void> task, Traversal traversal) {
+        try {
+            while (true) {
+                try {
+                    task.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    if (traversal.isCancelled()) {
+                        break;
+                    }
+                }
+            }
+            try {
+                task.get(ABANDON_AFTER_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                //Workers blocked in the backend, leave them behind
+            }
+        } catch (InterruptedException e) {
+            traversal.cancelled = true;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * State shared by all tasks of one traversal.
+     */
+    private static class Traversal {
+
+        private final TraversalCallback callback;
+        private final List<Shard> shards = new ArrayList<Shard>();
+        private final ThreadLocal<Shard> shard = new ThreadLocal<Shard>() {
+            @Override
+            protected Shard initialValue() {
+                Shard shard = new Shard();
+                synchronized (shards) {
+                    shards.add(shard);
+                }
+                return shard;
+            }
+        };
+        private volatile boolean cancelled;
+
+        Traversal(TraversalCallback callback) {
+            this.callback = callback;
+        }
+
+        /**
+         * Checks for cancellation, remembering it so all workers stop promptly.
+         * @return
+         */
+        boolean isCancelled() {
+            if (!cancelled && callback.isCancelled()) {
+                cancelled = true;
+            }
+            return cancelled;
+        }
+
+        /**
+         * Merges and closes the shards whose workers don't hold them, those are abandoned.
+         * @return
+         */
+        ScanStatistics mergeShards() {
+            ScanStatistics statistics = new ScanStatistics();
+            boolean abandoned = false;
+            synchronized (shards) {
+                for (Shard shard : shards) {
+                    if (shard.lock.tryLock()) {
+                        try {
+                            shard.closed = true;
+                            statistics.merge(shard.statistics);
+                        } finally {
+                            shard.lock.unlock();
+                        }
+                    } else {
+                        abandoned = true;
+                    }
+                }
+            }
+            if (cancelled || abandoned) {
+                statistics.setCompletedScan(false);
+            }
+            return statistics;
+        }
+    }
+
+    /**
+     * Statistics of one worker thread, locked by the worker while it scans into them.
+     */
+    private static class Shard {
+
+        private final ScanStatistics statistics = new ScanStatistics();
+        private final ReentrantLock lock = new ReentrantLock();
+        private boolean closed; //Merged, workers must not add to it anymore. Guarded by lock.
+    }
+
+    /**
+     * Task forking one subtask per root directory.
+     */
+    private static class RootTask extends RecursiveAction {
+
+        private final List<DirectoryTask> tasks;
+
+        RootTask(List<DirectoryTask> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Visitor of one task, reporting to the shared traversal state.
+     */
+    private static class TaskVisitor extends DirectoryVisitor {
+
+        private final Traversal traversal;
+
+        TaskVisitor(Traversal traversal) {
+            this.traversal = traversal;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return traversal.isCancelled();
+        }
+    }
+
+    /**
+     * Task traversing one directory.
+     */
+    private class DirectoryTask extends RecursiveAction {
+
+        private final Traversal traversal;
+        private final DirectoryNode node;
+
+        DirectoryTask(Traversal traversal, DirectoryNode node) {
+            this.traversal = traversal;
+            this.node = node;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subtasks = new ArrayList<DirectoryTask>();
+            Shard shard = traversal.shard.get();
+            shard.lock.lock();
+            try {
+                if (shard.closed) {
+                    //Traversal was abandoned and merged without this worker
+                    return;
+                }
+                traverseDirectory(node, shard.statistics, new TaskVisitor(traversal), subtasks);
+            } finally {
+                shard.lock.unlock();
+            }
+            invokeAll(subtasks);
+        }
+
+        /**
+         * Traverses directory, inline for small directories, collecting subtasks for big ones.
+         * @param node
+         * @param shard Statistics of the current worker thread.
+         * @param visitor
+         * @param subtasks
+         */
+        private void traverseDirectory(DirectoryNode node, ScanStatistics shard, TaskVisitor visitor, List<DirectoryTask> subtasks) {
+            if (traversal.isCancelled()) {
+                return;
+            }
+
+            List<DirectoryNode> subdirectories = scanDirectory(node, shard, visitor);
+            boolean fork = visitor.getEntries() >= inlineThreshold;
+            for (DirectoryNode subdirectory : subdirectories) {
+                if (fork) {
+                    subtasks.add(new DirectoryTask(traversal, subdirectory));
+                } else {
+                    traverseDirectory(subdirectory, shard, visitor, subtasks);
+                }
+            }
+        }
+    }
+}
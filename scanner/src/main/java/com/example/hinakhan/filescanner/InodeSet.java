@@ -0,0 +1,136 @@
+package com.example.hinakhan.filescanner;
+
+/**
+ * Set of (device, inode) pairs in primitive open-addressing tables, 16 bytes per slot
+ * without any per-entry objects. Split into independently locked stripes so parallel
+ * workers rarely contend, the stripe is picked by the high bits of the hash and the
+ * slot by the low bits.
+ */
+public class InodeSet {
+
+    private static final int INITIAL_STRIPE_CAPACITY = 256; //Must be a power of two
+
+    private final Stripe[] stripes;
+    private final int stripeShift; //Shift selecting the stripe from the hash
+
+    /**
+     * Constructor with parameters.
+     * @param concurrency Expected number of threads adding at the same time, rounded up to a power of two.
+     */
+    public InodeSet(int concurrency) {
+        int count = Integer.highestOneBit(Math.max(1, concurrency * 4 - 1));
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        stripeShift = 32 - Integer.numberOfTrailingZeros(count);
+    }
+
+    /**
+     * Adds a pair if it is not in the set.
+     * @param device
+     * @param inode
+     * @return Returns true if the pair was added, false if it was seen before.
+     */
+    public boolean add(long device, long inode) {
+        int hash = hash(device, inode);
+        Stripe stripe = stripes.length == 1 ? stripes[0] : stripes[hash >>> stripeShift];
+        synchronized (stripe) {
+            return stripe.add(device, inode, hash);
+        }
+    }
+
+    /**
+     * Is a pair in the set.
+     * @param device
+     * @param inode
+     * @return
+     */
+    public boolean contains(long device, long inode) {
+        int hash = hash(device, inode);
+        Stripe stripe = stripes.length == 1 ? stripes[0] : stripes[hash >>> stripeShift];
+        synchronized (stripe) {
+            return stripe.find(device, inode, hash) >= 0;
+        }
+    }
+
+    /**
+     * Number of pairs in the set.
+     * @return
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    private static int hash(long device, long inode) {
+        long h = inode * 0x9E3779B97F4A7C15L + device;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * One stripe, a linear probing table. Slot i is free when used[i] is false.
+     */
+    private static class Stripe {
+
+        private long[] devices = new long[INITIAL_STRIPE_CAPACITY];
+        private long[] inodes = new long[INITIAL_STRIPE_CAPACITY];
+        private boolean[] used = new boolean[INITIAL_STRIPE_CAPACITY];
+        private int size;
+
+        boolean add(long device, long inode, int hash) {
+            int slot = find(device, inode, hash);
+            if (slot >= 0) {
+                return false;
+            }
+            slot = ~slot;
+            devices[slot] = device;
+            inodes[slot] = inode;
+            used[slot] = true;
+            if (++size * 2 > used.length) {
+                resize();
+            }
+            return true;
+        }
+
+        /**
+         * Slot holding the pair, or the complement of the free slot to insert it.
+         */
+        int find(long device, long inode, int hash) {
+            int mask = used.length - 1;
+            int slot = hash & mask;
+            while (used[slot]) {
+                if (inodes[slot] == inode && devices[slot] == device) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return ~slot;
+        }
+
+        private void resize() {
+            long[] oldDevices = devices;
+            long[] oldInodes = inodes;
+            boolean[] oldUsed = used;
+
+            devices = new long[oldUsed.length * 2];
+            inodes = new long[devices.length];
+            used = new boolean[devices.length];
+            for (int i = 0; i < oldUsed.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = ~find(oldDevices[i], oldInodes[i], hash(oldDevices[i], oldInodes[i]));
+                    devices[slot] = oldDevices[i];
+                    inodes[slot] = oldInodes[i];
+                    used[slot] = true;
+                }
+            }
+        }
+    }
+}
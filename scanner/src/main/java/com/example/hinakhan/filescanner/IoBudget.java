@@ -0,0 +1,73 @@
+package com.example.hinakhan.filescanner;
+
+/**
+ * Limits the rate at which a scan reads directory entries, so a background scan doesn't
+ * compete with foreground apps for storage. Thread safe, shared by all scanner threads.
+ *
+ * Every listed directory spends its number of entries after it was read. The budget keeps the
+ * time at which the entries spent so far are paid off at the configured rate; a thread spending
+ * ahead of that time by more than MAX_BURST_MILLIS waits for the difference. A scan may run at
+ * full speed for up to MAX_BURST_MILLIS worth of entries, then settles at the configured rate.
+ */
+public class IoBudget {
+
+    public static long MAX_BURST_MILLIS = 250; //Entries spent without waiting after an idle period
+    public static long MAX_SLEEP_MILLIS = 20; //Longest wait between cancellation checks
+
+    private final long entriesPerSecond; //Configured rate
+    private long paidOffAt; //System.nanoTime() at which the entries spent so far are paid off
+
+    /**
+     * Constructor with parameters.
+     * @param entriesPerSecond Directory entries read per second, files and subdirectories alike.
+     */
+    public IoBudget(long entriesPerSecond) {
+        if (entriesPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + entriesPerSecond);
+        }
+        this.entriesPerSecond = entriesPerSecond;
+        this.paidOffAt = System.nanoTime();
+    }
+
+    /**
+     * Directory entries read per second.
+     * @return
+     */
+    public long getEntriesPerSecond() {
+        return entriesPerSecond;
+    }
+
+    /**
+     * Spends entries and waits until the rate allows reading more, or the scan is cancelled.
+     * @param entries Entries read since the last call of this thread.
+     * @param callback Checked every MAX_SLEEP_MILLIS while waiting.
+     */
+    public void spend(long entries, TraversalCallback callback) {
+        long deadline = System.nanoTime() + spend(entries, System.nanoTime());
+        long waitNanos;
+        while ((waitNanos = deadline - System.nanoTime()) > 0 && !callback.isCancelled()) {
+            try {
+                Thread.sleep(Math.max(1, Math.min(MAX_SLEEP_MILLIS, waitNanos / 1000000)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Spends entries without waiting.
+     * @param entries
+     * @param now Current System.nanoTime().
+     * @return Nanoseconds to wait before reading more entries, zero if none.
+     */
+    synchronized long spend(long entries, long now) {
+        //Credit of an idle period is limited to one burst
+        long burstNanos = MAX_BURST_MILLIS * 1000000;
+        if (now - burstNanos - paidOffAt > 0) {
+            paidOffAt = now - burstNanos;
+        }
+        paidOffAt += entries * 1000000000L / entriesPerSecond;
+        return Math.max(0, paidOffAt - now);
+    }
+}
@@ -0,0 +1,707 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Searchable index of the names and paths of scanned files, filled by the traversal workers while scanning.
+ * Storage is compact, without an object per file:
+ *  Every distinct name is stored once, its characters appended to one shared char array.
+ *  Every directory is stored once as its parent and its name, so paths share their prefixes.
+ *  Every file is three ints: its directory, its name and the previous file with the same name.
+ * Names are indexed by their lowercase trigrams. A substring query intersects the posting lists of
+ * its trigrams and only compares the names left, a glob is narrowed the same way by the longest
+ * literal of its last segment.
+ * The names of every directory can be read back, so a rescan reusing an unchanged directory from
+ * its ScanIndex indexes its files without listing it.
+ * Every traversal worker buffers the files it adds and merges them into the index once per BATCH_FILES,
+ * so workers only contend for the index once per batch. Queries merge the buffered files first.
+ * Thread safe, queries may run while a scan still adds files.
+ */
+public class NameIndex {
+
+    public static final int DEFAULT_MAX_FILES = 4 << 20;
+    public static int BATCH_FILES = 512; //Files buffered by a worker before they are merged into the index
+    private static final int MAGIC = 0x46534e58; //"FSNX"
+    private static final int VERSION = 1;
+    private static final int ROOT = 0; //Directory with the empty path, holds the files directly in a single root
+    private static final int NONE = -1; //No file
+    private static final String[] NO_NAMES = new String[0];
+
+    private final int maxFiles; //Files added beyond are dropped
+    private boolean truncated; //Files were dropped at maxFiles
+
+    private char[] nameChars = new char[4096]; //Characters of all distinct names, one after another
+    private int nameCharCount; //Characters used in nameChars
+    private int[] nameStart = new int[257]; //Start of every name in nameChars, followed by the end of the last one
+    private int nameCount; //Number of distinct names
+    private int[] nameTable = new int[512]; //Open addressing table of name ids plus one, zero for free slots
+    private int[] nameLastFile = new int[256]; //Last file added with every name, NONE for names of directories only
+    private final Map<Long, Postings> trigrams = new HashMap<Long, Postings>(); //Ids of the names holding every trigram
+
+    private int[] dirParent = new int[64]; //Parent of every directory
+    private int[] dirName = new int[64]; //Name of every directory
+    private int dirCount; //Number of directories
+    private Map<String, Integer> dirIds; //Directory ids by path while adding, rebuilt after loading
+    private long dirPathChars; //Characters of the paths held by dirIds
+
+    private int[] fileDir = new int[1024]; //Directory of every file
+    private int[] fileName = new int[1024]; //Name of every file
+    private int[] filePrevious = new int[1024]; //Previous file with the same name, NONE for the first
+    private int fileCount; //Number of files
+    private int[] dirFirstFile; //First file of every directory, built on demand and dropped when files are added
+    private int[] fileNextInDir; //Next file of the same directory, NONE for the last
+
+    private final List<NameBuffer> buffers = new ArrayList<NameBuffer>(); //Buffers of all workers, guarded by itself
+    private final ThreadLocal<NameBuffer> buffer = new ThreadLocal<NameBuffer>() {
+        @Override
+        protected NameBuffer initialValue() {
+            NameBuffer created = new NameBuffer();
+            synchronized (buffers) {
+                buffers.add(created);
+            }
+            return created;
+        }
+    };
+
+    /**
+     * Default constructor, indexes up to DEFAULT_MAX_FILES files.
+     */
+    public NameIndex() {
+        this(DEFAULT_MAX_FILES);
+    }
+
+    /**
+     * Constructor with parameters.
+     * @param maxFiles Bounds memory, files added beyond are dropped and the index is flagged as truncated.
+     */
+    public NameIndex(int maxFiles) {
+        if (maxFiles < 0) {
+            throw new IllegalArgumentException("Maximum must not be negative: " + maxFiles);
+        }
+        this.maxFiles = maxFiles;
+        dirIds = new HashMap<String, Integer>();
+        addDirectory(NONE, intern(""));
+        dirIds.put("", ROOT);
+    }
+
+    /**
+     * Adds a scanned file, called by traversal workers.
+     * @param dirPath Path of its directory, as reported by the traversal.
+     * @param name
+     */
+    public void addFile(String dirPath, String name) {
+        NameBuffer worker = buffer.get();
+        if (worker.add(dirPath, name)) {
+            //Lock order is the index, then a buffer, like queries merging all buffers
+            synchronized (this) {
+                worker.merge();
+            }
+        }
+    }
+
+    /**
+     * Merges the files buffered by all workers, called by every query before reading the index.
+     */
+    private void flush() {
+        synchronized (buffers) {
+            for (NameBuffer each : buffers) {
+                each.merge();
+            }
+        }
+    }
+
+    private void appendFile(int dir, int id) {
+        if (nameLastFile[id] == NONE) {
+            indexTrigrams(id);
+        }
+        if (fileCount == fileDir.length) {
+            int capacity = Math.min(Math.max(fileCount * 2, 1024), Math.max(maxFiles, 1024));
+            fileDir = Arrays.copyOf(fileDir, capacity);
+            fileName = Arrays.copyOf(fileName, capacity);
+            filePrevious = Arrays.copyOf(filePrevious, capacity);
+        }
+        fileDir[fileCount] = dir;
+        fileName[fileCount] = id;
+        filePrevious[fileCount] = nameLastFile[id];
+        nameLastFile[id] = fileCount;
+        fileCount++;
+        dirFirstFile = null;
+        fileNextInDir = null;
+    }
+
+    /**
+     * Names of the files indexed in a directory, to index them again when a rescan reuses the directory.
+     * @param dirPath Path of the directory, as reported by the traversal.
+     * @return Returns an empty array if the index holds no files of the directory.
+     */
+    public synchronized String[] getFileNames(String dirPath) {
+        flush();
+        if (dirIds == null) {
+            rebuildDirectoryIds();
+        }
+        Integer dir = dirIds.get(dirPath);
+        if (dir == null) {
+            return NO_NAMES;
+        }
+        if (dirFirstFile == null) {
+            //Chain the files of every directory, in the order they were added
+            dirFirstFile = new int[dirCount];
+            Arrays.fill(dirFirstFile, NONE);
+            fileNextInDir = new int[fileCount];
+            for (int file = fileCount - 1; file >= 0; file--) {
+                fileNextInDir[file] = dirFirstFile[fileDir[file]];
+                dirFirstFile[fileDir[file]] = file;
+            }
+        }
+        int count = 0;
+        for (int file = dirFirstFile[dir]; file != NONE; file = fileNextInDir[file]) {
+            count++;
+        }
+        String[] names = new String[count];
+        int i = 0;
+        for (int file = dirFirstFile[dir]; file != NONE; file = fileNextInDir[file]) {
+            names[i++] = getName(fileName[file]);
+        }
+        return names;
+    }
+
+    /**
+     * Number of files indexed.
+     * @return
+     */
+    public synchronized int getFileCount() {
+        flush();
+        return fileCount;
+    }
+
+    /**
+     * Number of distinct names of files and directories.
+     * @return
+     */
+    public synchronized int getNameCount() {
+        flush();
+        return nameCount;
+    }
+
+    /**
+     * Number of directories, including the root.
+     * @return
+     */
+    public synchronized int getDirectoryCount() {
+        flush();
+        return dirCount;
+    }
+
+    /**
+     * Were files dropped because the index was full.
+     * @return
+     */
+    public synchronized boolean isTruncated() {
+        flush();
+        return truncated;
+    }
+
+    /**
+     * Estimated heap used by the index: its arrays, the posting lists, the paths of directories and the worker buffers.
+     * @return
+     */
+    public synchronized long getMemoryBytes() {
+        flush();
+        long bytes = 2L * nameChars.length + 4L * (nameStart.length + nameTable.length + nameLastFile.length)
+                + 4L * (dirParent.length + dirName.length)
+                + 4L * (fileDir.length + fileName.length + filePrevious.length);
+        if (dirFirstFile != null) {
+            bytes += 4L * (dirFirstFile.length + fileNextInDir.length);
+        }
+        for (Postings postings : trigrams.values()) {
+            //Map entry, boxed key, holder and array
+            bytes += 32 + 24 + 24 + 16 + 4L * postings.ids.length;
+        }
+        if (dirIds != null) {
+            //Map entry, boxed id, string and its characters
+            bytes += 72L * dirIds.size() + 2 * dirPathChars;
+        }
+        synchronized (buffers) {
+            bytes += 8L * BATCH_FILES * buffers.size();
+        }
+        return bytes;
+    }
+
+    /**
+     * Finds files by name or path.
+     * A query holding '*', '?' or '/' is a glob like ScanFilter uses: matched against the path of
+     * the file if it holds a '/', against the name otherwise. Any other query matches names
+     * containing it, ignoring case.
+     * @param query
+     * @param limit Maximum number of paths returned.
+     * @return Paths of the files found, starting with the path of their directory as scanned.
+     */
+    public synchronized List<String> find(String query, int limit) {
+        flush();
+        List<String> paths = new ArrayList<String>();
+        if (query.length() == 0 || limit <= 0) {
+            return paths;
+        }
+        boolean glob = query.indexOf('*') >= 0 || query.indexOf('?') >= 0 || query.indexOf('/') >= 0;
+        boolean matchPath = query.indexOf('/') >= 0;
+
+        //Narrow down by the longest literal, of the last segment for a glob
+        int literalStart = 0;
+        int literalEnd = query.length();
+        if (glob) {
+            literalEnd = literalStart;
+            for (int i = query.lastIndexOf('/') + 1, start = i; i <= query.length(); i++) {
+                if (i == query.length() || query.charAt(i) == '*' || query.charAt(i) == '?') {
+                    if (i - start > literalEnd - literalStart) {
+                        literalStart = start;
+                        literalEnd = i;
+                    }
+                    start = i + 1;
+                }
+            }
+        }
+        char[] literal = new char[literalEnd - literalStart];
+        for (int i = 0; i < literal.length; i++) {
+            literal[i] = Character.toLowerCase(query.charAt(literalStart + i));
+        }
+        int[] candidates = candidates(literal);
+
+        String[] dirPaths = matchPath ? new String[dirCount] : null;
+        int count = candidates != null ? candidates.length : nameCount;
+        for (int i = 0; i < count && paths.size() < limit; i++) {
+            int id = candidates != null ? candidates[i] : i;
+            if (nameLastFile[id] == NONE || !containsIgnoringCase(id, literal)) {
+                continue;
+            }
+            String name = getName(id);
+            if (glob && !matchPath && !ScanFilter.matches(query, "", 0, name, false)) {
+                continue;
+            }
+            for (int file = nameLastFile[id]; file != NONE && paths.size() < limit; file = filePrevious[file]) {
+                int dir = fileDir[file];
+                if (matchPath) {
+                    if (dirPaths[dir] == null) {
+                        dirPaths[dir] = getDirectoryPath(dir);
+                    }
+                    if (!ScanFilter.matches(query, dirPaths[dir], 0, name, false)) {
+                        continue;
+                    }
+                }
+                paths.add(getPath(file));
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Names holding every trigram of a lowercase literal, ascending.
+     * @return Returns null if the literal is too short to narrow down the names.
+     */
+    private int[] candidates(char[] literal) {
+        if (literal.length < 3) {
+            return null;
+        }
+        Postings[] lists = new Postings[literal.length - 2];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = trigrams.get(trigram(literal[i], literal[i + 1], literal[i + 2]));
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        //Intersect starting with the shortest list
+        Arrays.sort(lists, new Comparator<Postings>() {
+            @Override
+            public int compare(Postings a, Postings b) {
+                return a.size < b.size ? -1 : a.size > b.size ? 1 : 0;
+            }
+        });
+        int[] result = Arrays.copyOf(lists[0].ids, lists[0].size);
+        int size = result.length;
+        for (int i = 1; i < lists.length && size > 0; i++) {
+            int kept = 0;
+            for (int j = 0; j < size; j++) {
+                if (Arrays.binarySearch(lists[i].ids, 0, lists[i].size, result[j]) >= 0) {
+                    result[kept++] = result[j];
+                }
+            }
+            size = kept;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private boolean containsIgnoringCase(int id, char[] literal) {
+        int start = nameStart[id];
+        int last = nameStart[id + 1] - literal.length;
+        for (int i = start; i <= last; i++) {
+            int j = 0;
+            while (j < literal.length && Character.toLowerCase(nameChars[i + j]) == literal[j]) {
+                j++;
+            }
+            if (j == literal.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getName(int id) {
+        return new String(nameChars, nameStart[id], nameStart[id + 1] - nameStart[id]);
+    }
+
+    private String getPath(int file) {
+        String dirPath = getDirectoryPath(fileDir[file]);
+        String name = getName(fileName[file]);
+        return join(dirPath, name);
+    }
+
+    private String getDirectoryPath(int dir) {
+        if (dir == ROOT) {
+            return "";
+        }
+        String parent = getDirectoryPath(dirParent[dir]);
+        return join(parent, getName(dirName[dir]));
+    }
+
+    private static String join(String dirPath, String name) {
+        if (dirPath.length() == 0) {
+            return name;
+        }
+        if (dirPath.charAt(dirPath.length() - 1) == File.separatorChar) {
+            return dirPath + name;
+        }
+        return dirPath + File.separatorChar + name;
+    }
+
+    /**
+     * Id of a directory, adding it and its missing parents.
+     */
+    private int directoryId(String path) {
+        if (dirIds == null) {
+            rebuildDirectoryIds();
+        }
+        Integer id = dirIds.get(path);
+        if (id != null) {
+            return id;
+        }
+        int separator = path.lastIndexOf(File.separatorChar);
+        int dir;
+        if (separator < 0 || path.length() == 1) {
+            dir = addDirectory(ROOT, intern(path));
+        } else {
+            //An absolute path has "/" as its topmost parent
+            int parent = directoryId(path.substring(0, Math.max(separator, 1)));
+            dir = addDirectory(parent, intern(path.substring(separator + 1)));
+        }
+        dirIds.put(path, dir);
+        dirPathChars += path.length();
+        return dir;
+    }
+
+    private int addDirectory(int parent, int name) {
+        if (dirCount == dirParent.length) {
+            dirParent = Arrays.copyOf(dirParent, dirCount * 2);
+            dirName = Arrays.copyOf(dirName, dirCount * 2);
+        }
+        dirParent[dirCount] = parent;
+        dirName[dirCount] = name;
+        return dirCount++;
+    }
+
+    private void rebuildDirectoryIds() {
+        dirIds = new HashMap<String, Integer>(dirCount * 4 / 3 + 1);
+        dirPathChars = 0;
+        for (int dir = 0; dir < dirCount; dir++) {
+            String path = getDirectoryPath(dir);
+            dirIds.put(path, dir);
+            dirPathChars += path.length();
+        }
+    }
+
+    /**
+     * Id of a name, appending it to the names if it is new.
+     */
+    private int intern(String name) {
+        int mask = nameTable.length - 1;
+        for (int slot = spread(name.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int id = nameTable[slot] - 1;
+            if (id < 0) {
+                id = addName(name);
+                nameTable[slot] = id + 1;
+                if (nameCount * 2 > nameTable.length) {
+                    rehashNames(nameTable.length * 2);
+                }
+                return id;
+            }
+            if (nameEquals(id, name)) {
+                return id;
+            }
+        }
+    }
+
+    private int addName(String name) {
+        int length = name.length();
+        if (nameCharCount + length > nameChars.length) {
+            nameChars = Arrays.copyOf(nameChars, Math.max(nameChars.length * 2, nameCharCount + length));
+        }
+        name.getChars(0, length, nameChars, nameCharCount);
+        nameCharCount += length;
+        if (nameCount == nameLastFile.length) {
+            nameLastFile = Arrays.copyOf(nameLastFile, nameCount * 2);
+            nameStart = Arrays.copyOf(nameStart, nameCount * 2 + 1);
+        }
+        nameStart[nameCount + 1] = nameCharCount;
+        nameLastFile[nameCount] = NONE;
+        return nameCount++;
+    }
+
+    private boolean nameEquals(int id, String name) {
+        int start = nameStart[id];
+        if (nameStart[id + 1] - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (nameChars[start + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehashNames(int capacity) {
+        nameTable = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < nameCount; id++) {
+            //Same hash as String.hashCode() of the name
+            int hash = 0;
+            for (int i = nameStart[id]; i < nameStart[id + 1]; i++) {
+                hash = 31 * hash + nameChars[i];
+            }
+            int slot = spread(hash) & mask;
+            while (nameTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            nameTable[slot] = id + 1;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void indexTrigrams(int id) {
+        int end = nameStart[id + 1];
+        for (int i = nameStart[id]; i + 3 <= end; i++) {
+            Long key = trigram(Character.toLowerCase(nameChars[i]), Character.toLowerCase(nameChars[i + 1]),
+                    Character.toLowerCase(nameChars[i + 2]));
+            Postings postings = trigrams.get(key);
+            if (postings == null) {
+                postings = new Postings();
+                trigrams.put(key, postings);
+            }
+            postings.add(id);
+        }
+    }
+
+    private static long trigram(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    /**
+     * Saves the index, replacing the file atomically.
+     * @param file
+     * @throws IOException
+     */
+    public synchronized void save(File file) throws IOException {
+        flush();
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(truncated);
+            ScanStatisticsCodec.writeVarLong(out, nameCount);
+            for (int id = 0; id < nameCount; id++) {
+                ScanStatisticsCodec.writeVarLong(out, nameStart[id + 1] - nameStart[id]);
+                for (int i = nameStart[id]; i < nameStart[id + 1]; i++) {
+                    ScanStatisticsCodec.writeVarLong(out, nameChars[i]);
+                }
+            }
+            ScanStatisticsCodec.writeVarLong(out, dirCount);
+            for (int dir = 1; dir < dirCount; dir++) {
+                ScanStatisticsCodec.writeVarLong(out, dirParent[dir]);
+                ScanStatisticsCodec.writeVarLong(out, dirName[dir]);
+            }
+            ScanStatisticsCodec.writeVarLong(out, fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                ScanStatisticsCodec.writeVarLong(out, fileDir[i]);
+                ScanStatisticsCodec.writeVarLong(out, fileName[i]);
+            }
+        } finally {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * Loads an index saved after a previous scan, rebuilding its trigrams.
+     * @param file
+     * @return Returns the loaded index, or null if the file is missing or unreadable.
+     */
+    public static NameIndex load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            boolean truncated = in.readBoolean();
+            String[] names = new String[readId(in, Integer.MAX_VALUE)];
+            StringBuilder name = new StringBuilder();
+            for (int id = 0; id < names.length; id++) {
+                name.setLength(0);
+                for (int length = readId(in, Integer.MAX_VALUE); length > 0; length--) {
+                    name.append((char) readId(in, Character.MAX_VALUE + 1));
+                }
+                names[id] = name.toString();
+            }
+            NameIndex index = new NameIndex();
+            for (String each : names) {
+                index.intern(each);
+            }
+            if (index.nameCount != names.length) {
+                throw new IOException("Duplicate names");
+            }
+            int dirCount = readId(in, Integer.MAX_VALUE);
+            for (int dir = 1; dir < dirCount; dir++) {
+                int parent = readId(in, dir);
+                index.addDirectory(parent, readId(in, names.length));
+            }
+            //Paths of directories are only needed to add more files, they are rebuilt then
+            index.dirIds = null;
+            int fileCount = readId(in, Integer.MAX_VALUE);
+            if (fileCount > index.maxFiles) {
+                throw new IOException("Too many files " + fileCount);
+            }
+            for (int i = 0; i < fileCount; i++) {
+                int dir = readId(in, dirCount);
+                index.appendFile(dir, readId(in, names.length));
+            }
+            index.truncated = truncated;
+            return index;
+        } catch (IOException e) {
+            //Corrupt or truncated index, search needs a new scan
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    //Nothing left to do
+                }
+            }
+        }
+    }
+
+    private static int readId(DataInputStream in, int limit) throws IOException {
+        long id = ScanStatisticsCodec.readVarLong(in);
+        if (id < 0 || id >= limit) {
+            throw new IOException("Malformed id " + id);
+        }
+        return (int) id;
+    }
+
+    /**
+     * Ascending ids of the names holding a trigram.
+     */
+    private static class Postings {
+
+        private int[] ids = new int[2]; //Name ids, ascending
+        private int size; //Ids used
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                //A name gaining its first file after earlier names, or a trigram repeated in a name
+                int position = Arrays.binarySearch(ids, 0, size, id);
+                if (position >= 0) {
+                    return;
+                }
+                insert(-position - 1, id);
+            } else {
+                insert(size, id);
+            }
+        }
+
+        private void insert(int position, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+    }
+
+    /**
+     * Files added by one worker and not merged into the index yet.
+     */
+    private class NameBuffer {
+
+        private String[] dirPaths = new String[BATCH_FILES]; //Directory of every buffered file
+        private String[] names = new String[BATCH_FILES]; //Name of every buffered file
+        private int count; //Files buffered
+
+        /**
+         * @return Returns true if the buffer is full and must be merged.
+         */
+        synchronized boolean add(String dirPath, String name) {
+            dirPaths[count] = dirPath;
+            names[count] = name;
+            count++;
+            return count == dirPaths.length;
+        }
+
+        /**
+         * Adds the buffered files to the index, called holding the lock of the index.
+         */
+        synchronized void merge() {
+            //Files of a directory are added one after another, look up its id once
+            String lastPath = null;
+            int dir = ROOT;
+            for (int i = 0; i < count; i++) {
+                if (fileCount >= maxFiles) {
+                    truncated = true;
+                    break;
+                }
+                if (!dirPaths[i].equals(lastPath)) {
+                    lastPath = dirPaths[i];
+                    dir = directoryId(lastPath);
+                }
+                appendFile(dir, intern(names[i]));
+            }
+            Arrays.fill(dirPaths, 0, count, null);
+            Arrays.fill(names, 0, count, null);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+/**
+ * Backend using java.nio.file, reading all attributes of an entry with one lstat call.
+ * Devices, inodes and link counts are read through the "unix" attribute view where the
+ * JVM supports it, other platforms fall back to basic attributes without them.
+ * Symbolic links cost a second stat call for the attributes of their target.
+ * For the JVM only, java.nio.file is not available on Android.
+ */
+public class NioScanBackend implements ScanBackend {
+
+    private static final String UNIX_ATTRIBUTES = "unix:isDirectory,isSymbolicLink,size,lastModifiedTime,dev,ino,nlink";
+    private static final LinkOption[] NO_FOLLOW = {LinkOption.NOFOLLOW_LINKS};
+    private static final LinkOption[] FOLLOW = {};
+
+    private volatile boolean unixView = true; //Cleared when the unix view turns out to be unsupported
+
+    @Override
+    public boolean listDirectory(File dir, EntryVisitor visitor) {
+        DirectoryStream<Path> stream;
+        try {
+            stream = Files.newDirectoryStream(dir.toPath());
+        } catch (IOException e) {
+            return false;
+        } catch (SecurityException e) {
+            return false;
+        }
+
+        DirectoryEntry entry = new DirectoryEntry();
+        try {
+            for (Path path : stream) {
+                read(dir, path.getFileName().toString(), null, path, entry);
+                if (!visitor.visitEntry(entry)) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            //DirectoryIteratorException, directory became unreadable while listing
+            return false;
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                //Ignore
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean readEntry(File file, DirectoryEntry entry) {
+        return read(file.getParentFile(), file.getName(), file, file.toPath(), entry);
+    }
+
+    /**
+     * Fills in the attributes of an entry.
+     * @return Returns false if the entry could not be read.
+     */
+    private boolean read(File dir, String name, File file, Path path, DirectoryEntry entry) {
+        try {
+            if (unixView) {
+                try {
+                    readUnix(dir, name, file, path, entry);
+                    return true;
+                } catch (UnsupportedOperationException e) {
+                    unixView = false;
+                } catch (IllegalArgumentException e) {
+                    unixView = false;
+                }
+            }
+            readBasic(dir, name, file, path, entry);
+            return true;
+        } catch (IOException e) {
+            //Entry removed while scanning, count it as an empty file like java.io does
+            entry.set(dir, name, file, false, 0, 0);
+            return false;
+        }
+    }
+
+    private static void readUnix(File dir, String name, File file, Path path, DirectoryEntry entry) throws IOException {
+        Map<String, Object> attributes = Files.readAttributes(path, UNIX_ATTRIBUTES, NO_FOLLOW);
+        boolean symbolicLink = (Boolean) attributes.get("isSymbolicLink");
+        if (symbolicLink) {
+            try {
+                attributes = Files.readAttributes(path, UNIX_ATTRIBUTES, FOLLOW);
+            } catch (IOException e) {
+                //Dangling link, report the link itself as an empty file
+                entry.set(dir, name, file, false, 0, ((FileTime) attributes.get("lastModifiedTime")).toMillis(), true,
+                        DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN);
+                return;
+            }
+        }
+
+        boolean directory = (Boolean) attributes.get("isDirectory");
+        entry.set(dir, name, file, directory, directory ? 0 : (Long) attributes.get("size"),
+                ((FileTime) attributes.get("lastModifiedTime")).toMillis(), symbolicLink,
+                (Long) attributes.get("dev"), (Long) attributes.get("ino"), ((Number) attributes.get("nlink")).longValue());
+    }
+
+    private static void readBasic(File dir, String name, File file, Path path, DirectoryEntry entry) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, NO_FOLLOW);
+        boolean symbolicLink = attributes.isSymbolicLink();
+        if (symbolicLink) {
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class, FOLLOW);
+            } catch (IOException e) {
+                entry.set(dir, name, file, false, 0, attributes.lastModifiedTime().toMillis(), true,
+                        DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN);
+                return;
+            }
+        }
+
+        boolean directory = attributes.isDirectory();
+        entry.set(dir, name, file, directory, directory ? 0 : attributes.size(),
+                attributes.lastModifiedTime().toMillis(), symbolicLink,
+                DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN, DirectoryEntry.UNKNOWN);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watches a tree through java.nio.file.WatchService, backed by inotify on Linux.
+ * Every directory is registered for created, deleted and modified entries, a thread of the
+ * watcher reads the events and reports the directory of every signalled key. An OVERFLOW
+ * event reports lost changes below its directory.
+ */
+public class NioTreeWatcher extends TreeWatcher {
+
+    private final Map<WatchKey, String> paths = new ConcurrentHashMap<WatchKey, String>(); //Directory path of every key
+    private final Map<String, WatchKey> keys = new ConcurrentHashMap<String, WatchKey>(); //Key of every watched directory
+    private WatchService watchService; //Signals the keys, null until started
+
+    /**
+     * Constructor with parameters, queues up to ChangeQueue.DEFAULT_CAPACITY changed directories.
+     * @param tree Tree with the statistics of a completed scan attached.
+     */
+    public NioTreeWatcher(WatchedTree tree) {
+        this(tree, ChangeQueue.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor with parameters.
+     * @param tree Tree with the statistics of a completed scan attached.
+     * @param queueCapacity Max number of changed directories waiting.
+     */
+    public NioTreeWatcher(WatchedTree tree, int queueCapacity) {
+        super(tree, queueCapacity);
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        super.start();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readEvents();
+            }
+        }, "FileScanner-watch-events");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        synchronized (this) {
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    //Nothing to release anymore
+                }
+            }
+        }
+    }
+
+    @Override
+    protected boolean watchDirectory(String path, File dir) {
+        try {
+            WatchKey key = dir.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            paths.put(key, path);
+            keys.put(path, key);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } catch (ClosedWatchServiceException e) {
+            return false;
+        }
+    }
+
+    @Override
+    protected void unwatchDirectory(String path) {
+        WatchKey key = keys.remove(path);
+        if (key != null) {
+            paths.remove(key);
+            key.cancel();
+        }
+    }
+
+    /**
+     * Reports signalled keys until the watch service is closed.
+     */
+    private void readEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            boolean overflow = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                overflow |= event.kind() == StandardWatchEventKinds.OVERFLOW;
+            }
+            //Keys of directories registered a moment ago may not be mapped yet, their directory is listed again anyway
+            String path = paths.get(key);
+            if (path != null) {
+                if (overflow) {
+                    onOverflow(path);
+                } else {
+                    onChange(path);
+                }
+            }
+            if (!key.reset()) {
+                //Directory deleted, its parent drops it from the tree
+                paths.remove(key);
+            }
+        }
+    }
+}
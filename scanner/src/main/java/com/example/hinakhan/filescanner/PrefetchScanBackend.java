@@ -0,0 +1,131 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Backend serving listings read ahead of a scan, like the top level directories of a volume
+ * listed while the app starts. Every prefetched listing is replayed once, with the attributes
+ * read back then, as long as it is younger than the maximum age and its directory was not
+ * modified since. Everything else is listed by the wrapped backend.
+ * Thread safe, directories may be prefetched while a scan already runs.
+ */
+public class PrefetchScanBackend implements ScanBackend {
+
+    public static final long DEFAULT_MAX_AGE_MILLIS = 2 * 60 * 1000;
+
+    private final ScanBackend backend; //Lists everything not prefetched
+    private final long maxAgeMillis; //Age after which prefetched listings are listed again
+    private final Map<File, Listing> listings = new ConcurrentHashMap<File, Listing>(); //Prefetched listings not replayed yet, by directory
+    private final AtomicLong replayed = new AtomicLong(); //Number of listings served from the prefetch
+
+    /**
+     * Constructor with parameters, prefetched listings are replayed for DEFAULT_MAX_AGE_MILLIS.
+     * @param backend Backend reading directories.
+     */
+    public PrefetchScanBackend(ScanBackend backend) {
+        this(backend, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Constructor with parameters.
+     * @param backend Backend reading directories.
+     * @param maxAgeMillis Age after which a prefetched listing is no longer replayed.
+     */
+    public PrefetchScanBackend(ScanBackend backend, long maxAgeMillis) {
+        this.backend = backend;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Lists a directory and keeps its entries for the next scan.
+     * @param dir
+     * @return Returns the number of entries read, or -1 if the directory could not be listed.
+     */
+    public int prefetch(File dir) {
+        final Listing listing = new Listing(dir.lastModified(), System.currentTimeMillis());
+        boolean listed = backend.listDirectory(dir, new EntryVisitor() {
+            @Override
+            public boolean visitEntry(DirectoryEntry entry) {
+                DirectoryEntry copy = new DirectoryEntry();
+                copy.set(entry);
+                listing.entries.add(copy);
+                return true;
+            }
+        });
+        if (!listed) {
+            return -1;
+        }
+        listings.put(dir, listing);
+        return listing.entries.size();
+    }
+
+    /**
+     * Lists every subdirectory of a directory ahead of the scan, and the directory itself.
+     * @param dir
+     * @return Returns the number of directories prefetched.
+     */
+    public int prefetchTopLevel(File dir) {
+        if (prefetch(dir) < 0) {
+            return 0;
+        }
+        int prefetched = 1;
+        Listing listing = listings.get(dir);
+        if (listing != null) {
+            for (DirectoryEntry entry : listing.entries) {
+                if (entry.isDirectory() && !entry.isSymbolicLink() && prefetch(entry.getFile()) >= 0) {
+                    prefetched++;
+                }
+            }
+        }
+        return prefetched;
+    }
+
+    /**
+     * Number of listings served from the prefetch.
+     * @return
+     */
+    public long getReplayed() {
+        return replayed.get();
+    }
+
+    @Override
+    public boolean listDirectory(File dir, EntryVisitor visitor) {
+        Listing listing = listings.remove(dir);
+        if (listing == null || System.currentTimeMillis() - listing.listedAt > maxAgeMillis
+                || listing.lastModified == 0 || dir.lastModified() != listing.lastModified) {
+            return backend.listDirectory(dir, visitor);
+        }
+        replayed.incrementAndGet();
+        for (DirectoryEntry entry : listing.entries) {
+            if (!visitor.visitEntry(entry)) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean readEntry(File file, DirectoryEntry entry) {
+        return backend.readEntry(file, entry);
+    }
+
+    /**
+     * Entries of a prefetched directory.
+     */
+    private static class Listing {
+
+        private final long lastModified; //Modification time of the directory before it was listed
+        private final long listedAt; //Time of the listing
+        private final List<DirectoryEntry> entries = new ArrayList<DirectoryEntry>(); //Copies of the entries
+
+        Listing(long lastModified, long listedAt) {
+            this.lastModified = lastModified;
+            this.listedAt = listedAt;
+        }
+    }
+}
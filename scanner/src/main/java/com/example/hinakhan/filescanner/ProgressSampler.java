@@ -0,0 +1,123 @@
+package com.example.hinakhan.filescanner;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples ScanProgress at a fixed interval on its own thread and reports snapshots to a listener.
+ * Scanner threads never call the listener, so the number of progress messages only depends
+ * on the interval, not on the number of files. With a SnapshotPublisher, every sample also
+ * carries a snapshot of the statistics so far, so snapshots are copied at the same bounded rate.
+ */
+public class ProgressSampler {
+
+    private final ScanProgress progress;
+    private final ScanListener listener;
+    private final long intervalMillis;
+    private final SnapshotPublisher publisher; //Snapshots of the statistics, null if not collected
+    private ScheduledExecutorService executor;
+    private long lastFiles; //Files at the previous sample
+    private long lastTime; //Time of the previous sample
+
+    /**
+     * Constructor with parameters.
+     * @param progress Counters to sample.
+     * @param listener Receives snapshots on the sampler thread.
+     * @param intervalMillis Time between snapshots.
+     */
+    public ProgressSampler(ScanProgress progress, ScanListener listener, long intervalMillis) {
+        this(progress, listener, intervalMillis, null);
+    }
+
+    /**
+     * Constructor with parameters.
+     * @param progress Counters to sample.
+     * @param listener Receives snapshots on the sampler thread.
+     * @param intervalMillis Time between snapshots.
+     * @param publisher Statistics snapshots attached to every sample, may be null.
+     */
+    public ProgressSampler(ScanProgress progress, ScanListener listener, long intervalMillis, SnapshotPublisher publisher) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalMillis);
+        }
+        this.progress = progress;
+        this.listener = listener;
+        this.intervalMillis = intervalMillis;
+        this.publisher = publisher;
+    }
+
+    /**
+     * Start sampling.
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        lastTime = progress.getStartTime();
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ProgressSampler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                listener.onProgress(sample());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop sampling.
+     * @return Final snapshot.
+     */
+    public ProgressSnapshot stop() {
+        return stop(null);
+    }
+
+    /**
+     * Stop sampling.
+     * @param statistics Final statistics of the scan, attached instead of the latest published copies,
+     *                   which lag by a round. Null attaches the latest copies, like when the scan failed.
+     * @return Final snapshot.
+     */
+    public ProgressSnapshot stop(ScanStatistics statistics) {
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+        if (statistics != null && publisher != null) {
+            return sample(new StatisticsSnapshot(statistics, ScanStatistics.MAX_FREQUENT_FILE_EXTENSIONS));
+        }
+        return sample();
+    }
+
+    /**
+     * Takes a snapshot of the counters.
+     * @return
+     */
+    public ProgressSnapshot sample() {
+        return sample(publisher != null ? publisher.collect() : null);
+    }
+
+    private synchronized ProgressSnapshot sample(StatisticsSnapshot statistics) {
+        long now = System.currentTimeMillis();
+        long files = progress.getFiles();
+        long bytes = progress.getBytes();
+
+        double filesPerSecond = now > lastTime ? (files - lastFiles) * 1000.0 / (now - lastTime) : 0;
+        lastFiles = files;
+        lastTime = now;
+
+        return new ProgressSnapshot(files, bytes, progress.getDirectories(), progress.getCurrentPath(),
+                filesPerSecond, ProgressSnapshot.estimateFraction(progress, files, bytes),
+                now - progress.getStartTime(), statistics);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.hinakhan.filescanner;
+
+/**
+ * Immutable sample of the progress of a scan.
+ */
+public class ProgressSnapshot {
+
+    private static final double MAX_ESTIMATED_FRACTION = 0.99; //Estimates never claim the scan is done
+
+    private final long files; //Files scanned so far
+    private final long bytes; //Sum of sizes of files scanned so far
+    private final long directories; //Directories scanned so far
+    private final String currentPath; //Directory scanned last
+    private final double filesPerSecond; //Throughput since the previous sample
+    private final double fraction; //Estimated fraction of the scan done, negative if unknown
+    private final long elapsedMillis; //Time since the scan started
+    private final StatisticsSnapshot statistics; //Statistics so far, null unless live statistics are enabled
+
+    /**
+     * Constructor with parameters.
+     * @param files
+     * @param bytes
+     * @param directories
+     * @param currentPath
+     * @param filesPerSecond
+     * @param fraction Estimated fraction of the scan done, negative if unknown.
+     * @param elapsedMillis
+     */
+    public ProgressSnapshot(long files, long bytes, long directories, String currentPath,
+                            double filesPerSecond, double fraction, long elapsedMillis) {
+        this(files, bytes, directories, currentPath, filesPerSecond, fraction, elapsedMillis, null);
+    }
+
+    /**
+     * Constructor with parameters.
+     * @param files
+     * @param bytes
+     * @param directories
+     * @param currentPath
+     * @param filesPerSecond
+     * @param fraction Estimated fraction of the scan done, negative if unknown.
+     * @param elapsedMillis
+     * @param statistics Statistics so far, may be null.
+     */
+    public ProgressSnapshot(long files, long bytes, long directories, String currentPath,
+                            double filesPerSecond, double fraction, long elapsedMillis, StatisticsSnapshot statistics) {
+        this.files = files;
+        this.bytes = bytes;
+        this.directories = directories;
+        this.currentPath = currentPath;
+        this.filesPerSecond = filesPerSecond;
+        this.fraction = fraction;
+        this.elapsedMillis = elapsedMillis;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Estimates the fraction of the scan done, preferring a file count estimate over a byte estimate.
+     * @param progress
+     * @param files Files scanned so far.
+     * @param bytes Sum of sizes of files scanned so far.
+     * @return Fraction between 0 and MAX_ESTIMATED_FRACTION, negative if no estimate is available.
+     */
+    public static double estimateFraction(ScanProgress progress, long files, long bytes) {
+        double fraction;
+        if (progress.getEstimatedFiles() > 0) {
+            fraction = (double) files / progress.getEstimatedFiles();
+        } else if (progress.getEstimatedBytes() > 0) {
+            fraction = (double) bytes / progress.getEstimatedBytes();
+        } else {
+            return -1;
+        }
+        return Math.min(fraction, MAX_ESTIMATED_FRACTION);
+    }
+
+    public long getFiles() {
+        return files;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getDirectories() {
+        return directories;
+    }
+
+    public String getCurrentPath() {
+        return currentPath;
+    }
+
+    public double getFilesPerSecond() {
+        return filesPerSecond;
+    }
+
+    /**
+     * Estimated fraction of the scan done.
+     * @return Fraction between 0 and 1, negative if unknown.
+     */
+    public double getFraction() {
+        return fraction;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Statistics of the files scanned so far.
+     * @return Returns null unless ScanOptions.setLiveStatistics() was enabled.
+     */
+    public StatisticsSnapshot getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public String toString() {
+        return files + " files, " + bytes + " bytes, " + directories + " directories, "
+                + Math.round(filesPerSecond) + " files/sec";
+    }
+}
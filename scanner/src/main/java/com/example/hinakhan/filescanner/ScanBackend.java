@@ -0,0 +1,41 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+
+/**
+ * Lists directories and reads the attributes of their entries.
+ * Implementations must be thread safe, parallel engines share one backend between workers.
+ * Backends report symbolic links with the attributes of their target, device and inode
+ * are reported where the platform exposes them and are needed to detect hard links.
+ */
+public interface ScanBackend {
+
+    /**
+     * Lists a directory reporting every entry to the visitor.
+     * @param dir
+     * @param visitor
+     * @return Returns false if the directory could not be listed.
+     */
+    boolean listDirectory(File dir, EntryVisitor visitor);
+
+    /**
+     * Reads the attributes of a single file, following symbolic links.
+     * @param file
+     * @param entry Filled with the attributes of the file.
+     * @return Returns false if the file could not be read.
+     */
+    boolean readEntry(File file, DirectoryEntry entry);
+
+    /**
+     * Receives the entries of a listed directory.
+     */
+    interface EntryVisitor {
+
+        /**
+         * Called for every entry of the directory.
+         * @param entry Entry attributes, only valid for the duration of the call.
+         * @return Returns false to stop listing the directory.
+         */
+        boolean visitEntry(DirectoryEntry entry);
+    }
+}
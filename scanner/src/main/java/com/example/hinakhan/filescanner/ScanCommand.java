@@ -0,0 +1,342 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line runner scanning local directories and printing the statistics.
+ *
+ * Usage: scanner [--threads N] [--backend nio|io] [--follow] [--one-file-system] [--index FILE] [--duplicates] [--io-threads N] [--max-seconds N] [--max-files N] [--max-rate N] [--filter EXPR] [--find QUERY] [--export FILE] [--watch] [--volumes] [--top N] [--depth N] [--live] [--quiet] DIRECTORY...
+ */
+public class ScanCommand {
+
+    private static final String USAGE = "Usage: scanner [--threads N] [--backend nio|io] [--follow] [--one-file-system] [--index FILE] [--duplicates] [--io-threads N] [--max-seconds N] [--max-files N] [--max-rate N] [--filter EXPR] [--find QUERY] [--export FILE] [--watch] [--volumes] [--top N] [--depth N] [--live] [--quiet] DIRECTORY...\n"
+            + "  --threads N   Number of scanner threads, 1 scans sequentially (default: processors)\n"
+            + "  --backend B   nio reads inodes and detects hard links, io uses java.io.File (default: nio)\n"
+            + "  --follow      Follow symbolic links, cycles and duplicates are skipped\n"
+            + "  --one-file-system  Don't descend into directories on other file systems\n"
+            + "  --index FILE  Index of the previous scan, rescans only modified directories,\n"
+            + "                with --find the names of unchanged directories are kept in FILE.names\n"
+            + "  --duplicates  Find files with identical content by hashing files of equal sizes\n"
+            + "  --io-threads N  Number of threads hashing duplicate candidates (default: 2)\n"
+            + "  --max-seconds N  Stop after N seconds and print partial statistics\n"
+            + "  --max-files N    Stop after about N files and print partial statistics\n"
+            + "  --max-rate N     Read at most N directory entries per second, throttles the traversal\n"
+            + "  --filter EXPR    Count only matching files, like \"ext:jpg,png size:>1M age:<30d exclude:**/cache\"\n"
+            + "                   Terms: ext:, size:, age:, include:GLOB, exclude:GLOB, hidden:skip\n"
+            + "  --find QUERY  Index file names while scanning, then print up to --top paths matching a name substring or glob\n"
+            + "  --export FILE Stream path, size, mtime and extension of every file to FILE, JSON Lines for .jsonl,\n"
+            + "                CSV otherwise, gzip compressed if FILE ends with .gz\n"
+            + "  --watch       Keep the statistics current after a completed scan, printing totals whenever files change\n"
+            + "  --volumes     Scan every directory as a separate volume on its own thread, print totals per volume\n"
+            + "  --top N       Number of biggest files, heaviest directories and frequent extensions to print (default: 10)\n"
+            + "  --depth N     Levels below the roots to print the usage of every directory for (default: 1)\n"
+            + "  --live        Print statistics so far with every progress line\n"
+            + "  --quiet       Don't print progress";
+
+    public static void main(String[] args) {
+        ScanOptions options = new ScanOptions();
+        options.setBackend(new NioScanBackend());
+        CancellationToken token = new CancellationToken();
+        List<File> roots = new ArrayList<File>();
+        int top = 10;
+        int depth = 1;
+        boolean quiet = false;
+        boolean volumes = false;
+        String query = null;
+        File exportFile = null;
+        boolean watch = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if ("--threads".equals(arg)) {
+                    options.setParallelism(Integer.parseInt(args[++i]));
+                } else if ("--backend".equals(arg)) {
+                    String backend = args[++i];
+                    if ("io".equals(backend)) {
+                        options.setBackend(new FileScanBackend());
+                    } else if (!"nio".equals(backend)) {
+                        throw new IllegalArgumentException("Unknown backend " + backend);
+                    }
+                } else if ("--follow".equals(arg)) {
+                    options.setFollowSymlinks(true);
+                } else if ("--one-file-system".equals(arg)) {
+                    options.setOneFileSystem(true);
+                } else if ("--index".equals(arg)) {
+                    options.setIndexFile(new File(args[++i]));
+                } else if ("--duplicates".equals(arg)) {
+                    options.setFindDuplicates(true);
+                } else if ("--io-threads".equals(arg)) {
+                    options.setDuplicateThreads(Integer.parseInt(args[++i]));
+                } else if ("--max-seconds".equals(arg)) {
+                    token.setTimeBudgetMillis(Long.parseLong(args[++i]) * 1000);
+                } else if ("--max-files".equals(arg)) {
+                    token.setFileBudget(Long.parseLong(args[++i]));
+                } else if ("--max-rate".equals(arg)) {
+                    options.setMaxEntriesPerSecond(Long.parseLong(args[++i]));
+                } else if ("--filter".equals(arg)) {
+                    options.setFilter(ScanFilter.compile(args[++i]));
+                } else if ("--find".equals(arg)) {
+                    query = args[++i];
+                    options.setNameIndex(new NameIndex());
+                } else if ("--export".equals(arg)) {
+                    exportFile = new File(args[++i]);
+                } else if ("--watch".equals(arg)) {
+                    watch = true;
+                    options.setWatchedTree(new WatchedTree());
+                } else if ("--volumes".equals(arg)) {
+                    volumes = true;
+                } else if ("--top".equals(arg)) {
+                    top = Integer.parseInt(args[++i]);
+                } else if ("--depth".equals(arg)) {
+                    depth = Integer.parseInt(args[++i]);
+                } else if ("--live".equals(arg)) {
+                    options.setLiveStatistics(true);
+                } else if ("--quiet".equals(arg)) {
+                    quiet = true;
+                } else if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                } else {
+                    roots.add(new File(arg));
+                }
+            }
+        } catch (RuntimeException e) {
+            //Bad number, missing option value or unknown option
+            System.err.println(e.getMessage() != null ? e.getMessage() : e.toString());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        if (roots.isEmpty()) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        for (File root : roots) {
+            if (!root.isDirectory()) {
+                System.err.println("Not a directory: " + root);
+                System.exit(2);
+            }
+        }
+
+        ScanStatistics.MAX_BIGGEST_FILES = top;
+        ScanStatistics.MAX_HEAVIEST_DIRECTORIES = top;
+        ScanStatistics.MAX_DUPLICATE_GROUPS = top;
+        ScanStatistics.DIRECTORY_BREAKDOWN_DEPTH = depth;
+        final boolean printProgress = !quiet;
+
+        ScanListener listener = new ScanListener() {
+            @Override
+            public void onProgress(ProgressSnapshot snapshot) {
+                if (printProgress) {
+                    System.err.println(snapshot);
+                    StatisticsSnapshot statistics = snapshot.getStatistics();
+                    if (statistics != null && !statistics.getBiggestFiles().isEmpty()) {
+                        System.err.println("  biggest so far: " + statistics.getBiggestFiles().get(0).getFilename()
+                                + ", extensions: " + statistics.getFrequentFileExtensions());
+                    }
+                }
+            }
+
+            @Override
+            public void onWarning(String message, Exception e) {
+                System.err.println("Warning: " + message + (e != null ? ": " + e : ""));
+            }
+        };
+
+        if (exportFile != null) {
+            try {
+                options.setCatalogWriter(CatalogWriter.open(exportFile, CatalogWriter.getFormat(exportFile),
+                        exportFile.getName().endsWith(".gz")));
+            } catch (IOException e) {
+                System.err.println("Could not create " + exportFile + ": " + e);
+                System.exit(1);
+            }
+        }
+
+        //Names saved next to the index by the scan that wrote it, for the directories reused from the index
+        File namesFile = options.getIndexFile() != null && options.getFilter() == null
+                ? new File(options.getIndexFile().getPath() + ".names") : null;
+        if (namesFile != null && options.getNameIndex() != null) {
+            options.setPreviousNameIndex(NameIndex.load(namesFile));
+        }
+
+        long start = System.nanoTime();
+        Scanner scanner = new Scanner(options);
+        File[] rootArray = roots.toArray(new File[roots.size()]);
+        ScanStatistics statistics;
+        VolumeScanResult volumeResult = null;
+        if (volumes) {
+            volumeResult = scanner.scanVolumes(rootArray, listener, token);
+            statistics = volumeResult.getCombined();
+        } else {
+            statistics = scanner.scan(rootArray, listener, token);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        if (options.getCatalogWriter() != null) {
+            try {
+                options.getCatalogWriter().finish(statistics);
+                System.err.println("Exported " + options.getCatalogWriter().getRecords() + " files to " + exportFile);
+            } catch (IOException e) {
+                System.err.println("Could not write " + exportFile + ": " + e);
+            }
+        }
+        if (token.getStopReason() != CancellationToken.StopReason.NONE) {
+            System.err.println("Scan stopped early: " + token.getStopReason());
+        }
+        boolean indexRewritten = volumeResult != null ? volumeResult.isAnyVolumeCompleted() : statistics.isCompletedScan();
+        if (namesFile != null && indexRewritten) {
+            //The saved names must match the index just written, also when only some volumes completed
+            if (options.getNameIndex() == null || !statistics.isCompletedScan() || !saveNames(options.getNameIndex(), namesFile)) {
+                namesFile.delete();
+            }
+        }
+        if (volumeResult != null) {
+            System.out.println("Volumes:");
+            for (int i = 0; i < volumeResult.getVolumeCount(); i++) {
+                ScanStatistics volume = volumeResult.getVolumeStatistics(i);
+                System.out.println(String.format("  %15d  %8d  %s%s", volume.getTotalFileSize(), volume.getTotalFiles(),
+                        volumeResult.getRoot(i), volume.isCompletedScan() ? "" : " (partial)"));
+            }
+        }
+        print(statistics, top, elapsedMillis, System.out);
+
+        if (query != null) {
+            NameIndex index = options.getNameIndex();
+            long findStart = System.nanoTime();
+            List<String> paths = index.find(query, top);
+            long findMicros = (System.nanoTime() - findStart) / 1000;
+            System.out.println("Name index:       " + index.getFileCount() + " files, " + index.getNameCount() + " names, "
+                    + index.getMemoryBytes() / 1024 + " KB" + (index.isTruncated() ? " (truncated)" : ""));
+            System.out.println("Found \"" + query + "\" in " + findMicros + " us:");
+            for (String path : paths) {
+                System.out.println("  " + path);
+            }
+        }
+
+        if (watch) {
+            watch(options.getWatchedTree(), statistics);
+        }
+    }
+
+    /**
+     * Saves the names of a completed scan next to its index.
+     * @param index
+     * @param file
+     * @return Returns false if the file could not be written.
+     */
+    private static boolean saveNames(NameIndex index, File file) {
+        try {
+            index.save(file);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not save " + file + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Keeps the statistics of a completed scan current, printing totals after every change until killed.
+     * @param tree
+     * @param statistics
+     */
+    private static void watch(WatchedTree tree, ScanStatistics statistics) {
+        if (!statistics.isCompletedScan()) {
+            System.err.println("Not watching a partial scan");
+            System.exit(1);
+        }
+        tree.attach(statistics);
+        NioTreeWatcher watcher = new NioTreeWatcher(tree);
+        watcher.setListener(new TreeWatcher.Listener() {
+            @Override
+            public void onStatisticsChanged(ScanStatistics current) {
+                List<FileStats> biggest = current.getBiggestFiles();
+                System.out.println(String.format("%tT  %d files, %d bytes, %d directories%s", System.currentTimeMillis(),
+                        current.getTotalFiles(), current.getTotalFileSize(), current.getScannedDirectories(),
+                        biggest.isEmpty() ? "" : ", biggest: " + biggest.get(0).getFilename()));
+            }
+        });
+        try {
+            watcher.start();
+        } catch (IOException e) {
+            System.err.println("Could not watch: " + e);
+            System.exit(1);
+        }
+        System.err.println("Watching " + watcher.getWatchedDirectories() + " directories"
+                + (watcher.getUnwatchedDirectories() > 0 ? ", " + watcher.getUnwatchedDirectories() + " beyond the watch limit" : "")
+                + ", stop with Ctrl-C");
+        Object forever = new Object();
+        synchronized (forever) {
+            try {
+                forever.wait();
+            } catch (InterruptedException e) {
+                watcher.stop();
+            }
+        }
+    }
+
+    /**
+     * Prints statistics in a human readable form.
+     * @param statistics
+     * @param top Number of frequent extensions to print.
+     * @param elapsedMillis Scan duration.
+     * @param out
+     */
+    static void print(ScanStatistics statistics, int top, long elapsedMillis, PrintStream out) {
+        out.println("Completed scan:   " + statistics.isCompletedScan());
+        out.println("Files scanned:    " + statistics.getTotalFiles());
+        out.println("Directories:      " + statistics.getScannedDirectories()
+                + (statistics.getUnscannedDirectories() > 0 ? " (" + statistics.getUnscannedDirectories() + " not scanned)" : ""));
+        out.println("Total file size:  " + statistics.getTotalFileSize() + " bytes");
+        if (statistics.getTotalFiles() > 0) {
+            out.println("Avg file size:    " + statistics.getAverageFileSize() + " KB");
+        }
+        out.println("Median file size: " + statistics.getFileSizePercentile(50) + " bytes");
+        out.println("p90 file size:    " + statistics.getFileSizePercentile(90) + " bytes");
+        out.println("p99 file size:    " + statistics.getFileSizePercentile(99) + " bytes");
+        out.println("Max file size:    " + statistics.getSizeHistogram().getMax() + " bytes");
+        out.println("Duplicates:       " + statistics.getSkippedDuplicates());
+        out.println("Elapsed:          " + elapsedMillis + " ms");
+        if (elapsedMillis > 0) {
+            out.println("Throughput:       " + statistics.getTotalFiles() * 1000 / elapsedMillis + " files/sec");
+        }
+
+        out.println("Frequent file extensions:");
+        for (Map.Entry<String, Integer> entry : statistics.getFrequentedFileExtensions(top).entrySet()) {
+            out.println(String.format("  %-12s %d", entry.getKey(), entry.getValue()));
+        }
+
+        out.println("Biggest files:");
+        for (FileStats fileStats : statistics.getBiggestFiles()) {
+            out.println(String.format("  %15d  %s", fileStats.getFileSize(), fileStats.getFilename()));
+        }
+
+        out.println("Heaviest directories:");
+        printDirectories(statistics.getHeaviestDirectories(), out);
+
+        out.println("Directory breakdown:");
+        printDirectories(statistics.getDirectoryBreakdown(), out);
+
+        if (statistics.getDuplicateGroupCount() > 0) {
+            out.println("Duplicate files:  " + statistics.getDuplicateFiles() + " in " + statistics.getDuplicateGroupCount() + " groups");
+            out.println("Wasted space:     " + statistics.getWastedBytes() + " bytes");
+            for (DuplicateGroup group : statistics.getDuplicateGroups()) {
+                out.println(String.format("  %15d  %d x %d bytes", group.getWastedBytes(), group.getPaths().size(), group.getFileSize()));
+                for (String path : group.getPaths()) {
+                    out.println("    " + path);
+                }
+            }
+        }
+    }
+
+    private static void printDirectories(List<DirectoryUsage> directories, PrintStream out) {
+        for (DirectoryUsage usage : directories) {
+            out.println(String.format("  %15d  %8d  %s", usage.getTotalFileSize(), usage.getTotalFiles(), usage.getPath()));
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Selects the files a scan counts, compiled once from an expression and evaluated by the
+ * scanner threads for every entry. Directories that can't hold a selected file are pruned:
+ * they are never listed.
+ *
+ * An expression is a list of terms separated by spaces, a file must satisfy all of them:
+ *  ext:mp4,jpg          Extension is one of the list, ignoring case.
+ *  size:>10M            Size above, below (size:<1G) or within a range (size:1M..10M), with K, M, G units.
+ *  age:<30d             Modified within, or before (age:>1y), a duration with s, m, h, d, w, y units.
+ *  include:DCIM/**      Path relative to the root matches a glob, one of the include terms must match.
+ *  exclude:*.tmp        Path relative to the root matches none of the exclude globs, also prunes directories:
+ *                       a directory is excluded if its path or its path with a trailing '/' matches,
+ *                       so exclude:cache/** never lists cache itself.
+ *  hidden:skip          Skip files and directories whose name starts with a dot.
+ * Globs use '/' between directories, '*' and '?' match within a name, '**' across directories.
+ *
+ * Matching allocates nothing: extensions are compared in place and globs run directly over the
+ * directory path and the name, without building the path of the file.
+ */
+public class ScanFilter {
+
+    private static final long[] SIZE_UNITS = {1, 1L << 10, 1L << 20, 1L << 30, 1L << 40};
+    private static final String SIZE_UNIT_NAMES = "bkmgt";
+    private static final long[] AGE_UNITS = {1000, 60 * 1000L, 60 * 60 * 1000L, 24 * 60 * 60 * 1000L,
+            7 * 24 * 60 * 60 * 1000L, 365 * 24 * 60 * 60 * 1000L};
+    private static final String AGE_UNIT_NAMES = "smhdwy";
+
+    private final String expression; //Source of the filter
+    private final List<String> extensions = new ArrayList<String>(); //Accepted extensions without dot, empty for any
+    private long minSize = 0; //Smallest accepted size
+    private long maxSize = Long.MAX_VALUE; //Biggest accepted size
+    private long minLastModified = Long.MIN_VALUE; //Oldest accepted modification time
+    private long maxLastModified = Long.MAX_VALUE; //Newest accepted modification time
+    private final List<String> includes = new ArrayList<String>(); //Globs of accepted paths, empty for any
+    private final List<String> excludes = new ArrayList<String>(); //Globs of rejected paths
+    private boolean skipHidden; //Skip names starting with a dot
+
+    private ScanFilter(String expression) {
+        this.expression = expression;
+    }
+
+    /**
+     * Compiles an expression, ages are counted from now.
+     * @param expression
+     * @return
+     * @throws IllegalArgumentException If the expression is malformed.
+     */
+    public static ScanFilter compile(String expression) {
+        return compile(expression, System.currentTimeMillis());
+    }
+
+    /**
+     * Compiles an expression.
+     * @param expression
+     * @param now Time ages are counted from, in milliseconds.
+     * @return
+     * @throws IllegalArgumentException If the expression is malformed.
+     */
+    public static ScanFilter compile(String expression, long now) {
+        ScanFilter filter = new ScanFilter(expression.trim());
+        for (String term : filter.expression.split("\\s+")) {
+            if (term.length() == 0) {
+                continue;
+            }
+            int colon = term.indexOf(':');
+            if (colon <= 0 || colon == term.length() - 1) {
+                throw new IllegalArgumentException("Expected key:value in filter term " + term);
+            }
+            String key = term.substring(0, colon);
+            String value = term.substring(colon + 1);
+            if ("ext".equals(key)) {
+                for (String extension : value.split(",")) {
+                    extension = extension.startsWith(".") ? extension.substring(1) : extension;
+                    if (extension.length() > 0) {
+                        filter.extensions.add(extension.toLowerCase(Locale.US));
+                    }
+                }
+            } else if ("size".equals(key)) {
+                long[] range = parseRange(value.toLowerCase(Locale.US), SIZE_UNITS, SIZE_UNIT_NAMES, true, term);
+                filter.minSize = Math.max(filter.minSize, range[0]);
+                filter.maxSize = Math.min(filter.maxSize, range[1]);
+            } else if ("age".equals(key)) {
+                //A young age is a recent modification time
+                long[] range = parseRange(value, AGE_UNITS, AGE_UNIT_NAMES, false, term);
+                if (range[1] != Long.MAX_VALUE) {
+                    filter.minLastModified = Math.max(filter.minLastModified, now - range[1]);
+                }
+                if (range[0] > 0) {
+                    filter.maxLastModified = Math.min(filter.maxLastModified, now - range[0]);
+                }
+            } else if ("include".equals(key)) {
+                filter.includes.add(value);
+            } else if ("exclude".equals(key)) {
+                filter.excludes.add(value);
+            } else if ("hidden".equals(key) && ("skip".equals(value) || "keep".equals(value))) {
+                filter.skipHidden = "skip".equals(value);
+            } else {
+                throw new IllegalArgumentException("Unknown filter term " + term);
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Parses >N, <N or N..M into an inclusive range of unit multiples.
+     */
+    private static long[] parseRange(String value, long[] units, String unitNames, boolean unitOptional, String term) {
+        try {
+            if (value.startsWith(">")) {
+                return new long[] {parseAmount(value.substring(1), units, unitNames, unitOptional) + 1, Long.MAX_VALUE};
+            }
+            if (value.startsWith("<")) {
+                return new long[] {0, parseAmount(value.substring(1), units, unitNames, unitOptional) - 1};
+            }
+            int dots = value.indexOf("..");
+            if (dots < 0) {
+                long amount = parseAmount(value, units, unitNames, unitOptional);
+                return new long[] {amount, amount};
+            }
+            return new long[] {parseAmount(value.substring(0, dots), units, unitNames, unitOptional),
+                    parseAmount(value.substring(dots + 2), units, unitNames, unitOptional)};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed filter term " + term, e);
+        }
+    }
+
+    /**
+     * Parses a number followed by a unit, the first unit if it is optional and missing.
+     */
+    private static long parseAmount(String amount, long[] units, String unitNames, boolean unitOptional) {
+        int unit = amount.length() > 0 ? unitNames.indexOf(amount.charAt(amount.length() - 1)) : -1;
+        if (unit >= 0) {
+            return Long.parseLong(amount.substring(0, amount.length() - 1)) * units[unit];
+        }
+        if (!unitOptional) {
+            throw new NumberFormatException("Missing unit in " + amount);
+        }
+        return Long.parseLong(amount);
+    }
+
+    /**
+     * Expression the filter was compiled from.
+     * @return
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * Does the filter need modification times, backends not reading them stat every file it sees.
+     * @return
+     */
+    public boolean isAgeFiltered() {
+        return minLastModified != Long.MIN_VALUE || maxLastModified != Long.MAX_VALUE;
+    }
+
+    /**
+     * Should a subdirectory be listed.
+     * @param dirPath Path of the listed directory, may start with the root path.
+     * @param start Index of the path relative to the root in dirPath.
+     * @param name Name of the subdirectory.
+     * @return Returns false if no file below the subdirectory can be accepted.
+     */
+    public boolean acceptDirectory(String dirPath, int start, String name) {
+        if (skipHidden && name.startsWith(".")) {
+            return false;
+        }
+        for (int i = 0; i < excludes.size(); i++) {
+            String exclude = excludes.get(i);
+            if (matches(exclude, dirPath, start, name, false) || matchPath(exclude, dirPath, start, name, true, false)) {
+                return false;
+            }
+        }
+        if (includes.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < includes.size(); i++) {
+            if (matches(includes.get(i), dirPath, start, name, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Should a file be counted.
+     * @param dirPath Path of the listed directory, may start with the root path.
+     * @param start Index of the path relative to the root in dirPath.
+     * @param entry Entry of the file.
+     * @return
+     */
+    public boolean acceptFile(String dirPath, int start, DirectoryEntry entry) {
+        String name = entry.getName();
+        long size = entry.getSize();
+        if (size < minSize || size > maxSize) {
+            return false;
+        }
+        if (skipHidden && name.startsWith(".")) {
+            return false;
+        }
+        if (!extensions.isEmpty() && !hasExtension(name)) {
+            return false;
+        }
+        if (isAgeFiltered()) {
+            long lastModified = entry.getLastModified();
+            if (lastModified < minLastModified || lastModified > maxLastModified) {
+                return false;
+            }
+        }
+        for (int i = 0; i < excludes.size(); i++) {
+            if (matches(excludes.get(i), dirPath, start, name, false)) {
+                return false;
+            }
+        }
+        if (includes.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < includes.size(); i++) {
+            if (matches(includes.get(i), dirPath, start, name, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return false;
+        }
+        int length = name.length() - dot - 1;
+        for (int i = 0; i < extensions.size(); i++) {
+            String extension = extensions.get(i);
+            if (extension.length() == length && name.regionMatches(true, dot + 1, extension, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Matches a glob against the path of an entry, made of the relative directory path and the name.
+     * @param prefix Match directories: accept if the glob may match a path below the entry.
+     */
+    static boolean matches(String glob, String dirPath, int start, String name, boolean prefix) {
+        return matchPath(glob, dirPath, start, name, prefix, prefix);
+    }
+
+    /**
+     * Matches a glob against the path of an entry.
+     * @param separator Follow the path with a separator, so "**" at the end of the glob can match nothing.
+     * @param prefix Accept if the glob may match a path below the entry.
+     */
+    private static boolean matchPath(String glob, String dirPath, int start, String name, boolean separator, boolean prefix) {
+        //Skip the separator between the root path and the relative path
+        if (start > 0 && start < dirPath.length() && dirPath.charAt(start) == File.separatorChar) {
+            start++;
+        }
+        int dirLength = Math.max(0, dirPath.length() - start);
+        int length = (dirLength > 0 ? dirLength + 1 : 0) + name.length() + (separator ? 1 : 0);
+        return new PathMatch(glob, dirPath, start, dirLength, name, length, prefix).match(0, 0);
+    }
+
+    /**
+     * Matching of one glob against the virtual path dirPath[start..] + separator + name (+ separator for directories).
+     * Globs with several stars remember the positions a star failed to match from, so every pair of glob and
+     * path positions is tried at most once instead of backtracking exponentially.
+     */
+    private static final class PathMatch {
+
+        private final String glob; //Glob being matched
+        private final String dirPath; //Directory of the entry, relative from start
+        private final int start; //Start of the relative path in dirPath
+        private final int dirLength; //Length of the relative directory path
+        private final String name; //Name of the entry
+        private final int length; //Length of the virtual path
+        private final boolean prefix; //Accept if the glob may match a path below the entry
+        private final boolean memoize; //Remember failed star positions, for globs with several stars
+        private boolean[] failed; //Failed star matches by glob position * (length + 1) + path position, created on demand
+
+        PathMatch(String glob, String dirPath, int start, int dirLength, String name, int length, boolean prefix) {
+            this.glob = glob;
+            this.dirPath = dirPath;
+            this.start = start;
+            this.dirLength = dirLength;
+            this.name = name;
+            this.length = length;
+            this.prefix = prefix;
+            this.memoize = glob.indexOf('*') != glob.lastIndexOf('*');
+        }
+
+        /**
+         * Character of the virtual path.
+         */
+        private char charAt(int index) {
+            if (dirLength > 0) {
+                if (index < dirLength) {
+                    return dirPath.charAt(start + index);
+                }
+                index -= dirLength + 1;
+                if (index < 0) {
+                    return File.separatorChar;
+                }
+            }
+            return index < name.length() ? name.charAt(index) : File.separatorChar;
+        }
+
+        boolean match(int g, int p) {
+            while (g < glob.length()) {
+                if (prefix && p == length) {
+                    //Whole directory matched, the rest of the glob can match a path below it
+                    return true;
+                }
+                char c = glob.charAt(g);
+                if (c == '*') {
+                    return matchStar(g, p);
+                }
+                if (p == length) {
+                    return false;
+                }
+                char actual = charAt(p);
+                boolean same = c == '?' ? actual != File.separatorChar : c == '/' ? actual == File.separatorChar : c == actual;
+                if (!same) {
+                    return false;
+                }
+                g++;
+                p++;
+            }
+            return p == length;
+        }
+
+        /**
+         * Matches a '*' or '**' at glob position g against the path from position p.
+         */
+        private boolean matchStar(int g, int p) {
+            int state = g * (length + 1) + p;
+            if (failed != null && failed[state]) {
+                return false;
+            }
+            if (matchStarOnce(g, p)) {
+                return true;
+            }
+            if (memoize) {
+                if (failed == null) {
+                    failed = new boolean[(glob.length() + 1) * (length + 1)];
+                }
+                failed[state] = true;
+            }
+            return false;
+        }
+
+        private boolean matchStarOnce(int g, int p) {
+            if (g + 1 < glob.length() && glob.charAt(g + 1) == '*') {
+                int next = g + 2;
+                if (next < glob.length() && glob.charAt(next) == '/' && match(next + 1, p)) {
+                    return true;
+                }
+                for (int i = p; i <= length; i++) {
+                    if (match(next, i)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            for (int i = p; ; i++) {
+                if (match(g + 1, i)) {
+                    return true;
+                }
+                if (i == length || charAt(i) == File.separatorChar) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent index of a previous scan, used for incremental rescans.
+ * Records per directory its modification time, number of entries, subdirectory names and
+ * the statistics of the files directly inside it, their biggest files named relative to the
+ * directory so scans of other roots can reuse them. A directory whose modification time did
+ * not change since the previous scan is not listed again, its recorded statistics are
+ * reused instead. Changes to the size of an existing file don't touch the modification
+ * time of its directory, so they are only picked up by a full scan.
+ * Thread safe, records of the running scan may be added from several workers.
+ */
+public class ScanIndex {
+
+    private static final int MAGIC = 0x46534958; //"FSIX"
+    private static final int VERSION = 8; //Bumped whenever the statistics body changes
+
+    private final Map<String, DirectoryRecord> previous; //Records of the previous scan
+    private final Map<String, DirectoryRecord> current; //Records of the running scan
+    private final long previousTotalFiles; //Number of files found by the previous scan
+    private final long previousTotalFileSize; //Sum of file sizes found by the previous scan
+
+    /**
+     * Default constructor, creates an empty index.
+     */
+    public ScanIndex() {
+        this(Collections.<String, DirectoryRecord>emptyMap());
+    }
+
+    private ScanIndex(Map<String, DirectoryRecord> previous) {
+        this.previous = previous;
+        this.current = new ConcurrentHashMap<String, DirectoryRecord>();
+
+        long totalFiles = 0;
+        long totalFileSize = 0;
+        for (DirectoryRecord record : previous.values()) {
+            totalFiles += record.getStatistics().getTotalFiles();
+            totalFileSize += record.getStatistics().getTotalFileSize();
+        }
+        this.previousTotalFiles = totalFiles;
+        this.previousTotalFileSize = totalFileSize;
+    }
+
+    /**
+     * Number of directories recorded by the previous scan.
+     * @return
+     */
+    public int getPreviousSize() {
+        return previous.size();
+    }
+
+    /**
+     * Number of files found by the previous scan, a good estimate for the running one.
+     * @return
+     */
+    public long getPreviousTotalFiles() {
+        return previousTotalFiles;
+    }
+
+    /**
+     * Sum of file sizes found by the previous scan.
+     * @return
+     */
+    public long getPreviousTotalFileSize() {
+        return previousTotalFileSize;
+    }
+
+    /**
+     * Number of directories recorded by the running scan.
+     * @return
+     */
+    public int size() {
+        return current.size();
+    }
+
+    /**
+     * Record of the previous scan for a directory, if it was not modified since.
+     * @param path
+     * @param lastModified Current modification time of the directory.
+     * @return Returns the record or null if the directory has to be listed.
+     */
+    public DirectoryRecord getUnchanged(String path, long lastModified) {
+        DirectoryRecord record = previous.get(path);
+        if (record == null || record.getLastModified() != lastModified || lastModified == 0) {
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * Record a directory for the running scan.
+     * @param path
+     * @param record
+     */
+    public void put(String path, DirectoryRecord record) {
+        current.put(path, record);
+    }
+
+    /**
+     * Loads an index saved by a previous scan.
+     * @param file
+     * @return Returns the loaded index, or an empty index if the file is missing or unreadable.
+     */
+    public static ScanIndex load(File file) {
+        if (!file.isFile()) {
+            return new ScanIndex();
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return new ScanIndex();
+            }
+
+            int count = in.readInt();
+            Map<String, DirectoryRecord> records = new HashMap<String, DirectoryRecord>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                int childCount = ScanStatisticsCodec.readCount(in);
+                String[] subdirectories = new String[ScanStatisticsCodec.readCount(in)];
+                for (int j = 0; j < subdirectories.length; j++) {
+                    subdirectories[j] = in.readUTF();
+                }
+                ScanStatistics statistics = ScanStatisticsCodec.readBody(in);
+                records.put(path, new DirectoryRecord(lastModified, childCount, subdirectories, statistics));
+            }
+            return new ScanIndex(records);
+        } catch (IOException e) {
+            //Corrupt or truncated index, fall back to a full scan
+            return new ScanIndex();
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Saves the records of the running scan, replacing the file atomically.
+     * @param file
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(current.size());
+            for (Map.Entry<String, DirectoryRecord> entry : current.entrySet()) {
+                DirectoryRecord record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(record.getLastModified());
+                ScanStatisticsCodec.writeVarLong(out, record.getChildCount());
+                ScanStatisticsCodec.writeVarLong(out, record.getSubdirectories().length);
+                for (String name : record.getSubdirectories()) {
+                    out.writeUTF(name);
+                }
+                ScanStatisticsCodec.writeBody(record.getStatistics(), out, false);
+            }
+        } finally {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    private static void closeQuietly(DataInputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                //Nothing left to do
+            }
+        }
+    }
+
+    /**
+     * Scan results for one directory.
+     */
+    public static class DirectoryRecord {
+
+        private final long lastModified; //Modification time of the directory
+        private final int childCount; //Number of entries in the directory
+        private final String[] subdirectories; //Names of subdirectories
+        private final ScanStatistics statistics; //Statistics of the files directly inside the directory
+
+        /**
+         * Constructor with parameters.
+         * @param lastModified
+         * @param childCount
+         * @param subdirectories
+         * @param statistics
+         */
+        public DirectoryRecord(long lastModified, int childCount, String[] subdirectories, ScanStatistics statistics) {
+            this.lastModified = lastModified;
+            this.childCount = childCount;
+            this.subdirectories = subdirectories;
+            this.statistics = statistics;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public int getChildCount() {
+            return childCount;
+        }
+
+        public String[] getSubdirectories() {
+            return subdirectories;
+        }
+
+        public ScanStatistics getStatistics() {
+            return statistics;
+        }
+    }
+}
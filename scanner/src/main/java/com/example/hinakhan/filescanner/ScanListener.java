@@ -0,0 +1,21 @@
+package com.example.hinakhan.filescanner;
+
+/**
+ * Receives progress and problems of a running scan.
+ * Methods are called on scanner threads, never on the thread that started the scan.
+ */
+public interface ScanListener {
+
+    /**
+     * Called once per progress interval.
+     * @param snapshot
+     */
+    void onProgress(ProgressSnapshot snapshot);
+
+    /**
+     * Called when something went wrong that doesn't stop the scan, like an unreadable index.
+     * @param message
+     * @param e Cause, may be null.
+     */
+    void onWarning(String message, Exception e);
+}
@@ -0,0 +1,285 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+
+/**
+ * Options of a Scanner.
+ */
+public class ScanOptions {
+
+    public static final long DEFAULT_PROGRESS_INTERVAL_MILLIS = 250;
+    public static final int DEFAULT_DUPLICATE_THREADS = 2;
+
+    private ScanBackend backend; //Reads directories and file attributes
+    private int parallelism; //Number of scanner threads, 1 scans on the calling thread
+    private File indexFile; //Index of the previous scan, null to always scan everything
+    private long progressIntervalMillis; //Time between progress reports
+    private boolean followSymlinks; //Descend into linked directories and count linked files
+    private boolean oneFileSystem; //Stay on the file systems of the roots
+    private boolean findDuplicates; //Compare the content of files with equal sizes after traversing
+    private int duplicateThreads; //Number of threads hashing duplicate candidates
+    private boolean liveStatistics; //Attach statistics snapshots to progress reports
+    private long maxEntriesPerSecond; //Rate limit of directory entries read, zero for full speed
+    private ScanFilter filter; //Selects the files counted, null for all
+    private NameIndex nameIndex; //Filled with the names of the files counted, null to not index names
+    private NameIndex previousNameIndex; //Names of the previous scan for directories reused from the index, null if unknown
+    private CatalogWriter catalogWriter; //Receives a record of every file counted, null to not export files
+    private WatchedTree watchedTree; //Filled with every directory and file counted, null to not watch changes
+
+    /**
+     * Default constructor, scans with java.io on one thread per processor without index,
+     * skipping symbolic links and crossing file systems, without searching duplicates.
+     */
+    public ScanOptions() {
+        this.backend = new FileScanBackend();
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        this.progressIntervalMillis = DEFAULT_PROGRESS_INTERVAL_MILLIS;
+        this.duplicateThreads = DEFAULT_DUPLICATE_THREADS;
+    }
+
+    /**
+     * Backend reading directories and file attributes.
+     * @return
+     */
+    public ScanBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * @param backend
+     */
+    public void setBackend(ScanBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Number of scanner threads.
+     * @return
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism Number of scanner threads, 1 scans on the calling thread with the sequential engine.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Index file of the previous scan.
+     * @return
+     */
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * @param indexFile Index read before and written after a completed scan, null to disable incremental scans.
+     *                  The index keeps totals per directory, not single files: a scan finding duplicates,
+     *                  exporting a catalog or watching the tree lists unchanged directories again,
+     *                  a scan indexing names only if no previous name index is set.
+     */
+    public void setIndexFile(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Time between progress reports.
+     * @return
+     */
+    public long getProgressIntervalMillis() {
+        return progressIntervalMillis;
+    }
+
+    /**
+     * @param progressIntervalMillis
+     */
+    public void setProgressIntervalMillis(long progressIntervalMillis) {
+        if (progressIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + progressIntervalMillis);
+        }
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    /**
+     * Are symbolic links followed.
+     * @return
+     */
+    public boolean isFollowSymlinks() {
+        return followSymlinks;
+    }
+
+    /**
+     * @param followSymlinks Descend into linked directories and count linked files, cycles are detected.
+     */
+    public void setFollowSymlinks(boolean followSymlinks) {
+        this.followSymlinks = followSymlinks;
+    }
+
+    /**
+     * Does the scan stay on the file systems of the roots.
+     * @return
+     */
+    public boolean isOneFileSystem() {
+        return oneFileSystem;
+    }
+
+    /**
+     * @param oneFileSystem Don't descend into mount points, needs a backend reporting devices.
+     */
+    public void setOneFileSystem(boolean oneFileSystem) {
+        this.oneFileSystem = oneFileSystem;
+    }
+
+    /**
+     * Are files with identical content searched.
+     * @return
+     */
+    public boolean isFindDuplicates() {
+        return findDuplicates;
+    }
+
+    /**
+     * @param findDuplicates Hash files of equal sizes after traversing.
+     */
+    public void setFindDuplicates(boolean findDuplicates) {
+        this.findDuplicates = findDuplicates;
+    }
+
+    /**
+     * Number of threads hashing duplicate candidates.
+     * @return
+     */
+    public int getDuplicateThreads() {
+        return duplicateThreads;
+    }
+
+    /**
+     * @param duplicateThreads Number of threads reading and hashing files, bounds concurrent I/O of the duplicate search.
+     */
+    public void setDuplicateThreads(int duplicateThreads) {
+        if (duplicateThreads < 1) {
+            throw new IllegalArgumentException("Threads must be positive: " + duplicateThreads);
+        }
+        this.duplicateThreads = duplicateThreads;
+    }
+
+    /**
+     * Do progress reports carry statistics snapshots.
+     * @return
+     */
+    public boolean isLiveStatistics() {
+        return liveStatistics;
+    }
+
+    /**
+     * @param liveStatistics Attach a snapshot of the statistics so far to every progress report,
+     *                       copied by the scanner threads once per progress interval.
+     */
+    public void setLiveStatistics(boolean liveStatistics) {
+        this.liveStatistics = liveStatistics;
+    }
+
+    /**
+     * Rate limit of directory entries read.
+     * @return
+     */
+    public long getMaxEntriesPerSecond() {
+        return maxEntriesPerSecond;
+    }
+
+    /**
+     * @param maxEntriesPerSecond Directory entries read per second by all scanner threads together,
+     *                            zero to scan at full speed. Throttles background scans.
+     */
+    public void setMaxEntriesPerSecond(long maxEntriesPerSecond) {
+        if (maxEntriesPerSecond < 0) {
+            throw new IllegalArgumentException("Rate must not be negative: " + maxEntriesPerSecond);
+        }
+        this.maxEntriesPerSecond = maxEntriesPerSecond;
+    }
+
+    /**
+     * Filter selecting the files counted.
+     * @return
+     */
+    public ScanFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @param filter Selects the files counted and prunes the directories it excludes, null counts all files.
+     *               Filtered scans don't use the index file.
+     */
+    public void setFilter(ScanFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Index filled with the names of the files counted.
+     * @return
+     */
+    public NameIndex getNameIndex() {
+        return nameIndex;
+    }
+
+    /**
+     * @param nameIndex Filled with the names of the files counted while scanning, null to not index names.
+     */
+    public void setNameIndex(NameIndex nameIndex) {
+        this.nameIndex = nameIndex;
+    }
+
+    /**
+     * Name index of the previous scan.
+     * @return
+     */
+    public NameIndex getPreviousNameIndex() {
+        return previousNameIndex;
+    }
+
+    /**
+     * @param previousNameIndex Name index filled by the scan that wrote the index file, supplies the names of
+     *                          the directories reused from that index. Null lists every directory when indexing names.
+     */
+    public void setPreviousNameIndex(NameIndex previousNameIndex) {
+        this.previousNameIndex = previousNameIndex;
+    }
+
+    /**
+     * Writer receiving a record of every file counted.
+     * @return
+     */
+    public CatalogWriter getCatalogWriter() {
+        return catalogWriter;
+    }
+
+    /**
+     * @param catalogWriter Receives a record of every file counted while scanning, null to not export files.
+     *                      The caller finishes it with the statistics of the scan.
+     */
+    public void setCatalogWriter(CatalogWriter catalogWriter) {
+        this.catalogWriter = catalogWriter;
+    }
+
+    /**
+     * Tree filled with the directories and files of the scan.
+     * @return
+     */
+    public WatchedTree getWatchedTree() {
+        return watchedTree;
+    }
+
+    /**
+     * @param watchedTree Filled with every directory and file counted while scanning, so a TreeWatcher
+     *                    can keep the statistics current afterwards. Null to not keep them.
+     */
+    public void setWatchedTree(WatchedTree watchedTree) {
+        this.watchedTree = watchedTree;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.hinakhan.filescanner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free progress counters of a running scan.
+ * Scanner threads add their counts once per directory, a ProgressSampler reads them
+ * at a fixed interval. Estimated totals, when known, turn the counts into a percentage.
+ * Progress of one volume of a multi volume scan also adds its counts to the progress of the whole scan.
+ */
+public class ScanProgress {
+
+    private final AtomicLong files = new AtomicLong(); //Files scanned so far
+    private final AtomicLong bytes = new AtomicLong(); //Sum of sizes of files scanned so far
+    private final AtomicLong directories = new AtomicLong(); //Directories scanned so far
+    private final AtomicLong foundDirectories = new AtomicLong(); //Directories found so far, scanned or not
+    private volatile String currentPath; //Directory scanned last
+    private volatile long estimatedFiles; //Expected number of files, zero if unknown
+    private volatile long estimatedBytes; //Expected sum of file sizes, zero if unknown
+    private final long startTime; //Start of the scan in milliseconds
+    private final ScanProgress total; //Progress of the whole scan this one is part of, null if none
+
+    /**
+     * Default constructor, starts the clock.
+     */
+    public ScanProgress() {
+        this(null);
+    }
+
+    /**
+     * Constructor with parameters, starts the clock.
+     * @param total Progress of the whole scan, also receives the counts of this one. May be null.
+     */
+    public ScanProgress(ScanProgress total) {
+        this.startTime = System.currentTimeMillis();
+        this.total = total;
+    }
+
+    /**
+     * Add counts of a scanned directory.
+     * @param path
+     * @param fileCount Number of files directly inside the directory.
+     * @param byteCount Sum of sizes of those files.
+     */
+    public void directoryScanned(String path, long fileCount, long byteCount) {
+        if (fileCount > 0) {
+            files.addAndGet(fileCount);
+            bytes.addAndGet(byteCount);
+        }
+        directories.incrementAndGet();
+        currentPath = path;
+        if (total != null) {
+            total.directoryScanned(path, fileCount, byteCount);
+        }
+    }
+
+    /**
+     * Add directories found, roots or subdirectories of a scanned directory.
+     * @param count
+     */
+    public void directoriesFound(int count) {
+        if (count > 0) {
+            foundDirectories.addAndGet(count);
+            if (total != null) {
+                total.directoriesFound(count);
+            }
+        }
+    }
+
+    /**
+     * Set expected totals, from a previous scan or the used space of the volume.
+     * @param estimatedFiles Expected number of files, zero if unknown.
+     * @param estimatedBytes Expected sum of file sizes, zero if unknown.
+     */
+    public void setEstimatedTotals(long estimatedFiles, long estimatedBytes) {
+        this.estimatedFiles = estimatedFiles;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    public long getFiles() {
+        return files.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getDirectories() {
+        return directories.get();
+    }
+
+    public long getFoundDirectories() {
+        return foundDirectories.get();
+    }
+
+    public String getCurrentPath() {
+        return currentPath;
+    }
+
+    public long getEstimatedFiles() {
+        return estimatedFiles;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+}
@@ -0,0 +1,587 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Utility class to compute and collect statistics for a scan.
+ * Stats:
+ *  Names and sizes of 10 biggest files
+ *  Average file size
+ *  5 most frequent file extensions (with their frequencies)
+ *  File size distribution and percentiles
+ *  Heaviest directories and usage of the top directory levels, summed over their subtrees
+ *  Files with identical content and the bytes they waste, if duplicates were searched
+ * Instances are not thread safe. Parallel scanners keep one instance per thread
+ * and combine them with merge(), which is associative and commutative.
+ * Created by hinakhan on 4/24/16.
+ */
+public class ScanStatistics implements Serializable {
+
+    public static int MAX_BIGGEST_FILES = 10; //Max Number of files to report data on by size
+    public static int MAX_FREQUENT_FILE_EXTENSIONS = 5; //Max Number of file extensions to report data about
+    public static boolean IGNORE_EXTENSION_CASE = false; //Count extensions differing only in case as one
+    public static int MAX_HEAVIEST_DIRECTORIES = 10; //Max Number of directories to report data on by subtree size
+    public static int DIRECTORY_BREAKDOWN_DEPTH = 1; //Levels below the root to report usage of every directory for
+    public static int MAX_DUPLICATE_GROUPS = 10; //Max Number of duplicate groups to report data on by wasted bytes
+
+    private long totalFiles; //total number of files scanned
+    private long totalFileSize; //sum of all file sizes
+    private boolean completedScan; //Flag indicating if scan was completed or cancelled
+    private long skippedDuplicates; //Entries skipped because they were reached before through a link
+    private long scannedDirectories; //Directories whose files are counted
+    private long unscannedDirectories; //Directories found but not scanned because the scan stopped early
+    private BiggestFilesTracker biggestFiles; //Bounded set of biggest files
+    private ExtensionCounter fileExtensionsFrequency; //Histogram of file extensions
+    private SizeHistogram sizeHistogram; //Distribution of file sizes
+    private ArrayList<DirectoryUsage> heaviestDirectories; //Biggest subtrees sorted by size, null until one is added
+    private ArrayList<DirectoryUsage> directoryBreakdown; //Subtrees up to DIRECTORY_BREAKDOWN_DEPTH, null until one is added
+    private ArrayList<DirectoryUsage> rootUsage; //Usage of every completely scanned root, null until one is added
+    private long duplicateGroupCount; //Number of groups of files with identical content
+    private long duplicateFiles; //Files with identical content beyond the first of each group
+    private long wastedBytes; //Bytes of the duplicate files
+    private ArrayList<DuplicateGroup> duplicateGroups; //Groups wasting most bytes sorted by wasted bytes, null until one is added
+
+    /**
+     * Default Constructor.
+     */
+    public ScanStatistics() {
+        this.totalFiles = 0;
+        this.totalFileSize = 0;
+        this.completedScan = true;
+        this.biggestFiles = new BiggestFilesTracker(MAX_BIGGEST_FILES);
+        this.fileExtensionsFrequency = new ExtensionCounter(IGNORE_EXTENSION_CASE);
+        this.sizeHistogram = new SizeHistogram();
+    }
+
+    /**
+     * Was Scan completed
+     * @return
+     */
+    public boolean isCompletedScan() {
+        return completedScan;
+    }
+
+    /**
+     * Set if scan was completed.
+     * @param completedScan
+     */
+    public void setCompletedScan(boolean completedScan) {
+        this.completedScan = completedScan;
+    }
+
+    /**
+     * Total number of files scanned.
+     * @return
+     */
+    public long getTotalFiles() {
+        return totalFiles;
+    }
+
+    /**
+     * Set total number of files scanned.
+     * @param totalFiles
+     */
+    public void setTotalFiles(long totalFiles) {
+        this.totalFiles = totalFiles;
+    }
+
+    /**
+     * Sum of sizes of all files scanned.
+     * @return
+     */
+    public long getTotalFileSize() {
+        return totalFileSize;
+    }
+
+    /**
+     * Set sum of sizes of all files scanned.
+     * @param totalFileSize
+     */
+    public void setTotalFileSize(long totalFileSize) {
+        this.totalFileSize = totalFileSize;
+    }
+
+    /**
+     * Number of directories whose files are counted in these statistics.
+     * @return
+     */
+    public long getScannedDirectories() {
+        return scannedDirectories;
+    }
+
+    /**
+     * Set number of scanned directories.
+     * @param scannedDirectories
+     */
+    public void setScannedDirectories(long scannedDirectories) {
+        this.scannedDirectories = scannedDirectories;
+    }
+
+    /**
+     * Count a scanned directory.
+     */
+    public void addScannedDirectory() {
+        scannedDirectories++;
+    }
+
+    /**
+     * Number of directories found but not scanned, non zero only if the scan was not completed.
+     * Statistics of a stopped scan are well formed but only cover the scanned directories.
+     * @return
+     */
+    public long getUnscannedDirectories() {
+        return unscannedDirectories;
+    }
+
+    /**
+     * Set number of directories found but not scanned.
+     * @param unscannedDirectories
+     */
+    public void setUnscannedDirectories(long unscannedDirectories) {
+        this.unscannedDirectories = unscannedDirectories;
+    }
+
+    /**
+     * Number of entries skipped because they were reached before, through hard links,
+     * symbolic links or bind mounts.
+     * @return
+     */
+    public long getSkippedDuplicates() {
+        return skippedDuplicates;
+    }
+
+    /**
+     * Set number of skipped duplicate entries.
+     * @param skippedDuplicates
+     */
+    public void setSkippedDuplicates(long skippedDuplicates) {
+        this.skippedDuplicates = skippedDuplicates;
+    }
+
+    /**
+     * Count an entry skipped because it was reached before.
+     */
+    public void addSkippedDuplicate() {
+        skippedDuplicates++;
+    }
+
+    /**
+     * Number of groups of files with identical content.
+     * @return
+     */
+    public long getDuplicateGroupCount() {
+        return duplicateGroupCount;
+    }
+
+    /**
+     * Number of files with identical content, not counting the first file of each group.
+     * @return
+     */
+    public long getDuplicateFiles() {
+        return duplicateFiles;
+    }
+
+    /**
+     * Bytes reclaimed by keeping one file of each duplicate group.
+     * @return
+     */
+    public long getWastedBytes() {
+        return wastedBytes;
+    }
+
+    /**
+     * Set duplicate counters, used when reading statistics.
+     * @param duplicateGroupCount
+     * @param duplicateFiles
+     * @param wastedBytes
+     */
+    void setDuplicateCounts(long duplicateGroupCount, long duplicateFiles, long wastedBytes) {
+        this.duplicateGroupCount = duplicateGroupCount;
+        this.duplicateFiles = duplicateFiles;
+        this.wastedBytes = wastedBytes;
+    }
+
+    /**
+     * Groups wasting most bytes sorted by wasted bytes descending, at most MAX_DUPLICATE_GROUPS entries.
+     * @return
+     */
+    public ArrayList<DuplicateGroup> getDuplicateGroups() {
+        return duplicateGroups == null ? new ArrayList<DuplicateGroup>() : new ArrayList<DuplicateGroup>(duplicateGroups);
+    }
+
+    /**
+     * Add a group of files with identical content.
+     * @param group
+     */
+    public void addDuplicateGroup(DuplicateGroup group) {
+        duplicateGroupCount++;
+        duplicateFiles += group.getDuplicateFiles();
+        wastedBytes += group.getWastedBytes();
+        offerDuplicateGroup(group);
+    }
+
+    /**
+     * Keeps a group if it is among the MAX_DUPLICATE_GROUPS wasting most bytes, without counting it.
+     * @param group
+     */
+    void offerDuplicateGroup(DuplicateGroup group) {
+        if (MAX_DUPLICATE_GROUPS <= 0) {
+            return;
+        }
+        if (duplicateGroups == null) {
+            duplicateGroups = new ArrayList<DuplicateGroup>();
+        }
+        int size = duplicateGroups.size();
+        if (size == MAX_DUPLICATE_GROUPS && DuplicateGroup.BY_WASTED_BYTES.compare(group, duplicateGroups.get(size - 1)) >= 0) {
+            return;
+        }
+        int index = Collections.binarySearch(duplicateGroups, group, DuplicateGroup.BY_WASTED_BYTES);
+        duplicateGroups.add(index < 0 ? -index - 1 : index, group);
+        if (duplicateGroups.size() > MAX_DUPLICATE_GROUPS) {
+            duplicateGroups.remove(duplicateGroups.size() - 1);
+        }
+    }
+
+    /**
+     * Average file size in Kb.
+     * @return
+     */
+    public String getAverageFileSize() {
+        if (totalFiles == 0) {
+            return "0";
+        }
+        return String.valueOf(totalFileSize/(totalFiles * 1024));
+    }
+
+    /**
+     * Distribution of file sizes.
+     * @return
+     */
+    public SizeHistogram getSizeHistogram() {
+        return sizeHistogram;
+    }
+
+    /**
+     * File size below or at which a fraction of the files lies, within 1/16 of the exact value.
+     * @param percentile Percentage between 0 and 100, like 50 for the median.
+     * @return Size in bytes, or zero if no files were scanned.
+     */
+    public long getFileSizePercentile(double percentile) {
+        return sizeHistogram.getValueAtQuantile(percentile / 100);
+    }
+
+    /**
+     * List of biggest files sorted by size descending, at most MAX_BIGGEST_FILES entries.
+     * @return
+     */
+    public ArrayList<FileStats> getBiggestFiles() {
+        return biggestFiles.getSortedFiles();
+    }
+
+    /**
+     * Sets list os biggest files scanned.
+     * Only the MAX_BIGGEST_FILES biggest entries are retained.
+     * @param biggestFiles
+     */
+    public void setBiggestFiles(ArrayList<FileStats> biggestFiles) {
+        this.biggestFiles = new BiggestFilesTracker(MAX_BIGGEST_FILES);
+        for (FileStats fileStats : biggestFiles) {
+            this.biggestFiles.offer(fileStats.getFilename(), fileStats.getFileSize());
+        }
+    }
+
+    /**
+     * Directories with the biggest subtrees sorted by size descending, at most MAX_HEAVIEST_DIRECTORIES entries.
+     * @return
+     */
+    public ArrayList<DirectoryUsage> getHeaviestDirectories() {
+        return heaviestDirectories == null ? new ArrayList<DirectoryUsage>() : new ArrayList<DirectoryUsage>(heaviestDirectories);
+    }
+
+    /**
+     * Usage of every directory up to DIRECTORY_BREAKDOWN_DEPTH levels below the root, sorted by path.
+     * @return
+     */
+    public ArrayList<DirectoryUsage> getDirectoryBreakdown() {
+        if (directoryBreakdown == null) {
+            return new ArrayList<DirectoryUsage>();
+        }
+        ArrayList<DirectoryUsage> breakdown = new ArrayList<DirectoryUsage>(directoryBreakdown);
+        Collections.sort(breakdown, DirectoryUsage.BY_PATH);
+        return breakdown;
+    }
+
+    /**
+     * Usage of every root, like every volume of a multi volume scan, sorted by path.
+     * Roots of a partial scan are only reported if they were scanned completely.
+     * @return
+     */
+    public ArrayList<DirectoryUsage> getRootUsage() {
+        if (rootUsage == null) {
+            return new ArrayList<DirectoryUsage>();
+        }
+        ArrayList<DirectoryUsage> roots = new ArrayList<DirectoryUsage>(rootUsage);
+        Collections.sort(roots, DirectoryUsage.BY_PATH);
+        return roots;
+    }
+
+    /**
+     * Add the usage of a scanned subtree.
+     * @param usage
+     * @param depth Levels below the root, the root itself has depth zero and is only reported by getRootUsage().
+     */
+    public void addDirectoryUsage(DirectoryUsage usage, int depth) {
+        if (depth <= 0) {
+            addRootUsage(usage);
+            return;
+        }
+        if (depth <= DIRECTORY_BREAKDOWN_DEPTH) {
+            addDirectoryBreakdown(usage);
+        }
+        addHeaviestDirectory(usage);
+    }
+
+    /**
+     * Adds the usage of a root.
+     * @param usage
+     */
+    void addRootUsage(DirectoryUsage usage) {
+        if (rootUsage == null) {
+            rootUsage = new ArrayList<DirectoryUsage>(1);
+        }
+        rootUsage.add(usage);
+    }
+
+    /**
+     * Adds a directory to the breakdown regardless of its depth, used when reading statistics.
+     * @param usage
+     */
+    void addDirectoryBreakdown(DirectoryUsage usage) {
+        if (directoryBreakdown == null) {
+            directoryBreakdown = new ArrayList<DirectoryUsage>();
+        }
+        directoryBreakdown.add(usage);
+    }
+
+    /**
+     * Keeps a directory if it is among the MAX_HEAVIEST_DIRECTORIES heaviest ones.
+     * Insertion into a short sorted list, directories are offered once each, not once per file.
+     * @param usage
+     */
+    void addHeaviestDirectory(DirectoryUsage usage) {
+        if (MAX_HEAVIEST_DIRECTORIES <= 0) {
+            return;
+        }
+        if (heaviestDirectories == null) {
+            heaviestDirectories = new ArrayList<DirectoryUsage>(MAX_HEAVIEST_DIRECTORIES);
+        }
+        int size = heaviestDirectories.size();
+        if (size == MAX_HEAVIEST_DIRECTORIES && DirectoryUsage.BY_SIZE.compare(usage, heaviestDirectories.get(size - 1)) >= 0) {
+            return;
+        }
+        int index = Collections.binarySearch(heaviestDirectories, usage, DirectoryUsage.BY_SIZE);
+        heaviestDirectories.add(index < 0 ? -index - 1 : index, usage);
+        if (heaviestDirectories.size() > MAX_HEAVIEST_DIRECTORIES) {
+            heaviestDirectories.remove(heaviestDirectories.size() - 1);
+        }
+    }
+
+    /**
+     * List of most frequently used file extensions.
+     * @param numValues
+     * @return
+     */
+    public Map<String, Integer> getFrequentedFileExtensions(int numValues) {
+        return fileExtensionsFrequency.getMostFrequent(numValues);
+    }
+
+    /**
+     * Full extension histogram.
+     * @return
+     */
+    Map<String, Integer> getFileExtensionsFrequency() {
+        return fileExtensionsFrequency.toMap();
+    }
+
+    /**
+     * Add occurrences of a file extension.
+     * @param extension
+     * @param frequency
+     */
+    void addFileExtension(String extension, int frequency) {
+        fileExtensionsFrequency.add(extension, frequency);
+    }
+
+    /**
+     * Merge statistics of another scan into this one.
+     * Merging is associative and commutative, so shards can be combined in any order
+     * and grouping with the same result as a single sequential scan.
+     * Costs O(MAX_BIGGEST_FILES + number of extensions in other).
+     * @param other
+     * @return This instance, for chaining.
+     */
+    public ScanStatistics merge(ScanStatistics other) {
+        return mergeDirectory(other, null);
+    }
+
+    /**
+     * Merge statistics of the files of one directory, holding biggest files named relative to it.
+     * @param other
+     * @param directoryPath Path of the directory relative to the root, prefixed to the names of its biggest files.
+     *                      Null or empty to keep the names.
+     * @return
+     */
+    ScanStatistics mergeDirectory(ScanStatistics other, String directoryPath) {
+        this.totalFiles += other.totalFiles;
+        this.totalFileSize += other.totalFileSize;
+        this.skippedDuplicates += other.skippedDuplicates;
+        this.completedScan = this.completedScan && other.completedScan;
+
+        fileExtensionsFrequency.merge(other.fileExtensionsFrequency);
+
+        if (directoryPath == null || directoryPath.length() == 0) {
+            biggestFiles.merge(other.biggestFiles);
+        } else {
+            for (FileStats file : other.biggestFiles.getSortedFiles()) {
+                offerBiggestFile(file.getFilename(), file.getFileSize(), directoryPath);
+            }
+        }
+        sizeHistogram.merge(other.sizeHistogram);
+
+        if (other.heaviestDirectories != null) {
+            for (DirectoryUsage usage : other.heaviestDirectories) {
+                addHeaviestDirectory(usage);
+            }
+        }
+        if (other.directoryBreakdown != null) {
+            for (DirectoryUsage usage : other.directoryBreakdown) {
+                addDirectoryBreakdown(usage);
+            }
+        }
+        if (other.rootUsage != null) {
+            for (DirectoryUsage usage : other.rootUsage) {
+                addRootUsage(usage);
+            }
+        }
+
+        scannedDirectories += other.scannedDirectories;
+        unscannedDirectories += other.unscannedDirectories;
+        duplicateGroupCount += other.duplicateGroupCount;
+        duplicateFiles += other.duplicateFiles;
+        wastedBytes += other.wastedBytes;
+        if (other.duplicateGroups != null) {
+            for (DuplicateGroup group : other.duplicateGroups) {
+                offerDuplicateGroup(group);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Update scan statistics.
+     * @param file
+     */
+    public void updateStatistics(File file) {
+        updateStatistics(file.getName(), file.length());
+    }
+
+    /**
+     * Copy of the counters, biggest files and extension counts for a snapshot of a running scan.
+     * Cheaper than merge(), the size histogram, directories and duplicates are left out.
+     * @return
+     */
+    ScanStatistics copyForSnapshot() {
+        ScanStatistics copy = new ScanStatistics();
+        copy.totalFiles = totalFiles;
+        copy.totalFileSize = totalFileSize;
+        copy.skippedDuplicates = skippedDuplicates;
+        copy.scannedDirectories = scannedDirectories;
+        copy.biggestFiles.merge(biggestFiles);
+        copy.fileExtensionsFrequency.merge(fileExtensionsFrequency);
+        return copy;
+    }
+
+    /**
+     * Update scan statistics with a file whose size is already known.
+     * @param fileName
+     * @param fileSize
+     */
+    public void updateStatistics(String fileName, long fileSize) {
+        updateStatistics(fileName, fileSize, null);
+    }
+
+    /**
+     * Update scan statistics with a file in a directory below the root.
+     * The relative path is only built if the file is among the biggest ones.
+     * @param fileName
+     * @param fileSize
+     * @param directoryPath Path of the file's directory relative to the root, null or empty for the root.
+     */
+    public void updateStatistics(String fileName, long fileSize, String directoryPath) {
+        //Increment file count
+        totalFiles++;
+
+        //Increment total file size
+        totalFileSize += fileSize;
+
+        //Increment count for file extension, without allocating for known extensions
+        fileExtensionsFrequency.addFileName(fileName);
+
+        //Track file if it is among the biggest ones
+        offerBiggestFile(fileName, fileSize, directoryPath);
+
+        //Count file in its size bucket
+        sizeHistogram.record(fileSize);
+    }
+
+    /**
+     * Uncount a file counted before by updateStatistics(), like when it was deleted.
+     * @param fileName
+     * @param fileSize Size the file was counted with.
+     * @param directoryPath Path of the file's directory relative to the root, null or empty for the root.
+     * @return Returns true if the file was among the biggest ones: the next biggest file is then
+     *         missing until the biggest files are offered again.
+     */
+    public boolean removeStatistics(String fileName, long fileSize, String directoryPath) {
+        totalFiles--;
+        totalFileSize -= fileSize;
+        fileExtensionsFrequency.removeFileName(fileName);
+        sizeHistogram.remove(fileSize);
+        boolean inRoot = directoryPath == null || directoryPath.length() == 0;
+        return biggestFiles.remove(inRoot ? fileName : directoryPath + File.separatorChar + fileName, fileSize);
+    }
+
+    /**
+     * Keeps a file if it is among the biggest ones, without counting it.
+     * The relative path is only built if the file qualifies.
+     * @param fileName
+     * @param fileSize
+     * @param directoryPath Path of the file's directory relative to the root, null or empty for the root.
+     */
+    void offerBiggestFile(String fileName, long fileSize, String directoryPath) {
+        if (biggestFiles.qualifies(fileSize)) {
+            boolean inRoot = directoryPath == null || directoryPath.length() == 0;
+            biggestFiles.offer(inRoot ? fileName : directoryPath + File.separatorChar + fileName, fileSize);
+        }
+    }
+
+    /**
+     * Forgets the biggest files, before offering all files again.
+     */
+    void clearBiggestFiles() {
+        biggestFiles.clear();
+    }
+
+    /**
+     * Forgets the heaviest directories, the breakdown and the root usage, before adding all directories again.
+     */
+    void clearDirectoryUsage() {
+        heaviestDirectories = null;
+        directoryBreakdown = null;
+        rootUsage = null;
+    }
+}
@@ -0,0 +1,465 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, versioned binary format for ScanStatistics.
+ * Numbers are written as varints and every string is written once to a string table,
+ * records refer to strings by index. The summary form only keeps the most frequent
+ * extensions and the heaviest directories of the breakdown and the root usage, so it stays
+ * small enough for an Intent. The full form keeps everything and is meant to be written to a file.
+ *
+ * Layout: magic, version, flags, string table, counters, extensions, biggest files, size histogram,
+ * heaviest directories, directory breakdown, duplicates, root usage.
+ * Version 2 added the skipped duplicates counter, version 3 the size histogram, version 4 the directories,
+ * version 5 the duplicate groups, version 6 the directory coverage counters, version 7 the root usage.
+ */
+public class ScanStatisticsCodec {
+
+    private static final int MAGIC = 0x5353; //"SS"
+    private static final int VERSION = 7;
+    private static final int FLAG_COMPLETED = 1; //Scan was completed
+    private static final int FLAG_SUMMARY = 2; //Extension histogram is truncated
+    private static final int MAX_COUNT = 1 << 24; //Sanity limit for counts read from a stream
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Encodes statistics to a byte array.
+     * @param statistics
+     * @param summary Only keep the MAX_FREQUENT_FILE_EXTENSIONS most frequent extensions and MAX_HEAVIEST_DIRECTORIES directories.
+     * @return
+     */
+    public static byte[] encode(ScanStatistics statistics, boolean summary) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            write(statistics, out, summary);
+        } catch (IOException e) {
+            //ByteArrayOutputStream doesn't throw
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes statistics encoded by encode().
+     * @param data
+     * @return
+     * @throws IOException If data is not valid encoded statistics.
+     */
+    public static ScanStatistics decode(byte[] data) throws IOException {
+        return read(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Writes full statistics to a file, replacing it atomically.
+     * @param statistics
+     * @param file
+     * @throws IOException
+     */
+    public static void writeToFile(ScanStatistics statistics, File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile));
+        try {
+            write(statistics, out, false);
+        } finally {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * Reads statistics written by writeToFile().
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static ScanStatistics readFromFile(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes statistics with header to a stream.
+     * @param statistics
+     * @param out
+     * @param summary Only keep the MAX_FREQUENT_FILE_EXTENSIONS most frequent extensions and MAX_HEAVIEST_DIRECTORIES directories.
+     * @throws IOException
+     */
+    public static void write(ScanStatistics statistics, OutputStream out, boolean summary) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeShort(MAGIC);
+        data.writeByte(VERSION);
+        writeBody(statistics, data, summary);
+        data.flush();
+    }
+
+    /**
+     * Reads statistics with header from a stream.
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static ScanStatistics read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readUnsignedShort() != MAGIC) {
+            throw new IOException("Not encoded scan statistics");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported scan statistics version " + version);
+        }
+        return readBody(data);
+    }
+
+    /**
+     * Writes statistics without header, for embedding in other formats.
+     * @param statistics
+     * @param out
+     * @param summary Only keep the MAX_FREQUENT_FILE_EXTENSIONS most frequent extensions and MAX_HEAVIEST_DIRECTORIES directories.
+     * @throws IOException
+     */
+    public static void writeBody(ScanStatistics statistics, DataOutputStream out, boolean summary) throws IOException {
+        Map<String, Integer> extensions = summary
+                ? statistics.getFrequentedFileExtensions(ScanStatistics.MAX_FREQUENT_FILE_EXTENSIONS)
+                : statistics.getFileExtensionsFrequency();
+        List<FileStats> biggestFiles = statistics.getBiggestFiles();
+        List<DirectoryUsage> heaviestDirectories = statistics.getHeaviestDirectories();
+        List<DirectoryUsage> directoryBreakdown = statistics.getDirectoryBreakdown();
+        List<DuplicateGroup> duplicateGroups = statistics.getDuplicateGroups();
+        List<DirectoryUsage> rootUsage = statistics.getRootUsage();
+        if (summary) {
+            directoryBreakdown = keepHeaviest(directoryBreakdown, ScanStatistics.MAX_HEAVIEST_DIRECTORIES);
+            rootUsage = keepHeaviest(rootUsage, ScanStatistics.MAX_HEAVIEST_DIRECTORIES);
+        }
+
+        //Build string table
+        StringTable strings = new StringTable();
+        int[] extensionIds = new int[extensions.size()];
+        int index = 0;
+        for (String extension : extensions.keySet()) {
+            extensionIds[index++] = strings.add(extension);
+        }
+        int[] fileIds = new int[biggestFiles.size()];
+        for (int i = 0; i < fileIds.length; i++) {
+            fileIds[i] = strings.add(biggestFiles.get(i).getFilename());
+        }
+        for (DirectoryUsage usage : heaviestDirectories) {
+            strings.add(usage.getPath());
+        }
+        for (DirectoryUsage usage : directoryBreakdown) {
+            strings.add(usage.getPath());
+        }
+        for (DuplicateGroup group : duplicateGroups) {
+            for (String path : group.getPaths()) {
+                strings.add(path);
+            }
+        }
+        for (DirectoryUsage usage : rootUsage) {
+            strings.add(usage.getPath());
+        }
+
+        int flags = (statistics.isCompletedScan() ? FLAG_COMPLETED : 0) | (summary ? FLAG_SUMMARY : 0);
+        out.writeByte(flags);
+        strings.writeTo(out);
+
+        writeVarLong(out, statistics.getTotalFiles());
+        writeVarLong(out, statistics.getTotalFileSize());
+        writeVarLong(out, statistics.getSkippedDuplicates());
+        writeVarLong(out, statistics.getScannedDirectories());
+        writeVarLong(out, statistics.getUnscannedDirectories());
+
+        writeVarLong(out, extensionIds.length);
+        index = 0;
+        for (Integer frequency : extensions.values()) {
+            writeVarLong(out, extensionIds[index++]);
+            writeVarLong(out, frequency);
+        }
+
+        writeVarLong(out, fileIds.length);
+        for (int i = 0; i < fileIds.length; i++) {
+            writeVarLong(out, fileIds[i]);
+            writeVarLong(out, biggestFiles.get(i).getFileSize());
+        }
+
+        writeHistogram(out, statistics.getSizeHistogram());
+        writeDirectories(out, heaviestDirectories, strings);
+        writeDirectories(out, directoryBreakdown, strings);
+
+        writeVarLong(out, statistics.getDuplicateGroupCount());
+        writeVarLong(out, statistics.getDuplicateFiles());
+        writeVarLong(out, statistics.getWastedBytes());
+        writeVarLong(out, duplicateGroups.size());
+        for (DuplicateGroup group : duplicateGroups) {
+            writeVarLong(out, group.getFileSize());
+            List<String> paths = group.getPaths();
+            writeVarLong(out, paths.size());
+            for (String path : paths) {
+                writeVarLong(out, strings.add(path));
+            }
+        }
+        writeDirectories(out, rootUsage, strings);
+    }
+
+    /**
+     * Heaviest directories of a list, in the order of the list.
+     * @param directories
+     * @param max
+     * @return Returns the list itself if it holds at most max directories.
+     */
+    private static List<DirectoryUsage> keepHeaviest(List<DirectoryUsage> directories, int max) {
+        if (directories.size() <= max) {
+            return directories;
+        }
+        List<DirectoryUsage> bySize = new ArrayList<DirectoryUsage>(directories);
+        Collections.sort(bySize, DirectoryUsage.BY_SIZE);
+        DirectoryUsage lightest = bySize.get(Math.max(max - 1, 0));
+        List<DirectoryUsage> heaviest = new ArrayList<DirectoryUsage>(Math.max(max, 0));
+        for (DirectoryUsage usage : directories) {
+            if (heaviest.size() < max && DirectoryUsage.BY_SIZE.compare(usage, lightest) <= 0) {
+                heaviest.add(usage);
+            }
+        }
+        return heaviest;
+    }
+
+    /**
+     * Reads statistics written by writeBody().
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static ScanStatistics readBody(DataInputStream in) throws IOException {
+        int flags = in.readUnsignedByte();
+        String[] strings = StringTable.readFrom(in);
+
+        ScanStatistics statistics = new ScanStatistics();
+        statistics.setCompletedScan((flags & FLAG_COMPLETED) != 0);
+        statistics.setTotalFiles(readVarLong(in));
+        statistics.setTotalFileSize(readVarLong(in));
+        statistics.setSkippedDuplicates(readVarLong(in));
+        statistics.setScannedDirectories(readVarLong(in));
+        statistics.setUnscannedDirectories(readVarLong(in));
+
+        int extensions = readCount(in);
+        for (int i = 0; i < extensions; i++) {
+            String extension = readString(in, strings);
+            statistics.addFileExtension(extension, (int) readVarLong(in));
+        }
+
+        int biggestFiles = readCount(in);
+        ArrayList<FileStats> files = new ArrayList<FileStats>(biggestFiles);
+        for (int i = 0; i < biggestFiles; i++) {
+            String filename = readString(in, strings);
+            files.add(new FileStats(filename, readVarLong(in)));
+        }
+        statistics.setBiggestFiles(files);
+
+        readHistogram(in, statistics.getSizeHistogram());
+        for (DirectoryUsage usage : readDirectories(in, strings)) {
+            statistics.addHeaviestDirectory(usage);
+        }
+        for (DirectoryUsage usage : readDirectories(in, strings)) {
+            statistics.addDirectoryBreakdown(usage);
+        }
+
+        statistics.setDuplicateCounts(readVarLong(in), readVarLong(in), readVarLong(in));
+        int duplicateGroups = readCount(in);
+        for (int i = 0; i < duplicateGroups; i++) {
+            long fileSize = readVarLong(in);
+            int count = readCount(in);
+            if (count < 2) {
+                throw new IOException("Malformed duplicate group");
+            }
+            List<String> paths = new ArrayList<String>(count);
+            for (int j = 0; j < count; j++) {
+                paths.add(readString(in, strings));
+            }
+            statistics.offerDuplicateGroup(new DuplicateGroup(fileSize, paths));
+        }
+        for (DirectoryUsage usage : readDirectories(in, strings)) {
+            statistics.addRootUsage(usage);
+        }
+        return statistics;
+    }
+
+    private static void writeDirectories(DataOutputStream out, List<DirectoryUsage> directories, StringTable strings) throws IOException {
+        writeVarLong(out, directories.size());
+        for (DirectoryUsage usage : directories) {
+            writeVarLong(out, strings.add(usage.getPath()));
+            writeVarLong(out, usage.getTotalFiles());
+            writeVarLong(out, usage.getTotalFileSize());
+        }
+    }
+
+    private static List<DirectoryUsage> readDirectories(DataInputStream in, String[] strings) throws IOException {
+        int count = readCount(in);
+        List<DirectoryUsage> directories = new ArrayList<DirectoryUsage>(count);
+        for (int i = 0; i < count; i++) {
+            String path = readString(in, strings);
+            directories.add(new DirectoryUsage(path, readVarLong(in), readVarLong(in)));
+        }
+        return directories;
+    }
+
+    /**
+     * Writes the non-empty buckets of a histogram as (index gap, count) pairs.
+     */
+    private static void writeHistogram(DataOutputStream out, SizeHistogram histogram) throws IOException {
+        int buckets = 0;
+        for (int index = 0; index < SizeHistogram.BUCKETS; index++) {
+            if (histogram.getBucketCount(index) > 0) {
+                buckets++;
+            }
+        }
+
+        writeVarLong(out, buckets);
+        if (buckets == 0) {
+            return;
+        }
+        writeVarLong(out, histogram.getMin());
+        writeVarLong(out, histogram.getMax());
+        int previous = 0;
+        for (int index = 0; index < SizeHistogram.BUCKETS; index++) {
+            long count = histogram.getBucketCount(index);
+            if (count > 0) {
+                writeVarLong(out, index - previous);
+                writeVarLong(out, count);
+                previous = index;
+            }
+        }
+    }
+
+    private static void readHistogram(DataInputStream in, SizeHistogram histogram) throws IOException {
+        int buckets = readCount(in);
+        if (buckets == 0) {
+            return;
+        }
+        histogram.setRange(readVarLong(in), readVarLong(in));
+        long index = 0;
+        for (int i = 0; i < buckets; i++) {
+            index += readVarLong(in);
+            long count = readVarLong(in);
+            if (index < 0 || index >= SizeHistogram.BUCKETS || count <= 0) {
+                throw new IOException("Malformed size histogram");
+            }
+            histogram.addToBucket((int) index, count);
+        }
+    }
+
+    /**
+     * Writes an unsigned varint, 7 bits per byte with the high bit marking continuation.
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads an unsigned varint written by writeVarLong().
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Reads a varint count, rejecting values no valid stream contains.
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    static int readCount(DataInputStream in) throws IOException {
+        long count = readVarLong(in);
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Malformed count " + count);
+        }
+        return (int) count;
+    }
+
+    private static String readString(DataInputStream in, String[] strings) throws IOException {
+        long index = readVarLong(in);
+        if (index < 0 || index >= strings.length) {
+            throw new IOException("Malformed string index " + index);
+        }
+        return strings[(int) index];
+    }
+
+    /**
+     * Table of distinct strings, written once and referred to by index.
+     */
+    private static class StringTable {
+
+        private final Map<String, Integer> ids = new HashMap<String, Integer>();
+        private final List<String> strings = new ArrayList<String>();
+
+        int add(String string) {
+            Integer id = ids.get(string);
+            if (id == null) {
+                id = strings.size();
+                ids.put(string, id);
+                strings.add(string);
+            }
+            return id;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            writeVarLong(out, strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(UTF_8);
+                writeVarLong(out, bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        static String[] readFrom(DataInputStream in) throws IOException {
+            String[] strings = new String[readCount(in)];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[readCount(in)];
+                in.readFully(bytes);
+                strings[i] = new String(bytes, UTF_8);
+            }
+            return strings;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Entry point of the scan engine, independent of any platform.
+ * Picks an engine for the options, loads and saves the index of the previous scan
+ * and reports progress to a listener while walking the roots. Duplicates are searched
+ * after the traversal, if the options ask for them.
+ *
+ * scanVolumes() scans roots on different devices side by side, each with its own engine
+ * and index, so every device works through its own I/O queue.
+ */
+public class Scanner {
+
+    private final ScanOptions options;
+
+    /**
+     * Constructor with parameters.
+     * @param options
+     */
+    public Scanner(ScanOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Options of this scanner.
+     * @return
+     */
+    public ScanOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Scans the roots on the calling thread, worker threads are used when parallelism is above 1.
+     * @param roots Directories to scan.
+     * @param listener Receives progress, may be null.
+     * @param token Cancels the scan or limits it with budgets, may be null. Started by this method.
+     * @return Scan statistics, flagged as not completed if the scan was cancelled or ran out of budget.
+     *         Statistics of such a partial scan cover the directories counted by getScannedDirectories().
+     */
+    public ScanStatistics scan(File[] roots, ScanListener listener, CancellationToken token) {
+        if (token == null) {
+            token = new CancellationToken();
+        }
+        AbstractTraversalEngine engine = createEngine();
+        configureEngine(engine, createIoBudget());
+        if (options.isFindDuplicates()) {
+            engine.setDuplicateFinder(new DuplicateFinder(options.getDuplicateThreads()));
+        }
+
+        File indexFile = getIndexFile();
+        if (indexFile != null) {
+            engine.setScanIndex(ScanIndex.load(indexFile));
+        }
+
+        //Estimate totals from the previous scan, or from the used space of the volumes
+        ScanIndex index = engine.getScanIndex();
+        if (index != null && index.getPreviousTotalFiles() > 0) {
+            engine.getProgress().setEstimatedTotals(index.getPreviousTotalFiles(), index.getPreviousTotalFileSize());
+        } else {
+            engine.getProgress().setEstimatedTotals(0, getUsedBytes(roots));
+        }
+
+        ProgressSampler sampler = null;
+        if (listener != null) {
+            SnapshotPublisher publisher = null;
+            if (options.isLiveStatistics()) {
+                publisher = new SnapshotPublisher();
+                engine.setSnapshotPublisher(publisher);
+            }
+            sampler = new ProgressSampler(engine.getProgress(), listener, options.getProgressIntervalMillis(), publisher);
+            sampler.start();
+        }
+
+        ScanStatistics statistics = null;
+        token.start(engine.getProgress());
+        try {
+            statistics = engine.traverse(roots, token);
+        } finally {
+            if (sampler != null) {
+                listener.onProgress(sampler.stop(statistics));
+            }
+        }
+
+        if (engine.getDuplicateFinder() != null && statistics.isCompletedScan()) {
+            engine.getDuplicateFinder().findDuplicates(roots, statistics, token);
+        }
+        if (!statistics.isCompletedScan()) {
+            long found = engine.getProgress().getFoundDirectories();
+            statistics.setUnscannedDirectories(Math.max(0, found - statistics.getScannedDirectories()));
+        }
+
+        if (statistics.isCompletedScan()) {
+            saveIndex(index, indexFile, listener);
+        }
+        return statistics;
+    }
+
+    /**
+     * Scans every root as a separate volume, all volumes at the same time on one thread each.
+     * The scanner threads of the options are shared out among the volumes, at least one each.
+     * Every volume keeps its own index next to the index file of the options. Paths start with
+     * the root of their volume. Duplicates are searched across all volumes once every volume
+     * completed, they are only reported in the combined statistics.
+     * @param roots Roots of distinct volumes, none inside another.
+     * @param listener Receives progress of all volumes together, may be null.
+     * @param token Cancels all volumes or limits them with budgets, may be null. Started by this method.
+     * @return Statistics per volume and combined, flagged as not completed like scan() does.
+     */
+    public VolumeScanResult scanVolumes(File[] roots, ScanListener listener, CancellationToken token) {
+        if (roots.length == 0) {
+            throw new IllegalArgumentException("No volumes to scan");
+        }
+        if (token == null) {
+            token = new CancellationToken();
+        }
+        ScanProgress progress = new ScanProgress();
+        IoBudget ioBudget = createIoBudget();
+        DuplicateFinder duplicateFinder = options.isFindDuplicates() ? new DuplicateFinder(options.getDuplicateThreads()) : null;
+        int parallelism = Math.max(1, options.getParallelism() / roots.length);
+
+        AbstractTraversalEngine[] engines = new AbstractTraversalEngine[roots.length];
+        File[] indexFiles = new File[roots.length];
+        long previousFiles = 0;
+        long previousBytes = 0;
+        boolean previousTotalsKnown = true;
+        for (int i = 0; i < roots.length; i++) {
+            engines[i] = createEngine(parallelism);
+            configureEngine(engines[i], ioBudget);
+            engines[i].setQualifiedPaths(true);
+            engines[i].setProgress(new ScanProgress(progress));
+            engines[i].setDuplicateFinder(duplicateFinder);
+
+            ScanIndex index = null;
+            if (getIndexFile() != null) {
+                indexFiles[i] = getVolumeIndexFile(getIndexFile(), roots[i]);
+                index = ScanIndex.load(indexFiles[i]);
+                engines[i].setScanIndex(index);
+            }
+            if (index != null && index.getPreviousTotalFiles() > 0) {
+                previousFiles += index.getPreviousTotalFiles();
+                previousBytes += index.getPreviousTotalFileSize();
+            } else {
+                previousTotalsKnown = false;
+            }
+        }
+        if (previousTotalsKnown) {
+            progress.setEstimatedTotals(previousFiles, previousBytes);
+        } else {
+            progress.setEstimatedTotals(0, getUsedBytes(roots));
+        }
+
+        ProgressSampler sampler = null;
+        if (listener != null) {
+            SnapshotPublisher publisher = null;
+            if (options.isLiveStatistics()) {
+                publisher = new SnapshotPublisher();
+                for (AbstractTraversalEngine engine : engines) {
+                    engine.setSnapshotPublisher(publisher);
+                }
+            }
+            sampler = new ProgressSampler(progress, listener, options.getProgressIntervalMillis(), publisher);
+            sampler.start();
+        }
+
+        List<ScanStatistics> volumes;
+        ScanStatistics combined = null;
+        token.start(progress);
+        try {
+            volumes = traverseVolumes(engines, roots, token);
+            combined = new ScanStatistics();
+            for (int i = 0; i < roots.length; i++) {
+                ScanStatistics statistics = volumes.get(i);
+                if (!statistics.isCompletedScan()) {
+                    long found = engines[i].getProgress().getFoundDirectories();
+                    statistics.setUnscannedDirectories(Math.max(0, found - statistics.getScannedDirectories()));
+                }
+                combined.merge(statistics);
+            }
+        } finally {
+            if (sampler != null) {
+                listener.onProgress(sampler.stop(combined));
+            }
+        }
+
+        for (int i = 0; i < roots.length; i++) {
+            if (volumes.get(i).isCompletedScan()) {
+                saveIndex(engines[i].getScanIndex(), indexFiles[i], listener);
+            }
+        }
+        if (duplicateFinder != null && combined.isCompletedScan()) {
+            //No single root to report paths relative to, keep them starting with their volume
+            duplicateFinder.findDuplicates(new File[0], combined, token);
+        }
+        return new VolumeScanResult(Arrays.asList(roots), volumes, combined);
+    }
+
+    /**
+     * Traverses every volume on a thread of its own.
+     * @return Statistics of every volume, in the order of the roots.
+     */
+    private static List<ScanStatistics> traverseVolumes(AbstractTraversalEngine[] engines, File[] roots, final CancellationToken token) {
+        ExecutorService pool = Executors.newFixedThreadPool(roots.length);
+        List<ScanStatistics> volumes = new ArrayList<ScanStatistics>(roots.length);
+        try {
+            List<Future<ScanStatistics>> results = new ArrayList<Future<ScanStatistics>>(roots.length);
+            for (int i = 0; i < roots.length; i++) {
+                final AbstractTraversalEngine engine = engines[i];
+                final File[] volumeRoots = new File[] {roots[i]};
+                results.add(pool.submit(new Callable<ScanStatistics>() {
+                    @Override
+                    public ScanStatistics call() {
+                        return engine.traverse(volumeRoots, token);
+                    }
+                }));
+            }
+            for (Future<ScanStatistics> result : results) {
+                volumes.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            //Stop the volumes still running, nobody waits for their partial statistics
+            token.cancel();
+            Thread.currentThread().interrupt();
+            while (volumes.size() < roots.length) {
+                ScanStatistics statistics = new ScanStatistics();
+                statistics.setCompletedScan(false);
+                volumes.add(statistics);
+            }
+        } catch (ExecutionException e) {
+            //Traversal doesn't throw checked exceptions, rethrow runtime failures unchanged
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            pool.shutdown();
+        }
+        return volumes;
+    }
+
+    /**
+     * Index file of one volume, next to the index file of the options.
+     * @param indexFile
+     * @param root
+     * @return
+     */
+    static File getVolumeIndexFile(File indexFile, File root) {
+        return new File(indexFile.getPath() + "." + Integer.toHexString(root.getAbsolutePath().hashCode()));
+    }
+
+    private void configureEngine(AbstractTraversalEngine engine, IoBudget ioBudget) {
+        engine.setFollowSymlinks(options.isFollowSymlinks());
+        engine.setOneFileSystem(options.isOneFileSystem());
+        engine.setIoBudget(ioBudget);
+        engine.setFilter(options.getFilter());
+        engine.setNameIndex(options.getNameIndex());
+        engine.setPreviousNameIndex(options.getPreviousNameIndex());
+        engine.setCatalogWriter(options.getCatalogWriter());
+        engine.setWatchedTree(options.getWatchedTree());
+    }
+
+    /**
+     * Index file of the options, unless a filter is set: the index of a filtered scan
+     * would only hold the selected files and mislead the next scan.
+     * @return Returns null if the scan doesn't use an index.
+     */
+    private File getIndexFile() {
+        return options.getFilter() == null ? options.getIndexFile() : null;
+    }
+
+    /**
+     * Budget of the options, shared by all engines of a scan.
+     * @return Returns null for full speed.
+     */
+    private IoBudget createIoBudget() {
+        return options.getMaxEntriesPerSecond() > 0 ? new IoBudget(options.getMaxEntriesPerSecond()) : null;
+    }
+
+    private static void saveIndex(ScanIndex index, File indexFile, ScanListener listener) {
+        if (index == null) {
+            return;
+        }
+        try {
+            index.save(indexFile);
+        } catch (IOException e) {
+            if (listener != null) {
+                listener.onWarning("Could not save scan index " + indexFile, e);
+            }
+        }
+    }
+
+    /**
+     * Picks the sequential engine for a single thread, the fork/join engine otherwise.
+     * @return
+     */
+    protected AbstractTraversalEngine createEngine() {
+        return createEngine(options.getParallelism());
+    }
+
+    /**
+     * Picks the sequential engine for a single thread, the fork/join engine otherwise.
+     * @param parallelism Number of scanner threads of the engine.
+     * @return
+     */
+    protected AbstractTraversalEngine createEngine(int parallelism) {
+        if (parallelism == 1) {
+            return new SequentialTraversalEngine(options.getBackend());
+        }
+        return new ForkJoinTraversalEngine(options.getBackend(), parallelism,
+                ForkJoinTraversalEngine.DEFAULT_INLINE_THRESHOLD);
+    }
+
+    /**
+     * Used space of the volumes holding the roots, an upper bound for the bytes a scan finds.
+     * @param roots
+     * @return
+     */
+    static long getUsedBytes(File[] roots) {
+        long usedBytes = 0;
+        for (File root : roots) {
+            usedBytes += root.getTotalSpace() - root.getFreeSpace();
+        }
+        return usedBytes;
+    }
+}
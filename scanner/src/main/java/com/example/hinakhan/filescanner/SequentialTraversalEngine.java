@@ -0,0 +1,79 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Traversal engine walking directories depth-first on the calling thread.
+ */
+public class SequentialTraversalEngine extends AbstractTraversalEngine {
+
+    /**
+     * Default constructor, uses the java.io backend.
+     */
+    public SequentialTraversalEngine() {
+        this(new FileScanBackend());
+    }
+
+    /**
+     * Constructor with parameters.
+     * @param backend Backend used to list directories.
+     */
+    public SequentialTraversalEngine(ScanBackend backend) {
+        super(backend);
+    }
+
+    @Override
+    public ScanStatistics traverse(File[] roots, TraversalCallback callback) {
+        startTraversal(roots, 1);
+        SequentialVisitor visitor = new SequentialVisitor(new ScanStatistics(), callback);
+        for (File root : roots) {
+            boolean cancelTask = traverseDirectory(createRootNode(root, roots.length), visitor);
+            if (cancelTask) {
+                break;
+            }
+        }
+        return visitor.totals;
+    }
+
+    /**
+     * Traverses directory computing scan statistics.
+     * @param node
+     * @param visitor
+     * @return Boolean flag indicating is traversal was cancelled.
+     */
+    protected boolean traverseDirectory(DirectoryNode node, SequentialVisitor visitor) {
+        List<DirectoryNode> subdirectories = scanDirectory(node, visitor.totals, visitor);
+        for (DirectoryNode subdirectory : subdirectories) {
+            if (visitor.cancelled || traverseDirectory(subdirectory, visitor)) {
+                //Stop directory traversal
+                return true;
+            }
+        }
+        return visitor.cancelled;
+    }
+
+    /**
+     * Visitor checking the callback for cancellation.
+     */
+    protected static class SequentialVisitor extends DirectoryVisitor {
+
+        private final ScanStatistics totals;
+        private final TraversalCallback callback;
+        private boolean cancelled;
+
+        SequentialVisitor(ScanStatistics totals, TraversalCallback callback) {
+            this.totals = totals;
+            this.callback = callback;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            if (!cancelled && callback.isCancelled()) {
+                totals.setCompletedScan(false);
+                cancelled = true;
+            }
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.Serializable;
+
+/**
+ * Histogram of file sizes with log-linear buckets, usable as a mergeable quantile sketch.
+ * Sizes are grouped by their power of two, and every power of two is split into SUB_BUCKETS
+ * linear sub-buckets, so a quantile is off by at most 1/SUB_BUCKETS of its value. Sizes below
+ * SUB_BUCKETS are counted exactly.
+ *
+ * Recording costs O(1) and memory doesn't grow with the number of files: a row of sub-buckets
+ * is allocated the first time a size of its power of two is seen, at most ROWS rows. Merging
+ * adds bucket counts, so shards combine to exactly the histogram of a sequential scan.
+ */
+public class SizeHistogram implements Serializable {
+
+    public static final int SUB_BUCKET_BITS = 4;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; //Linear sub-buckets per power of two
+    static final int ROWS = 64 - SUB_BUCKET_BITS; //Row 0 holds sizes below SUB_BUCKETS, row r sizes in [2^(r+3), 2^(r+4))
+    static final int BUCKETS = ROWS * SUB_BUCKETS; //Number of bucket indexes
+
+    private long[][] rows = new long[ROWS][]; //Counts per row and sub-bucket, rows allocated on demand
+    private long count; //Number of recorded sizes
+    private long min = Long.MAX_VALUE; //Smallest recorded size
+    private long max = Long.MIN_VALUE; //Largest recorded size
+
+    /**
+     * Record a file size.
+     * @param size Size in bytes, negative sizes are counted as zero.
+     */
+    public void record(long size) {
+        if (size < 0) {
+            size = 0;
+        }
+        int index = bucketIndex(size);
+        long[] row = rows[index >>> SUB_BUCKET_BITS];
+        if (row == null) {
+            row = new long[SUB_BUCKETS];
+            rows[index >>> SUB_BUCKET_BITS] = row;
+        }
+        row[index & (SUB_BUCKETS - 1)]++;
+        count++;
+        if (size < min) {
+            min = size;
+        }
+        if (size > max) {
+            max = size;
+        }
+    }
+
+    /**
+     * Remove a size recorded before, like for a deleted file.
+     * The extremes are narrowed to the non-empty buckets when the smallest or largest size is removed,
+     * so they are only exact until then.
+     * @param size Size in bytes, negative sizes are counted as zero.
+     */
+    public void remove(long size) {
+        if (size < 0) {
+            size = 0;
+        }
+        int index = bucketIndex(size);
+        long[] row = rows[index >>> SUB_BUCKET_BITS];
+        if (row == null || row[index & (SUB_BUCKETS - 1)] == 0) {
+            return;
+        }
+        row[index & (SUB_BUCKETS - 1)]--;
+        count--;
+        if (count == 0) {
+            min = Long.MAX_VALUE;
+            max = Long.MIN_VALUE;
+            return;
+        }
+        if (size == min) {
+            int lowest = 0;
+            while (getBucketCount(lowest) == 0) {
+                lowest++;
+            }
+            min = Math.max(min, lowerBound(lowest));
+        }
+        if (size == max) {
+            int highest = BUCKETS - 1;
+            while (getBucketCount(highest) == 0) {
+                highest--;
+            }
+            max = Math.min(max, lowerBound(highest) + bucketWidth(highest) - 1);
+        }
+    }
+
+    /**
+     * Add all sizes recorded by another histogram.
+     * @param other
+     */
+    public void merge(SizeHistogram other) {
+        for (int r = 0; r < ROWS; r++) {
+            long[] otherRow = other.rows[r];
+            if (otherRow == null) {
+                continue;
+            }
+            if (rows[r] == null) {
+                rows[r] = otherRow.clone();
+            } else {
+                for (int i = 0; i < SUB_BUCKETS; i++) {
+                    rows[r][i] += otherRow[i];
+                }
+            }
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Number of recorded sizes.
+     * @return
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Smallest recorded size.
+     * @return Size in bytes, or zero if nothing was recorded.
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Largest recorded size.
+     * @return Size in bytes, or zero if nothing was recorded.
+     */
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    /**
+     * Size below or at which the given fraction of sizes lies, like 0.5 for the median.
+     * @param quantile Fraction between 0 and 1.
+     * @return Size in bytes within 1/SUB_BUCKETS of the exact value, or zero if nothing was recorded.
+     */
+    public long getValueAtQuantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1, Math.max(0, quantile)) * count));
+        if (rank == count) {
+            return max;
+        }
+        long seen = 0;
+        for (int r = 0; r < ROWS; r++) {
+            long[] row = rows[r];
+            if (row == null) {
+                continue;
+            }
+            for (int i = 0; i < SUB_BUCKETS; i++) {
+                seen += row[i];
+                if (seen >= rank) {
+                    int index = (r << SUB_BUCKET_BITS) | i;
+                    long middle = lowerBound(index) + (bucketWidth(index) - 1) / 2;
+                    return Math.max(min, Math.min(max, middle));
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Number of recorded sizes below a limit, exact when the limit is a power of two.
+     * @param size Limit in bytes.
+     * @return
+     */
+    public long getCountBelow(long size) {
+        if (size <= 0) {
+            return 0;
+        }
+        long below = 0;
+        int limit = bucketIndex(size);
+        for (int index = 0; index < limit; index++) {
+            below += getBucketCount(index);
+        }
+        return below;
+    }
+
+    /**
+     * Count of one bucket.
+     * @param index Bucket index below BUCKETS.
+     * @return
+     */
+    long getBucketCount(int index) {
+        long[] row = rows[index >>> SUB_BUCKET_BITS];
+        return row == null ? 0 : row[index & (SUB_BUCKETS - 1)];
+    }
+
+    /**
+     * Restores a histogram read from a stream: adds to the count of a bucket.
+     * @param index Bucket index below BUCKETS.
+     * @param bucketCount
+     */
+    void addToBucket(int index, long bucketCount) {
+        long[] row = rows[index >>> SUB_BUCKET_BITS];
+        if (row == null) {
+            row = new long[SUB_BUCKETS];
+            rows[index >>> SUB_BUCKET_BITS] = row;
+        }
+        row[index & (SUB_BUCKETS - 1)] += bucketCount;
+        count += bucketCount;
+    }
+
+    /**
+     * Restores a histogram read from a stream: sets the exact extremes.
+     * @param min
+     * @param max
+     */
+    void setRange(long min, long max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Bucket of a size: row 0 for sizes below SUB_BUCKETS, otherwise the row of its highest bit
+     * and the sub-bucket of the SUB_BUCKET_BITS bits below it.
+     */
+    static int bucketIndex(long size) {
+        if (size < SUB_BUCKETS) {
+            return (int) size;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(size);
+        int row = exponent - SUB_BUCKET_BITS + 1;
+        int sub = (int) (size >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return (row << SUB_BUCKET_BITS) | sub;
+    }
+
+    /**
+     * Smallest size of a bucket.
+     */
+    static long lowerBound(int index) {
+        int row = index >>> SUB_BUCKET_BITS;
+        int sub = index & (SUB_BUCKETS - 1);
+        if (row == 0) {
+            return sub;
+        }
+        return (long) (SUB_BUCKETS + sub) << (row - 1);
+    }
+
+    /**
+     * Number of sizes in a bucket.
+     */
+    static long bucketWidth(int index) {
+        int row = index >>> SUB_BUCKET_BITS;
+        return row == 0 ? 1 : 1L << (row - 1);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.hinakhan.filescanner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copy-on-publish snapshots of the statistics of running scanner threads.
+ * Every scanner thread owns a slot. After each directory it checks whether a new snapshot was
+ * requested since it last published and, if so, puts a copy of its counters, biggest files and
+ * extension counts into its slot. collect() merges the slots and requests the next round, so copies
+ * are made at most once per collect() and per thread, scanner threads never wait for a lock, and
+ * their statistics are only ever read by themselves. A snapshot holds the copies of the previous
+ * round, it lags by up to one collect() interval.
+ */
+public class SnapshotPublisher {
+
+    private final List<Slot> slots = new ArrayList<Slot>(); //Slots of all scanner threads
+    private final ThreadLocal<Slot> slot = new ThreadLocal<Slot>() {
+        @Override
+        protected Slot initialValue() {
+            Slot slot = new Slot();
+            synchronized (slots) {
+                slots.add(slot);
+            }
+            return slot;
+        }
+    };
+    private volatile long generation; //Round requested by the latest collect()
+
+    /**
+     * Publishes a copy of the statistics of the calling scanner thread if a new round was requested.
+     * @param statistics Statistics owned by the calling thread.
+     */
+    public void offer(ScanStatistics statistics) {
+        long requested = generation;
+        Slot own = slot.get();
+        if (own.generation != requested) {
+            own.copy = statistics.copyForSnapshot();
+            own.generation = requested;
+        }
+    }
+
+    /**
+     * Merges the copies published so far and requests new ones.
+     * @return
+     */
+    public StatisticsSnapshot collect() {
+        ScanStatistics merged = new ScanStatistics();
+        synchronized (slots) {
+            for (Slot slot : slots) {
+                ScanStatistics copy = slot.copy;
+                if (copy != null) {
+                    merged.merge(copy);
+                }
+            }
+            generation++;
+        }
+        return new StatisticsSnapshot(merged, ScanStatistics.MAX_FREQUENT_FILE_EXTENSIONS);
+    }
+
+    /**
+     * Copy published by one scanner thread.
+     */
+    private static class Slot {
+
+        private volatile ScanStatistics copy; //Latest copy, never changed after it was published
+        private long generation = -1; //Round of the copy, only used by the owning thread
+    }
+}
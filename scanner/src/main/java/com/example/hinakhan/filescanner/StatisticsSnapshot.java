@@ -0,0 +1,73 @@
+package com.example.hinakhan.filescanner;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable statistics of a running scan: counters, biggest files and most frequent extensions.
+ * The size histogram and directory usage are only available in the final ScanStatistics.
+ */
+public class StatisticsSnapshot {
+
+    private final long totalFiles; //Files counted so far
+    private final long totalFileSize; //Sum of file sizes counted so far
+    private final long skippedDuplicates; //Entries skipped so far because they were reached before
+    private final long scannedDirectories; //Directories counted so far
+    private final List<FileStats> biggestFiles; //Biggest files so far, by size descending
+    private final Map<String, Integer> frequentFileExtensions; //Most frequent extensions so far
+
+    /**
+     * Constructor with parameters, takes what it needs from statistics no one changes anymore.
+     * @param statistics
+     * @param numExtensions Number of most frequent extensions to keep.
+     */
+    public StatisticsSnapshot(ScanStatistics statistics, int numExtensions) {
+        this.totalFiles = statistics.getTotalFiles();
+        this.totalFileSize = statistics.getTotalFileSize();
+        this.skippedDuplicates = statistics.getSkippedDuplicates();
+        this.scannedDirectories = statistics.getScannedDirectories();
+        this.biggestFiles = Collections.unmodifiableList(statistics.getBiggestFiles());
+        this.frequentFileExtensions = Collections.unmodifiableMap(statistics.getFrequentedFileExtensions(numExtensions));
+    }
+
+    public long getTotalFiles() {
+        return totalFiles;
+    }
+
+    public long getTotalFileSize() {
+        return totalFileSize;
+    }
+
+    public long getSkippedDuplicates() {
+        return skippedDuplicates;
+    }
+
+    public long getScannedDirectories() {
+        return scannedDirectories;
+    }
+
+    /**
+     * Average file size in Kb, like ScanStatistics.getAverageFileSize().
+     * @return
+     */
+    public String getAverageFileSize() {
+        if (totalFiles == 0) {
+            return "0";
+        }
+        return String.valueOf(totalFileSize / (totalFiles * 1024));
+    }
+
+    public List<FileStats> getBiggestFiles() {
+        return biggestFiles;
+    }
+
+    public Map<String, Integer> getFrequentFileExtensions() {
+        return frequentFileExtensions;
+    }
+
+    @Override
+    public String toString() {
+        return totalFiles + " files, " + totalFileSize + " bytes, " + scannedDirectories + " directories";
+    }
+}
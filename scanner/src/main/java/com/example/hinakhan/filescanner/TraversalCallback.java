@@ -0,0 +1,15 @@
+package com.example.hinakhan.filescanner;
+
+/**
+ * Callback used by a traversal engine to check for cancellation.
+ * Implementations must be thread safe, engines may call them from several worker threads.
+ * Progress is reported through ScanProgress counters instead.
+ */
+public interface TraversalCallback {
+
+    /**
+     * Checked by the engine before every file and directory.
+     * @return Returns true if the traversal should stop.
+     */
+    boolean isCancelled();
+}
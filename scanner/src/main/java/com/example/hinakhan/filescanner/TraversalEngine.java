@@ -0,0 +1,17 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+
+/**
+ * Strategy for walking directory trees and computing scan statistics.
+ */
+public interface TraversalEngine {
+
+    /**
+     * Traverses the given directories computing scan statistics.
+     * @param roots Directories to scan.
+     * @param callback Progress and cancellation callback.
+     * @return Scan statistics, flagged as not completed if the traversal was cancelled.
+     */
+    ScanStatistics traverse(File[] roots, TraversalCallback callback);
+}
@@ -0,0 +1,243 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the statistics of a WatchedTree current by watching its directories for changes.
+ * Subclasses register a platform watch per directory, like inotify through WatchService or FileObserver,
+ * and report changed directories with onChange(). Changes wait in a bounded ChangeQueue coalescing
+ * repeated changes of a directory, a thread of the watcher applies them once they settled for
+ * settleMillis: only the changed directories are listed again. When changes were lost because the
+ * queue or the platform overflowed, the affected subtree is listed again instead.
+ *
+ * Platforms limit the number of watches, like the max_user_watches of inotify, so at most
+ * MAX_WATCHED_DIRECTORIES directories are watched, closest to the roots first. Changes in the
+ * other directories are only seen when a subtree holding them is listed again.
+ */
+public abstract class TreeWatcher {
+
+    public static final long DEFAULT_SETTLE_MILLIS = 500;
+    public static int MAX_WATCHED_DIRECTORIES = 8192; //Watches registered at most, inotify allows 8192 per user by default
+
+    /**
+     * Receives the statistics after changes were applied, on the thread of the watcher.
+     */
+    public interface Listener {
+
+        /**
+         * Changed files were applied to the statistics.
+         * @param statistics Copy of the current statistics.
+         */
+        void onStatisticsChanged(ScanStatistics statistics);
+    }
+
+    private final WatchedTree tree; //Tree kept current
+    private final ChangeQueue queue; //Changed directories waiting to be listed again
+    private final Set<String> watched = new HashSet<String>(); //Paths of the watched directories, thread of the watcher only once started
+    private long settleMillis = DEFAULT_SETTLE_MILLIS; //Time without new changes before they are applied
+    private volatile Listener listener; //Receives the statistics after changes, may be null
+    private volatile int unwatchedDirectories; //Directories not watched because of MAX_WATCHED_DIRECTORIES
+    private Thread thread; //Applies the changes, null until started
+
+    /**
+     * Constructor with parameters.
+     * @param tree Tree with the statistics of a completed scan attached.
+     * @param queueCapacity Max number of changed directories waiting, more are collapsed into a subtree.
+     */
+    protected TreeWatcher(WatchedTree tree, int queueCapacity) {
+        if (!tree.isAttached()) {
+            throw new IllegalArgumentException("No statistics attached to the tree");
+        }
+        this.tree = tree;
+        this.queue = new ChangeQueue(queueCapacity);
+    }
+
+    /**
+     * Tree kept current.
+     * @return
+     */
+    public WatchedTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Queue of changed directories.
+     * @return
+     */
+    public ChangeQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * @param settleMillis Time without new changes before they are applied, zero to apply them right away.
+     */
+    public void setSettleMillis(long settleMillis) {
+        this.settleMillis = settleMillis;
+    }
+
+    /**
+     * @param listener Receives the statistics after changes, may be null.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Number of directories watched.
+     * @return
+     */
+    public synchronized int getWatchedDirectories() {
+        return watched.size();
+    }
+
+    /**
+     * Number of directories not watched because MAX_WATCHED_DIRECTORIES were watched already.
+     * @return
+     */
+    public int getUnwatchedDirectories() {
+        return unwatchedDirectories;
+    }
+
+    /**
+     * Watches every directory of the tree and starts applying changes.
+     * @throws IOException If the platform can't watch directories.
+     */
+    public synchronized void start() throws IOException {
+        if (thread != null) {
+            throw new IllegalStateException("Watcher was started before");
+        }
+        for (String path : tree.getDirectoryPaths()) {
+            watch(path);
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                applyChanges();
+            }
+        }, "FileScanner-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops applying changes and removes every watch. Changes still queued are dropped.
+     */
+    public void stop() {
+        queue.close();
+        Thread applier;
+        synchronized (this) {
+            applier = thread;
+        }
+        if (applier != null && applier != Thread.currentThread()) {
+            try {
+                applier.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            for (String path : watched) {
+                unwatchDirectory(path);
+            }
+            watched.clear();
+        }
+    }
+
+    /**
+     * Reports a changed directory, called by subclasses on any thread.
+     * @param path Path of the watched directory whose entries changed.
+     */
+    protected void onChange(String path) {
+        queue.offer(path, false);
+    }
+
+    /**
+     * Reports lost changes, called by subclasses on any thread.
+     * @param path Path of the directory below which changes were lost, the empty path for the whole tree.
+     */
+    protected void onOverflow(String path) {
+        queue.offer(path, true);
+    }
+
+    /**
+     * Starts watching a directory, changes of its entries are reported with onChange().
+     * @param path Path of the directory in the tree.
+     * @param dir
+     * @return Returns false if the directory could not be watched.
+     */
+    protected abstract boolean watchDirectory(String path, File dir);
+
+    /**
+     * Stops watching a directory, like when it was removed.
+     * @param path
+     */
+    protected abstract void unwatchDirectory(String path);
+
+    /**
+     * Applies changes as they settle until the queue is closed.
+     */
+    private void applyChanges() {
+        while (true) {
+            List<ChangeQueue.Change> changes;
+            try {
+                changes = queue.take(settleMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (changes == null) {
+                return;
+            }
+            apply(changes);
+        }
+    }
+
+    /**
+     * Lists the changed directories again and notifies the listener.
+     * @param changes
+     * @return Returns true if the statistics changed.
+     */
+    boolean apply(List<ChangeQueue.Change> changes) {
+        List<String> added = new ArrayList<String>();
+        List<String> removed = new ArrayList<String>();
+        boolean changed = false;
+        for (ChangeQueue.Change change : changes) {
+            changed |= tree.refresh(change.getPath(), change.isSubtree(), added, removed);
+        }
+        synchronized (this) {
+            for (String path : removed) {
+                if (watched.remove(path)) {
+                    unwatchDirectory(path);
+                }
+            }
+            for (String path : added) {
+                if (watch(path)) {
+                    //Entries created before the watch was registered were missed, list the directory once more
+                    queue.offer(path, false);
+                }
+            }
+        }
+        Listener receiver = listener;
+        if (changed && receiver != null) {
+            receiver.onStatisticsChanged(tree.getStatistics());
+        }
+        return changed;
+    }
+
+    private boolean watch(String path) {
+        if (watched.size() >= MAX_WATCHED_DIRECTORIES) {
+            unwatchedDirectories++;
+            return false;
+        }
+        File dir = tree.getDirectory(path);
+        if (dir != null && watchDirectory(path, dir)) {
+            watched.add(path);
+            return true;
+        }
+        return false;
+    }
+}
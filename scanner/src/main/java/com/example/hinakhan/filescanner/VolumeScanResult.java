@@ -0,0 +1,78 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statistics of a scan of several volumes, per volume and combined.
+ * Paths in all statistics start with the root of their volume.
+ */
+public class VolumeScanResult {
+
+    private final List<File> roots; //Root of every volume
+    private final List<ScanStatistics> volumes; //Statistics of every volume, in the order of the roots
+    private final ScanStatistics combined; //Statistics of all volumes together
+
+    /**
+     * Constructor with parameters.
+     * @param roots
+     * @param volumes Statistics of every volume, in the order of the roots.
+     * @param combined Merged statistics of all volumes.
+     */
+    public VolumeScanResult(List<File> roots, List<ScanStatistics> volumes, ScanStatistics combined) {
+        if (roots.size() != volumes.size()) {
+            throw new IllegalArgumentException("Need statistics for " + roots.size() + " volumes: " + volumes.size());
+        }
+        this.roots = new ArrayList<File>(roots);
+        this.volumes = new ArrayList<ScanStatistics>(volumes);
+        this.combined = combined;
+    }
+
+    /**
+     * Number of volumes scanned.
+     * @return
+     */
+    public int getVolumeCount() {
+        return roots.size();
+    }
+
+    /**
+     * Root of a volume.
+     * @param volume Index of the volume, in the order the roots were passed in.
+     * @return
+     */
+    public File getRoot(int volume) {
+        return roots.get(volume);
+    }
+
+    /**
+     * Statistics of a volume. Duplicates are searched across volumes and only reported combined.
+     * @param volume Index of the volume, in the order the roots were passed in.
+     * @return
+     */
+    public ScanStatistics getVolumeStatistics(int volume) {
+        return volumes.get(volume);
+    }
+
+    /**
+     * Did any volume complete. Its index was then saved, even if the combined statistics are not completed.
+     * @return
+     */
+    public boolean isAnyVolumeCompleted() {
+        for (ScanStatistics volume : volumes) {
+            if (volume.isCompletedScan()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Statistics of all volumes together.
+     * @return
+     */
+    public ScanStatistics getCombined() {
+        return combined;
+    }
+}
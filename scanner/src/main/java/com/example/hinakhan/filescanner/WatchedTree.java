@@ -0,0 +1,688 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Model of a scanned tree kept after the scan, so its statistics can follow changes without scanning again.
+ * The traversal workers add every directory and counted file while scanning, each worker buffers its adds
+ * and merges them into the tree once per BATCH_ENTRIES. Adds below a directory merged before the directory
+ * itself wait for it. Readers merge the buffered adds first. Once the scan completed,
+ * attach() adopts its statistics and refresh() lists a changed directory again: the difference to its
+ * previous listing is applied to the statistics in place. Counters, extensions, the size distribution
+ * and the biggest files are updated per added, removed or resized file, the totals of the directory and
+ * its ancestors per change. New subdirectories are scanned, removed ones are subtracted with their subtree.
+ *
+ * Rankings are brought up to date lazily by getStatistics(): the directory rankings from the totals of
+ * every directory, and the biggest files from every file if one of them was removed or shrunk.
+ * Refreshing uses the backend, filter, link and file system options of the scan. Directories are keyed by
+ * device and inode where the backend reads them, a listed directory already held under another path is
+ * skipped like the scan skips it. Hard links to files created after the scan are counted once per link
+ * until the next full scan. Duplicate groups are not updated.
+ * Keeps the name and size of every counted file in a FileStore, about 16 bytes per file plus its name.
+ * Thread safe.
+ */
+public class WatchedTree {
+
+    public static int BATCH_ENTRIES = 512; //Directories and files buffered by a worker before they are merged into the tree
+
+    private static final String[] NO_NAMES = new String[0];
+    private static final long[] NO_SIZES = new long[0];
+    private static final int[] NO_FILES = new int[0];
+
+    private final Map<String, Directory> directories = new HashMap<String, Directory>(); //Directories by path, as reported in statistics
+    private final Map<InodeKey, Directory> inodes = new HashMap<InodeKey, Directory>(); //Directories by device and inode, if read by the backend
+    private final List<Directory> roots = new ArrayList<Directory>(); //Roots of the scan
+    private final FileStore store = new FileStore(); //Names and sizes of the counted files
+    private ScanBackend backend; //Lists changed directories, the backend of the scan
+    private ScanFilter filter; //Selects the files counted, null for all
+    private boolean followSymlinks; //Count linked files and descend into linked directories
+    private boolean oneFileSystem; //Don't descend into directories on other devices than the roots
+    private long[] rootDevices = new long[0]; //Devices of the roots of the scan
+    private long fileCount; //Files held
+    private ScanStatistics statistics; //Statistics updated in place, null until attached
+    private boolean rankingsChanged; //Directory totals changed since the directory rankings were built
+    private boolean biggestFilesLost; //A file among the biggest ones was removed or shrunk
+    private long changes; //Files and directories added, removed or resized since attached
+
+    private final Map<String, AddBuffer> waiting = new HashMap<String, AddBuffer>(); //Adds merged before their directory, by its path
+    private final List<AddBuffer> buffers = new ArrayList<AddBuffer>(); //Buffers of all workers, guarded by itself
+    private final ThreadLocal<AddBuffer> buffer = new ThreadLocal<AddBuffer>() {
+        @Override
+        protected AddBuffer initialValue() {
+            AddBuffer created = new AddBuffer(BATCH_ENTRIES);
+            synchronized (buffers) {
+                buffers.add(created);
+            }
+            return created;
+        }
+    };
+
+    /**
+     * Records the options of the scan filling the tree, called by the traversal engine.
+     * @param backend
+     * @param filter
+     * @param followSymlinks
+     * @param oneFileSystem
+     * @param rootDevices Devices of the roots, UNKNOWN where not read.
+     */
+    synchronized void startTraversal(ScanBackend backend, ScanFilter filter, boolean followSymlinks,
+                                     boolean oneFileSystem, long[] rootDevices) {
+        this.backend = backend;
+        this.filter = filter;
+        this.followSymlinks = followSymlinks;
+        this.oneFileSystem = oneFileSystem;
+        this.rootDevices = rootDevices.clone();
+    }
+
+    /**
+     * Adds a root of the scan, called by the traversal engine.
+     * @param path Path reported for the root, empty unless paths start with the root path.
+     * @param dir
+     */
+    synchronized void addRoot(String path, File dir) {
+        DirectoryEntry entry = new DirectoryEntry();
+        InodeKey key = backend != null && backend.readEntry(dir, entry) ? InodeKey.of(entry) : null;
+        Directory root = new Directory(null, path, dir, key, path.length(), 0);
+        directories.put(path, root);
+        roots.add(root);
+        if (key != null) {
+            inodes.put(key, root);
+        }
+    }
+
+    /**
+     * Adds a subdirectory the scan descends into, called by traversal workers.
+     * @param parentPath Path of the listed directory.
+     * @param entry Entry of the subdirectory.
+     */
+    void addDirectory(String parentPath, DirectoryEntry entry) {
+        AddBuffer worker = buffer.get();
+        if (worker.append(parentPath, entry.getFile(), null, entry.getDevice(), entry.getInode())) {
+            merge(worker);
+        }
+    }
+
+    /**
+     * Adds a counted file, called by traversal workers.
+     * @param dirPath Path of the listed directory.
+     * @param name
+     * @param size
+     */
+    void addFile(String dirPath, String name, long size) {
+        AddBuffer worker = buffer.get();
+        if (worker.append(dirPath, null, name, size, DirectoryEntry.UNKNOWN)) {
+            merge(worker);
+        }
+    }
+
+    /**
+     * Merges a full worker buffer, lock order is the tree, then a buffer, like readers merging all buffers.
+     */
+    private synchronized void merge(AddBuffer worker) {
+        worker.merge();
+    }
+
+    /**
+     * Merges the adds buffered by all workers, called by readers holding the lock of the tree.
+     */
+    private void flush() {
+        synchronized (buffers) {
+            for (AddBuffer each : buffers) {
+                each.merge();
+            }
+        }
+    }
+
+    /**
+     * Adopts the statistics of the scan that filled the tree, they are updated in place from now on.
+     * Sums the totals of every subtree.
+     * @param statistics Statistics of a completed scan.
+     * @throws IllegalArgumentException If the scan was not completed, the tree would miss directories.
+     */
+    public synchronized void attach(ScanStatistics statistics) {
+        if (!statistics.isCompletedScan()) {
+            throw new IllegalArgumentException("Only the statistics of a completed scan can be kept current");
+        }
+        flush();
+        //Adds still waiting belong to no directory of the tree
+        waiting.clear();
+        //Children follow their parents in breadth first order, sum it backwards
+        List<Directory> order = getBreadthFirst();
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Directory directory = order.get(i);
+            directory.subtreeFiles += directory.fileCount;
+            for (int j = 0; j < directory.fileCount; j++) {
+                directory.bytes += store.getFileSize(directory.files[j]);
+            }
+            if (directory.parent != null) {
+                directory.parent.subtreeFiles += directory.subtreeFiles;
+                directory.parent.bytes += directory.bytes;
+            }
+        }
+        this.statistics = statistics;
+    }
+
+    /**
+     * Were the statistics of the scan attached.
+     * @return
+     */
+    public synchronized boolean isAttached() {
+        return statistics != null;
+    }
+
+    /**
+     * Number of directories held.
+     * @return
+     */
+    public synchronized int getDirectoryCount() {
+        flush();
+        return directories.size();
+    }
+
+    /**
+     * Number of files held.
+     * @return
+     */
+    public synchronized long getFileCount() {
+        flush();
+        return fileCount;
+    }
+
+    /**
+     * Number of files and directories added, removed or resized since the statistics were attached.
+     * @return
+     */
+    public synchronized long getChanges() {
+        return changes;
+    }
+
+    /**
+     * Paths of all directories, roots first and every directory before its subdirectories.
+     * @return
+     */
+    public synchronized List<String> getDirectoryPaths() {
+        flush();
+        List<Directory> order = getBreadthFirst();
+        List<String> paths = new ArrayList<String>(order.size());
+        for (Directory directory : order) {
+            paths.add(directory.path);
+        }
+        return paths;
+    }
+
+    /**
+     * Directory of a path.
+     * @param path
+     * @return Returns null if the tree doesn't hold it.
+     */
+    public synchronized File getDirectory(String path) {
+        flush();
+        Directory directory = directories.get(path);
+        return directory != null ? directory.dir : null;
+    }
+
+    /**
+     * Lists a changed directory again and applies the difference to the statistics.
+     * @param path Path of the directory. A path holding none, like an ancestor of several roots,
+     *             refreshes the roots below it.
+     * @param subtree List every directory below it again too, like when changes were lost.
+     * @param addedDirectories Receives the paths of directories added by the refresh, may be null.
+     * @param removedDirectories Receives the paths of directories removed by the refresh, may be null.
+     * @return Returns true if the statistics changed.
+     * @throws IllegalStateException If no statistics were attached.
+     */
+    public synchronized boolean refresh(String path, boolean subtree, List<String> addedDirectories, List<String> removedDirectories) {
+        if (statistics == null) {
+            throw new IllegalStateException("No statistics attached");
+        }
+        if (addedDirectories == null) {
+            addedDirectories = new ArrayList<String>();
+        }
+        if (removedDirectories == null) {
+            removedDirectories = new ArrayList<String>();
+        }
+        long previousChanges = changes;
+        Directory directory = directories.get(path);
+        if (directory != null) {
+            refresh(directory, subtree, addedDirectories, removedDirectories);
+        } else {
+            for (Directory root : new ArrayList<Directory>(roots)) {
+                if (isBelow(root.path, path)) {
+                    refresh(root, subtree, addedDirectories, removedDirectories);
+                }
+            }
+        }
+        return changes != previousChanges;
+    }
+
+    /**
+     * Copy of the current statistics, with the rankings brought up to date.
+     * @return
+     * @throws IllegalStateException If no statistics were attached.
+     */
+    public synchronized ScanStatistics getStatistics() {
+        if (statistics == null) {
+            throw new IllegalStateException("No statistics attached");
+        }
+        if (rankingsChanged) {
+            statistics.clearDirectoryUsage();
+            for (Directory directory : directories.values()) {
+                statistics.addDirectoryUsage(new DirectoryUsage(directory.path, directory.subtreeFiles, directory.bytes), directory.depth);
+            }
+            rankingsChanged = false;
+        }
+        if (biggestFilesLost) {
+            statistics.clearBiggestFiles();
+            for (Directory directory : directories.values()) {
+                for (int i = 0; i < directory.fileCount; i++) {
+                    int file = directory.files[i];
+                    statistics.offerBiggestFile(store.getFileName(file), store.getFileSize(file), directory.path);
+                }
+            }
+            biggestFilesLost = false;
+        }
+        return new ScanStatistics().merge(statistics);
+    }
+
+    /**
+     * Is a path equal to or below another one.
+     */
+    static boolean isBelow(String path, String ancestor) {
+        return ancestor.length() == 0 || path.equals(ancestor)
+                || (path.startsWith(ancestor) && (path.charAt(ancestor.length()) == File.separatorChar
+                || ancestor.charAt(ancestor.length() - 1) == File.separatorChar));
+    }
+
+    private void refresh(Directory directory, boolean subtree, List<String> addedDirectories, List<String> removedDirectories) {
+        Listing listing = new Listing(directory);
+        if (!backend.listDirectory(directory.dir, listing)) {
+            //Deleted directories leave the tree, unreadable ones keep their previous listing
+            if (directory.parent != null && !directory.dir.exists()) {
+                remove(directory, removedDirectories);
+            }
+            return;
+        }
+
+        //Files: compare with the previous listing by name
+        Map<String, Integer> previous = new HashMap<String, Integer>(directory.fileCount * 4 / 3 + 1);
+        for (int i = 0; i < directory.fileCount; i++) {
+            previous.put(store.getFileName(directory.files[i]), i);
+        }
+        boolean[] kept = new boolean[directory.fileCount];
+        int[] files = new int[listing.fileCount];
+        for (int i = 0; i < listing.fileCount; i++) {
+            String name = listing.names[i];
+            long size = listing.sizes[i];
+            Integer index = previous.get(name);
+            if (index == null) {
+                files[i] = store.addFile(name, size);
+                countFile(directory, name, size);
+            } else {
+                kept[index] = true;
+                files[i] = directory.files[index];
+                long previousSize = store.getFileSize(files[i]);
+                if (previousSize != size) {
+                    store.setFileSize(files[i], size);
+                    uncountFile(directory, name, previousSize);
+                    countFile(directory, name, size);
+                }
+            }
+        }
+        for (int i = 0; i < directory.fileCount; i++) {
+            if (!kept[i]) {
+                int file = directory.files[i];
+                uncountFile(directory, store.getFileName(file), store.getFileSize(file));
+                store.removeFile(file);
+            }
+        }
+        fileCount += listing.fileCount - directory.fileCount;
+        directory.files = files;
+        directory.fileCount = listing.fileCount;
+
+        //Subdirectories: remove missing ones first, a new one may be one of them moved here
+        Map<String, Directory> children = new HashMap<String, Directory>(directory.children.size() * 4 / 3 + 1);
+        for (Directory child : directory.children) {
+            children.put(child.dir.getName(), child);
+        }
+        Directory[] listed = new Directory[listing.subdirectories.size()];
+        for (int i = 0; i < listed.length; i++) {
+            listed[i] = children.remove(listing.subdirectories.get(i).getName());
+        }
+        for (Directory child : children.values()) {
+            remove(child, removedDirectories);
+        }
+        for (int i = 0; i < listed.length; i++) {
+            if (listed[i] == null) {
+                Directory child = addIfNotHeld(directory, listing.subdirectories.get(i), listing.keys.get(i));
+                if (child != null) {
+                    scan(child, addedDirectories);
+                }
+            } else if (subtree) {
+                refresh(listed[i], true, addedDirectories, removedDirectories);
+            }
+        }
+    }
+
+    /**
+     * Lists a new directory and its subtree, counting every file.
+     */
+    private void scan(Directory directory, List<String> addedDirectories) {
+        ArrayDeque<Directory> pending = new ArrayDeque<Directory>();
+        pending.add(directory);
+        while (!pending.isEmpty()) {
+            Directory next = pending.poll();
+            addedDirectories.add(next.path);
+            statistics.addScannedDirectory();
+            changes++;
+            Listing listing = new Listing(next);
+            backend.listDirectory(next.dir, listing);
+            for (int i = 0; i < listing.fileCount; i++) {
+                next.addFile(store.addFile(listing.names[i], listing.sizes[i]));
+                countFile(next, listing.names[i], listing.sizes[i]);
+                fileCount++;
+            }
+            for (int i = 0; i < listing.subdirectories.size(); i++) {
+                Directory child = addIfNotHeld(next, listing.subdirectories.get(i), listing.keys.get(i));
+                if (child != null) {
+                    pending.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a directory with its subtree, uncounting every file.
+     */
+    private void remove(Directory directory, List<String> removedDirectories) {
+        addToTotals(directory.parent, -directory.subtreeFiles, -directory.bytes);
+        directory.parent.children.remove(directory);
+        ArrayDeque<Directory> pending = new ArrayDeque<Directory>();
+        pending.add(directory);
+        while (!pending.isEmpty()) {
+            Directory next = pending.poll();
+            for (int i = 0; i < next.fileCount; i++) {
+                int file = next.files[i];
+                if (statistics.removeStatistics(store.getFileName(file), store.getFileSize(file), next.path)) {
+                    biggestFilesLost = true;
+                }
+                store.removeFile(file);
+            }
+            fileCount -= next.fileCount;
+            changes += next.fileCount + 1;
+            directories.remove(next.path);
+            if (next.key != null && inodes.get(next.key) == next) {
+                inodes.remove(next.key);
+            }
+            removedDirectories.add(next.path);
+            statistics.setScannedDirectories(statistics.getScannedDirectories() - 1);
+            pending.addAll(next.children);
+        }
+    }
+
+    private Directory add(Directory parent, File dir, InodeKey key) {
+        String path = parent.path.length() == 0 ? dir.getName() : parent.path + File.separatorChar + dir.getName();
+        Directory directory = new Directory(parent, path, dir, key, parent.rootLength, parent.depth + 1);
+        parent.children.add(directory);
+        directories.put(path, directory);
+        if (key != null) {
+            inodes.put(key, directory);
+        }
+        rankingsChanged = true;
+        if (!waiting.isEmpty()) {
+            AddBuffer below = waiting.remove(path);
+            if (below != null) {
+                below.merge();
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Adds a listed directory unless another directory of the tree still holds its inode,
+     * like the visited set of the scan skips a directory reached twice.
+     * @return Returns null if skipped.
+     */
+    private Directory addIfNotHeld(Directory parent, File dir, InodeKey key) {
+        if (key != null) {
+            Directory holder = inodes.get(key);
+            if (holder != null) {
+                //The holder may have been moved away or replaced since it was listed
+                DirectoryEntry entry = new DirectoryEntry();
+                if (backend.readEntry(holder.dir, entry) && key.equals(InodeKey.of(entry))) {
+                    return null;
+                }
+            }
+        }
+        return add(parent, dir, key);
+    }
+
+    private void countFile(Directory directory, String name, long size) {
+        statistics.updateStatistics(name, size, directory.path);
+        addToTotals(directory, 1, size);
+        changes++;
+    }
+
+    private void uncountFile(Directory directory, String name, long size) {
+        if (statistics.removeStatistics(name, size, directory.path)) {
+            biggestFilesLost = true;
+        }
+        addToTotals(directory, -1, -size);
+        changes++;
+    }
+
+    private void addToTotals(Directory directory, long files, long bytes) {
+        for (; directory != null; directory = directory.parent) {
+            directory.subtreeFiles += files;
+            directory.bytes += bytes;
+        }
+        rankingsChanged = true;
+    }
+
+    private List<Directory> getBreadthFirst() {
+        List<Directory> order = new ArrayList<Directory>(directories.size());
+        order.addAll(roots);
+        for (int i = 0; i < order.size(); i++) {
+            order.addAll(order.get(i).children);
+        }
+        return order;
+    }
+
+    /**
+     * Directory of the tree with its counted files.
+     */
+    private static class Directory {
+
+        private final Directory parent; //Parent directory, null for roots
+        private final String path; //Path as reported in statistics
+        private final File dir; //Directory
+        private final InodeKey key; //Device and inode, null if not read by the backend
+        private final int rootLength; //Length of the root path at the start of path, zero if it doesn't start with it
+        private final int depth; //Levels below the root
+        private final List<Directory> children = new ArrayList<Directory>(); //Subdirectories
+        private int[] files = NO_FILES; //Ids of the counted files in the store
+        private int fileCount; //Counted files
+        private long subtreeFiles; //Files in the subtree, summed when attached
+        private long bytes; //Bytes in the subtree, summed when attached
+
+        Directory(Directory parent, String path, File dir, InodeKey key, int rootLength, int depth) {
+            this.parent = parent;
+            this.path = path;
+            this.dir = dir;
+            this.key = key;
+            this.rootLength = rootLength;
+            this.depth = depth;
+        }
+
+        void addFile(int file) {
+            if (fileCount == files.length) {
+                files = Arrays.copyOf(files, Math.max(4, fileCount * 2));
+            }
+            files[fileCount++] = file;
+        }
+    }
+
+    /**
+     * Directories and files added and not merged into the tree yet, by one worker or waiting for their directory.
+     */
+    private class AddBuffer {
+
+        private String[] parentPaths; //Path of the directory of every add
+        private File[] dirs; //Added directory, null for a file
+        private String[] names; //Name of an added file
+        private long[] values; //Size of an added file, device of an added directory
+        private long[] dirInodes; //Inode of an added directory
+        private int count; //Adds buffered
+
+        AddBuffer(int capacity) {
+            parentPaths = new String[capacity];
+            dirs = new File[capacity];
+            names = new String[capacity];
+            values = new long[capacity];
+            dirInodes = new long[capacity];
+        }
+
+        /**
+         * @return Returns true if the buffer is full and must be merged.
+         */
+        synchronized boolean append(String parentPath, File dir, String name, long value, long inode) {
+            if (count == parentPaths.length) {
+                //Only buffers waiting for a directory grow, worker buffers are merged when full
+                int capacity = Math.max(4, count * 2);
+                parentPaths = Arrays.copyOf(parentPaths, capacity);
+                dirs = Arrays.copyOf(dirs, capacity);
+                names = Arrays.copyOf(names, capacity);
+                values = Arrays.copyOf(values, capacity);
+                dirInodes = Arrays.copyOf(dirInodes, capacity);
+            }
+            parentPaths[count] = parentPath;
+            dirs[count] = dir;
+            names[count] = name;
+            values[count] = value;
+            dirInodes[count] = inode;
+            count++;
+            return count >= BATCH_ENTRIES;
+        }
+
+        /**
+         * Adds the buffered directories and files to the tree, called holding the lock of the tree.
+         */
+        synchronized void merge() {
+            //Adds of a directory follow one another, look it up once
+            String lastPath = null;
+            Directory parent = null;
+            for (int i = 0; i < count; i++) {
+                if (!parentPaths[i].equals(lastPath)) {
+                    lastPath = parentPaths[i];
+                    parent = directories.get(lastPath);
+                }
+                if (parent == null) {
+                    //Listed by another worker whose buffer holds the directory
+                    AddBuffer below = waiting.get(lastPath);
+                    if (below == null) {
+                        below = new AddBuffer(4);
+                        waiting.put(lastPath, below);
+                    }
+                    below.append(lastPath, dirs[i], names[i], values[i], dirInodes[i]);
+                } else if (dirs[i] != null) {
+                    add(parent, dirs[i], dirInodes[i] != DirectoryEntry.UNKNOWN ? new InodeKey(values[i], dirInodes[i]) : null);
+                } else {
+                    parent.addFile(store.addFile(names[i], values[i]));
+                    fileCount++;
+                }
+            }
+            Arrays.fill(parentPaths, 0, count, null);
+            Arrays.fill(dirs, 0, count, null);
+            Arrays.fill(names, 0, count, null);
+            count = 0;
+        }
+    }
+
+    /**
+     * Device and inode of a directory.
+     */
+    private static final class InodeKey {
+
+        private final long device; //Device of the file system
+        private final long inode; //Inode on the device
+
+        InodeKey(long device, long inode) {
+            this.device = device;
+            this.inode = inode;
+        }
+
+        /**
+         * Key of an entry.
+         * @return Returns null if the backend didn't read its inode.
+         */
+        static InodeKey of(DirectoryEntry entry) {
+            return entry.getInode() != DirectoryEntry.UNKNOWN ? new InodeKey(entry.getDevice(), entry.getInode()) : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof InodeKey)) {
+                return false;
+            }
+            InodeKey other = (InodeKey) o;
+            return device == other.device && inode == other.inode;
+        }
+
+        @Override
+        public int hashCode() {
+            long hash = device * 31 + inode;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+    /**
+     * Visitor collecting the files and subdirectories of a directory listed again,
+     * selected like the traversal does.
+     */
+    private class Listing implements ScanBackend.EntryVisitor {
+
+        private final Directory directory; //Directory being listed
+        private final List<File> subdirectories = new ArrayList<File>(); //Subdirectories to descend into
+        private final List<InodeKey> keys = new ArrayList<InodeKey>(); //Keys of the subdirectories, null where not read
+        private String[] names = NO_NAMES; //Names of the counted files
+        private long[] sizes = NO_SIZES; //Sizes of the counted files
+        private int fileCount; //Counted files
+
+        Listing(Directory directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public boolean visitEntry(DirectoryEntry entry) {
+            if (entry.isSymbolicLink() && !followSymlinks) {
+                return true;
+            }
+            if (entry.isDirectory()) {
+                if (oneFileSystem && !AbstractTraversalEngine.isRootDevice(entry.getDevice(), rootDevices)) {
+                    return true;
+                }
+                if (entry.isSymbolicLink() && entry.getInode() == DirectoryEntry.UNKNOWN
+                        && AbstractTraversalEngine.isLinkToAncestor(entry)) {
+                    return true;
+                }
+                if (filter == null || filter.acceptDirectory(directory.path, directory.rootLength, entry.getName())) {
+                    subdirectories.add(entry.getFile());
+                    keys.add(InodeKey.of(entry));
+                }
+            } else if (filter == null || filter.acceptFile(directory.path, directory.rootLength, entry)) {
+                if (fileCount == names.length) {
+                    names = Arrays.copyOf(names, Math.max(4, fileCount * 2));
+                    sizes = Arrays.copyOf(sizes, names.length);
+                }
+                names[fileCount] = entry.getName();
+                sizes[fileCount++] = entry.getSize();
+            }
+            return true;
+        }
+    }
+}
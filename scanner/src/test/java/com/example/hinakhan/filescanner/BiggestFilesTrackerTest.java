@@ -0,0 +1,95 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * Tests for BiggestFilesTracker.
+ */
+public class BiggestFilesTrackerTest extends TestCase {
+
+    public void testKeepsBiggestSortedDescending() {
+        BiggestFilesTracker tracker = new BiggestFilesTracker(3);
+        assertTrue(tracker.offer("a", 10));
+        assertTrue(tracker.offer("b", 50));
+        assertTrue(tracker.offer("c", 30));
+        assertFalse(tracker.qualifies(5));
+        assertFalse(tracker.offer("d", 5));
+        assertTrue(tracker.offer("e", 40));
+        assertEquals(3, tracker.size());
+        assertEquals(Arrays.asList(new FileStats("b", 50L), new FileStats("e", 40L), new FileStats("c", 30L)),
+                tracker.getSortedFiles());
+    }
+
+    public void testTiesAreOrderedByName() {
+        BiggestFilesTracker tracker = new BiggestFilesTracker(2);
+        tracker.offer("c", 10);
+        tracker.offer("b", 10);
+        //Equal size qualifies, but only a name sorting first replaces a retained file
+        assertTrue(tracker.qualifies(10));
+        assertFalse(tracker.offer("d", 10));
+        assertTrue(tracker.offer("a", 10));
+        assertEquals(Arrays.asList(new FileStats("a", 10L), new FileStats("b", 10L)), tracker.getSortedFiles());
+    }
+
+    public void testRemoveThenOfferAgain() {
+        BiggestFilesTracker tracker = new BiggestFilesTracker(3);
+        tracker.offer("a", 10);
+        tracker.offer("b", 20);
+        tracker.offer("c", 30);
+        assertFalse(tracker.remove("b", 21));
+        assertFalse(tracker.remove("x", 20));
+        assertTrue(tracker.remove("b", 20));
+        assertEquals(2, tracker.size());
+        assertTrue(tracker.qualifies(1));
+
+        //The freed slot takes the next file offered, even a small one
+        assertTrue(tracker.offer("d", 1));
+        assertEquals(Arrays.asList(new FileStats("c", 30L), new FileStats("a", 10L), new FileStats("d", 1L)),
+                tracker.getSortedFiles());
+        assertTrue(tracker.remove("c", 30));
+        assertTrue(tracker.offer("c", 15));
+        assertEquals(Arrays.asList(new FileStats("c", 15L), new FileStats("a", 10L), new FileStats("d", 1L)),
+                tracker.getSortedFiles());
+    }
+
+    public void testMergeAtCapacity() {
+        BiggestFilesTracker tracker = new BiggestFilesTracker(3);
+        tracker.offer("a", 10);
+        tracker.offer("b", 20);
+        tracker.offer("c", 30);
+        BiggestFilesTracker other = new BiggestFilesTracker(3);
+        other.offer("d", 25);
+        other.offer("e", 5);
+        other.offer("f", 30);
+        tracker.merge(other);
+        assertEquals(3, tracker.size());
+        assertEquals(Arrays.asList(new FileStats("c", 30L), new FileStats("f", 30L), new FileStats("d", 25L)),
+                tracker.getSortedFiles());
+        assertEquals(3, other.size());
+    }
+
+    public void testZeroCapacity() {
+        BiggestFilesTracker tracker = new BiggestFilesTracker(0);
+        assertFalse(tracker.qualifies(Long.MAX_VALUE));
+        assertFalse(tracker.offer("a", 1));
+        assertTrue(tracker.getSortedFiles().isEmpty());
+        try {
+            new BiggestFilesTracker(-1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            //Negative capacity
+        }
+    }
+
+    public void testClear() {
+        BiggestFilesTracker tracker = new BiggestFilesTracker(2);
+        tracker.offer("a", 10);
+        tracker.offer("b", 20);
+        tracker.clear();
+        assertEquals(0, tracker.size());
+        assertTrue(tracker.offer("c", 1));
+        assertEquals(Arrays.asList(new FileStats("c", 1L)), tracker.getSortedFiles());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Writes catalogs of single entries and of a scan, checking escaping, the summary and that no record is lost.
+ */
+public class CatalogWriterTest extends TestCase {
+
+    private static final String S = File.separator;
+
+    public void testCsvRecordsAreQuoted() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CatalogWriter writer = new CatalogWriter(out, CatalogWriter.Format.CSV);
+        writer.addFile("dir", entry("say \"hi\", you.txt", 12, 1000));
+        writer.addFile("", entry("Gr\u00fc\u00dfe", 0, 2000));
+        writer.finish(new ScanStatistics());
+
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertEquals("path,size,mtime,extension", lines[0]);
+        assertEquals("\"dir" + S + "say \"\"hi\"\", you.txt\",12,1000,\".txt\"", lines[1]);
+        assertEquals("\"Gr\u00fc\u00dfe\",0,2000,", lines[2]);
+        assertEquals("#completed,true", lines[3]);
+        assertEquals("#files,0", lines[4]);
+        assertEquals(2, writer.getRecords());
+    }
+
+    public void testJsonLinesAreEscaped() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CatalogWriter writer = new CatalogWriter(out, CatalogWriter.Format.JSON_LINES);
+        writer.addFile(S + "root", entry("a\"b\\c\td.tar.gz", 5, -1L >>> 1));
+        writer.addFile(S, entry(".hidden", 7, 3));
+        ScanStatistics statistics = new ScanStatistics();
+        statistics.updateStatistics("x.bin", 42, "");
+        writer.finish(statistics);
+
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertEquals("{\"path\":\"" + json(S + "root" + S) + "a\\\"b\\\\c\\u0009d.tar.gz\",\"size\":5,\"mtime\":"
+                + Long.MAX_VALUE + ",\"ext\":\".gz\"}", lines[0]);
+        assertEquals("{\"path\":\"" + json(S) + ".hidden\",\"size\":7,\"mtime\":3,\"ext\":\"\"}", lines[1]);
+        assertTrue(lines[2].startsWith("{\"summary\":{\"completed\":true,\"files\":1,\"bytes\":42,"));
+        assertEquals(3, lines.length);
+    }
+
+    public void testFormatByName() {
+        assertEquals(CatalogWriter.Format.JSON_LINES, CatalogWriter.getFormat(new File("catalog.jsonl.gz")));
+        assertEquals(CatalogWriter.Format.CSV, CatalogWriter.getFormat(new File("catalog.csv")));
+    }
+
+    public void testScanStreamsEveryFile() throws IOException {
+        File root = TestTrees.createTempDirectory("catalog-test");
+        File catalog = new File(root.getPath() + ".csv.gz");
+        int bufferBytes = CatalogWriter.BUFFER_BYTES;
+        try {
+            for (int i = 0; i < 200; i++) {
+                TestTrees.createFile(new File(root, "dir" + (i % 10) + S + "file" + i + ".dat"), i);
+            }
+
+            //Small buffers hand records to the stream many times while workers run
+            CatalogWriter.BUFFER_BYTES = 256;
+            ScanOptions options = new ScanOptions();
+            options.setParallelism(4);
+            options.setCatalogWriter(CatalogWriter.open(catalog, CatalogWriter.Format.CSV, true));
+            ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, null, null);
+            options.getCatalogWriter().finish(statistics);
+
+            List<String> records = new ArrayList<String>();
+            List<String> summary = new ArrayList<String>();
+            BufferedReader in = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(catalog)), "UTF-8"));
+            try {
+                assertEquals("path,size,mtime,extension", in.readLine());
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    (line.startsWith("#") ? summary : records).add(line);
+                }
+            } finally {
+                in.close();
+            }
+            assertEquals(200, records.size());
+            long bytes = 0;
+            for (String record : records) {
+                String[] fields = record.split(",");
+                assertEquals("\".dat\"", fields[3]);
+                bytes += Long.parseLong(fields[1]);
+            }
+            assertEquals(statistics.getTotalFileSize(), bytes);
+            assertEquals("#completed,true", summary.get(0));
+            assertEquals("#files,200", summary.get(1));
+        } finally {
+            CatalogWriter.BUFFER_BYTES = bufferBytes;
+            catalog.delete();
+            TestTrees.deleteTree(root);
+        }
+    }
+
+    private static DirectoryEntry entry(String name, long size, long lastModified) {
+        DirectoryEntry entry = new DirectoryEntry();
+        entry.set(null, name, new File(name), false, size, lastModified);
+        return entry;
+    }
+
+    private static String json(String text) {
+        return text.replace("\\", "\\\\");
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Tests for ChangeQueue.
+ */
+public class ChangeQueueTest extends TestCase {
+
+    private static final String A = "a";
+    private static final String AB = "a" + File.separator + "b";
+    private static final String ABC = AB + File.separator + "c";
+    private static final String AD = "a" + File.separator + "d";
+
+    public void testRepeatedChangesAreQueuedOnce() throws InterruptedException {
+        ChangeQueue queue = new ChangeQueue();
+        queue.offer(AB, false);
+        queue.offer(A, false);
+        queue.offer(AB, false);
+        queue.offer(AB, false);
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.getCoalesced());
+
+        List<ChangeQueue.Change> changes = queue.take(0);
+        assertEquals(2, changes.size());
+        assertEquals(AB, changes.get(0).getPath());
+        assertFalse(changes.get(0).isSubtree());
+        assertEquals(0, queue.size());
+    }
+
+    public void testSubtreeCoversDirectoriesBelow() throws InterruptedException {
+        ChangeQueue queue = new ChangeQueue();
+        queue.offer(ABC, false);
+        queue.offer(AD, false);
+        queue.offer(AB, true);
+        queue.offer(ABC, false);
+        queue.offer(ABC, true);
+
+        List<ChangeQueue.Change> changes = queue.take(0);
+        assertEquals(2, changes.size());
+        assertEquals(AD, changes.get(0).getPath());
+        assertEquals(AB, changes.get(1).getPath());
+        assertTrue(changes.get(1).isSubtree());
+    }
+
+    public void testOverflowCollapsesIntoCommonAncestor() throws InterruptedException {
+        ChangeQueue queue = new ChangeQueue(2);
+        queue.offer(ABC, false);
+        queue.offer(AB, false);
+        queue.offer(AD, false);
+        assertEquals(1, queue.getOverflows());
+
+        List<ChangeQueue.Change> changes = queue.take(0);
+        assertEquals(1, changes.size());
+        assertEquals(A, changes.get(0).getPath());
+        assertTrue(changes.get(0).isSubtree());
+
+        queue.offer("x", false);
+        queue.offer("y", false);
+        queue.offer("z", false);
+        assertEquals("", queue.take(0).get(0).getPath());
+    }
+
+    public void testCommonAncestor() {
+        assertEquals(A, ChangeQueue.getCommonAncestor(ABC, AD));
+        assertEquals(AB, ChangeQueue.getCommonAncestor(AB, ABC));
+        assertEquals("", ChangeQueue.getCommonAncestor(A, "ab"));
+        String root = File.separator;
+        assertEquals(root, ChangeQueue.getCommonAncestor(root + "x", root + "y"));
+        assertEquals(root, ChangeQueue.getParent(root + "x"));
+    }
+
+    public void testTakeWaitsForChangesToSettle() throws InterruptedException {
+        final ChangeQueue queue = new ChangeQueue();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 5; i++) {
+                    queue.offer("dir" + i, false);
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        writer.start();
+        List<ChangeQueue.Change> changes = queue.take(500);
+        writer.join();
+        assertEquals(5, changes.size());
+
+        queue.close();
+        assertNull(queue.take(500));
+        queue.offer(A, false);
+        assertEquals(0, queue.size());
+    }
+}
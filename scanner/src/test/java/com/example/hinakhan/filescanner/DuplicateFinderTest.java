@@ -0,0 +1,91 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Finds duplicates in a small temporary tree, with files that only differ in the stage meant to tell them apart.
+ */
+public class DuplicateFinderTest extends TestCase {
+
+    private static final int SIZE = 3 * DuplicateFinder.EDGE_BYTES;
+
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        root = TestTrees.createTempDirectory("duplicate-test");
+
+        byte[] content = new byte[SIZE];
+        new Random(1).nextBytes(content);
+        TestTrees.write(new File(root, "original.bin"), content);
+        TestTrees.write(new File(root, "sub/copy.bin"), content);
+
+        //Same edges, different middle: only the full hash tells it apart
+        byte[] middle = content.clone();
+        middle[SIZE / 2] ^= 1;
+        TestTrees.write(new File(root, "middle.bin"), middle);
+
+        //Different first byte: the edge hash tells it apart
+        byte[] head = content.clone();
+        head[0] ^= 1;
+        TestTrees.write(new File(root, "head.bin"), head);
+
+        byte[] small = "small file".getBytes("UTF-8");
+        TestTrees.write(new File(root, "small.txt"), small);
+        TestTrees.write(new File(root, "sub/small.txt"), small);
+
+        TestTrees.write(new File(root, "empty1"), new byte[0]);
+        TestTrees.write(new File(root, "empty2"), new byte[0]);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestTrees.deleteTree(root);
+        super.tearDown();
+    }
+
+    public void testFindsIdenticalFilesOnly() {
+        for (int parallelism : new int[] {1, 4}) {
+            ScanOptions options = new ScanOptions();
+            options.setParallelism(parallelism);
+            options.setFindDuplicates(true);
+            ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, null, null);
+
+            assertTrue(statistics.isCompletedScan());
+            assertEquals(2, statistics.getDuplicateGroupCount());
+            assertEquals(2, statistics.getDuplicateFiles());
+            assertEquals(SIZE + 10, statistics.getWastedBytes());
+
+            List<DuplicateGroup> groups = statistics.getDuplicateGroups();
+            assertEquals(2, groups.size());
+            assertEquals(new DuplicateGroup(SIZE, Arrays.asList("original.bin", "sub" + File.separator + "copy.bin")), groups.get(0));
+            assertEquals(new DuplicateGroup(10, Arrays.asList("small.txt", "sub" + File.separator + "small.txt")), groups.get(1));
+        }
+    }
+
+    public void testDisabledByDefault() {
+        ScanStatistics statistics = new Scanner(new ScanOptions()).scan(new File[] {root}, null, null);
+        assertEquals(0, statistics.getDuplicateGroupCount());
+        assertTrue(statistics.getDuplicateGroups().isEmpty());
+    }
+
+    public void testCancelledSearchIsNotCompleted() {
+        DuplicateFinder finder = new DuplicateFinder(2);
+        finder.addFile(new File(root, "original.bin"), SIZE);
+        finder.addFile(new File(root, "sub/copy.bin"), SIZE);
+
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        ScanStatistics statistics = new ScanStatistics();
+        finder.findDuplicates(new File[] {root}, statistics, token);
+        assertFalse(statistics.isCompletedScan());
+        assertEquals(0, statistics.getDuplicateGroupCount());
+    }
+}
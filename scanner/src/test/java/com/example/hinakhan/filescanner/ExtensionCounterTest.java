@@ -0,0 +1,156 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Tests for ExtensionCounter.
+ */
+public class ExtensionCounterTest extends TestCase {
+
+    public void testMatchesHashMapCounts() {
+        Random random = new Random(11);
+        ExtensionCounter counter = new ExtensionCounter(false);
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        for (int i = 0; i < 20000; i++) {
+            //Enough distinct extensions to force several resizes
+            String name = (random.nextBoolean() ? "name" : ".hidden") + (random.nextInt(10) == 0 ? "" : ".x" + random.nextInt(1000));
+            counter.addFileName(name);
+
+            int dot = name.lastIndexOf('.');
+            if (dot > 0) {
+                String extension = name.substring(dot);
+                Integer count = expected.get(extension);
+                expected.put(extension, count == null ? 1 : count + 1);
+            }
+        }
+
+        assertEquals(expected, counter.toMap());
+        assertEquals(expected.size(), counter.size());
+    }
+
+    public void testRemovedNamesMatchHashMapCounts() {
+        Random random = new Random(5);
+        ExtensionCounter counter = new ExtensionCounter(false);
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < 20000; i++) {
+            //Removing at random empties extensions, freed slots must not hide colliding ones
+            if (!names.isEmpty() && random.nextInt(3) == 0) {
+                String name = names.remove(random.nextInt(names.size()));
+                counter.removeFileName(name);
+                String extension = name.substring(name.lastIndexOf('.'));
+                int count = expected.get(extension) - 1;
+                if (count == 0) {
+                    expected.remove(extension);
+                } else {
+                    expected.put(extension, count);
+                }
+            } else {
+                String name = "name.x" + random.nextInt(500);
+                names.add(name);
+                counter.addFileName(name);
+                String extension = name.substring(name.lastIndexOf('.'));
+                Integer count = expected.get(extension);
+                expected.put(extension, count == null ? 1 : count + 1);
+            }
+        }
+
+        assertEquals(expected, counter.toMap());
+        assertEquals(expected.size(), counter.size());
+        counter.removeFileName("unknown.none");
+        assertEquals(expected, counter.toMap());
+    }
+
+    public void testIgnoreCase() {
+        ExtensionCounter counter = new ExtensionCounter(true);
+        counter.addFileName("a.JPG");
+        counter.addFileName("b.jpg");
+        counter.addFileName("c.Jpg");
+        counter.add(".JPG", 2);
+
+        assertEquals(1, counter.size());
+        assertEquals(5, counter.get(".jpg"));
+        assertEquals(5, counter.get(".JPG"));
+        assertTrue(counter.toMap().containsKey(".jpg"));
+    }
+
+    public void testCaseSensitiveByDefault() {
+        ExtensionCounter counter = new ExtensionCounter(false);
+        counter.addFileName("a.JPG");
+        counter.addFileName("b.jpg");
+
+        assertEquals(2, counter.size());
+        assertEquals(1, counter.get(".JPG"));
+        assertEquals(0, counter.get(".Jpg"));
+    }
+
+    public void testNamesWithoutExtension() {
+        ExtensionCounter counter = new ExtensionCounter(false);
+        counter.addFileName("README");
+        counter.addFileName(".nomedia");
+        counter.addFileName("archive.");
+
+        assertEquals(1, counter.size());
+        assertEquals(1, counter.get("."));
+    }
+
+    public void testMerge() {
+        ExtensionCounter first = new ExtensionCounter(false);
+        first.addFileName("a.mp4");
+        first.addFileName("b.mp3");
+        ExtensionCounter second = new ExtensionCounter(false);
+        second.addFileName("c.mp4");
+
+        first.merge(second);
+        assertEquals(2, first.get(".mp4"));
+        assertEquals(1, first.get(".mp3"));
+    }
+
+    public void testMostFrequentMatchesFullSort() {
+        Random random = new Random(12);
+        ExtensionCounter counter = new ExtensionCounter(false);
+        for (int i = 0; i < 50000; i++) {
+            //Skewed distribution with many ties
+            counter.add(".x" + (int) (Math.abs(random.nextGaussian()) * 300), 1);
+        }
+
+        //Full sort by frequency descending, ties by extension
+        final Map<String, Integer> counts = counter.toMap();
+        List<String> expected = new ArrayList<String>(new TreeMap<String, Integer>(counts).keySet());
+        Collections.sort(expected, new Comparator<String>() {
+            public int compare(String o1, String o2) {
+                return counts.get(o2).compareTo(counts.get(o1));
+            }
+        });
+        for (int n : new int[] {0, 1, 10, 100, counter.size(), counter.size() + 5}) {
+            List<String> actual = new ArrayList<String>(counter.getMostFrequent(n).keySet());
+            assertEquals(expected.subList(0, Math.min(n, expected.size())), actual);
+        }
+    }
+
+    public void testMostFrequentIsCachedUntilChanged() {
+        ExtensionCounter counter = new ExtensionCounter(false);
+        counter.addFileName("a.jpg");
+        counter.addFileName("b.jpg");
+        counter.addFileName("c.png");
+
+        Map<String, Integer> first = counter.getMostFrequent(10);
+        assertSame(first, counter.getMostFrequent(10));
+        assertNotSame(first, counter.getMostFrequent(1));
+
+        counter.addFileName("d.png");
+        counter.addFileName("e.png");
+        Map<String, Integer> changed = counter.getMostFrequent(1);
+        assertEquals(Integer.valueOf(3), changed.get(".png"));
+        assertEquals(1, changed.size());
+    }
+}
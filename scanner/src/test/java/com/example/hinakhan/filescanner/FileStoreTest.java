@@ -0,0 +1,81 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for FileStore.
+ */
+public class FileStoreTest extends TestCase {
+
+    public void testStoresNamesAndSizes() {
+        FileStore store = new FileStore();
+        int notes = store.addFile("notes.txt", 12);
+        int photo = store.addFile("IMG_0001.jpg", 3000000000L);
+
+        assertEquals("notes.txt", store.getFileName(notes));
+        assertEquals("IMG_0001.jpg", store.getFileName(photo));
+        assertEquals(3000000000L, store.getFileSize(photo));
+        assertEquals(2, store.getFileCount());
+    }
+
+    public void testNamesAreStoredAsUtf8() {
+        FileStore store = new FileStore();
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longName.append("\u00e9t\u00e9_");
+        }
+        String[] names = {"", "caf\u00e9.txt", "\u5199\u771f.jpg", "\ud83d\ude00.png", longName.toString()};
+        int[] files = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            files[i] = store.addFile(names[i], i);
+        }
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i], store.getFileName(files[i]));
+            assertEquals(i, store.getFileSize(files[i]));
+        }
+    }
+
+    public void testRemovedIdsAreReused() {
+        FileStore store = new FileStore();
+        int file = store.addFile("a.txt", 1);
+        int kept = store.addFile("b.txt", 2);
+        store.removeFile(file);
+        assertEquals(1, store.getFileCount());
+        try {
+            store.getFileName(file);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            //Removed
+        }
+
+        assertEquals(file, store.addFile("c.txt", 3));
+        assertEquals("c.txt", store.getFileName(file));
+        store.setFileSize(kept, 20);
+        assertEquals(20, store.getFileSize(kept));
+    }
+
+    public void testCompactionKeepsNames() {
+        FileStore store = new FileStore();
+        int[] files = new int[20000];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = store.addFile("file" + i + ".dat", i);
+        }
+        long grown = store.getMemoryBytes();
+        //Remove most files, then add them back with other names, the arena must not keep growing
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < files.length; i++) {
+                if (i % 10 != 0) {
+                    store.removeFile(files[i]);
+                    files[i] = store.addFile("round" + round + "_" + i + ".dat", i);
+                }
+            }
+        }
+        assertTrue(store.getMemoryBytes() < grown * 2);
+        assertEquals(files.length, store.getFileCount());
+        for (int i = 0; i < files.length; i++) {
+            String name = i % 10 == 0 ? "file" + i + ".dat" : "round4_" + i + ".dat";
+            assertEquals(name, store.getFileName(files[i]));
+            assertEquals(i, store.getFileSize(files[i]));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for InodeSet.
+ */
+public class InodeSetTest extends TestCase {
+
+    public void testMatchesHashSet() {
+        Random random = new Random(21);
+        InodeSet set = new InodeSet(4);
+        Set<String> expected = new HashSet<String>();
+        for (int i = 0; i < 100000; i++) {
+            //Few devices, clustered inodes, like a real file system
+            long device = random.nextInt(3);
+            long inode = random.nextInt(50000);
+            assertEquals(expected.add(device + ":" + inode), set.add(device, inode));
+        }
+
+        assertEquals(expected.size(), set.size());
+        assertTrue(set.contains(0, 0) == expected.contains("0:0"));
+        assertFalse(set.contains(7, 1));
+    }
+
+    public void testConcurrentAddsAreCountedOnce() throws InterruptedException {
+        final InodeSet set = new InodeSet(8);
+        final AtomicInteger added = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        if (set.add(1, i)) {
+                            added.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(20000, added.get());
+        assertEquals(20000, set.size());
+    }
+}
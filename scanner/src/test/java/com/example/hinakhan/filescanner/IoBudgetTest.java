@@ -0,0 +1,73 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Paces spent entries at the configured rate and keeps throttled scans cancellable.
+ */
+public class IoBudgetTest extends TestCase {
+
+    private static final long MILLIS = 1000000;
+
+    private long savedMaxBurstMillis;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        savedMaxBurstMillis = IoBudget.MAX_BURST_MILLIS;
+        IoBudget.MAX_BURST_MILLIS = 100;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        IoBudget.MAX_BURST_MILLIS = savedMaxBurstMillis;
+        super.tearDown();
+    }
+
+    public void testBurstThenRate() {
+        IoBudget budget = new IoBudget(1000);
+        long now = System.nanoTime() + 1000 * MILLIS;
+
+        //An idle budget lets one burst through
+        assertEquals(0, budget.spend(50, now));
+        assertEquals(0, budget.spend(50, now));
+
+        //Then every entry costs a millisecond
+        assertEquals(10 * MILLIS, budget.spend(10, now));
+        assertEquals(5 * MILLIS, budget.spend(5, now + 10 * MILLIS));
+    }
+
+    public void testIdleCreditIsLimitedToOneBurst() {
+        IoBudget budget = new IoBudget(1000);
+        long now = System.nanoTime() + 60000 * MILLIS;
+        assertEquals(0, budget.spend(100, now));
+        assertEquals(MILLIS, budget.spend(1, now));
+    }
+
+    public void testThrottledScanStopsWhenCancelled() throws IOException {
+        File root = TestTrees.createTempDirectory("budget-test");
+        try {
+            for (int i = 0; i < 20; i++) {
+                new File(root, "dir" + i).mkdirs();
+            }
+            ScanOptions options = new ScanOptions();
+            options.setParallelism(1);
+            options.setMaxEntriesPerSecond(1);
+            CancellationToken token = new CancellationToken();
+            token.setTimeBudgetMillis(200);
+
+            long start = System.nanoTime();
+            ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, null, token);
+            long elapsedMillis = (System.nanoTime() - start) / MILLIS;
+
+            assertFalse(statistics.isCompletedScan());
+            assertEquals(CancellationToken.StopReason.TIME_BUDGET, token.getStopReason());
+            assertTrue("Throttled scan took " + elapsedMillis + " ms", elapsedMillis < 2000);
+        } finally {
+            TestTrees.deleteTree(root);
+        }
+    }
+}
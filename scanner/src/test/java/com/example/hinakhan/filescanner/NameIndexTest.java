@@ -0,0 +1,201 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches names and paths in a name index, filled directly and by a scan.
+ */
+public class NameIndexTest extends TestCase {
+
+    private static final String S = File.separator;
+
+    private NameIndex index;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        index = new NameIndex();
+        index.addFile("", "notes.txt");
+        index.addFile("DCIM" + S + "Camera", "IMG_0001.jpg");
+        index.addFile("DCIM" + S + "Camera", "IMG_0002.JPG");
+        index.addFile("Download", "img_0001.jpg");
+        index.addFile("Download" + S + "old", "Report.pdf");
+        index.addFile("Music", "notes.txt");
+    }
+
+    public void testSubstringIgnoresCase() {
+        assertEquals(Arrays.asList("DCIM" + S + "Camera" + S + "IMG_0001.jpg", "Download" + S + "img_0001.jpg"),
+                sorted(index.find("img_0001", 10)));
+        assertEquals(3, index.find("Img_", 10).size());
+        assertEquals(Arrays.asList("Download" + S + "old" + S + "Report.pdf"), index.find("port", 10));
+        //Shorter than a trigram, compares every name
+        assertEquals(3, index.find("01", 10).size() + index.find("02", 10).size());
+        assertTrue(index.find("missing", 10).isEmpty());
+    }
+
+    public void testSameNameInSeveralDirectories() {
+        assertEquals(Arrays.asList("Music" + S + "notes.txt", "notes.txt"), sorted(index.find("notes.txt", 10)));
+        assertEquals(1, index.find("notes", 1).size());
+    }
+
+    public void testGlobs() {
+        //Without a separator globs match names
+        assertEquals(2, index.find("*.jpg", 10).size());
+        assertEquals(1, index.find("IMG_????.JPG", 10).size());
+        //With a separator globs match paths
+        assertEquals(Arrays.asList("DCIM" + S + "Camera" + S + "IMG_0001.jpg"), index.find("DCIM/**/*.jpg", 10));
+        assertEquals(Arrays.asList("Download" + S + "old" + S + "Report.pdf"), index.find("Download/*/*", 10));
+        assertEquals(2, index.find("Download/**", 10).size());
+    }
+
+    public void testManyNames() {
+        for (int i = 0; i < 5000; i++) {
+            index.addFile("dir" + (i % 50) + S + "sub" + (i % 7), "file" + i + ".bin");
+        }
+        assertEquals(6 + 5000, index.getFileCount());
+        assertEquals(Arrays.asList("dir34" + S + "sub6" + S + "file4234.bin"), index.find("file4234.", 10));
+        assertEquals(11, index.find("file423", 100).size());
+        assertTrue(index.getMemoryBytes() > 0);
+    }
+
+    public void testWorkersMergeTheirBuffers() throws InterruptedException {
+        final NameIndex shared = new NameIndex();
+        Thread[] workers = new Thread[4];
+        for (int w = 0; w < workers.length; w++) {
+            final int worker = w;
+            workers[w] = new Thread() {
+                @Override
+                public void run() {
+                    //Not a multiple of the batch, some files stay buffered until a query
+                    for (int i = 0; i < 3 * NameIndex.BATCH_FILES + 7; i++) {
+                        shared.addFile("worker" + worker + S + "dir" + i / 100, "file" + i + ".bin");
+                    }
+                }
+            };
+            workers[w].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(4 * (3 * NameIndex.BATCH_FILES + 7), shared.getFileCount());
+        assertEquals(4, shared.find("file" + (3 * NameIndex.BATCH_FILES + 6) + ".bin", 10).size());
+        assertEquals(Arrays.asList("worker2" + S + "dir0" + S + "file7.bin"), shared.find("worker2/*/file7.bin", 10));
+    }
+
+    public void testSaveAndLoad() throws IOException {
+        File file = File.createTempFile("name-index", ".bin");
+        try {
+            index.save(file);
+            NameIndex loaded = NameIndex.load(file);
+            assertEquals(index.getFileCount(), loaded.getFileCount());
+            assertEquals(index.getNameCount(), loaded.getNameCount());
+            assertEquals(index.getDirectoryCount(), loaded.getDirectoryCount());
+            assertEquals(sorted(index.find("img", 10)), sorted(loaded.find("img", 10)));
+            assertEquals(index.find("DCIM/**/*.jpg", 10), loaded.find("DCIM/**/*.jpg", 10));
+
+            //Keeps growing after loading
+            loaded.addFile("DCIM" + S + "Camera", "IMG_0003.jpg");
+            assertEquals(index.getDirectoryCount(), loaded.getDirectoryCount());
+            assertEquals(4, loaded.find("img_", 10).size());
+
+            assertNull(NameIndex.load(new File(file.getPath() + ".missing")));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testMaxFilesTruncates() {
+        NameIndex small = new NameIndex(2);
+        small.addFile("", "a.txt");
+        small.addFile("", "b.txt");
+        assertFalse(small.isTruncated());
+        small.addFile("", "c.txt");
+        assertTrue(small.isTruncated());
+        assertEquals(2, small.getFileCount());
+    }
+
+    public void testAbsolutePaths() {
+        NameIndex absolute = new NameIndex();
+        absolute.addFile(S + "storage" + S + "sdcard", "a.jpg");
+        absolute.addFile(S, "b.jpg");
+        assertEquals(Arrays.asList(S + "b.jpg", S + "storage" + S + "sdcard" + S + "a.jpg"), sorted(absolute.find(".jpg", 10)));
+    }
+
+    public void testScanFillsIndex() throws IOException {
+        File root = TestTrees.createTempDirectory("name-index-scan");
+        try {
+            TestTrees.createFile(new File(root, "a/b/photo.jpg"), 0);
+            TestTrees.createFile(new File(root, "a/readme.txt"), 0);
+            for (int parallelism : new int[] {1, 4}) {
+                ScanOptions options = new ScanOptions();
+                options.setParallelism(parallelism);
+                options.setNameIndex(new NameIndex());
+                ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, null, null);
+                assertEquals(statistics.getTotalFiles(), options.getNameIndex().getFileCount());
+                assertEquals(Arrays.asList("a" + S + "b" + S + "photo.jpg"), options.getNameIndex().find("photo", 10));
+            }
+        } finally {
+            TestTrees.deleteTree(root);
+        }
+    }
+
+    public void testRescanTakesNamesOfUnchangedDirectories() throws IOException {
+        File root = TestTrees.createTempDirectory("name-index-rescan");
+        File indexFile = new File(root.getPath() + ".index");
+        try {
+            TestTrees.createTree(root, 1);
+            final AtomicInteger listings = new AtomicInteger();
+            ScanOptions options = new ScanOptions();
+            options.setParallelism(4);
+            options.setIndexFile(indexFile);
+            options.setBackend(new FileScanBackend() {
+                @Override
+                public boolean listDirectory(File dir, EntryVisitor visitor) {
+                    listings.incrementAndGet();
+                    return super.listDirectory(dir, visitor);
+                }
+            });
+            options.setNameIndex(new NameIndex());
+            new Scanner(options).scan(new File[] {root}, null, null);
+            NameIndex previous = options.getNameIndex();
+            assertEquals(4, listings.get());
+
+            File changed = new File(root, "dir1");
+            long lastModified = changed.lastModified();
+            TestTrees.createFile(new File(changed, "new.txt"), 1);
+            changed.setLastModified(lastModified + 2000);
+            listings.set(0);
+            options.setNameIndex(new NameIndex());
+            options.setPreviousNameIndex(previous);
+            ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, null, null);
+            assertEquals(1, listings.get());
+            assertEquals(21, statistics.getTotalFiles());
+            assertEquals(21, options.getNameIndex().getFileCount());
+            assertEquals(Arrays.asList("dir1" + S + "new.txt"), options.getNameIndex().find("new.txt", 10));
+            assertEquals(4, options.getNameIndex().find("file3.txt", 10).size());
+
+            //Names that don't match the index are not trusted, their directories are listed
+            listings.set(0);
+            options.setNameIndex(new NameIndex());
+            options.setPreviousNameIndex(new NameIndex());
+            new Scanner(options).scan(new File[] {root}, null, null);
+            assertEquals(4, listings.get());
+            assertEquals(21, options.getNameIndex().getFileCount());
+        } finally {
+            TestTrees.deleteTree(root);
+            indexFile.delete();
+        }
+    }
+
+    private static List<String> sorted(List<String> paths) {
+        Collections.sort(paths);
+        return paths;
+    }
+}
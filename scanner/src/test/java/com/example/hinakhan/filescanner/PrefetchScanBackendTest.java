@@ -0,0 +1,84 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Prefetches the top level of a small temporary tree and scans it, counting the listings read from disk.
+ */
+public class PrefetchScanBackendTest extends TestCase {
+
+    private File root;
+    private final List<File> listed = Collections.synchronizedList(new ArrayList<File>()); //Directories listed by the wrapped backend
+    private final ScanBackend counting = new FileScanBackend() {
+        @Override
+        public boolean listDirectory(File dir, EntryVisitor visitor) {
+            listed.add(dir);
+            return super.listDirectory(dir, visitor);
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        root = TestTrees.createTempDirectory("prefetch-test");
+        for (String path : new String[] {"a.jpg", "dir0/b.jpg", "dir0/sub/c.txt", "dir1/d.txt"}) {
+            TestTrees.createFile(new File(root, path), 100);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestTrees.deleteTree(root);
+        super.tearDown();
+    }
+
+    public void testScanReplaysPrefetchedListingsOnce() {
+        PrefetchScanBackend backend = new PrefetchScanBackend(counting);
+        assertEquals(3, backend.prefetchTopLevel(root));
+        assertEquals(3, listed.size());
+
+        ScanStatistics statistics = scan(backend);
+        assertEquals(4, statistics.getTotalFiles());
+        assertEquals(400, statistics.getTotalFileSize());
+        assertEquals(3, backend.getReplayed());
+        //Only the directory below the top level was listed by the scan
+        assertEquals(4, listed.size());
+        assertEquals(new File(root, "dir0/sub"), listed.get(3));
+
+        //Replayed once, the next scan lists everything
+        scan(backend);
+        assertEquals(3, backend.getReplayed());
+        assertEquals(8, listed.size());
+    }
+
+    public void testModifiedDirectoryIsListedAgain() throws IOException {
+        PrefetchScanBackend backend = new PrefetchScanBackend(counting);
+        backend.prefetchTopLevel(root);
+        File dir1 = new File(root, "dir1");
+        assertTrue(new File(dir1, "e.txt").createNewFile());
+        dir1.setLastModified(dir1.lastModified() - 10000);
+
+        ScanStatistics statistics = scan(backend);
+        assertEquals(5, statistics.getTotalFiles());
+        assertEquals(2, backend.getReplayed());
+    }
+
+    public void testMissingDirectoryIsNotPrefetched() {
+        PrefetchScanBackend backend = new PrefetchScanBackend(counting);
+        assertEquals(0, backend.prefetchTopLevel(new File(root, "missing")));
+        assertEquals(-1, backend.prefetch(new File(root, "missing")));
+    }
+
+    private ScanStatistics scan(ScanBackend backend) {
+        ScanOptions options = new ScanOptions();
+        options.setParallelism(1);
+        options.setBackend(backend);
+        return new Scanner(options).scan(new File[] {root}, null, null);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiles filter expressions, matches entries against them and checks that a scan prunes excluded directories.
+ */
+public class ScanFilterTest extends TestCase {
+
+    private static final long NOW = 1000L * 365 * 24 * 60 * 60 * 1000;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final char S = File.separatorChar;
+
+    public void testMalformedExpressionsAreRejected() {
+        for (String expression : new String[] {"ext", "colour:red", "size:>ten", "age:<30", "hidden:maybe", ":x"}) {
+            try {
+                ScanFilter.compile(expression, NOW);
+                fail("Compiled " + expression);
+            } catch (IllegalArgumentException e) {
+                //Expected
+            }
+        }
+        assertEquals("ext:jpg  size:>1k", ScanFilter.compile("  ext:jpg  size:>1k ", NOW).getExpression());
+    }
+
+    public void testExtensionsIgnoreCase() {
+        ScanFilter filter = ScanFilter.compile("ext:jpg,.PNG", NOW);
+        assertTrue(accept(filter, "photo.JPG", 1, NOW));
+        assertTrue(accept(filter, "image.png", 1, NOW));
+        assertFalse(accept(filter, "photo.jpeg", 1, NOW));
+        assertFalse(accept(filter, "jpg", 1, NOW));
+        assertFalse(accept(filter, "archive.png.gz", 1, NOW));
+    }
+
+    public void testSizeRanges() {
+        ScanFilter above = ScanFilter.compile("size:>10M", NOW);
+        assertFalse(accept(above, "a", 10L << 20, NOW));
+        assertTrue(accept(above, "a", (10L << 20) + 1, NOW));
+
+        ScanFilter below = ScanFilter.compile("size:<1k", NOW);
+        assertTrue(accept(below, "a", 1023, NOW));
+        assertFalse(accept(below, "a", 1024, NOW));
+
+        ScanFilter range = ScanFilter.compile("size:1M..2m", NOW);
+        assertFalse(accept(range, "a", (1L << 20) - 1, NOW));
+        assertTrue(accept(range, "a", 1L << 20, NOW));
+        assertTrue(accept(range, "a", 2L << 20, NOW));
+        assertFalse(accept(range, "a", (2L << 20) + 1, NOW));
+
+        assertTrue(accept(ScanFilter.compile("size:512", NOW), "a", 512, NOW));
+    }
+
+    public void testAgeRanges() {
+        ScanFilter recent = ScanFilter.compile("age:<30d", NOW);
+        assertTrue(recent.isAgeFiltered());
+        assertTrue(accept(recent, "a", 1, NOW - 29 * DAY));
+        assertTrue(accept(recent, "a", 1, NOW + DAY));
+        assertFalse(accept(recent, "a", 1, NOW - 31 * DAY));
+
+        ScanFilter old = ScanFilter.compile("age:>1y", NOW);
+        assertTrue(accept(old, "a", 1, NOW - 400 * DAY));
+        assertFalse(accept(old, "a", 1, NOW - 300 * DAY));
+        assertFalse(ScanFilter.compile("ext:jpg", NOW).isAgeFiltered());
+    }
+
+    public void testGlobs() {
+        assertTrue(ScanFilter.matches("*.tmp", "", 0, "a.tmp", false));
+        assertFalse(ScanFilter.matches("*.tmp", "dir", 0, "a.tmp", false));
+        assertTrue(ScanFilter.matches("**/*.tmp", "dir" + S + "sub", 0, "a.tmp", false));
+        assertTrue(ScanFilter.matches("**/*.tmp", "", 0, "a.tmp", false));
+        assertTrue(ScanFilter.matches("dir/?.tmp", "dir", 0, "a.tmp", false));
+        assertFalse(ScanFilter.matches("dir/?.tmp", "dir", 0, "ab.tmp", false));
+        assertTrue(ScanFilter.matches("DCIM/**", "DCIM" + S + "Camera", 0, "a.jpg", false));
+        assertFalse(ScanFilter.matches("DCIM/**", "Music", 0, "a.mp3", false));
+
+        //Relative to a qualified root path
+        String dir = S + "storage" + S + "DCIM";
+        int start = dir.length() - "DCIM".length() - 1;
+        assertTrue(ScanFilter.matches("DCIM/*", dir, start, "a.jpg", false));
+        assertFalse(ScanFilter.matches("*", dir, start, "a.jpg", false));
+
+        //Directories are listed if something below them may match
+        assertTrue(ScanFilter.matches("DCIM/Camera/*.jpg", "", 0, "DCIM", true));
+        assertTrue(ScanFilter.matches("DCIM/Camera/*.jpg", "DCIM", 0, "Camera", true));
+        assertFalse(ScanFilter.matches("DCIM/Camera/*.jpg", "DCIM", 0, "Screenshots", true));
+        assertTrue(ScanFilter.matches("**/Camera/*.jpg", "DCIM", 0, "Other", true));
+    }
+
+    public void testManyStarsDontBacktrackExponentially() {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            name.append('a');
+        }
+        StringBuilder glob = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            glob.append("*a");
+        }
+        assertTrue(ScanFilter.matches(glob.toString(), "", 0, name.toString(), false));
+        assertFalse(ScanFilter.matches(glob + "*b", "", 0, name.toString(), false));
+        assertFalse(ScanFilter.matches("**" + glob + "**b", "dir" + S + "sub", 0, name.toString(), false));
+        assertTrue(ScanFilter.matches("**/" + glob + "*", "dir" + S + "sub", 0, name.toString(), false));
+    }
+
+    public void testIncludeAndExcludeDirectories() {
+        ScanFilter filter = ScanFilter.compile("include:DCIM/** exclude:**/.thumbnails hidden:skip", NOW);
+        assertTrue(filter.acceptDirectory("", 0, "DCIM"));
+        assertFalse(filter.acceptDirectory("", 0, "Music"));
+        assertTrue(filter.acceptDirectory("DCIM", 0, "Camera"));
+        assertFalse(filter.acceptDirectory("DCIM", 0, ".thumbnails"));
+        assertFalse(filter.acceptDirectory("DCIM", 0, ".hidden"));
+
+        //An excluded subtree excludes its top directory too
+        ScanFilter cache = ScanFilter.compile("exclude:cache/** exclude:**/tmp/**", NOW);
+        assertFalse(cache.acceptDirectory("", 0, "cache"));
+        assertTrue(cache.acceptDirectory("", 0, "cached"));
+        assertFalse(cache.acceptDirectory("a" + S + "b", 0, "tmp"));
+        assertFalse(cache.acceptDirectory("", 0, "tmp"));
+    }
+
+    public void testScanPrunesExcludedDirectories() throws IOException {
+        File root = TestTrees.createTempDirectory("filter-test");
+        try {
+            for (String path : new String[] {"a.jpg", "b.txt", "keep/c.jpg", "keep/d.txt", "cache/e.jpg", "cache/deep/f.jpg", ".hidden/g.jpg"}) {
+                TestTrees.createFile(new File(root, path), 100);
+            }
+
+            for (String exclude : new String[] {"cache", "cache/**", "**/cache/**"}) {
+                for (int parallelism : new int[] {1, 4}) {
+                    assertPrunes(root, "ext:jpg exclude:" + exclude + " hidden:skip", parallelism);
+                }
+            }
+        } finally {
+            TestTrees.deleteTree(root);
+        }
+    }
+
+    private static void assertPrunes(File root, String expression, int parallelism) {
+        final List<String> listed = Collections.synchronizedList(new ArrayList<String>());
+        ScanOptions options = new ScanOptions();
+        options.setParallelism(parallelism);
+        options.setFilter(ScanFilter.compile(expression));
+        options.setBackend(new FileScanBackend() {
+            @Override
+            public boolean listDirectory(File dir, EntryVisitor visitor) {
+                listed.add(dir.getName());
+                return super.listDirectory(dir, visitor);
+            }
+        });
+        ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, null, null);
+
+        assertTrue(statistics.isCompletedScan());
+        assertEquals(2, statistics.getTotalFiles());
+        assertEquals(200, statistics.getTotalFileSize());
+        assertEquals(expression, 2, listed.size());
+        assertFalse(expression, listed.contains("cache"));
+        assertFalse(listed.contains("deep"));
+        assertFalse(listed.contains(".hidden"));
+    }
+
+    private static boolean accept(ScanFilter filter, String name, long size, long lastModified) {
+        DirectoryEntry entry = new DirectoryEntry();
+        entry.set(null, name, new File(name), false, size, lastModified);
+        return filter.acceptFile("", 0, entry);
+    }
+}
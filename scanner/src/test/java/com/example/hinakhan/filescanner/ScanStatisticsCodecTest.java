@@ -0,0 +1,176 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Round trip tests for ScanStatisticsCodec, plus a size comparison with Serializable.
+ * Speed is compared by SerializationBenchmark in the benchmarks module.
+ */
+public class ScanStatisticsCodecTest extends TestCase {
+
+
+    public void testFullRoundTrip() throws IOException {
+        ScanStatistics statistics = randomStatistics(new Random(1), 10000, 500);
+        statistics.setCompletedScan(false);
+
+        ScanStatistics decoded = ScanStatisticsCodec.decode(ScanStatisticsCodec.encode(statistics, false));
+        assertEquals(statistics.getTotalFiles(), decoded.getTotalFiles());
+        assertEquals(statistics.getTotalFileSize(), decoded.getTotalFileSize());
+        assertEquals(statistics.isCompletedScan(), decoded.isCompletedScan());
+        assertEquals(statistics.getBiggestFiles(), decoded.getBiggestFiles());
+        assertEquals(statistics.getFrequentedFileExtensions(Integer.MAX_VALUE),
+                decoded.getFrequentedFileExtensions(Integer.MAX_VALUE));
+        assertEquals(statistics.getSizeHistogram().getCount(), decoded.getSizeHistogram().getCount());
+        assertEquals(statistics.getSizeHistogram().getMin(), decoded.getSizeHistogram().getMin());
+        assertEquals(statistics.getSizeHistogram().getMax(), decoded.getSizeHistogram().getMax());
+        for (int percentile = 0; percentile <= 100; percentile += 5) {
+            assertEquals(statistics.getFileSizePercentile(percentile), decoded.getFileSizePercentile(percentile));
+        }
+        assertEquals(statistics.getHeaviestDirectories(), decoded.getHeaviestDirectories());
+        assertEquals(statistics.getDirectoryBreakdown(), decoded.getDirectoryBreakdown());
+        assertEquals(statistics.getDuplicateGroupCount(), decoded.getDuplicateGroupCount());
+        assertEquals(statistics.getDuplicateFiles(), decoded.getDuplicateFiles());
+        assertEquals(statistics.getWastedBytes(), decoded.getWastedBytes());
+        assertEquals(statistics.getDuplicateGroups(), decoded.getDuplicateGroups());
+        assertEquals(2, decoded.getRootUsage().size());
+        assertEquals(statistics.getRootUsage(), decoded.getRootUsage());
+    }
+
+    public void testSummaryKeepsMostFrequentExtensions() throws IOException {
+        ScanStatistics statistics = randomStatistics(new Random(2), 10000, 500);
+
+        ScanStatistics decoded = ScanStatisticsCodec.decode(ScanStatisticsCodec.encode(statistics, true));
+        assertEquals(statistics.getTotalFiles(), decoded.getTotalFiles());
+        assertEquals(statistics.getTotalFileSize(), decoded.getTotalFileSize());
+        assertEquals(statistics.getBiggestFiles(), decoded.getBiggestFiles());
+
+        Map<String, Integer> expected = statistics.getFrequentedFileExtensions(ScanStatistics.MAX_FREQUENT_FILE_EXTENSIONS);
+        assertEquals(expected, decoded.getFrequentedFileExtensions(Integer.MAX_VALUE));
+    }
+
+    public void testSummaryKeepsHeaviestDirectories() throws IOException {
+        ScanStatistics statistics = new ScanStatistics();
+        for (int i = 0; i < 50; i++) {
+            statistics.addDirectoryUsage(new DirectoryUsage("dir" + i, 1, i * 7 % 50), 1);
+            statistics.addDirectoryUsage(new DirectoryUsage("/volume" + i, 1, i * 11 % 50), 0);
+        }
+        int max = ScanStatistics.MAX_HEAVIEST_DIRECTORIES;
+
+        ScanStatistics decoded = ScanStatisticsCodec.decode(ScanStatisticsCodec.encode(statistics, true));
+        assertEquals(max, decoded.getDirectoryBreakdown().size());
+        assertEquals(max, decoded.getRootUsage().size());
+        for (DirectoryUsage usage : decoded.getDirectoryBreakdown()) {
+            assertTrue(usage.getTotalFileSize() >= 50 - max);
+        }
+        for (DirectoryUsage usage : decoded.getRootUsage()) {
+            assertTrue(usage.getTotalFileSize() >= 50 - max);
+        }
+        assertEquals(statistics.getHeaviestDirectories(), decoded.getHeaviestDirectories());
+
+        decoded = ScanStatisticsCodec.decode(ScanStatisticsCodec.encode(statistics, false));
+        assertEquals(50, decoded.getDirectoryBreakdown().size());
+        assertEquals(50, decoded.getRootUsage().size());
+    }
+
+    public void testEmptyRoundTrip() throws IOException {
+        ScanStatistics decoded = ScanStatisticsCodec.decode(ScanStatisticsCodec.encode(new ScanStatistics(), false));
+        assertEquals(0, decoded.getTotalFiles());
+        assertTrue(decoded.isCompletedScan());
+        assertTrue(decoded.getBiggestFiles().isEmpty());
+    }
+
+    public void testFileRoundTrip() throws IOException {
+        ScanStatistics statistics = randomStatistics(new Random(3), 1000, 50);
+        File file = File.createTempFile("scan-statistics", ".bin");
+        try {
+            ScanStatisticsCodec.writeToFile(statistics, file);
+            ScanStatistics decoded = ScanStatisticsCodec.readFromFile(file);
+            assertEquals(statistics.getTotalFiles(), decoded.getTotalFiles());
+            assertEquals(statistics.getBiggestFiles(), decoded.getBiggestFiles());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testVarLongRoundTrip() throws IOException {
+        long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (long value : values) {
+            ScanStatisticsCodec.writeVarLong(out, value);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, ScanStatisticsCodec.readVarLong(in));
+        }
+    }
+
+    public void testRejectsCorruptData() {
+        byte[] data = ScanStatisticsCodec.encode(randomStatistics(new Random(4), 100, 10), false);
+        try {
+            ScanStatisticsCodec.decode(Arrays.copyOf(data, data.length / 2));
+            fail("Truncated data was decoded");
+        } catch (IOException e) {
+            //Expected
+        }
+
+        data[0] = 0;
+        try {
+            ScanStatisticsCodec.decode(data);
+            fail("Data with bad magic was decoded");
+        } catch (IOException e) {
+            //Expected
+        }
+    }
+
+    public void testSizeComparedToSerializable() throws IOException {
+        ScanStatistics statistics = randomStatistics(new Random(5), 100000, 2000);
+
+        byte[] serialized = serialize(statistics);
+        byte[] full = ScanStatisticsCodec.encode(statistics, false);
+        byte[] summary = ScanStatisticsCodec.encode(statistics, true);
+
+        assertTrue(full.length < serialized.length);
+        //Summary keeps the whole size histogram, at most a few hundred buckets
+        assertTrue(summary.length < 2048);
+    }
+
+    private static ScanStatistics randomStatistics(Random random, int files, int extensions) {
+        ScanStatistics statistics = new ScanStatistics();
+        for (int i = 0; i < files; i++) {
+            String name = "IMG_" + random.nextInt(100000) + ".e" + random.nextInt(extensions);
+            statistics.updateStatistics(name, (long) (random.nextDouble() * random.nextDouble() * (1L << 32)));
+        }
+        for (int i = 0; i < 50; i++) {
+            String path = "dir" + i % 10 + (i < 10 ? "" : File.separator + "sub" + i);
+            statistics.addDirectoryUsage(new DirectoryUsage(path, random.nextInt(1000), random.nextInt(1 << 30)), i < 10 ? 1 : 2);
+        }
+        for (int i = 0; i < 2; i++) {
+            statistics.addDirectoryUsage(new DirectoryUsage("/volume" + i, random.nextInt(100000), random.nextInt(1 << 30)), 0);
+        }
+        for (int i = 0; i < 20; i++) {
+            statistics.addDuplicateGroup(new DuplicateGroup(random.nextInt(1 << 20), Arrays.asList("a" + i, "b" + i, "c" + i)));
+        }
+        return statistics;
+    }
+
+    private static byte[] serialize(ScanStatistics statistics) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(statistics);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
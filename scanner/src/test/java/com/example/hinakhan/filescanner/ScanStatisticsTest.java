@@ -0,0 +1,120 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Property style tests checking that merged ScanStatistics shards equal a sequential scan.
+ */
+public class ScanStatisticsTest extends TestCase {
+
+    private static final String[] EXTENSIONS = {".jpg", ".mp4", ".txt", ".pdf", ".png", ".mp3", "", ".tar.gz"};
+    private static final int RUNS = 200;
+
+    public void testMergedShardsEqualSequentialScan() {
+        Random random = new Random(42);
+        for (int run = 0; run < RUNS; run++) {
+            List<FileStats> files = randomFiles(random, random.nextInt(500));
+
+            ScanStatistics sequential = new ScanStatistics();
+            for (FileStats file : files) {
+                sequential.updateStatistics(file.getFilename(), file.getFileSize());
+            }
+
+            //Distribute files over a random number of shards
+            List<ScanStatistics> shards = new ArrayList<ScanStatistics>();
+            int numShards = 1 + random.nextInt(8);
+            for (int i = 0; i < numShards; i++) {
+                shards.add(new ScanStatistics());
+            }
+            for (FileStats file : files) {
+                shards.get(random.nextInt(numShards)).updateStatistics(file.getFilename(), file.getFileSize());
+            }
+
+            assertSameStatistics(sequential, mergeInRandomOrder(random, shards));
+        }
+    }
+
+    public void testMergeIsAssociative() {
+        Random random = new Random(7);
+        for (int run = 0; run < RUNS; run++) {
+            ScanStatistics a = randomStatistics(random);
+            ScanStatistics b = randomStatistics(random);
+            ScanStatistics c = randomStatistics(random);
+
+            ScanStatistics left = copy(a).merge(b).merge(c);
+            ScanStatistics right = copy(a).merge(copy(b).merge(c));
+            assertSameStatistics(left, right);
+        }
+    }
+
+    public void testMergeIsCommutative() {
+        Random random = new Random(13);
+        for (int run = 0; run < RUNS; run++) {
+            ScanStatistics a = randomStatistics(random);
+            ScanStatistics b = randomStatistics(random);
+            assertSameStatistics(copy(a).merge(b), copy(b).merge(a));
+        }
+    }
+
+    public void testMergeWithEmptyIsIdentity() {
+        ScanStatistics a = randomStatistics(new Random(3));
+        assertSameStatistics(a, copy(a).merge(new ScanStatistics()));
+        assertSameStatistics(a, new ScanStatistics().merge(a));
+    }
+
+    public void testMergeKeepsCancelledFlag() {
+        ScanStatistics cancelled = new ScanStatistics();
+        cancelled.setCompletedScan(false);
+        assertFalse(new ScanStatistics().merge(cancelled).isCompletedScan());
+        assertTrue(new ScanStatistics().merge(new ScanStatistics()).isCompletedScan());
+    }
+
+    private static ScanStatistics mergeInRandomOrder(Random random, List<ScanStatistics> shards) {
+        List<ScanStatistics> pending = new ArrayList<ScanStatistics>(shards);
+        Collections.shuffle(pending, random);
+        while (pending.size() > 1) {
+            //Merge two random shards, yielding random grouping
+            ScanStatistics first = pending.remove(random.nextInt(pending.size()));
+            ScanStatistics second = pending.remove(random.nextInt(pending.size()));
+            pending.add(first.merge(second));
+        }
+        return pending.get(0);
+    }
+
+    private static List<FileStats> randomFiles(Random random, int count) {
+        List<FileStats> files = new ArrayList<FileStats>(count);
+        for (int i = 0; i < count; i++) {
+            //Small name and size ranges to produce plenty of ties
+            String name = "file" + random.nextInt(50) + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+            long size = random.nextInt(4) == 0 ? random.nextInt(10) : (long) random.nextInt(1 << 20);
+            files.add(new FileStats(name, size));
+        }
+        return files;
+    }
+
+    private static ScanStatistics randomStatistics(Random random) {
+        ScanStatistics statistics = new ScanStatistics();
+        for (FileStats file : randomFiles(random, random.nextInt(100))) {
+            statistics.updateStatistics(file.getFilename(), file.getFileSize());
+        }
+        return statistics;
+    }
+
+    private static ScanStatistics copy(ScanStatistics statistics) {
+        return new ScanStatistics().merge(statistics);
+    }
+
+    private static void assertSameStatistics(ScanStatistics expected, ScanStatistics actual) {
+        assertEquals(expected.getTotalFiles(), actual.getTotalFiles());
+        assertEquals(expected.getTotalFileSize(), actual.getTotalFileSize());
+        assertEquals(expected.isCompletedScan(), actual.isCompletedScan());
+        assertEquals(expected.getBiggestFiles(), actual.getBiggestFiles());
+        assertEquals(expected.getFrequentedFileExtensions(Integer.MAX_VALUE),
+                actual.getFrequentedFileExtensions(Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Scans a small temporary tree through the Scanner API.
+ */
+public class ScannerTest extends TestCase {
+
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        root = TestTrees.createTempDirectory("scanner-test");
+        TestTrees.createTree(root, 2);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestTrees.deleteTree(root);
+        super.tearDown();
+    }
+
+    public void testSequentialAndParallelScansAgree() {
+        ScanOptions options = new ScanOptions();
+        options.setParallelism(1);
+        ScanStatistics sequential = new Scanner(options).scan(new File[] {root}, null, null);
+        options.setParallelism(4);
+        ScanStatistics parallel = new Scanner(options).scan(new File[] {root}, null, null);
+
+        assertTrue(sequential.isCompletedScan());
+        assertEquals(13 * 5, sequential.getTotalFiles());
+        assertEquals(sequential.getTotalFiles(), parallel.getTotalFiles());
+        assertEquals(sequential.getTotalFileSize(), parallel.getTotalFileSize());
+        assertEquals(sequential.getBiggestFiles(), parallel.getBiggestFiles());
+        assertEquals(sequential.getFrequentedFileExtensions(10), parallel.getFrequentedFileExtensions(10));
+    }
+
+    public void testDirectoryUsageRollsUpSubtrees() {
+        for (int parallelism : new int[] {1, 4}) {
+            ScanOptions options = new ScanOptions();
+            options.setParallelism(parallelism);
+            ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, null, null);
+
+            //Every first level directory holds 5 own files of about 1000 bytes and 3 subdirectories of 5 tiny files
+            List<DirectoryUsage> breakdown = statistics.getDirectoryBreakdown();
+            assertEquals(3, breakdown.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(new DirectoryUsage("dir" + i, 20, 5010 + 3 * 10), breakdown.get(i));
+            }
+
+            List<DirectoryUsage> heaviest = statistics.getHeaviestDirectories();
+            assertEquals(ScanStatistics.MAX_HEAVIEST_DIRECTORIES, heaviest.size());
+            assertEquals(breakdown, heaviest.subList(0, 3));
+            assertEquals(new DirectoryUsage("dir0" + File.separator + "dir0", 5, 10), heaviest.get(3));
+
+            String biggest = statistics.getBiggestFiles().get(0).getFilename();
+            assertEquals("file4.jpg", biggest);
+            assertTrue(statistics.getBiggestFiles().get(6).getFilename().startsWith("dir"));
+        }
+    }
+
+    public void testRescanWithIndex() throws IOException {
+        File indexFile = new File(root.getPath() + ".index");
+        try {
+            ScanOptions options = new ScanOptions();
+            options.setIndexFile(indexFile);
+            ScanStatistics first = new Scanner(options).scan(new File[] {root}, null, null);
+            assertTrue(indexFile.isFile());
+
+            ScanStatistics second = new Scanner(options).scan(new File[] {root}, null, null);
+            assertEquals(first.getTotalFiles(), second.getTotalFiles());
+            assertEquals(first.getTotalFileSize(), second.getTotalFileSize());
+            assertEquals(first.getHeaviestDirectories(), second.getHeaviestDirectories());
+            assertEquals(first.getDirectoryBreakdown(), second.getDirectoryBreakdown());
+        } finally {
+            indexFile.delete();
+        }
+    }
+
+    public void testIndexIsReusedUnderAnotherRoot() throws IOException {
+        File indexFile = new File(root.getPath() + ".index");
+        File subtree = new File(root, "dir1");
+        try {
+            ScanOptions options = new ScanOptions();
+            options.setIndexFile(indexFile);
+            new Scanner(options).scan(new File[] {root}, null, null);
+            ScanStatistics reused = new Scanner(options).scan(new File[] {subtree}, null, null);
+            ScanStatistics listed = new Scanner(new ScanOptions()).scan(new File[] {subtree}, null, null);
+            assertEquals(listed.getTotalFiles(), reused.getTotalFiles());
+            assertEquals(listed.getBiggestFiles(), reused.getBiggestFiles());
+            assertEquals("file4.jpg", reused.getBiggestFiles().get(0).getFilename());
+        } finally {
+            indexFile.delete();
+        }
+    }
+
+    public void testScanVolumesReportsEveryVolumeAndCombined() throws IOException {
+        File other = new File(root.getPath() + "-volume");
+        File indexFile = new File(root.getPath() + ".index");
+        TestTrees.createTree(other, 1);
+        try {
+            ScanOptions options = new ScanOptions();
+            options.setParallelism(4);
+            options.setIndexFile(indexFile);
+            VolumeScanResult result = new Scanner(options).scanVolumes(new File[] {root, other}, null, null);
+
+            assertEquals(2, result.getVolumeCount());
+            assertEquals(13 * 5, result.getVolumeStatistics(0).getTotalFiles());
+            assertEquals(4 * 5, result.getVolumeStatistics(1).getTotalFiles());
+            ScanStatistics combined = result.getCombined();
+            assertTrue(combined.isCompletedScan());
+            assertTrue(result.isAnyVolumeCompleted());
+            assertEquals(17 * 5, combined.getTotalFiles());
+            assertEquals(13 + 4, combined.getScannedDirectories());
+
+            //Paths start with their volume, so merged directories stay apart
+            assertEquals(new DirectoryUsage(root.getPath() + File.separator + "dir0", 20, 5010 + 3 * 10),
+                    combined.getHeaviestDirectories().get(0));
+            assertTrue(combined.getDirectoryBreakdown().contains(new DirectoryUsage(other.getPath() + File.separator + "dir0", 5, 10)));
+            assertEquals(result.getVolumeStatistics(1).getRootUsage(), combined.getRootUsage().subList(1, 2));
+            assertEquals(new DirectoryUsage(other.getPath(), 4 * 5, result.getVolumeStatistics(1).getTotalFileSize()),
+                    combined.getRootUsage().get(1));
+            assertTrue(Scanner.getVolumeIndexFile(indexFile, root).isFile());
+            assertTrue(Scanner.getVolumeIndexFile(indexFile, other).isFile());
+        } finally {
+            TestTrees.deleteTree(other);
+            Scanner.getVolumeIndexFile(indexFile, root).delete();
+            Scanner.getVolumeIndexFile(indexFile, other).delete();
+        }
+    }
+
+    public void testCancelledScanIsNotCompleted() {
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        ScanStatistics statistics = new Scanner(new ScanOptions()).scan(new File[] {root}, null, token);
+        assertFalse(statistics.isCompletedScan());
+
+        VolumeScanResult result = new Scanner(new ScanOptions()).scanVolumes(new File[] {root}, null, token);
+        assertFalse(result.isAnyVolumeCompleted());
+    }
+
+    public void testFileBudgetReturnsPartialStatistics() {
+        for (int parallelism : new int[] {1, 4}) {
+            ScanOptions options = new ScanOptions();
+            options.setParallelism(parallelism);
+            CancellationToken token = new CancellationToken();
+            token.setFileBudget(10);
+            ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, null, token);
+
+            assertFalse(statistics.isCompletedScan());
+            assertEquals(CancellationToken.StopReason.FILE_BUDGET, token.getStopReason());
+            assertTrue(statistics.getTotalFiles() >= 10 && statistics.getTotalFiles() < 13 * 5);
+            assertTrue(statistics.getUnscannedDirectories() > 0);
+            assertTrue(statistics.getScannedDirectories() + statistics.getUnscannedDirectories() <= 13);
+        }
+    }
+
+    public void testCompletedScanCoversAllDirectories() {
+        ScanStatistics statistics = new Scanner(new ScanOptions()).scan(new File[] {root}, null, null);
+        assertEquals(13, statistics.getScannedDirectories());
+        assertEquals(0, statistics.getUnscannedDirectories());
+    }
+
+    public void testBlockedWorkerIsAbandoned() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final File blocked = new File(root, "dir1");
+        ScanOptions options = new ScanOptions();
+        options.setParallelism(4);
+        options.setBackend(new FileScanBackend() {
+            @Override
+            public boolean listDirectory(File dir, EntryVisitor visitor) {
+                if (dir.equals(blocked)) {
+                    //Stands in for a listing that doesn't return
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.listDirectory(dir, visitor);
+            }
+        });
+
+        CancellationToken token = new CancellationToken();
+        token.setTimeBudgetMillis(200);
+        long start = System.nanoTime();
+        try {
+            ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, null, token);
+            assertTrue((System.nanoTime() - start) / 1000000 < 5000);
+            assertFalse(statistics.isCompletedScan());
+            assertEquals(CancellationToken.StopReason.TIME_BUDGET, token.getStopReason());
+            assertTrue(statistics.getUnscannedDirectories() > 0);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    public void testHardLinksAreCountedOnce() throws IOException {
+        File file = new File(root, "file0.jpg");
+        Files.createLink(new File(root, "link.jpg").toPath(), file.toPath());
+        Files.createLink(new File(root, "dir0/link.jpg").toPath(), file.toPath());
+
+        ScanStatistics statistics = scanWithLinks(false);
+        assertEquals(13 * 5, statistics.getTotalFiles());
+        assertEquals(2, statistics.getSkippedDuplicates());
+    }
+
+    public void testSymlinksAreSkippedByDefault() throws IOException {
+        Files.createSymbolicLink(new File(root, "loop").toPath(), root.toPath());
+        Files.createSymbolicLink(new File(root, "dir1/alias").toPath(), new File(root, "dir0").toPath());
+
+        ScanStatistics statistics = scanWithLinks(false);
+        assertEquals(13 * 5, statistics.getTotalFiles());
+        assertEquals(0, statistics.getSkippedDuplicates());
+    }
+
+    public void testFollowedSymlinksDetectCyclesAndDuplicates() throws IOException {
+        Files.createSymbolicLink(new File(root, "loop").toPath(), root.toPath());
+        Files.createSymbolicLink(new File(root, "dir1/alias").toPath(), new File(root, "dir0").toPath());
+        Files.createSymbolicLink(new File(root, "dir2/file.jpg").toPath(), new File(root, "file0.jpg").toPath());
+
+        ScanStatistics statistics = scanWithLinks(true);
+        assertEquals(13 * 5, statistics.getTotalFiles());
+        assertEquals(3, statistics.getSkippedDuplicates());
+    }
+
+    public void testFollowedSymlinkCycleWithoutInodes() throws IOException {
+        Files.createSymbolicLink(new File(root, "dir0/dir0/loop").toPath(), root.toPath());
+
+        ScanOptions options = new ScanOptions();
+        options.setBackend(new FileScanBackend());
+        options.setFollowSymlinks(true);
+        ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, null, null);
+        assertEquals(13 * 5, statistics.getTotalFiles());
+        assertEquals(1, statistics.getSkippedDuplicates());
+    }
+
+    private ScanStatistics scanWithLinks(boolean followSymlinks) {
+        ScanStatistics result = null;
+        for (int parallelism : new int[] {1, 4}) {
+            ScanOptions options = new ScanOptions();
+            options.setBackend(new NioScanBackend());
+            options.setParallelism(parallelism);
+            options.setFollowSymlinks(followSymlinks);
+            ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, null, null);
+            if (result != null) {
+                assertEquals(result.getTotalFiles(), statistics.getTotalFiles());
+                assertEquals(result.getTotalFileSize(), statistics.getTotalFileSize());
+                assertEquals(result.getSkippedDuplicates(), statistics.getSkippedDuplicates());
+            }
+            result = statistics;
+        }
+        return result;
+    }
+}
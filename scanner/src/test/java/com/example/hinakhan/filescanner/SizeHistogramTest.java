@@ -0,0 +1,116 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests for SizeHistogram.
+ */
+public class SizeHistogramTest extends TestCase {
+
+    public void testBucketBoundaries() {
+        long[] sizes = {0, 1, 15, 16, 17, 31, 32, 33, 1000, 1 << 20, (1 << 20) + 1, Long.MAX_VALUE};
+        for (long size : sizes) {
+            int index = SizeHistogram.bucketIndex(size);
+            assertTrue(index < SizeHistogram.BUCKETS);
+            long lower = SizeHistogram.lowerBound(index);
+            assertTrue(size + " below bucket", lower <= size);
+            assertTrue(size + " above bucket", size - lower < SizeHistogram.bucketWidth(index));
+        }
+        //Sizes below SUB_BUCKETS have exact buckets
+        assertEquals(1, SizeHistogram.bucketWidth(SizeHistogram.bucketIndex(15)));
+    }
+
+    public void testQuantilesWithinRelativeError() {
+        Random random = new Random(31);
+        long[] sizes = new long[100000];
+        SizeHistogram histogram = new SizeHistogram();
+        for (int i = 0; i < sizes.length; i++) {
+            //Log-normal, mostly small files with a long tail
+            sizes[i] = (long) Math.exp(9 + 3 * random.nextGaussian());
+            histogram.record(sizes[i]);
+        }
+        Arrays.sort(sizes);
+
+        for (double quantile : new double[] {0.01, 0.5, 0.9, 0.99, 0.999}) {
+            long exact = sizes[(int) Math.ceil(quantile * sizes.length) - 1];
+            long estimate = histogram.getValueAtQuantile(quantile);
+            assertTrue(quantile + ": " + estimate + " vs " + exact,
+                    Math.abs(estimate - exact) <= exact / SizeHistogram.SUB_BUCKETS + 1);
+        }
+        assertEquals(sizes[sizes.length - 1], histogram.getValueAtQuantile(1));
+        assertEquals(sizes[0], histogram.getMin());
+        assertEquals(sizes[sizes.length - 1], histogram.getMax());
+    }
+
+    public void testMergedShardsEqualSingleHistogram() {
+        Random random = new Random(32);
+        SizeHistogram single = new SizeHistogram();
+        SizeHistogram[] shards = {new SizeHistogram(), new SizeHistogram(), new SizeHistogram()};
+        for (int i = 0; i < 10000; i++) {
+            long size = random.nextInt(1 << random.nextInt(31));
+            single.record(size);
+            shards[random.nextInt(shards.length)].record(size);
+        }
+
+        SizeHistogram merged = new SizeHistogram();
+        for (SizeHistogram shard : shards) {
+            merged.merge(shard);
+        }
+        assertEquals(single.getCount(), merged.getCount());
+        assertEquals(single.getMin(), merged.getMin());
+        assertEquals(single.getMax(), merged.getMax());
+        for (int index = 0; index < SizeHistogram.BUCKETS; index++) {
+            assertEquals(single.getBucketCount(index), merged.getBucketCount(index));
+        }
+    }
+
+    public void testCountBelowPowerOfTwoIsExact() {
+        SizeHistogram histogram = new SizeHistogram();
+        long[] sizes = {0, 100, 4095, 4096, 4097, 70000, 1 << 20, 5L << 30};
+        for (long size : sizes) {
+            histogram.record(size);
+        }
+        assertEquals(3, histogram.getCountBelow(4096));
+        assertEquals(5, histogram.getCountBelow(64 << 10));
+        assertEquals(6, histogram.getCountBelow(1 << 20));
+        assertEquals(8, histogram.getCountBelow(Long.MAX_VALUE));
+    }
+
+    public void testRemovedSizesAreUncounted() {
+        SizeHistogram histogram = new SizeHistogram();
+        SizeHistogram expected = new SizeHistogram();
+        long[] sizes = {3, 100, 4096, 70000, 1 << 20};
+        for (long size : sizes) {
+            histogram.record(size);
+        }
+        histogram.remove(4096);
+        histogram.remove(1 << 20);
+        histogram.remove(5000);
+        for (long size : new long[] {3, 100, 70000}) {
+            expected.record(size);
+        }
+        assertEquals(3, histogram.getCount());
+        assertEquals(expected.getValueAtQuantile(0.5), histogram.getValueAtQuantile(0.5));
+        assertEquals(2, histogram.getCountBelow(4096));
+        assertEquals(3, histogram.getMin());
+        //The largest size is narrowed to its bucket
+        assertTrue(histogram.getMax() >= 70000 && histogram.getMax() < 70000 + 70000 / SizeHistogram.SUB_BUCKETS);
+
+        for (long size : new long[] {3, 100, 70000}) {
+            histogram.remove(size);
+        }
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    public void testEmptyHistogram() {
+        SizeHistogram histogram = new SizeHistogram();
+        assertEquals(0, histogram.getValueAtQuantile(0.5));
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMin());
+        assertEquals("0", new ScanStatistics().getAverageFileSize());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tests the copy-on-publish rounds of SnapshotPublisher.
+ */
+public class SnapshotPublisherTest extends TestCase {
+
+    public void testCopiesOncePerRound() {
+        SnapshotPublisher publisher = new SnapshotPublisher();
+        ScanStatistics statistics = new ScanStatistics();
+        statistics.updateStatistics("a.jpg", 100);
+        publisher.offer(statistics);
+
+        //Changes after publishing don't reach the published copy
+        statistics.updateStatistics("b.jpg", 200);
+        publisher.offer(statistics);
+        StatisticsSnapshot first = publisher.collect();
+        assertEquals(1, first.getTotalFiles());
+        assertEquals(100, first.getTotalFileSize());
+
+        //collect() requested a new round, the next offer copies again
+        publisher.offer(statistics);
+        StatisticsSnapshot second = publisher.collect();
+        assertEquals(2, second.getTotalFiles());
+        assertEquals("b.jpg", second.getBiggestFiles().get(0).getFilename());
+        assertEquals(Integer.valueOf(2), second.getFrequentFileExtensions().get(".jpg"));
+        assertEquals(1, first.getTotalFiles());
+    }
+
+    public void testMergesThreads() throws InterruptedException {
+        final SnapshotPublisher publisher = new SnapshotPublisher();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int size = i + 1;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ScanStatistics statistics = new ScanStatistics();
+                    statistics.updateStatistics("file" + size + ".txt", size);
+                    publisher.offer(statistics);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        StatisticsSnapshot snapshot = publisher.collect();
+        assertEquals(4, snapshot.getTotalFiles());
+        assertEquals(1 + 2 + 3 + 4, snapshot.getTotalFileSize());
+        assertEquals(Integer.valueOf(4), snapshot.getFrequentFileExtensions().get(".txt"));
+    }
+
+    public void testScannerAttachesSnapshotsToProgress() throws IOException {
+        File root = TestTrees.createTempDirectory("snapshot-test");
+        try {
+            TestTrees.createTree(root, 2);
+            final List<ProgressSnapshot> reports = new CopyOnWriteArrayList<ProgressSnapshot>();
+            ScanOptions options = new ScanOptions();
+            options.setLiveStatistics(true);
+            options.setProgressIntervalMillis(1);
+            ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, new ScanListener() {
+                @Override
+                public void onProgress(ProgressSnapshot snapshot) {
+                    reports.add(snapshot);
+                }
+
+                @Override
+                public void onWarning(String message, Exception e) {
+                }
+            }, null);
+
+            assertEquals(13 * 5, statistics.getTotalFiles());
+            assertFalse(reports.isEmpty());
+            for (ProgressSnapshot report : reports) {
+                assertNotNull(report.getStatistics());
+            }
+            //The final report carries the statistics of the completed scan, not copies of the previous round
+            StatisticsSnapshot last = reports.get(reports.size() - 1).getStatistics();
+            assertEquals(statistics.getTotalFiles(), last.getTotalFiles());
+            assertEquals(statistics.getTotalFileSize(), last.getTotalFileSize());
+        } finally {
+            TestTrees.deleteTree(root);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.hinakhan.filescanner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+/**
+ * Temporary trees of files shared by the tests scanning a real file system.
+ */
+final class TestTrees {
+
+    private TestTrees() {
+    }
+
+    /**
+     * Creates a new empty directory in the temporary directory.
+     * @param prefix
+     * @return
+     * @throws IOException
+     */
+    static File createTempDirectory(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    /**
+     * Creates a tree of 5 files per directory, with sizes of depth * 1000 plus their index, and
+     * 3 subdirectories per level down to depth 0. Files alternate between .jpg and .txt.
+     * @param dir Directory of the tree, created if missing.
+     * @param depth
+     * @throws IOException
+     */
+    static void createTree(File dir, int depth) throws IOException {
+        if (!dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Could not create " + dir);
+        }
+        for (int i = 0; i < 5; i++) {
+            createFile(new File(dir, "file" + i + (i % 2 == 0 ? ".jpg" : ".txt")), depth * 1000 + i);
+        }
+        if (depth > 0) {
+            for (int i = 0; i < 3; i++) {
+                createTree(new File(dir, "dir" + i), depth - 1);
+            }
+        }
+    }
+
+    /**
+     * Creates or resizes a sparse file, creating its missing parents.
+     * @param file
+     * @param length
+     * @throws IOException
+     */
+    static void createFile(File file, long length) throws IOException {
+        file.getParentFile().mkdirs();
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            output.setLength(length);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Writes a file, creating its missing parents.
+     * @param file
+     * @param content
+     * @throws IOException
+     */
+    static void write(File file, byte[] content) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Deletes a file or a tree, deleting links without descending into their targets.
+     * @param file
+     */
+    static void deleteTree(File file) {
+        File[] files = Files.isSymbolicLink(file.toPath()) ? null : file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+}
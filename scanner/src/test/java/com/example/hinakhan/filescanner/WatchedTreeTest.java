@@ -0,0 +1,278 @@
+package com.example.hinakhan.filescanner;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies changes of a temporary tree to the statistics of its scan and compares them with a new scan.
+ */
+public class WatchedTreeTest extends TestCase {
+
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        root = TestTrees.createTempDirectory("watched-tree-test");
+        TestTrees.createTree(root, 2);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestTrees.deleteTree(root);
+        super.tearDown();
+    }
+
+    public void testRefreshMatchesNewScan() throws IOException {
+        WatchedTree tree = scan(null);
+        assertEquals(13, tree.getDirectoryCount());
+        assertEquals(13 * 5, tree.getFileCount());
+
+        //Biggest file deleted, files added and resized, a subtree added and one removed
+        assertTrue(new File(root, "file4.jpg").delete());
+        TestTrees.createFile(new File(root, "dir0/huge.mp4"), 50000);
+        TestTrees.createFile(new File(root, "dir1/file0.jpg"), 7000);
+        TestTrees.createTree(new File(root, "new"), 1);
+        TestTrees.deleteTree(new File(root, "dir2"));
+
+        List<String> added = new ArrayList<String>();
+        List<String> removed = new ArrayList<String>();
+        assertTrue(tree.refresh("", false, added, removed));
+        assertTrue(tree.refresh("dir0", false, added, removed));
+        assertTrue(tree.refresh("dir1", false, added, removed));
+        assertFalse(tree.refresh("dir1", false, added, removed));
+        assertEquals(4, added.size());
+        assertTrue(added.contains("new" + File.separator + "dir2"));
+        assertEquals(4, removed.size());
+        assertTrue(removed.contains("dir2"));
+        assertEquals(13, tree.getDirectoryCount());
+
+        assertSameStatistics(scanAgain(null), tree.getStatistics());
+        assertEquals("dir0" + File.separator + "huge.mp4", tree.getStatistics().getBiggestFiles().get(0).getFilename());
+    }
+
+    public void testSubtreeRefreshFindsChangesBelow() throws IOException {
+        WatchedTree tree = scan(null);
+        TestTrees.createFile(new File(root, "dir0/dir1/file1.txt"), 12345);
+        assertTrue(new File(root, "dir2/dir2/file3.txt").delete());
+
+        //Only the subtree listing sees changes below the directory
+        assertFalse(tree.refresh("", false, null, null));
+        assertTrue(tree.refresh("", true, null, null));
+        assertSameStatistics(scanAgain(null), tree.getStatistics());
+    }
+
+    public void testRefreshKeepsFilter() throws IOException {
+        ScanFilter filter = ScanFilter.compile("ext:jpg exclude:dir1");
+        WatchedTree tree = scan(filter);
+        TestTrees.createFile(new File(root, "dir0/photo.jpg"), 3000);
+        TestTrees.createFile(new File(root, "dir0/notes.txt"), 3000);
+        TestTrees.createFile(new File(root, "dir1/photo.jpg"), 3000);
+
+        tree.refresh("", true, null, null);
+        ScanStatistics statistics = tree.getStatistics();
+        assertSameStatistics(scanAgain(filter), statistics);
+        assertEquals(1, tree.getChanges());
+    }
+
+    public void testRefreshSkipsLinkedDuplicate() throws IOException {
+        Files.createSymbolicLink(new File(root, "alias").toPath(), new File(root, "dir0").toPath());
+        Files.createSymbolicLink(new File(root, "dir1/loop").toPath(), root.toPath());
+        ScanOptions options = linkOptions(new NioScanBackend());
+        WatchedTree tree = scanWith(options);
+        assertEquals(13, tree.getDirectoryCount());
+
+        //The scan skipped the links as duplicates, listing their directories again must too
+        assertFalse(tree.refresh("", true, null, null));
+        assertEquals(13, tree.getDirectoryCount());
+        assertSameStatistics(new Scanner(options).scan(new File[] {root}, null, null), tree.getStatistics());
+    }
+
+    public void testRefreshFollowsMovedDirectory() throws IOException {
+        ScanOptions options = linkOptions(new NioScanBackend());
+        WatchedTree tree = scanWith(options);
+        assertTrue(new File(root, "dir0").renameTo(new File(root, "dir1/moved")));
+
+        //Listed under its new path before its old one is gone from the tree
+        assertTrue(tree.refresh("dir1", false, null, null));
+        assertTrue(tree.refresh("", false, null, null));
+        assertEquals(13, tree.getDirectoryCount());
+        assertSameStatistics(new Scanner(options).scan(new File[] {root}, null, null), tree.getStatistics());
+    }
+
+    public void testRefreshStaysOnFileSystem() throws IOException {
+        ScanOptions options = linkOptions(new MountBackend("dir1"));
+        options.setOneFileSystem(true);
+        WatchedTree tree = scanWith(options);
+        assertEquals(7, tree.getDirectoryCount());
+
+        assertFalse(tree.refresh("", true, null, null));
+        assertEquals(7, tree.getDirectoryCount());
+        assertSameStatistics(new Scanner(options).scan(new File[] {root}, null, null), tree.getStatistics());
+    }
+
+    public void testAddsWaitForTheirDirectory() throws InterruptedException {
+        final WatchedTree tree = new WatchedTree();
+        tree.startTraversal(new FileScanBackend(), null, false, false, new long[0]);
+        tree.addRoot("", root);
+        final File dir0 = new File(root, "dir0");
+        final File dir1 = new File(dir0, "dir1");
+
+        //Another worker lists a directory while the buffer holding it is not merged yet, its buffer merges first
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                String path = "dir0" + File.separator + "dir1";
+                tree.addFile(path, "file0.txt", 10);
+                tree.addDirectory(path, directoryEntry(new File(dir1, "dir2")));
+            }
+        });
+        worker.start();
+        worker.join();
+        tree.addDirectory("", directoryEntry(dir0));
+        tree.addDirectory("dir0", directoryEntry(dir1));
+        tree.addFile("missing", "file1.txt", 20);
+
+        assertEquals(Arrays.asList("", "dir0", "dir0" + File.separator + "dir1",
+                "dir0" + File.separator + "dir1" + File.separator + "dir2"), tree.getDirectoryPaths());
+        assertEquals(1, tree.getFileCount());
+    }
+
+    public void testPartialScanIsNotAttached() {
+        WatchedTree tree = new WatchedTree();
+        ScanOptions options = new ScanOptions();
+        options.setWatchedTree(tree);
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        ScanStatistics statistics = new Scanner(options).scan(new File[] {root}, null, token);
+        try {
+            tree.attach(statistics);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertFalse(tree.isAttached());
+        }
+    }
+
+    public void testWatcherAppliesChanges() throws IOException, InterruptedException {
+        WatchedTree tree = scan(null);
+        final CountDownLatch changed = new CountDownLatch(1);
+        final ScanStatistics[] received = new ScanStatistics[1];
+        NioTreeWatcher watcher = new NioTreeWatcher(tree);
+        watcher.setSettleMillis(50);
+        watcher.setListener(new TreeWatcher.Listener() {
+            @Override
+            public void onStatisticsChanged(ScanStatistics statistics) {
+                if (statistics.getTotalFiles() == 13 * 5 + 1) {
+                    received[0] = statistics;
+                    changed.countDown();
+                }
+            }
+        });
+        watcher.start();
+        try {
+            assertEquals(13, watcher.getWatchedDirectories());
+            TestTrees.createFile(new File(root, "dir1/dir0/added.jpg"), 100000);
+            assertTrue(changed.await(10, TimeUnit.SECONDS));
+            assertEquals("dir1" + File.separator + "dir0" + File.separator + "added.jpg",
+                    received[0].getBiggestFiles().get(0).getFilename());
+        } finally {
+            watcher.stop();
+        }
+        assertEquals(0, watcher.getWatchedDirectories());
+    }
+
+    private WatchedTree scan(ScanFilter filter) {
+        ScanOptions options = new ScanOptions();
+        options.setFilter(filter);
+        return scanWith(options);
+    }
+
+    private WatchedTree scanWith(ScanOptions options) {
+        WatchedTree tree = new WatchedTree();
+        options.setParallelism(4);
+        options.setWatchedTree(tree);
+        tree.attach(new Scanner(options).scan(new File[] {root}, null, null));
+        options.setWatchedTree(null);
+        return tree;
+    }
+
+    private static DirectoryEntry directoryEntry(File dir) {
+        DirectoryEntry entry = new DirectoryEntry();
+        entry.set(dir.getParentFile(), dir.getName(), dir, true, 0, DirectoryEntry.UNKNOWN);
+        return entry;
+    }
+
+    private static ScanOptions linkOptions(ScanBackend backend) {
+        ScanOptions options = new ScanOptions();
+        options.setBackend(backend);
+        options.setFollowSymlinks(true);
+        return options;
+    }
+
+    private ScanStatistics scanAgain(ScanFilter filter) {
+        ScanOptions options = new ScanOptions();
+        options.setFilter(filter);
+        return new Scanner(options).scan(new File[] {root}, null, null);
+    }
+
+    private static void assertSameStatistics(ScanStatistics expected, ScanStatistics actual) {
+        assertEquals(expected.getTotalFiles(), actual.getTotalFiles());
+        assertEquals(expected.getTotalFileSize(), actual.getTotalFileSize());
+        assertEquals(expected.getScannedDirectories(), actual.getScannedDirectories());
+        assertEquals(expected.getBiggestFiles(), actual.getBiggestFiles());
+        assertEquals(expected.getFrequentedFileExtensions(10), actual.getFrequentedFileExtensions(10));
+        assertEquals(expected.getHeaviestDirectories(), actual.getHeaviestDirectories());
+        assertEquals(expected.getDirectoryBreakdown(), actual.getDirectoryBreakdown());
+        assertEquals(expected.getRootUsage(), actual.getRootUsage());
+        assertEquals(expected.getSizeHistogram().getCount(), actual.getSizeHistogram().getCount());
+        assertEquals(expected.getFileSizePercentile(50), actual.getFileSizePercentile(50));
+    }
+
+    /**
+     * Reports directories of one name on another device, like mount points.
+     */
+    private static class MountBackend implements ScanBackend {
+
+        private final ScanBackend backend = new NioScanBackend(); //Reads the actual attributes
+        private final String mountName; //Name of the directories reported on another device
+
+        MountBackend(String mountName) {
+            this.mountName = mountName;
+        }
+
+        @Override
+        public boolean listDirectory(File dir, final EntryVisitor visitor) {
+            return backend.listDirectory(dir, new EntryVisitor() {
+                @Override
+                public boolean visitEntry(DirectoryEntry entry) {
+                    mount(entry);
+                    return visitor.visitEntry(entry);
+                }
+            });
+        }
+
+        @Override
+        public boolean readEntry(File file, DirectoryEntry entry) {
+            if (!backend.readEntry(file, entry)) {
+                return false;
+            }
+            mount(entry);
+            return true;
+        }
+
+        private void mount(DirectoryEntry entry) {
+            if (entry.isDirectory() && entry.getName().equals(mountName)) {
+                entry.set(entry.getParent(), entry.getName(), entry.getFile(), true, entry.getSize(), entry.getLastModified(),
+                        entry.isSymbolicLink(), entry.getDevice() + 1, entry.getInode(), entry.getLinkCount());
+            }
+        }
+    }
+}